@@ -4,16 +4,26 @@ import com.snayber.api_jdbc.model.Compra;
 import com.snayber.api_jdbc.model.Producto;
 import com.snayber.api_jdbc.repository.CompraRepository;
 import com.snayber.api_jdbc.repository.ProductoRepository;
+import com.snayber.api_jdbc.event.CompraEvent;
 import com.snayber.api_jdbc.exception.InventarioException;
+import com.snayber.api_jdbc.service.ExportacionCsvService;
+import com.snayber.api_jdbc.service.PaginacionService;
 import java.math.BigDecimal;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -26,18 +36,52 @@ public class ComprasController {
 
     private final CompraRepository compraRepository;
     private final ProductoRepository productoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExportacionCsvService exportacionCsvService;
+    private final PaginacionService paginacionService;
     @PersistenceContext
     private EntityManager entityManager;
 
-    public ComprasController(CompraRepository compraRepository, ProductoRepository productoRepository) {
+    public ComprasController(CompraRepository compraRepository, ProductoRepository productoRepository,
+                             ApplicationEventPublisher eventPublisher, ExportacionCsvService exportacionCsvService,
+                             PaginacionService paginacionService) {
         this.compraRepository = compraRepository;
         this.productoRepository = productoRepository;
+        this.eventPublisher = eventPublisher;
+        this.exportacionCsvService = exportacionCsvService;
+        this.paginacionService = paginacionService;
     }
 
+    /**
+     * Sin cursor ni límite devuelve todas las compras (compatibilidad); con alguno de
+     * los dos devuelve una página ordenada por (fechaCompra, id) descendente.
+     */
     @GetMapping
-    public ResponseEntity<List<Compra>> obtenerTodasLasCompras() {
-        List<Compra> all = compraRepository.findAll();
-        return ResponseEntity.ok(all);
+    public ResponseEntity<?> obtenerTodasLasCompras(@RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) Integer limite) {
+        if (cursor == null && limite == null) {
+            List<Compra> all = compraRepository.findAll();
+            return ResponseEntity.ok(all);
+        }
+        return ResponseEntity.ok(paginacionService.paginarCompras(cursor, limite));
+    }
+
+    /**
+     * Exporta las compras a CSV en streaming, opcionalmente comprimido con gzip.
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarCompras(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportacionCsvService.validarRango(fechaInicio, fechaFin);
+        logger.info("Exportando compras a CSV: {} - {}, producto {}, gzip {}", fechaInicio, fechaFin, productoId, gzip);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(gzip ? "compras.csv.gz" : "compras.csv").build().toString())
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv;charset=UTF-8"))
+                .body(salida -> exportacionCsvService.exportarCompras(fechaInicio, fechaFin, productoId, gzip, salida));
     }
 
     @GetMapping("/{id}")
@@ -48,7 +92,6 @@ public class ComprasController {
 
     @PostMapping
     @Transactional(rollbackFor = Exception.class)
-    @org.springframework.cache.annotation.CacheEvict(value = "dashboardCompleto", allEntries = true)
     public ResponseEntity<?> registrarCompra(@RequestBody Compra compra) {
         logger.debug("Iniciando registro de compra: {}", compra);
         try {
@@ -140,6 +183,7 @@ public class ComprasController {
             }
             
             Compra saved = compraRepository.save(compra);
+            eventPublisher.publishEvent(CompraEvent.registrada(saved));
             logger.info("Compra registrada exitosamente: id={}", saved.getId());
             return ResponseEntity.ok(saved);
             
@@ -166,6 +210,7 @@ public class ComprasController {
             }
             
             Compra e = existing.get();
+            Compra anterior = e.toBuilder().build();
             // cantidad en el modelo es BigDecimal
             BigDecimal cantidadAnterior = e.getCantidad();
             Long productoIdAnterior = e.getProductoId();
@@ -203,6 +248,7 @@ public class ComprasController {
             }
             
             Compra saved = compraRepository.save(e);
+            eventPublisher.publishEvent(CompraEvent.actualizada(anterior, saved));
             logger.info("Compra actualizada exitosamente: id={}", saved.getId());
             return ResponseEntity.ok(saved);
             
@@ -235,6 +281,7 @@ public class ComprasController {
             logger.info("Stock revertido al eliminar compra. Producto id={} cantidad revertida={}", producto.getId(), cantidadRevertir);
             
             compraRepository.deleteById(id);
+            eventPublisher.publishEvent(CompraEvent.eliminada(c));
             logger.info("Compra eliminada exitosamente: id={}", id);
             return ResponseEntity.ok().build();
             
@@ -1,12 +1,24 @@
 package com.snayber.api_jdbc;
 
+import com.snayber.api_jdbc.event.ProductoEvent;
 import com.snayber.api_jdbc.model.Producto;
 import com.snayber.api_jdbc.repository.ProductoRepository;
+import com.snayber.api_jdbc.dto.PaginaDTO;
+import com.snayber.api_jdbc.service.ExportacionCsvService;
+import com.snayber.api_jdbc.service.InventarioFeedService;
+import com.snayber.api_jdbc.service.PaginacionService;
+import com.snayber.api_jdbc.service.VersionDatosService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -18,7 +30,14 @@ import java.util.Map;
 @Slf4j
 public class InventarioController {
 
+    private static final String HEADER_VERSION_FEED = "X-Inventario-Version";
+
     private final ProductoRepository productoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExportacionCsvService exportacionCsvService;
+    private final PaginacionService paginacionService;
+    private final VersionDatosService versionDatosService;
+    private final InventarioFeedService inventarioFeedService;
 
     @GetMapping("/health")
     public ResponseEntity<?> healthCheck() {
@@ -41,48 +60,58 @@ public class InventarioController {
         }
     }
 
+    /**
+     * Exporta el inventario a CSV en streaming, opcionalmente comprimido con gzip.
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarInventario(
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(required = false) String tipo,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        log.info("Exportando inventario a CSV: producto {}, tipo {}, gzip {}", productoId, tipo, gzip);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(gzip ? "inventario.csv.gz" : "inventario.csv").build().toString())
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv;charset=UTF-8"))
+                .body(salida -> exportacionCsvService.exportarInventario(productoId, tipo, gzip, salida));
+    }
+
+    /**
+     * Sin cursor ni límite devuelve todo el inventario (compatibilidad); con alguno
+     * de los dos devuelve una página ordenada por id.
+     */
     @GetMapping
-    public ResponseEntity<?> obtenerInventario() {
+    public ResponseEntity<?> obtenerInventario(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limite,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            // Si el cliente ya tiene la versión actual se responde 304 sin consultar la base
+            String etag = versionDatosService.etag("inventario", VersionDatosService.Agregado.PRODUCTOS);
+            if (VersionDatosService.coincide(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            // Versión del feed de cambios leída antes del catálogo: el terminal se suscribe desde aquí
+            String versionFeed = inventarioFeedService.arranque() + "-" + inventarioFeedService.versionActual();
+
+            if (cursor != null || limite != null) {
+                PaginaDTO<Producto> pagina = paginacionService.paginarProductos(cursor, limite);
+                normalizar(pagina.getItems());
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                        .header(HEADER_VERSION_FEED, versionFeed).body(pagina);
+            }
+
             log.info("=== Iniciando obtención de inventario ===");
             List<Producto> productos = productoRepository.findAll();
             log.info("Productos encontrados en BD: {}", productos.size());
             
-            // Verificar y normalizar datos de todos los productos
-            for (Producto producto : productos) {
-                try {
-                    if (producto == null) {
-                        log.error("Producto null encontrado en la lista");
-                        continue;
-                    }
-                    
-                    log.debug("Procesando producto id={}, nombre={}", producto.getId(), producto.getNombre());
-                    
-                    if (producto.getCantidad() == null) {
-                        producto.setCantidad(BigDecimal.ZERO);
-                        log.warn("Producto id={} tiene cantidad null, estableciendo a 0", producto.getId());
-                    }
-                    if (producto.getPrecio() == null) {
-                        producto.setPrecio(BigDecimal.ZERO);
-                        log.warn("Producto id={} tiene precio null, estableciendo a 0", producto.getId());
-                    }
-                    if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) {
-                        producto.setNombre("Sin nombre");
-                        log.warn("Producto id={} tiene nombre null o vacío", producto.getId());
-                    }
-                    if (producto.getTipo() == null || producto.getTipo().trim().isEmpty()) {
-                        producto.setTipo("General");
-                        log.warn("Producto id={} tiene tipo null o vacío", producto.getId());
-                    }
-                } catch (Exception ex) {
-                    log.error("Error procesando producto: {}", ex.getMessage(), ex);
-                    // Continuar con el siguiente producto
-                }
-            }
+            normalizar(productos);
             
             log.info("=== Inventario obtenido exitosamente: {} productos ===", productos.size());
-            return ResponseEntity.ok(productos);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                    .header(HEADER_VERSION_FEED, versionFeed).body(productos);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (org.springframework.dao.DataAccessException dae) {
             log.error("Error de acceso a datos: {}", dae.getMessage(), dae);
             Map<String, Object> error = Map.of(
@@ -104,6 +133,69 @@ public class InventarioController {
         }
     }
 
+    /**
+     * Feed de cambios de stock y precio (Server-Sent Events) para los terminales de venta.
+     * Para reanudar se pasa {@code desde} (la cabecera X-Inventario-Version de la carga
+     * del catálogo, o la última versión recibida); el navegador también reanuda solo
+     * con Last-Event-ID al reconectar.
+     */
+    @GetMapping("/cambios")
+    public ResponseEntity<?> suscribirCambios(
+            @RequestParam(required = false) String desde,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            String referencia = lastEventId != null ? lastEventId : desde;
+            Long version = InventarioFeedService.versionDeId(referencia);
+            if (referencia != null && version == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Versión no válida: " + referencia));
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(inventarioFeedService.suscribir(version, InventarioFeedService.instanciaDeId(referencia)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/cambios/estado")
+    public ResponseEntity<?> obtenerEstadoCambios() {
+        return ResponseEntity.ok(inventarioFeedService.obtenerEstado());
+    }
+
+    // Verificar y normalizar datos de todos los productos
+    private void normalizar(List<Producto> productos) {
+        for (Producto producto : productos) {
+            try {
+                if (producto == null) {
+                    log.error("Producto null encontrado en la lista");
+                    continue;
+                }
+                
+                log.debug("Procesando producto id={}, nombre={}", producto.getId(), producto.getNombre());
+                
+                if (producto.getCantidad() == null) {
+                    producto.setCantidad(BigDecimal.ZERO);
+                    log.warn("Producto id={} tiene cantidad null, estableciendo a 0", producto.getId());
+                }
+                if (producto.getPrecio() == null) {
+                    producto.setPrecio(BigDecimal.ZERO);
+                    log.warn("Producto id={} tiene precio null, estableciendo a 0", producto.getId());
+                }
+                if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) {
+                    producto.setNombre("Sin nombre");
+                    log.warn("Producto id={} tiene nombre null o vacío", producto.getId());
+                }
+                if (producto.getTipo() == null || producto.getTipo().trim().isEmpty()) {
+                    producto.setTipo("General");
+                    log.warn("Producto id={} tiene tipo null o vacío", producto.getId());
+                }
+            } catch (Exception ex) {
+                log.error("Error procesando producto: {}", ex.getMessage(), ex);
+                // Continuar con el siguiente producto
+            }
+        }
+    }
+
     @PostMapping
     public ResponseEntity<?> crearProducto(@RequestBody Map<String, Object> productoData) {
         try {
@@ -139,6 +231,7 @@ public class InventarioController {
                     .build();
 
             Producto productoGuardado = productoRepository.save(producto);
+            eventPublisher.publishEvent(ProductoEvent.modificado(productoGuardado.getId()));
             log.info("Producto creado exitosamente: id={}, nombre={}", productoGuardado.getId(), productoGuardado.getNombre());
             return ResponseEntity.status(HttpStatus.CREATED).body(productoGuardado);
         } catch (Exception e) {
@@ -170,6 +263,7 @@ public class InventarioController {
                             }
                             
                             Producto productoActualizado = productoRepository.save(producto);
+                            eventPublisher.publishEvent(ProductoEvent.modificado(productoActualizado.getId()));
                             log.info("Producto actualizado exitosamente: id={}, nombre={}", productoActualizado.getId(), productoActualizado.getNombre());
                             return ResponseEntity.ok(productoActualizado);
                         } catch (Exception e) {
@@ -193,6 +287,7 @@ public class InventarioController {
             
             if (productoRepository.existsById(id)) {
                 productoRepository.deleteById(id);
+                eventPublisher.publishEvent(ProductoEvent.eliminado(id));
                 log.info("Producto eliminado exitosamente: id={}", id);
                 return ResponseEntity.ok().body(Map.of("mensaje", "Producto eliminado exitosamente"));
             } else {
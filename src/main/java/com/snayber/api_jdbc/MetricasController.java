@@ -0,0 +1,79 @@
+package com.snayber.api_jdbc;
+
+import com.snayber.api_jdbc.model.ReconstruccionMetricas;
+import com.snayber.api_jdbc.service.ReconstruccionMetricasService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metricas")
+@RequiredArgsConstructor
+@Slf4j
+public class MetricasController {
+
+    private final ReconstruccionMetricasService reconstruccionMetricasService;
+
+    // ========================================
+    // RECONSTRUCCIÓN DE METRICAS_DIARIAS
+    // ========================================
+
+    @PostMapping("/reconstruir")
+    public ResponseEntity<?> reconstruir(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) Integer diasPorBloque) {
+        try {
+            log.info("Iniciando reconstrucción de métricas desde {} hasta {}", fechaInicio, fechaFin);
+            ReconstruccionMetricas reconstruccion = reconstruccionMetricasService.iniciar(fechaInicio, fechaFin, diasPorBloque);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconstruccion);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error iniciando reconstrucción de métricas: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al iniciar reconstrucción de métricas", "mensaje", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/reconstruir/{id}/reanudar")
+    public ResponseEntity<?> reanudar(@PathVariable Long id) {
+        try {
+            ReconstruccionMetricas reconstruccion = reconstruccionMetricasService.reanudar(id);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconstruccion);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error reanudando reconstrucción {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al reanudar reconstrucción de métricas", "mensaje", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reconstruir/{id}")
+    public ResponseEntity<?> obtenerReconstruccion(@PathVariable Long id) {
+        return reconstruccionMetricasService.obtener(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/reconstruir/pendientes")
+    public ResponseEntity<?> obtenerReanudables() {
+        try {
+            return ResponseEntity.ok(Map.of("reconstrucciones", reconstruccionMetricasService.obtenerReanudables()));
+        } catch (Exception e) {
+            log.error("Error obteniendo reconstrucciones pendientes: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener reconstrucciones pendientes", "mensaje", e.getMessage()));
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.snayber.api_jdbc;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.snayber.api_jdbc.event.ProductoEvent;
 import com.snayber.api_jdbc.model.Producto;
 import com.snayber.api_jdbc.repository.ProductoRepository;
+import com.snayber.api_jdbc.service.PaginacionService;
+import com.snayber.api_jdbc.service.VersionDatosService;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -23,12 +29,37 @@ public class ProductoController {
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PaginacionService paginacionService;
+
+    @Autowired
+    private VersionDatosService versionDatosService;
+
+    /**
+     * Sin cursor ni límite devuelve todos los productos (compatibilidad); con alguno
+     * de los dos devuelve una página ordenada por id.
+     */
     @GetMapping("/listar")
-    public ResponseEntity<?> listarProductos() {
+    public ResponseEntity<?> listarProductos(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limite,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = versionDatosService.etag("productos", VersionDatosService.Agregado.PRODUCTOS);
+            if (VersionDatosService.coincide(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            if (cursor != null || limite != null) {
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                        .body(paginacionService.paginarProductos(cursor, limite));
+            }
             List<Producto> productos = productoRepository.findAll();
             logger.info("Listando {} productos", productos.size());
-            return ResponseEntity.ok(productos);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(productos);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error listando productos: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -75,6 +106,7 @@ public class ProductoController {
             }
 
             Producto guardado = productoRepository.save(producto);
+            eventPublisher.publishEvent(ProductoEvent.modificado(guardado.getId()));
             logger.info("Producto guardado exitosamente: id={} nombre={}", guardado.getId(), guardado.getNombre());
             return ResponseEntity.status(HttpStatus.CREATED).body(guardado);
         } catch (Exception e) {
@@ -117,6 +149,7 @@ public class ProductoController {
             }
 
             Producto actualizado = productoRepository.save(producto);
+            eventPublisher.publishEvent(ProductoEvent.modificado(actualizado.getId()));
             logger.info("Producto actualizado exitosamente: id={} nombre={}", actualizado.getId(), actualizado.getNombre());
             return ResponseEntity.ok(actualizado);
         } catch (Exception e) {
@@ -134,6 +167,7 @@ public class ProductoController {
             }
             
             productoRepository.deleteById(id);
+            eventPublisher.publishEvent(ProductoEvent.eliminado(id));
             logger.info("Producto eliminado exitosamente: id={}", id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -5,17 +5,36 @@ import com.snayber.api_jdbc.model.Venta;
 import com.snayber.api_jdbc.model.Compra;
 import com.snayber.api_jdbc.model.MetricaDiaria;
 import com.snayber.api_jdbc.model.AlertaInventario;
+import com.snayber.api_jdbc.model.AcumuladorDinero;
 import com.snayber.api_jdbc.repository.VentaRepository;
 import com.snayber.api_jdbc.repository.CompraRepository;
 import com.snayber.api_jdbc.repository.ProductoRepository;
 import com.snayber.api_jdbc.repository.MetricaDiariaRepository;
 import com.snayber.api_jdbc.repository.AlertaInventarioRepository;
+import com.snayber.api_jdbc.service.ClienteAgregadoService;
+import com.snayber.api_jdbc.service.ClientesDistintosService;
+import com.snayber.api_jdbc.service.ComparativoService;
+import com.snayber.api_jdbc.service.DashboardService;
+import com.snayber.api_jdbc.service.DashboardStreamService;
+import com.snayber.api_jdbc.service.FlujoCajaService;
+import com.snayber.api_jdbc.service.MetricaDiariaService;
+import com.snayber.api_jdbc.service.ProductosMasVendidosService;
+import com.snayber.api_jdbc.service.ProveedorAgregadoService;
+import com.snayber.api_jdbc.service.ReporteCacheService;
+import com.snayber.api_jdbc.service.ReporteStreamingService;
+import com.snayber.api_jdbc.service.VentasColumnarService;
+import com.snayber.api_jdbc.service.VersionDatosService;
+import com.snayber.api_jdbc.service.VistasMaterializadasService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -23,7 +42,9 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,12 +53,27 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReportesController {
 
+    // Modo de los reportes de clientes y proveedores que leen las tablas de agregados
+    private static final String MODO_AGREGADO = "agregado";
+
     private final VentaRepository ventaRepository;
     private final CompraRepository compraRepository;
     private final ProductoRepository productoRepository;
     private final MetricaDiariaRepository metricaDiariaRepository;
     private final AlertaInventarioRepository alertaInventarioRepository;
-    private final JdbcTemplate jdbcTemplate;
+    private final MetricaDiariaService metricaDiariaService;
+    private final ProductosMasVendidosService productosMasVendidosService;
+    private final ReporteStreamingService reporteStreamingService;
+    private final ReporteCacheService reporteCacheService;
+    private final VentasColumnarService ventasColumnarService;
+    private final VistasMaterializadasService vistasMaterializadasService;
+    private final VersionDatosService versionDatosService;
+    private final DashboardService dashboardService;
+    private final ClienteAgregadoService clienteAgregadoService;
+    private final ClientesDistintosService clientesDistintosService;
+    private final ProveedorAgregadoService proveedorAgregadoService;
+    private final ComparativoService comparativoService;
+    private final DashboardStreamService dashboardStreamService;
 
     // ========================================
     // REPORTES DE VENTAS
@@ -54,13 +90,12 @@ public class ReportesController {
             LocalDateTime fin = fechaFin.atTime(LocalTime.MAX);
 
             List<Venta> ventas = ventaRepository.findByFechaVentaBetween(inicio, fin);
-            BigDecimal totalVentas = ventaRepository.calcularTotalVentasPeriodo(inicio, fin);
-            BigDecimal totalGanancias = ventaRepository.calcularGananciasPeriodo(inicio, fin);
+            TotalesVentasDTO totales = ventaRepository.totalizarPeriodo(inicio, fin);
 
             Map<String, Object> response = new HashMap<>();
             response.put("ventas", ventas);
-            response.put("totalVentas", totalVentas != null ? totalVentas : BigDecimal.ZERO);
-            response.put("totalGanancias", totalGanancias != null ? totalGanancias : BigDecimal.ZERO);
+            response.put("totalVentas", totales.getTotalVentas());
+            response.put("totalGanancias", totales.getTotalGanancias());
             response.put("cantidad", ventas.size());
             response.put("fechaInicio", fechaInicio);
             response.put("fechaFin", fechaFin);
@@ -73,24 +108,37 @@ public class ReportesController {
         }
     }
 
+    /**
+     * Igual que /ventas pero escrito en streaming desde un cursor: memoria constante
+     * sin importar el rango, con los totales al final del JSON.
+     */
+    @GetMapping("/ventas/stream")
+    public ResponseEntity<StreamingResponseBody> exportarVentasPorRango(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        log.info("Exportando ventas en streaming desde {} hasta {}", fechaInicio, fechaFin);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(salida -> reporteStreamingService.escribirVentas(fechaInicio, fechaFin, salida));
+    }
+
     @GetMapping("/ventas/hoy")
     public ResponseEntity<?> obtenerVentasHoy() {
         try {
             log.info("Obteniendo ventas de hoy");
             List<Venta> ventas = ventaRepository.findVentasHoy();
 
-            BigDecimal totalVentas = ventas.stream()
-                    .map(Venta::getPrecioTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            BigDecimal totalGanancias = ventas.stream()
-                    .map(v -> v.getGanancia() != null ? v.getGanancia() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            AcumuladorDinero totalVentas = new AcumuladorDinero();
+            AcumuladorDinero totalGanancias = new AcumuladorDinero();
+            for (Venta venta : ventas) {
+                totalVentas.agregar(venta.getPrecioTotal());
+                totalGanancias.agregar(venta.getGanancia());
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("ventas", ventas);
-            response.put("totalVentas", totalVentas);
-            response.put("totalGanancias", totalGanancias);
+            response.put("totalVentas", totalVentas.total());
+            response.put("totalGanancias", totalGanancias.total());
             response.put("cantidad", ventas.size());
             response.put("fecha", LocalDate.now());
 
@@ -102,30 +150,75 @@ public class ReportesController {
         }
     }
 
+    @GetMapping("/ventas/por-producto")
+    public ResponseEntity<?> obtenerVentasPorProducto(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        try {
+            log.info("Resumiendo ventas por producto desde {} hasta {}", fechaInicio, fechaFin);
+            List<ReporteVentasDTO> productos = ventaRepository.resumirPorProducto(
+                    fechaInicio.atStartOfDay(), fechaFin.atTime(LocalTime.MAX));
+
+            return ResponseEntity.ok(Map.of(
+                "productos", productos,
+                "fechaInicio", fechaInicio,
+                "fechaFin", fechaFin
+            ));
+        } catch (Exception e) {
+            log.error("Error resumiendo ventas por producto: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al resumir ventas por producto", "mensaje", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/ventas/analitica")
+    public ResponseEntity<?> obtenerAnaliticaVentas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(required = false) String metodoPago,
+            @RequestParam(required = false) String cliente,
+            @RequestParam(required = false) String agrupar) {
+        try {
+            // Se resuelve sobre la copia columnar en memoria, sin consultar la base de datos
+            Map<String, Object> respuesta = new HashMap<>();
+            respuesta.put("fechaInicio", fechaInicio);
+            respuesta.put("fechaFin", fechaFin);
+            respuesta.put("totales", ventasColumnarService.totalizar(fechaInicio, fechaFin, productoId, metodoPago, cliente));
+            if (agrupar != null) {
+                respuesta.put("agrupacion", agrupar);
+                respuesta.put("grupos", ventasColumnarService.agrupar(
+                        fechaInicio, fechaFin, productoId, metodoPago, cliente, agrupar));
+            }
+            return ResponseEntity.ok(respuesta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error obteniendo analítica de ventas: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener analítica de ventas", "mensaje", e.getMessage()));
+        }
+    }
+
     @GetMapping("/ventas/productos-mas-vendidos")
     public ResponseEntity<?> obtenerProductosMasVendidos(
-            @RequestParam(defaultValue = "10") int limite) {
+            @RequestParam(defaultValue = "10") int limite,
+            @RequestParam(defaultValue = ProductosMasVendidosService.VENTANA_TOTAL) String ventana) {
         try {
-            log.info("Obteniendo top {} productos más vendidos", limite);
+            log.info("Obteniendo top {} productos más vendidos (ventana {})", limite, ventana);
             
-            // Calcular directamente desde las ventas agrupando por producto
-            String sql = "SELECT " +
-                    "v.producto_id, " +
-                    "v.nombre_producto, " +
-                    "SUM(v.cantidad) as cantidad_total, " +
-                    "COUNT(*) as veces_vendido, " +
-                    "SUM(v.precio_total) as ingresos_totales " +
-                    "FROM ventas v " +
-                    "GROUP BY v.producto_id, v.nombre_producto " +
-                    "ORDER BY cantidad_total DESC " +
-                    "LIMIT ?";
-            
-            List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql, limite);
+            // Ranking en memoria; solo consulta la base de datos si el límite supera K
+            List<Map<String, Object>> resultados = productosMasVendidosService.obtenerTop(ventana, limite);
             
             return ResponseEntity.ok(Map.of(
                 "productos", resultados,
-                "limite", limite
+                "limite", limite,
+                "ventana", ventana
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo productos más vendidos: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
@@ -148,11 +241,11 @@ public class ReportesController {
             LocalDateTime fin = fechaFin.atTime(LocalTime.MAX);
 
             List<Compra> compras = compraRepository.findByFechaCompraBetween(inicio, fin);
-            BigDecimal totalCompras = compraRepository.calcularTotalComprasPeriodo(inicio, fin);
+            TotalesComprasDTO totales = compraRepository.totalizarPeriodo(inicio, fin);
 
             Map<String, Object> response = new HashMap<>();
             response.put("compras", compras);
-            response.put("totalCompras", totalCompras != null ? totalCompras : BigDecimal.ZERO);
+            response.put("totalCompras", totales.getTotalCompras());
             response.put("cantidad", compras.size());
             response.put("fechaInicio", fechaInicio);
             response.put("fechaFin", fechaFin);
@@ -165,19 +258,30 @@ public class ReportesController {
         }
     }
 
+    @GetMapping("/compras/stream")
+    public ResponseEntity<StreamingResponseBody> exportarComprasPorRango(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        log.info("Exportando compras en streaming desde {} hasta {}", fechaInicio, fechaFin);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(salida -> reporteStreamingService.escribirCompras(fechaInicio, fechaFin, salida));
+    }
+
     @GetMapping("/compras/hoy")
     public ResponseEntity<?> obtenerComprasHoy() {
         try {
             log.info("Obteniendo compras de hoy");
             List<Compra> compras = compraRepository.findComprasHoy();
 
-            BigDecimal totalCompras = compras.stream()
-                    .map(Compra::getCostoTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            AcumuladorDinero totalCompras = new AcumuladorDinero();
+            for (Compra compra : compras) {
+                totalCompras.agregar(compra.getCostoTotal());
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("compras", compras);
-            response.put("totalCompras", totalCompras);
+            response.put("totalCompras", totalCompras.total());
             response.put("cantidad", compras.size());
             response.put("fecha", LocalDate.now());
 
@@ -189,13 +293,56 @@ public class ReportesController {
         }
     }
 
+    @GetMapping("/compras/por-producto")
+    public ResponseEntity<?> obtenerComprasPorProducto(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        try {
+            log.info("Resumiendo compras por producto desde {} hasta {}", fechaInicio, fechaFin);
+            List<ReporteComprasDTO> productos = compraRepository.resumirPorProducto(
+                    fechaInicio.atStartOfDay(), fechaFin.atTime(LocalTime.MAX));
+
+            return ResponseEntity.ok(Map.of(
+                "productos", productos,
+                "fechaInicio", fechaInicio,
+                "fechaFin", fechaFin
+            ));
+        } catch (Exception e) {
+            log.error("Error resumiendo compras por producto: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al resumir compras por producto", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * {@code modo=fresh|snapshot} usa la función reporte_proveedores (en vivo o desde
+     * la vista materializada); {@code modo=agregado} lee proveedor_agregados, que se
+     * mantiene con cada compra.
+     *
+     * El modo por defecto sigue siendo fresh porque la respuesta conserva las columnas
+     * que devuelve reporte_proveedores, que son las que ya usan los consumidores de este
+     * endpoint; proveedor_agregados solo tiene compras, unidades, gasto y última compra.
+     * Quien solo necesita esos totales debería pedir modo=agregado.
+     */
     @GetMapping("/compras/proveedores")
-    public ResponseEntity<?> obtenerReporteProveedores() {
+    public ResponseEntity<?> obtenerReporteProveedores(
+            @RequestParam(defaultValue = VistasMaterializadasService.MODO_FRESH) String modo) {
         try {
-            String sql = "SELECT * FROM reporte_proveedores()";
-            List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql);
-            
-            return ResponseEntity.ok(Map.of("proveedores", resultados));
+            if (MODO_AGREGADO.equalsIgnoreCase(modo)) {
+                return ResponseEntity.ok(Map.of(
+                    "modo", MODO_AGREGADO,
+                    "proveedores", proveedorAgregadoService.listar()
+                ));
+            }
+
+            VistasMaterializadasService.Resultado resultado =
+                    vistasMaterializadasService.consultar(VistasMaterializadasService.Vista.PROVEEDORES, modo);
+
+            Map<String, Object> respuesta = resultado.metadatos();
+            respuesta.put("proveedores", resultado.filas());
+            return ResponseEntity.ok(respuesta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo reporte de proveedores: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
@@ -203,6 +350,37 @@ public class ReportesController {
         }
     }
 
+    /**
+     * Proveedores que vendieron el producto en los últimos {@code dias} días, del
+     * último costo unitario más barato al más caro. Sin productoId devuelve el
+     * proveedor más barato de cada producto.
+     */
+    @GetMapping("/compras/proveedores/mejor-precio")
+    public ResponseEntity<?> obtenerMejorPrecio(
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(defaultValue = "90") int dias,
+            @RequestParam(defaultValue = "5") int limite) {
+        try {
+            if (productoId == null) {
+                return ResponseEntity.ok(Map.of(
+                    "dias", dias,
+                    "productos", proveedorAgregadoService.obtenerMejorPrecioPorProducto(dias)
+                ));
+            }
+            return ResponseEntity.ok(Map.of(
+                "productoId", productoId,
+                "dias", dias,
+                "proveedores", proveedorAgregadoService.obtenerMejorPrecio(productoId, dias, limite)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error buscando el proveedor más barato: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al buscar el proveedor más barato", "mensaje", e.getMessage()));
+        }
+    }
+
     // ========================================
     // REPORTES DE RENTABILIDAD
     // ========================================
@@ -212,27 +390,8 @@ public class ReportesController {
         try {
             log.info("Calculando rentabilidad por producto");
             
-            // Calcular rentabilidad agrupando ventas y compras por producto
-            String sql = "SELECT " +
-                    "p.id as producto_id, " +
-                    "p.nombre as nombre_producto, " +
-                    "COALESCE(SUM(v.precio_total), 0) as total_vendido, " +
-                    "COALESCE(SUM(c.costo_total), 0) as total_comprado, " +
-                    "(COALESCE(SUM(v.precio_total), 0) - COALESCE(SUM(c.costo_total), 0)) as ganancia_neta, " +
-                    "CASE WHEN COALESCE(SUM(v.precio_total), 0) > 0 " +
-                    "  THEN ((COALESCE(SUM(v.precio_total), 0) - COALESCE(SUM(c.costo_total), 0)) / COALESCE(SUM(v.precio_total), 0)) * 100 " +
-                    "  ELSE 0 END as margen_porcentaje, " +
-                    "CASE WHEN COALESCE(SUM(c.costo_total), 0) > 0 " +
-                    "  THEN ((COALESCE(SUM(v.precio_total), 0) - COALESCE(SUM(c.costo_total), 0)) / COALESCE(SUM(c.costo_total), 0)) * 100 " +
-                    "  ELSE 0 END as roi_porcentaje " +
-                    "FROM productos p " +
-                    "LEFT JOIN ventas v ON v.producto_id = p.id " +
-                    "LEFT JOIN compras c ON c.producto_id = p.id " +
-                    "GROUP BY p.id, p.nombre " +
-                    "HAVING COALESCE(SUM(v.precio_total), 0) > 0 OR COALESCE(SUM(c.costo_total), 0) > 0 " +
-                    "ORDER BY ganancia_neta DESC";
-            
-            List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql);
+            // Una fila por producto desde producto_totales, sin cruzar ventas con compras
+            List<ReporteRentabilidadDTO> resultados = reporteCacheService.obtenerRentabilidad();
             
             return ResponseEntity.ok(Map.of("rentabilidad", resultados));
         } catch (Exception e) {
@@ -247,12 +406,17 @@ public class ReportesController {
     // ========================================
 
     @GetMapping("/inventario/valorizado")
-    public ResponseEntity<?> obtenerInventarioValorizado() {
+    public ResponseEntity<?> obtenerInventarioValorizado(
+            @RequestParam(defaultValue = VistasMaterializadasService.MODO_FRESH) String modo) {
         try {
-            String sql = "SELECT * FROM reporte_inventario_valorizado()";
-            List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql);
-            
-            return ResponseEntity.ok(Map.of("inventario", resultados));
+            VistasMaterializadasService.Resultado resultado =
+                    vistasMaterializadasService.consultar(VistasMaterializadasService.Vista.INVENTARIO_VALORIZADO, modo);
+
+            Map<String, Object> respuesta = resultado.metadatos();
+            respuesta.put("inventario", resultado.filas());
+            return ResponseEntity.ok(respuesta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo inventario valorizado: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
@@ -261,8 +425,14 @@ public class ReportesController {
     }
 
     @GetMapping("/inventario/alertas")
-    public ResponseEntity<?> obtenerAlertasInventario() {
+    public ResponseEntity<?> obtenerAlertasInventario(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = versionDatosService.etag("alertas", VersionDatosService.Agregado.ALERTAS);
+            if (VersionDatosService.coincide(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             log.info("Obteniendo alertas de inventario");
             
             List<AlertaInventario> alertas = alertaInventarioRepository.findAlertasActivasOrdenadas();
@@ -272,7 +442,7 @@ public class ReportesController {
             
             log.info("Alertas encontradas: {} total, {} críticas, {} altas", totalAlertas, alertasCriticas, alertasAltas);
             
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(Map.of(
                 "alertas", alertas != null ? alertas : List.of(),
                 "totalAlertas", totalAlertas != null ? totalAlertas : 0L,
                 "alertasCriticas", alertasCriticas != null ? alertasCriticas : 0L,
@@ -294,21 +464,31 @@ public class ReportesController {
     // REPORTES FINANCIEROS
     // ========================================
 
+    /**
+     * Sin {@code agrupacion} devuelve el resultado de la función reporte_flujo_caja
+     * (compatibilidad); con {@code agrupacion=diario|semanal|mensual} lo calcula en Java
+     * con saldo de apertura y saldo acumulado por periodo.
+     */
     @GetMapping("/financiero/flujo-caja")
     public ResponseEntity<?> obtenerFlujoCaja(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) String agrupacion) {
         try {
-            String sql = "SELECT * FROM reporte_flujo_caja(?, ?)";
-            List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql, 
-                java.sql.Date.valueOf(fechaInicio), 
-                java.sql.Date.valueOf(fechaFin));
+            if (agrupacion != null) {
+                return ResponseEntity.ok(reporteCacheService.obtenerFlujoCaja(
+                        fechaInicio, fechaFin, FlujoCajaService.Agrupacion.desde(agrupacion)));
+            }
+
+            List<Map<String, Object>> resultados = reporteCacheService.obtenerFlujoCaja(fechaInicio, fechaFin);
             
             return ResponseEntity.ok(Map.of(
                 "flujoCaja", resultados,
                 "fechaInicio", fechaInicio,
                 "fechaFin", fechaFin
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo flujo de caja: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
@@ -316,13 +496,32 @@ public class ReportesController {
         }
     }
 
+    /**
+     * {@code modo=fresh|snapshot} usa la función reporte_analisis_clientes (en vivo o
+     * desde la vista materializada); {@code modo=agregado} lee cliente_agregados por
+     * índice, con puntuaciones RFM y filtro opcional por segmento.
+     */
     @GetMapping("/financiero/clientes")
-    public ResponseEntity<?> obtenerAnalisisClientes() {
+    public ResponseEntity<?> obtenerAnalisisClientes(
+            @RequestParam(defaultValue = VistasMaterializadasService.MODO_FRESH) String modo,
+            @RequestParam(required = false) String segmento,
+            @RequestParam(defaultValue = "100") int limite) {
         try {
-            String sql = "SELECT * FROM reporte_analisis_clientes()";
-            List<Map<String, Object>> resultados = jdbcTemplate.queryForList(sql);
-            
-            return ResponseEntity.ok(Map.of("clientes", resultados));
+            if (MODO_AGREGADO.equalsIgnoreCase(modo)) {
+                return ResponseEntity.ok(Map.of(
+                    "modo", MODO_AGREGADO,
+                    "clientes", clienteAgregadoService.listar(segmento, limite)
+                ));
+            }
+
+            VistasMaterializadasService.Resultado resultado =
+                    vistasMaterializadasService.consultar(VistasMaterializadasService.Vista.ANALISIS_CLIENTES, modo);
+
+            Map<String, Object> respuesta = resultado.metadatos();
+            respuesta.put("clientes", resultado.filas());
+            return ResponseEntity.ok(respuesta);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error obteniendo análisis de clientes: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
@@ -330,6 +529,59 @@ public class ReportesController {
         }
     }
 
+    @GetMapping("/financiero/clientes/top")
+    public ResponseEntity<?> obtenerTopClientes(
+            @RequestParam(defaultValue = ClienteAgregadoService.CRITERIO_TOTAL) String criterio,
+            @RequestParam(defaultValue = "10") int limite) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                "criterio", criterio,
+                "clientes", clienteAgregadoService.obtenerTop(criterio, limite)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error obteniendo top de clientes: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener top de clientes", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * Clientes distintos atendidos entre dos fechas, estimados combinando los sketches
+     * HyperLogLog diarios (error estándar ~1.6 %, ver intervalo95 en la respuesta).
+     */
+    @GetMapping("/financiero/clientes/distintos")
+    public ResponseEntity<?> obtenerClientesDistintos(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        try {
+            return ResponseEntity.ok(clientesDistintosService.contar(fechaInicio, fechaFin));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error estimando clientes distintos: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al estimar clientes distintos", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * Recalcula ahora la segmentación RFM (normalmente corre cada noche).
+     */
+    @PostMapping("/financiero/clientes/rfm")
+    public ResponseEntity<?> recalcularRfm() {
+        try {
+            return ResponseEntity.ok(clienteAgregadoService.recalcularRfm());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error recalculando RFM: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al recalcular RFM", "mensaje", e.getMessage()));
+        }
+    }
+
     // ========================================
     // REPORTES DE TENDENCIAS
     // ========================================
@@ -341,22 +593,9 @@ public class ReportesController {
             log.info("Calculando tendencias de los últimos {} días", dias);
             
             LocalDate fechaInicio = LocalDate.now().minusDays(dias);
-            LocalDateTime inicioDateTime = fechaInicio.atStartOfDay();
-            LocalDateTime finDateTime = LocalDateTime.now();
-            
-            // Calcular métricas agrupadas por día
-            String sql = "SELECT " +
-                    "DATE(v.fecha_venta) as fecha, " +
-                    "COALESCE(SUM(v.precio_total), 0) as totalVentas, " +
-                    "0 as totalCompras, " + // Por ahora en 0, luego agregar compras
-                    "COALESCE(SUM(v.ganancia), 0) as gananciaTotal, " +
-                    "COUNT(*) as numeroVentas " +
-                    "FROM ventas v " +
-                    "WHERE v.fecha_venta >= ? AND v.fecha_venta <= ? " +
-                    "GROUP BY DATE(v.fecha_venta) " +
-                    "ORDER BY fecha DESC";
             
-            List<Map<String, Object>> tendencias = jdbcTemplate.queryForList(sql, inicioDateTime, finDateTime);
+            // Una fila pre-agregada por día desde metricas_diarias
+            List<MetricaDiaria> tendencias = reporteCacheService.obtenerTendencias(dias);
             
             return ResponseEntity.ok(Map.of(
                 "tendencias", tendencias,
@@ -371,13 +610,94 @@ public class ReportesController {
         }
     }
 
+    @GetMapping("/tendencias/heatmap")
+    public ResponseEntity<?> obtenerHeatmapVentas(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) String tipoProducto) {
+        try {
+            log.info("Calculando mapa de calor de ventas desde {} hasta {}", fechaInicio, fechaFin);
+
+            // Suma los buckets de ventas_por_hora, no recorre las ventas
+            return ResponseEntity.ok(reporteCacheService.obtenerHeatmap(fechaInicio, fechaFin, tipoProducto));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error obteniendo mapa de calor de ventas: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener mapa de calor de ventas", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * Periodo en curso hasta {@code fecha} (hoy por defecto) contra el mismo número de
+     * días del periodo anterior ({@code comparar=anterior}) o del mismo periodo un año
+     * antes ({@code comparar=anio-anterior}). Con {@code fechaInicio} y {@code fechaFin}
+     * compara ese rango contra {@code fechaInicioAnterior}..{@code fechaFinAnterior}, o
+     * contra los mismos días inmediatamente antes. Se calcula sumando metricas_diarias.
+     */
+    @GetMapping("/comparativo")
+    public ResponseEntity<?> obtenerComparativo(
+            @RequestParam(defaultValue = "mes") String periodo,
+            @RequestParam(defaultValue = "anterior") String comparar,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicioAnterior,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFinAnterior,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            boolean porRango = fechaInicio != null || fechaFin != null;
+            if (porRango && (fechaInicio == null || fechaFin == null)) {
+                throw new IllegalArgumentException("Indique fechaInicio y fechaFin juntas");
+            }
+            String clave;
+            Supplier<Map<String, Object>> calcular;
+            if (porRango) {
+                clave = "comparativo-" + fechaInicio + "-" + fechaFin + "-" + fechaInicioAnterior + "-" + fechaFinAnterior;
+                calcular = () -> comparativoService.comparar(fechaInicio, fechaFin, fechaInicioAnterior, fechaFinAnterior);
+            } else {
+                ComparativoService.Periodo tipoPeriodo = ComparativoService.Periodo.desde(periodo);
+                ComparativoService.Comparacion comparacion = ComparativoService.Comparacion.desde(comparar);
+                LocalDate referencia = fecha != null ? fecha : LocalDate.now();
+                clave = "comparativo-" + tipoPeriodo + "-" + comparacion + "-" + referencia;
+                calcular = () -> comparativoService.comparar(tipoPeriodo, comparacion, referencia);
+            }
+
+            String etag = versionDatosService.etag(clave,
+                    VersionDatosService.Agregado.VENTAS, VersionDatosService.Agregado.COMPRAS);
+            if (VersionDatosService.coincide(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(calcular.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error obteniendo comparativo de periodos: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener comparativo de periodos", "mensaje", e.getMessage()));
+        }
+    }
+
     // ========================================
     // DASHBOARD GENERAL
     // ========================================
 
     @GetMapping("/dashboard")
-    public ResponseEntity<?> obtenerDashboard() {
+    public ResponseEntity<?> obtenerDashboard(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            // "Hoy" y "mes" cambian con la fecha aunque no haya escrituras, así que la fecha va en el ETag
+            LocalDate hoy = LocalDate.now();
+            String etag = etagDashboard("dashboard", hoy);
+            if (VersionDatosService.coincide(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             log.info("Obteniendo datos del dashboard");
             
             // Obtener datos básicos
@@ -385,37 +705,9 @@ public class ReportesController {
             Long productosEnStock = productoRepository.countByCantidadGreaterThan(BigDecimal.ZERO);
             Long productosStockBajo = productoRepository.countByCantidadLessThanEqual(BigDecimal.valueOf(10));
             
-            // Ventas y ganancias de hoy
-            LocalDateTime hoyInicio = LocalDate.now().atStartOfDay();
-            LocalDateTime hoyFin = LocalDate.now().atTime(LocalTime.MAX);
-            List<Venta> ventasHoy = ventaRepository.findByFechaVentaBetween(hoyInicio, hoyFin);
-            
-            BigDecimal totalVentasHoy = ventasHoy.stream()
-                    .map(Venta::getPrecioTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal gananciasHoy = ventasHoy.stream()
-                    .map(v -> v.getGanancia() != null ? v.getGanancia() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            // Ventas y ganancias del mes
-            LocalDateTime mesInicio = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-            LocalDateTime mesFin = LocalDate.now().atTime(LocalTime.MAX);
-            List<Venta> ventasMes = ventaRepository.findByFechaVentaBetween(mesInicio, mesFin);
-            
-            BigDecimal totalVentasMes = ventasMes.stream()
-                    .map(Venta::getPrecioTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal gananciasMes = ventasMes.stream()
-                    .map(v -> v.getGanancia() != null ? v.getGanancia() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            // Compras del mes
-            List<Compra> comprasMes = compraRepository.findByFechaCompraBetween(mesInicio, mesFin);
-            BigDecimal totalComprasMes = comprasMes.stream()
-                    .map(Compra::getCostoTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            // Ventas, compras y ganancias de hoy y del mes desde metricas_diarias
+            MetricaDiaria metricasHoy = metricaDiariaService.obtenerDia(hoy);
+            MetricaDiaria metricasMes = metricaDiariaService.totalizarRango(hoy.withDayOfMonth(1), hoy);
             
             // Alertas activas
             Long alertasActivas = alertaInventarioRepository.countByResueltaFalse();
@@ -425,16 +717,16 @@ public class ReportesController {
             dashboard.put("total_productos", totalProductos);
             dashboard.put("productos_en_stock", productosEnStock);
             dashboard.put("productos_stock_bajo", productosStockBajo);
-            dashboard.put("total_ventas_hoy", totalVentasHoy);
-            dashboard.put("total_ventas_mes", totalVentasMes);
-            dashboard.put("total_compras_mes", totalComprasMes);
-            dashboard.put("ganancias_hoy", gananciasHoy);
-            dashboard.put("ganancias_mes", gananciasMes);
-            dashboard.put("numero_ventas_hoy", ventasHoy.size());
-            dashboard.put("numero_ventas_mes", ventasMes.size());
+            dashboard.put("total_ventas_hoy", metricasHoy.getTotalVentas());
+            dashboard.put("total_ventas_mes", metricasMes.getTotalVentas());
+            dashboard.put("total_compras_mes", metricasMes.getTotalCompras());
+            dashboard.put("ganancias_hoy", metricasHoy.getGananciaTotal());
+            dashboard.put("ganancias_mes", metricasMes.getGananciaTotal());
+            dashboard.put("numero_ventas_hoy", metricasHoy.getNumeroVentas());
+            dashboard.put("numero_ventas_mes", metricasMes.getNumeroVentas());
             dashboard.put("alertas_activas", alertasActivas);
             
-            return ResponseEntity.ok(dashboard);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(dashboard);
         } catch (Exception e) {
             log.error("Error obteniendo dashboard: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
@@ -447,148 +739,85 @@ public class ReportesController {
     // ========================================
 
     @GetMapping("/dashboard-completo")
-    @org.springframework.cache.annotation.Cacheable(value = "dashboardCompleto")
-    public ResponseEntity<?> obtenerDashboardCompleto() {
+    public ResponseEntity<?> obtenerDashboardCompleto(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = etagDashboard("dashboard-completo", LocalDate.now());
+            if (VersionDatosService.coincide(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
             log.info("🚀 Obteniendo dashboard completo consolidado");
             
-            // 1. Estadísticas básicas
-            Long totalProductos = productoRepository.count();
-            Long productosEnStock = productoRepository.countByCantidadGreaterThan(BigDecimal.ZERO);
-            Long productosStockBajo = productoRepository.countByCantidadLessThanEqual(BigDecimal.valueOf(10));
-            
-            // 2. Ventas y ganancias de hoy
-            LocalDateTime hoyInicio = LocalDate.now().atStartOfDay();
-            LocalDateTime hoyFin = LocalDate.now().atTime(LocalTime.MAX);
-            List<Venta> ventasHoy = ventaRepository.findByFechaVentaBetween(hoyInicio, hoyFin);
-            
-            BigDecimal totalVentasHoy = ventasHoy.stream()
-                    .map(Venta::getPrecioTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal gananciasHoy = ventasHoy.stream()
-                    .map(v -> v.getGanancia() != null ? v.getGanancia() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            // 3. Ventas y ganancias del mes
-            LocalDateTime mesInicio = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-            LocalDateTime mesFin = LocalDate.now().atTime(LocalTime.MAX);
-            List<Venta> ventasMes = ventaRepository.findByFechaVentaBetween(mesInicio, mesFin);
-            
-            BigDecimal totalVentasMes = ventasMes.stream()
-                    .map(Venta::getPrecioTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal gananciasMes = ventasMes.stream()
-                    .map(v -> v.getGanancia() != null ? v.getGanancia() : BigDecimal.ZERO)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            // 4. Compras del mes
-            List<Compra> comprasMes = compraRepository.findByFechaCompraBetween(mesInicio, mesFin);
-            BigDecimal totalComprasMes = comprasMes.stream()
-                    .map(Compra::getCostoTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            // 5. Alertas activas
-            Long alertasActivas = alertaInventarioRepository.countByResueltaFalse();
-            List<AlertaInventario> alertas = alertaInventarioRepository.findAlertasActivasOrdenadas();
-            Long alertasCriticas = alertaInventarioRepository.countByNivelSeveridadAndResuelta("CRITICO", false);
-            Long alertasAltas = alertaInventarioRepository.countByNivelSeveridadAndResuelta("ALTO", false);
-            
-            // 6. Productos más vendidos (Top 10)
-            String sqlProductosMasVendidos = "SELECT " +
-                    "v.producto_id, " +
-                    "v.nombre_producto, " +
-                    "SUM(v.cantidad) as cantidad_total, " +
-                    "COUNT(*) as veces_vendido, " +
-                    "SUM(v.precio_total) as ingresos_totales " +
-                    "FROM ventas v " +
-                    "GROUP BY v.producto_id, v.nombre_producto " +
-                    "ORDER BY cantidad_total DESC " +
-                    "LIMIT 10";
-            List<Map<String, Object>> productosMasVendidos = jdbcTemplate.queryForList(sqlProductosMasVendidos);
-            
-            // 7. Tendencias de los últimos 30 días
-            LocalDate fechaInicio = LocalDate.now().minusDays(30);
-            LocalDateTime inicioDateTime = fechaInicio.atStartOfDay();
-            LocalDateTime finDateTime = LocalDateTime.now();
-            
-            String sqlTendencias = "SELECT " +
-                    "DATE(v.fecha_venta) as fecha, " +
-                    "COALESCE(SUM(v.precio_total), 0) as totalVentas, " +
-                    "0 as totalCompras, " +
-                    "COALESCE(SUM(v.ganancia), 0) as gananciaTotal, " +
-                    "COUNT(*) as numeroVentas " +
-                    "FROM ventas v " +
-                    "WHERE v.fecha_venta >= ? AND v.fecha_venta <= ? " +
-                    "GROUP BY DATE(v.fecha_venta) " +
-                    "ORDER BY fecha DESC";
-            List<Map<String, Object>> tendencias = jdbcTemplate.queryForList(sqlTendencias, inicioDateTime, finDateTime);
-            
-            // 8. Rentabilidad por producto (Top 15)
-            String sqlRentabilidad = "SELECT " +
-                    "p.id as producto_id, " +
-                    "p.nombre as nombre_producto, " +
-                    "COALESCE(SUM(v.precio_total), 0) as total_vendido, " +
-                    "COALESCE(SUM(c.costo_total), 0) as total_comprado, " +
-                    "(COALESCE(SUM(v.precio_total), 0) - COALESCE(SUM(c.costo_total), 0)) as ganancia_neta, " +
-                    "CASE WHEN COALESCE(SUM(v.precio_total), 0) > 0 " +
-                    "  THEN ((COALESCE(SUM(v.precio_total), 0) - COALESCE(SUM(c.costo_total), 0)) / COALESCE(SUM(v.precio_total), 0)) * 100 " +
-                    "  ELSE 0 END as margen_porcentaje, " +
-                    "CASE WHEN COALESCE(SUM(c.costo_total), 0) > 0 " +
-                    "  THEN ((COALESCE(SUM(v.precio_total), 0) - COALESCE(SUM(c.costo_total), 0)) / COALESCE(SUM(c.costo_total), 0)) * 100 " +
-                    "  ELSE 0 END as roi_porcentaje " +
-                    "FROM productos p " +
-                    "LEFT JOIN ventas v ON v.producto_id = p.id " +
-                    "LEFT JOIN compras c ON c.producto_id = p.id " +
-                    "GROUP BY p.id, p.nombre " +
-                    "HAVING COALESCE(SUM(v.precio_total), 0) > 0 OR COALESCE(SUM(c.costo_total), 0) > 0 " +
-                    "ORDER BY ganancia_neta DESC " +
-                    "LIMIT 15";
-            List<Map<String, Object>> rentabilidad = jdbcTemplate.queryForList(sqlRentabilidad);
-            
-            // Construir respuesta consolidada
-            Map<String, Object> dashboardCompleto = new HashMap<>();
-            
-            // Dashboard básico
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("total_productos", totalProductos);
-            stats.put("productos_en_stock", productosEnStock);
-            stats.put("productos_stock_bajo", productosStockBajo);
-            stats.put("total_ventas_hoy", totalVentasHoy);
-            stats.put("total_ventas_mes", totalVentasMes);
-            stats.put("total_compras_mes", totalComprasMes);
-            stats.put("ganancias_hoy", gananciasHoy);
-            stats.put("ganancias_mes", gananciasMes);
-            stats.put("numero_ventas_hoy", ventasHoy.size());
-            stats.put("numero_ventas_mes", ventasMes.size());
-            stats.put("alertas_activas", alertasActivas);
-            dashboardCompleto.put("stats", stats);
-            
-            // Productos más vendidos
-            dashboardCompleto.put("productos_mas_vendidos", productosMasVendidos);
-            
-            // Alertas
-            Map<String, Object> alertasData = new HashMap<>();
-            alertasData.put("alertas", alertas != null ? alertas : List.of());
-            alertasData.put("totalAlertas", alertasActivas != null ? alertasActivas : 0L);
-            alertasData.put("alertasCriticas", alertasCriticas != null ? alertasCriticas : 0L);
-            alertasData.put("alertasAltas", alertasAltas != null ? alertasAltas : 0L);
-            dashboardCompleto.put("alertas_data", alertasData);
-            
-            // Tendencias
-            dashboardCompleto.put("tendencias", tendencias);
-            
-            // Rentabilidad
-            dashboardCompleto.put("rentabilidad", rentabilidad);
+            // Cada sección sale de su caché o se calcula en paralelo; si alguna falla la respuesta queda marcada como parcial
+            Map<String, Object> dashboardCompleto = dashboardService.obtenerDashboardCompleto();
             
             log.info("✅ Dashboard completo generado exitosamente");
-            return ResponseEntity.ok(dashboardCompleto);
+            if (Boolean.TRUE.equals(dashboardCompleto.get("parcial"))) {
+                // Una respuesta parcial no lleva ETag: el cliente no debe quedarse con ella
+                return ResponseEntity.ok(dashboardCompleto);
+            }
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(dashboardCompleto);
         } catch (Exception e) {
             log.error("❌ Error obteniendo dashboard completo: {}", e.getMessage(), e);
             return ResponseEntity.status(500)
                     .body(Map.of("error", "Error al obtener dashboard completo", "mensaje", e.getMessage()));
         }
     }
-}
 
+    private String etagDashboard(String recurso, LocalDate hoy) {
+        return versionDatosService.etag(recurso + "-" + hoy,
+                VersionDatosService.Agregado.PRODUCTOS, VersionDatosService.Agregado.VENTAS,
+                VersionDatosService.Agregado.COMPRAS, VersionDatosService.Agregado.ALERTAS);
+    }
+
+    /**
+     * Dashboard en vivo (Server-Sent Events): un evento "snapshot" al conectar y luego
+     * eventos "delta" a medida que se confirman ventas, compras y cambios de productos.
+     */
+    @GetMapping("/dashboard/stream")
+    public ResponseEntity<?> streamDashboard() {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(dashboardStreamService.suscribir());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/dashboard/cache-stats")
+    public ResponseEntity<?> obtenerEstadisticasCacheDashboard() {
+        return ResponseEntity.ok(dashboardService.obtenerEstadisticasCache());
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<?> obtenerEstadisticasCacheReportes() {
+        return ResponseEntity.ok(reporteCacheService.obtenerEstadisticas());
+    }
+
+    @GetMapping("/vistas")
+    public ResponseEntity<?> obtenerEstadoVistas() {
+        return ResponseEntity.ok(vistasMaterializadasService.obtenerEstado());
+    }
+
+    @PostMapping("/vistas/{vista}/refrescar")
+    public ResponseEntity<?> refrescarVista(@PathVariable String vista) {
+        try {
+            VistasMaterializadasService.Vista objetivo =
+                    VistasMaterializadasService.Vista.valueOf(vista.toUpperCase(Locale.ROOT));
+            boolean refrescada = vistasMaterializadasService.refrescar(objetivo);
+            if (!refrescada) {
+                return ResponseEntity.status(409)
+                        .body(Map.of("error", "La vista no existe o ya se está refrescando"));
+            }
+            return ResponseEntity.ok(vistasMaterializadasService.obtenerEstado().get(objetivo.name()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Vista no válida: " + vista));
+        } catch (Exception e) {
+            log.error("Error refrescando vista {}: {}", vista, e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al refrescar vista", "mensaje", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.snayber.api_jdbc;
+
+import com.snayber.api_jdbc.service.ReportePersonalizadoService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reportes/personalizados")
+@RequiredArgsConstructor
+@Slf4j
+public class ReportesPersonalizadosController {
+
+    private final ReportePersonalizadoService reportePersonalizadoService;
+
+    @GetMapping
+    public ResponseEntity<?> listar() {
+        try {
+            return ResponseEntity.ok(reportePersonalizadoService.listarActivos());
+        } catch (Exception e) {
+            log.error("Error listando reportes personalizados: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al listar reportes personalizados", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * Ejecuta el reporte con los parámetros de la query string
+     * (por ejemplo {@code ?fechaInicio=2024-01-01&fechaFin=2024-01-31}).
+     */
+    @GetMapping("/{id}/ejecutar")
+    public ResponseEntity<?> ejecutar(@PathVariable Long id,
+                                      @RequestParam Map<String, String> parametros) {
+        try {
+            log.info("Ejecutando reporte personalizado {}", id);
+            ReportePersonalizadoService.Salida salida = reportePersonalizadoService.resolver(
+                    reportePersonalizadoService.preparar(id, parametros));
+
+            StreamingResponseBody cuerpo = destino -> reportePersonalizadoService.escribir(salida, destino);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(cuerpo);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.warn("Reporte personalizado {} falló: {}", id, e.getMessage());
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error ejecutando reporte personalizado {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al ejecutar reporte personalizado", "mensaje", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<?> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(reportePersonalizadoService.obtenerEstadisticasCache());
+    }
+}
@@ -0,0 +1,116 @@
+package com.snayber.api_jdbc;
+
+import com.snayber.api_jdbc.dto.TrabajoReporteRequestDTO;
+import com.snayber.api_jdbc.service.TrabajoReporteService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+@RestController
+@RequestMapping("/api/reportes/jobs")
+@RequiredArgsConstructor
+@Slf4j
+public class TrabajosReportesController {
+
+    private final TrabajoReporteService trabajoReporteService;
+
+    /**
+     * Encola un reporte. Devuelve 202 con el trabajo nuevo, o 200 con el trabajo
+     * idéntico que ya estaba en curso.
+     */
+    @PostMapping
+    public ResponseEntity<?> encolar(@RequestBody TrabajoReporteRequestDTO request) {
+        try {
+            log.info("Encolando reporte {} con parámetros {}", request.getTipoReporte(), request.getParametros());
+            TrabajoReporteService.Encolado encolado = trabajoReporteService.encolar(
+                    request.getTipoReporte(), request.getParametros(), request.getPrioridad());
+            return ResponseEntity.status(encolado.duplicado() ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                    .body(encolado.trabajo());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error encolando reporte: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al encolar reporte", "mensaje", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> listar() {
+        try {
+            return ResponseEntity.ok(Map.of(
+                "trabajos", trabajoReporteService.listarRecientes(),
+                "cola", trabajoReporteService.obtenerEstadoCola()
+            ));
+        } catch (Exception e) {
+            log.error("Error listando trabajos de reportes: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al listar trabajos de reportes", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * Estado y progreso del trabajo; el resultado se descarga desde /{id}/resultado.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> obtener(@PathVariable Long id) {
+        try {
+            return trabajoReporteService.obtener(id)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            log.error("Error obteniendo trabajo de reporte {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener trabajo de reporte", "mensaje", e.getMessage()));
+        }
+    }
+
+    /**
+     * Resultado guardado. Si el cliente acepta gzip se envían los bytes tal como están
+     * guardados (Content-Encoding: gzip); si no, se descomprime al vuelo.
+     */
+    @GetMapping("/{id}/resultado")
+    public ResponseEntity<?> obtenerResultado(@PathVariable Long id,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        try {
+            byte[] comprimido = trabajoReporteService.obtenerResultado(id);
+            if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                        .body(comprimido);
+            }
+            StreamingResponseBody cuerpo = salida -> {
+                try (InputStream entrada = new GZIPInputStream(new ByteArrayInputStream(comprimido))) {
+                    entrada.transferTo(salida);
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .body(cuerpo);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error obteniendo resultado del trabajo {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Error al obtener resultado del trabajo", "mensaje", e.getMessage()));
+        }
+    }
+}
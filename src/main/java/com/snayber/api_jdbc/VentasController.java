@@ -4,9 +4,18 @@ import com.snayber.api_jdbc.model.Venta;
 import com.snayber.api_jdbc.model.Producto;
 import com.snayber.api_jdbc.repository.VentaRepository;
 import com.snayber.api_jdbc.repository.ProductoRepository;
+import com.snayber.api_jdbc.event.VentaEvent;
 import com.snayber.api_jdbc.exception.InventarioException;
+import com.snayber.api_jdbc.service.ExportacionCsvService;
+import com.snayber.api_jdbc.service.PaginacionService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +23,7 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -26,19 +36,53 @@ public class VentasController {
 
     private final VentaRepository ventaRepository;
     private final ProductoRepository productoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExportacionCsvService exportacionCsvService;
+    private final PaginacionService paginacionService;
 
     @PersistenceContext
     private EntityManager entityManager;
 
-    public VentasController(VentaRepository ventaRepository, ProductoRepository productoRepository) {
+    public VentasController(VentaRepository ventaRepository, ProductoRepository productoRepository,
+                            ApplicationEventPublisher eventPublisher, ExportacionCsvService exportacionCsvService,
+                            PaginacionService paginacionService) {
         this.ventaRepository = ventaRepository;
         this.productoRepository = productoRepository;
+        this.eventPublisher = eventPublisher;
+        this.exportacionCsvService = exportacionCsvService;
+        this.paginacionService = paginacionService;
     }
 
+    /**
+     * Sin cursor ni límite devuelve todas las ventas (compatibilidad); con alguno de
+     * los dos devuelve una página ordenada por (fechaVenta, id) descendente.
+     */
     @GetMapping
-    public ResponseEntity<List<Venta>> obtenerTodasLasVentas() {
-        List<Venta> all = ventaRepository.findAll();
-        return ResponseEntity.ok(all);
+    public ResponseEntity<?> obtenerTodasLasVentas(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limite) {
+        if (cursor == null && limite == null) {
+            List<Venta> all = ventaRepository.findAll();
+            return ResponseEntity.ok(all);
+        }
+        return ResponseEntity.ok(paginacionService.paginarVentas(cursor, limite));
+    }
+
+    /**
+     * Exporta las ventas a CSV en streaming, opcionalmente comprimido con gzip.
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarVentas(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportacionCsvService.validarRango(fechaInicio, fechaFin);
+        logger.info("Exportando ventas a CSV: {} - {}, producto {}, gzip {}", fechaInicio, fechaFin, productoId, gzip);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(gzip ? "ventas.csv.gz" : "ventas.csv").build().toString())
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv;charset=UTF-8"))
+                .body(salida -> exportacionCsvService.exportarVentas(fechaInicio, fechaFin, productoId, gzip, salida));
     }
 
     @GetMapping("/hoy")
@@ -55,7 +99,6 @@ public class VentasController {
 
     @PostMapping
     @Transactional(rollbackFor = Exception.class)
-    @org.springframework.cache.annotation.CacheEvict(value = "dashboardCompleto", allEntries = true)
     public ResponseEntity<?> registrarVenta(@RequestBody Venta venta) {
         logger.debug("Iniciando registro de venta: {}", venta);
         try {
@@ -109,6 +152,7 @@ public class VentasController {
 
             // Completar datos de la venta
             venta.setNombreProducto(producto.getNombre());
+            venta.setTipoProducto(producto.getTipo());
             
             if (venta.getPrecioUnitario() == null) {
                 venta.setPrecioUnitario(producto.getPrecio());
@@ -130,6 +174,7 @@ public class VentasController {
             }
 
             Venta saved = ventaRepository.save(venta);
+            eventPublisher.publishEvent(VentaEvent.registrada(saved));
             logger.info("Venta registrada exitosamente: id={}", saved.getId());
             return ResponseEntity.ok(saved);
 
@@ -156,6 +201,7 @@ public class VentasController {
             }
             
             Venta e = existing.get();
+            Venta anterior = e.toBuilder().build();
             
             // Si cambia la cantidad o el producto, ajustar inventario
             if (!e.getProductoId().equals(venta.getProductoId()) || !e.getCantidad().equals(venta.getCantidad())) {
@@ -175,6 +221,7 @@ public class VentasController {
                 
                 productoRepository.incrementCantidad(productoNuevo.getId(), cantidadVenta.negate());
                 e.setNombreProducto(productoNuevo.getNombre());
+                e.setTipoProducto(productoNuevo.getTipo());
             }
             
             // Actualizar campos
@@ -196,6 +243,7 @@ public class VentasController {
             e.setGanancia(e.calcularGanancia());
             
             Venta saved = ventaRepository.save(e);
+            eventPublisher.publishEvent(VentaEvent.actualizada(anterior, saved));
             return ResponseEntity.ok(saved);
             
         } catch (InventarioException e) {
@@ -227,6 +275,7 @@ public class VentasController {
             logger.info("Stock devuelto al eliminar venta. Producto id={} cantidad devuelta={}", producto.getId(), cantidadDevolver);
             
             ventaRepository.deleteById(id);
+            eventPublisher.publishEvent(VentaEvent.eliminada(v));
             return ResponseEntity.ok().build();
             
         } catch (InventarioException e) {
@@ -1,5 +1,6 @@
 package com.snayber.api_jdbc.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -7,27 +8,46 @@ import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    // Secciones del dashboard, cada una cacheada por separado
+    public static final String DASHBOARD_STATS = "dashboardStats";
+    public static final String PRODUCTOS_MAS_VENDIDOS = "productosMasVendidos";
+    public static final String ALERTAS_INVENTARIO = "alertasInventario";
+    public static final String TENDENCIAS_VENTAS = "tendenciasVentas";
+    public static final String RENTABILIDAD_PRODUCTOS = "rentabilidadProductos";
+
     @Bean
     public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
-            "dashboardCompleto",
-            "productosMasVendidos",
-            "alertasInventario",
-            "tendenciasVentas",
-            "rentabilidadProductos"
-        );
-        
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
         cacheManager.setCaffeine(Caffeine.newBuilder()
             .expireAfterWrite(30, TimeUnit.SECONDS)  // Cache por 30 segundos
             .maximumSize(100)
             .recordStats());
-        
+
+        // Las escrituras invalidan solo las secciones afectadas (ver DashboardService),
+        // así que el TTL es solo un límite de frescura
+        cacheManager.registerCustomCache(DASHBOARD_STATS, seccion(Duration.ofSeconds(30)));
+        cacheManager.registerCustomCache(PRODUCTOS_MAS_VENDIDOS, seccion(Duration.ofMinutes(2)));
+        cacheManager.registerCustomCache(ALERTAS_INVENTARIO, seccion(Duration.ofSeconds(30)));
+        cacheManager.registerCustomCache(TENDENCIAS_VENTAS, seccion(Duration.ofMinutes(5)));
+        // La rentabilidad no se invalida con cada venta: se recalcula al vencer
+        cacheManager.registerCustomCache(RENTABILIDAD_PRODUCTOS, seccion(Duration.ofMinutes(5)));
+
         return cacheManager;
     }
+
+    private static Cache<Object, Object> seccion(Duration ttl) {
+        return Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumSize(10)
+            .recordStats()
+            .build();
+    }
 }
@@ -0,0 +1,13 @@
+package com.snayber.api_jdbc.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas programadas (@Scheduled), por ejemplo el refresco de las
+ * vistas materializadas de reportes.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
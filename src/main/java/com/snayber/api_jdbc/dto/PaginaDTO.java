@@ -0,0 +1,22 @@
+package com.snayber.api_jdbc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+/**
+ * Página de resultados con paginación por clave.
+ * siguienteCursor es opaco: se envía tal cual en ?cursor= para pedir la página siguiente.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaDTO<T> {
+    private List<T> items;
+    private String siguienteCursor;
+    private boolean hayMas;
+    private int limite;
+}
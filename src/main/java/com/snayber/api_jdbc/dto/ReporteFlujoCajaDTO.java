@@ -12,9 +12,15 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @NoArgsConstructor
 public class ReporteFlujoCajaDTO {
+    // Primer y último día del periodo (iguales en la agrupación diaria)
     private LocalDate fecha;
+    private LocalDate fechaFin;
     private BigDecimal ingresos;
     private BigDecimal egresos;
+    // Flujo neto del periodo (ingresos - egresos)
     private BigDecimal saldoDia;
+    private BigDecimal saldoInicial;
     private BigDecimal saldoAcumulado;
+    private Long numeroVentas;
+    private Long numeroCompras;
 }
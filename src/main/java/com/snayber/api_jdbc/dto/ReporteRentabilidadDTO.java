@@ -1,5 +1,7 @@
 package com.snayber.api_jdbc.dto;
 
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -10,6 +12,8 @@ import java.math.BigDecimal;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+// Se serializa en snake_case como el reporte original (producto_id, total_vendido...)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class ReporteRentabilidadDTO {
     private Long productoId;
     private String nombreProducto;
@@ -18,4 +22,6 @@ public class ReporteRentabilidadDTO {
     private BigDecimal gananciaNeta;
     private BigDecimal margenPorcentaje;
     private BigDecimal roiPorcentaje;
+    private BigDecimal unidadesVendidas;
+    private BigDecimal costoVentas;
 }
@@ -0,0 +1,16 @@
+package com.snayber.api_jdbc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TotalesComprasDTO {
+    private BigDecimal totalCompras;
+    private Long cantidad;
+}
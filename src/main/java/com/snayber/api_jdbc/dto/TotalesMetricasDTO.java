@@ -0,0 +1,19 @@
+package com.snayber.api_jdbc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TotalesMetricasDTO {
+    private BigDecimal totalVentas;
+    private BigDecimal totalCompras;
+    private BigDecimal gananciaTotal;
+    private Long numeroVentas;
+    private Long numeroCompras;
+}
@@ -0,0 +1,17 @@
+package com.snayber.api_jdbc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TotalesVentasDTO {
+    private BigDecimal totalVentas;
+    private BigDecimal totalGanancias;
+    private Long cantidad;
+}
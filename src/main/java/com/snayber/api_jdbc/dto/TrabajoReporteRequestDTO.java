@@ -0,0 +1,18 @@
+package com.snayber.api_jdbc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TrabajoReporteRequestDTO {
+    private String tipoReporte;
+    private Map<String, String> parametros;
+    // ALTA, NORMAL (por defecto) o BAJA
+    private String prioridad;
+}
@@ -0,0 +1,20 @@
+package com.snayber.api_jdbc.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VentasHoraDTO {
+    private LocalDate fecha;
+    private Integer hora;
+    private Long numeroVentas;
+    private BigDecimal ingresos;
+    private BigDecimal ganancia;
+}
@@ -0,0 +1,22 @@
+package com.snayber.api_jdbc.event;
+
+import com.snayber.api_jdbc.model.Compra;
+
+/**
+ * Evento publicado por cada alta, modificación o baja de una compra.
+ * Sigue la misma convención que {@link VentaEvent}.
+ */
+public record CompraEvent(Compra anterior, Compra actual) {
+
+    public static CompraEvent registrada(Compra compra) {
+        return new CompraEvent(null, compra);
+    }
+
+    public static CompraEvent actualizada(Compra anterior, Compra actual) {
+        return new CompraEvent(anterior, actual);
+    }
+
+    public static CompraEvent eliminada(Compra compra) {
+        return new CompraEvent(compra, null);
+    }
+}
@@ -0,0 +1,16 @@
+package com.snayber.api_jdbc.event;
+
+/**
+ * Evento publicado cuando un producto se crea, edita o elimina fuera del flujo
+ * de ventas y compras (catálogo e inventario).
+ */
+public record ProductoEvent(Long productoId, boolean eliminado) {
+
+    public static ProductoEvent modificado(Long productoId) {
+        return new ProductoEvent(productoId, false);
+    }
+
+    public static ProductoEvent eliminado(Long productoId) {
+        return new ProductoEvent(productoId, true);
+    }
+}
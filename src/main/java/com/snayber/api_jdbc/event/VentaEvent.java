@@ -0,0 +1,26 @@
+package com.snayber.api_jdbc.event;
+
+import com.snayber.api_jdbc.model.Venta;
+
+/**
+ * Evento publicado por cada alta, modificación o baja de una venta.
+ *
+ * En un alta {@code anterior} es null, en una baja {@code actual} es null y en una
+ * modificación ambos están presentes ({@code anterior} es una copia previa al cambio).
+ * Los listeners síncronos corren dentro de la transacción de la escritura; los
+ * {@code @TransactionalEventListener} reciben el evento después del commit.
+ */
+public record VentaEvent(Venta anterior, Venta actual) {
+
+    public static VentaEvent registrada(Venta venta) {
+        return new VentaEvent(null, venta);
+    }
+
+    public static VentaEvent actualizada(Venta anterior, Venta actual) {
+        return new VentaEvent(anterior, actual);
+    }
+
+    public static VentaEvent eliminada(Venta venta) {
+        return new VentaEvent(venta, null);
+    }
+}
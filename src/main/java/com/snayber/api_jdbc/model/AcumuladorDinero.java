@@ -0,0 +1,78 @@
+package com.snayber.api_jdbc.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Suma, mínimo, máximo y promedio de importes sobre campos long, sin crear un
+ * BigDecimal por cada elemento como hace {@code reduce(BigDecimal.ZERO, BigDecimal::add)}.
+ *
+ * Los valores null se ignoran (no cuentan para el promedio). No es thread-safe:
+ * cada agregación usa su propio acumulador.
+ */
+public final class AcumuladorDinero {
+
+    private long total;
+    private long cantidad;
+    private long minimo = Long.MAX_VALUE;
+    private long maximo = Long.MIN_VALUE;
+
+    public AcumuladorDinero agregar(BigDecimal valor) {
+        if (valor != null) {
+            agregarCentavos(Dinero.centavosDe(valor));
+        }
+        return this;
+    }
+
+    public AcumuladorDinero agregar(Dinero valor) {
+        if (valor != null) {
+            agregarCentavos(valor.centavos());
+        }
+        return this;
+    }
+
+    public AcumuladorDinero agregarCentavos(long centavos) {
+        total = Math.addExact(total, centavos);
+        cantidad++;
+        minimo = Math.min(minimo, centavos);
+        maximo = Math.max(maximo, centavos);
+        return this;
+    }
+
+    public AcumuladorDinero combinar(AcumuladorDinero otro) {
+        total = Math.addExact(total, otro.total);
+        cantidad += otro.cantidad;
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+        return this;
+    }
+
+    public long totalCentavos() {
+        return total;
+    }
+
+    public Dinero total() {
+        return Dinero.deCentavos(total);
+    }
+
+    public long cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Mínimo, o CERO si no se agregó ningún valor.
+     */
+    public Dinero minimo() {
+        return cantidad > 0 ? Dinero.deCentavos(minimo) : Dinero.CERO;
+    }
+
+    public Dinero maximo() {
+        return cantidad > 0 ? Dinero.deCentavos(maximo) : Dinero.CERO;
+    }
+
+    /**
+     * Promedio redondeado al centavo, o CERO si no se agregó ningún valor.
+     */
+    public Dinero promedio() {
+        return cantidad > 0 ? Dinero.deCentavos(Dinero.dividirRedondeando(total, cantidad)) : Dinero.CERO;
+    }
+}
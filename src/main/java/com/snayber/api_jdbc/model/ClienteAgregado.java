@@ -0,0 +1,74 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Totales acumulados de ventas por cliente (columna libre ventas.cliente).
+ * Una fila por cliente, mantenida por ClienteAgregadoService; las puntuaciones RFM
+ * (1 a 5) y el segmento se recalculan cada noche.
+ */
+@Entity
+@Table(name = "cliente_agregados")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ClienteAgregado {
+
+    public static final String SEGMENTO_CAMPEON = "CAMPEON";
+    public static final String SEGMENTO_LEAL = "LEAL";
+    public static final String SEGMENTO_NUEVO = "NUEVO";
+    public static final String SEGMENTO_POTENCIAL = "POTENCIAL";
+    public static final String SEGMENTO_EN_RIESGO = "EN_RIESGO";
+    public static final String SEGMENTO_PERDIDO = "PERDIDO";
+
+    @Id
+    @Column(length = 100)
+    private String cliente;
+
+    @Column(name = "primera_compra")
+    private LocalDateTime primeraCompra;
+
+    @Column(name = "ultima_compra")
+    private LocalDateTime ultimaCompra;
+
+    @Builder.Default
+    @Column(name = "numero_compras")
+    private Integer numeroCompras = 0;
+
+    @Builder.Default
+    @Column(name = "total_gastado", precision = 14, scale = 2)
+    private BigDecimal totalGastado = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "margen_total", precision = 14, scale = 2)
+    private BigDecimal margenTotal = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "ticket_promedio", precision = 14, scale = 2)
+    private BigDecimal ticketPromedio = BigDecimal.ZERO;
+
+    @Column(name = "rfm_recencia")
+    private Integer rfmRecencia;
+
+    @Column(name = "rfm_frecuencia")
+    private Integer rfmFrecuencia;
+
+    @Column(name = "rfm_monetario")
+    private Integer rfmMonetario;
+
+    @Column(length = 20)
+    private String segmento;
+
+    @Column(name = "fecha_rfm")
+    private LocalDateTime fechaRfm;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+}
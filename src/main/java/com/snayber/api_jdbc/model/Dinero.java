@@ -0,0 +1,89 @@
+package com.snayber.api_jdbc.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Importe monetario con dos decimales guardado como un long de centavos.
+ *
+ * Las operaciones usan aritmética exacta de long: si el resultado no cabe se lanza
+ * ArithmeticException en lugar de desbordar en silencio. Se convierte a BigDecimal
+ * solo en los bordes (columnas DECIMAL, JSON como número con 2 decimales).
+ */
+public record Dinero(long centavos) implements Comparable<Dinero> {
+
+    public static final Dinero CERO = new Dinero(0);
+
+    public static Dinero deCentavos(long centavos) {
+        return centavos == 0 ? CERO : new Dinero(centavos);
+    }
+
+    @JsonCreator
+    public static Dinero de(BigDecimal valor) {
+        return valor == null ? null : deCentavos(centavosDe(valor));
+    }
+
+    /**
+     * Centavos de un BigDecimal, redondeando a 2 decimales (HALF_UP); null cuenta como 0.
+     */
+    public static long centavosDe(BigDecimal valor) {
+        if (valor == null || valor.signum() == 0) {
+            return 0L;
+        }
+        BigDecimal redondeado = valor.scale() <= 2 ? valor : valor.setScale(2, RoundingMode.HALF_UP);
+        return redondeado.movePointRight(2).longValueExact();
+    }
+
+    public Dinero sumar(Dinero otro) {
+        return deCentavos(Math.addExact(centavos, otro.centavos));
+    }
+
+    public Dinero restar(Dinero otro) {
+        return deCentavos(Math.subtractExact(centavos, otro.centavos));
+    }
+
+    public Dinero multiplicar(long factor) {
+        return deCentavos(Math.multiplyExact(centavos, factor));
+    }
+
+    /**
+     * División entera redondeando al centavo más cercano (mitades hacia afuera de cero).
+     */
+    public Dinero dividir(long divisor) {
+        return deCentavos(dividirRedondeando(centavos, divisor));
+    }
+
+    public boolean esPositivo() {
+        return centavos > 0;
+    }
+
+    @JsonValue
+    public BigDecimal aBigDecimal() {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    @Override
+    public int compareTo(Dinero otro) {
+        return Long.compare(centavos, otro.centavos);
+    }
+
+    @Override
+    public String toString() {
+        return aBigDecimal().toPlainString();
+    }
+
+    static long dividirRedondeando(long dividendo, long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("División de dinero por cero");
+        }
+        long cociente = dividendo / divisor;
+        long resto = dividendo % divisor;
+        if (Math.abs(resto) * 2 >= Math.abs(divisor)) {
+            cociente += (dividendo < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return cociente;
+    }
+}
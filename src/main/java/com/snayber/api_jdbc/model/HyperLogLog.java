@@ -0,0 +1,160 @@
+package com.snayber.api_jdbc.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sketch HyperLogLog para estimar cuántos valores distintos se vieron (clientes
+ * distintos por día) en un tamaño fijo de {@value #REGISTROS} bytes.
+ *
+ * Cada valor se reduce a un hash de 64 bits: los primeros {@value #PRECISION} bits
+ * eligen un registro y el registro guarda el máximo "rango" (posición del primer bit
+ * en 1 del resto del hash) observado. Dos sketches se combinan tomando el máximo
+ * registro a registro, así el sketch de un rango de días es la combinación de los
+ * sketches diarios y da lo mismo que haber agregado todos los valores juntos.
+ *
+ * El error estándar relativo es 1.04 / sqrt(m), con m = {@value #REGISTROS}: cerca de
+ * 1.6 %, y el 95 % de las estimaciones cae dentro de ±3.3 % del valor real. La
+ * estimación usa el estimador de Ertl, sin sesgo tanto para conjuntos pequeños como
+ * grandes.
+ *
+ * No es thread-safe: cada estimación usa su propia instancia.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTROS = 1 << PRECISION;
+    public static final double ERROR_ESTANDAR = 1.04 / Math.sqrt(REGISTROS);
+
+    // Rango más alto posible: todos los bits tras el índice en cero más el centinela
+    private static final int RANGO_MAXIMO = Long.SIZE - PRECISION + 1;
+    private static final double ALFA_INFINITO = 1 / (2 * Math.log(2));
+
+    /**
+     * Registro que le corresponde a un valor y el rango que aporta (1 a RANGO_MAXIMO).
+     */
+    public record Posicion(int indice, int rango) {
+    }
+
+    private final byte[] registros;
+
+    public HyperLogLog() {
+        this.registros = new byte[REGISTROS];
+    }
+
+    private HyperLogLog(byte[] registros) {
+        this.registros = registros;
+    }
+
+    /**
+     * @throws IllegalArgumentException si el arreglo no tiene {@value #REGISTROS} bytes
+     *                                  o algún registro es imposible
+     */
+    public static HyperLogLog de(byte[] registros) {
+        if (registros == null || registros.length != REGISTROS) {
+            throw new IllegalArgumentException("Un sketch debe tener " + REGISTROS + " registros");
+        }
+        for (byte registro : registros) {
+            if (registro < 0 || registro > RANGO_MAXIMO) {
+                throw new IllegalArgumentException("Registro de sketch fuera de rango: " + registro);
+            }
+        }
+        return new HyperLogLog(registros.clone());
+    }
+
+    public static Posicion posicion(String valor) {
+        long hash = hash(valor);
+        int indice = (int) (hash >>> (Long.SIZE - PRECISION));
+        // El bit centinela acota el rango cuando el resto del hash es todo ceros
+        int rango = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        return new Posicion(indice, rango);
+    }
+
+    public HyperLogLog agregar(String valor) {
+        Posicion posicion = posicion(valor);
+        if (registros[posicion.indice()] < posicion.rango()) {
+            registros[posicion.indice()] = (byte) posicion.rango();
+        }
+        return this;
+    }
+
+    public HyperLogLog combinar(HyperLogLog otro) {
+        for (int i = 0; i < REGISTROS; i++) {
+            if (registros[i] < otro.registros[i]) {
+                registros[i] = otro.registros[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Estimador mejorado de Ertl ("New cardinality estimation algorithms for
+     * HyperLogLog sketches", 2017): trabaja sobre el histograma de los registros y
+     * no tiene sesgo en todo el rango, sin tablas empíricas ni un umbral para pasar
+     * a conteo lineal (que es donde el estimador clásico se desvía varios puntos).
+     */
+    public long estimar() {
+        int[] histograma = new int[RANGO_MAXIMO + 1];
+        for (byte registro : registros) {
+            histograma[registro]++;
+        }
+        double z = REGISTROS * tau(1 - (double) histograma[RANGO_MAXIMO] / REGISTROS);
+        for (int k = RANGO_MAXIMO - 1; k >= 1; k--) {
+            z = 0.5 * (z + histograma[k]);
+        }
+        z += REGISTROS * sigma((double) histograma[0] / REGISTROS);
+        return Math.round(ALFA_INFINITO * REGISTROS * REGISTROS / z);
+    }
+
+    public byte[] registros() {
+        return registros.clone();
+    }
+
+    // Serie de Ertl para los registros vacíos; infinito si todos lo están (estimación 0)
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double anterior;
+        do {
+            x *= x;
+            anterior = z;
+            z += x * y;
+            y += y;
+        } while (z != anterior);
+        return z;
+    }
+
+    // Serie de Ertl para los registros saturados
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double anterior;
+        do {
+            x = Math.sqrt(x);
+            anterior = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != anterior);
+        return z / 3;
+    }
+
+    // FNV-1a de 64 bits seguido del finalizador de MurmurHash3 para repartir bien los bits altos
+    static long hash(String valor) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a87cdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,36 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Sketch HyperLogLog de los clientes distintos de un día (ver {@link HyperLogLog}).
+ * Una fila por día con ventas, junto a metricas_diarias; la mantiene
+ * ClientesDistintosService.
+ */
+@Entity
+@Table(name = "metricas_diarias_clientes")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MetricaDiariaClientes {
+
+    @Id
+    private LocalDate fecha;
+
+    @Column(nullable = false)
+    private byte[] registros;
+
+    // El sketch puede contar de más hasta que se reconstruya desde ventas
+    @Column(nullable = false)
+    private Boolean pendiente;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+}
@@ -0,0 +1,57 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Totales acumulados de ventas y compras por producto.
+ * Una fila por producto, mantenida por ProductoTotalesService.
+ */
+@Entity
+@Table(name = "producto_totales")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductoTotales {
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @Builder.Default
+    @Column(name = "unidades_vendidas", precision = 14, scale = 2)
+    private BigDecimal unidadesVendidas = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "ingresos_ventas", precision = 14, scale = 2)
+    private BigDecimal ingresosVentas = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "costo_ventas", precision = 14, scale = 2)
+    private BigDecimal costoVentas = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "numero_ventas")
+    private Integer numeroVentas = 0;
+
+    @Builder.Default
+    @Column(name = "unidades_compradas", precision = 14, scale = 2)
+    private BigDecimal unidadesCompradas = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "gasto_compras", precision = 14, scale = 2)
+    private BigDecimal gastoCompras = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "numero_compras")
+    private Integer numeroCompras = 0;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+}
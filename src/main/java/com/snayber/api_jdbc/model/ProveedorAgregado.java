@@ -0,0 +1,44 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Totales acumulados de compras por proveedor (columna libre compras.proveedor).
+ * Una fila por proveedor, mantenida por ProveedorAgregadoService.
+ */
+@Entity
+@Table(name = "proveedor_agregados")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProveedorAgregado {
+
+    @Id
+    @Column(length = 100)
+    private String proveedor;
+
+    @Builder.Default
+    @Column(name = "numero_compras")
+    private Integer numeroCompras = 0;
+
+    @Builder.Default
+    @Column(name = "unidades_compradas", precision = 14, scale = 2)
+    private BigDecimal unidadesCompradas = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "gasto_total", precision = 14, scale = 2)
+    private BigDecimal gastoTotal = BigDecimal.ZERO;
+
+    @Column(name = "ultima_compra")
+    private LocalDateTime ultimaCompra;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+}
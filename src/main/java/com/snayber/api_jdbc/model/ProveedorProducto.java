@@ -0,0 +1,52 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Compras de un producto a un proveedor, con el último costo unitario pagado.
+ * Una fila por (proveedor, producto_id), mantenida por ProveedorAgregadoService.
+ */
+@Entity
+@Table(name = "proveedor_productos",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"proveedor", "producto_id"}))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProveedorProducto {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String proveedor;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Builder.Default
+    @Column(name = "numero_compras")
+    private Integer numeroCompras = 0;
+
+    @Builder.Default
+    @Column(name = "unidades_compradas", precision = 14, scale = 2)
+    private BigDecimal unidadesCompradas = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(name = "gasto_total", precision = 14, scale = 2)
+    private BigDecimal gastoTotal = BigDecimal.ZERO;
+
+    // Costo unitario de la compra más reciente (por fecha_compra)
+    @Column(name = "ultimo_costo", precision = 12, scale = 2)
+    private BigDecimal ultimoCosto;
+
+    @Column(name = "fecha_ultimo_costo")
+    private LocalDateTime fechaUltimoCosto;
+}
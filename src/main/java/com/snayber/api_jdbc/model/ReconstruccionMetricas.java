@@ -0,0 +1,85 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "reconstrucciones_metricas")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReconstruccionMetricas {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String EN_PROGRESO = "EN_PROGRESO";
+    public static final String COMPLETADA = "COMPLETADA";
+    public static final String INTERRUMPIDA = "INTERRUMPIDA";
+    public static final String FALLIDA = "FALLIDA";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "fecha_inicio", nullable = false)
+    private LocalDate fechaInicio;
+
+    @Column(name = "fecha_fin", nullable = false)
+    private LocalDate fechaFin;
+
+    @Column(name = "dias_por_bloque", nullable = false)
+    private Integer diasPorBloque;
+
+    @Builder.Default
+    @Column(name = "bloques_totales", nullable = false)
+    private Integer bloquesTotales = 0;
+
+    @Builder.Default
+    @Column(name = "bloques_completados", nullable = false)
+    private Integer bloquesCompletados = 0;
+
+    @Builder.Default
+    @Column(nullable = false, length = 20)
+    private String estado = PENDIENTE;
+
+    // Instancia que la ejecuta o la ejecutó por última vez (InstanciaService)
+    @Column(length = 100)
+    private String instancia;
+
+    @Column(name = "mensaje_error", columnDefinition = "TEXT")
+    private String mensajeError;
+
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+
+    @PrePersist
+    protected void onCreate() {
+        if (fechaCreacion == null) {
+            fechaCreacion = LocalDateTime.now();
+        }
+        if (fechaActualizacion == null) {
+            fechaActualizacion = LocalDateTime.now();
+        }
+        if (estado == null) {
+            estado = PENDIENTE;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        fechaActualizacion = LocalDateTime.now();
+    }
+
+    @Transient
+    public boolean esReanudable() {
+        return !COMPLETADA.equals(estado) && !EN_PROGRESO.equals(estado);
+    }
+}
@@ -0,0 +1,96 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * Reporte encolado para ejecutarse en segundo plano.
+ * El resultado comprimido se guarda aparte, en trabajos_reportes_resultados.
+ */
+@Entity
+@Table(name = "trabajos_reportes",
+       uniqueConstraints = @UniqueConstraint(name = "ux_trabajos_reportes_clave_activa", columnNames = "clave_activa"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TrabajoReporte {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String EN_EJECUCION = "EN_EJECUCION";
+    public static final String COMPLETADO = "COMPLETADO";
+    public static final String FALLIDO = "FALLIDO";
+    public static final String INTERRUMPIDO = "INTERRUMPIDO";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tipo_reporte", nullable = false, length = 50)
+    private String tipoReporte;
+
+    @Column(name = "parametros_json", columnDefinition = "TEXT")
+    private String parametrosJson;
+
+    // Hash de tipo + parámetros: identifica pedidos idénticos
+    @Column(nullable = false, length = 64)
+    private String clave;
+
+    // La clave mientras el trabajo está pendiente o en ejecución, null al terminar. Su
+    // restricción única impide dos trabajos idénticos en curso
+    @Column(name = "clave_activa", length = 64)
+    private String claveActiva;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Integer prioridad = 1;
+
+    @Builder.Default
+    @Column(nullable = false, length = 20)
+    private String estado = PENDIENTE;
+
+    // Instancia que lo encoló y lo ejecuta (InstanciaService)
+    @Column(length = 100)
+    private String instancia;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Integer progreso = 0;
+
+    @Column(name = "filas_resultado")
+    private Integer filasResultado;
+
+    @Column(name = "tamano_resultado")
+    private Long tamanoResultado;
+
+    @Column(name = "mensaje_error", columnDefinition = "TEXT")
+    private String mensajeError;
+
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_inicio")
+    private LocalDateTime fechaInicio;
+
+    @Column(name = "fecha_fin")
+    private LocalDateTime fechaFin;
+
+    @PrePersist
+    protected void onCreate() {
+        if (fechaCreacion == null) {
+            fechaCreacion = LocalDateTime.now();
+        }
+        if (estado == null) {
+            estado = PENDIENTE;
+        }
+    }
+
+    @Transient
+    public boolean estaTerminado() {
+        return COMPLETADO.equals(estado) || FALLIDO.equals(estado) || INTERRUMPIDO.equals(estado);
+    }
+}
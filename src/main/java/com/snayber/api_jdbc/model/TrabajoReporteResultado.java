@@ -0,0 +1,27 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+
+/**
+ * Resultado de un {@link TrabajoReporte} completado: JSON comprimido con gzip.
+ * Separado del trabajo para no leerlo al consultar el estado.
+ */
+@Entity
+@Table(name = "trabajos_reportes_resultados")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TrabajoReporteResultado {
+
+    @Id
+    @Column(name = "trabajo_id")
+    private Long trabajoId;
+
+    @Column(nullable = false)
+    private byte[] contenido;
+}
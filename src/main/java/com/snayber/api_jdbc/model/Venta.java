@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Venta {
     
     @Id
@@ -27,6 +27,10 @@ public class Venta {
     @Column(name = "nombre_producto", nullable = false, length = 100)
     private String nombreProducto;
 
+    // Tipo del producto al registrar la venta: bucket de ventas_por_hora en que se sumó
+    @Column(name = "tipo_producto", length = 50)
+    private String tipoProducto;
+
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal cantidad;
 
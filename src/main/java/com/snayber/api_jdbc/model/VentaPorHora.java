@@ -0,0 +1,49 @@
+package com.snayber.api_jdbc.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Ventas agregadas por día, hora y tipo de producto.
+ * Una fila por (fecha, hora, tipo_producto), mantenida por VentasPorHoraService.
+ */
+@Entity
+@Table(name = "ventas_por_hora",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"fecha", "hora", "tipo_producto"}))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class VentaPorHora {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    // 0-23, hora local de fecha_venta
+    @Column(nullable = false)
+    private Integer hora;
+
+    @Column(name = "tipo_producto", nullable = false, length = 50)
+    private String tipoProducto;
+
+    @Builder.Default
+    @Column(name = "numero_ventas")
+    private Integer numeroVentas = 0;
+
+    @Builder.Default
+    @Column(precision = 14, scale = 2)
+    private BigDecimal ingresos = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(precision = 14, scale = 2)
+    private BigDecimal ganancia = BigDecimal.ZERO;
+}
@@ -29,4 +29,9 @@ public interface AlertaInventarioRepository extends JpaRepository<AlertaInventar
     Long countByResueltaFalse();
     
     Long countByNivelSeveridadAndResuelta(String nivelSeveridad, Boolean resuelta);
+
+    List<AlertaInventario> findByIdGreaterThanAndResueltaFalseOrderByIdAsc(Long id);
+
+    @Query("SELECT COALESCE(MAX(a.id), 0) FROM AlertaInventario a")
+    Long obtenerUltimoId();
 }
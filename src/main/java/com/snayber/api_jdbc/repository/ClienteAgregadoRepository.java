@@ -0,0 +1,68 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.ClienteAgregado;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ClienteAgregadoRepository extends JpaRepository<ClienteAgregado, String> {
+
+    // Rankings: cada orden tiene su índice en cliente_agregados
+    List<ClienteAgregado> findAllByOrderByTotalGastadoDesc(Pageable pageable);
+
+    List<ClienteAgregado> findAllByOrderByNumeroComprasDesc(Pageable pageable);
+
+    List<ClienteAgregado> findAllByOrderByMargenTotalDesc(Pageable pageable);
+
+    List<ClienteAgregado> findBySegmentoOrderByTotalGastadoDesc(String segmento, Pageable pageable);
+
+    // Suma una venta al cliente; primera y última compra solo pueden extenderse
+    @Modifying
+    @Query(value = "INSERT INTO cliente_agregados AS t " +
+           "(cliente, primera_compra, ultima_compra, numero_compras, total_gastado, margen_total, " +
+           " ticket_promedio, fecha_actualizacion) " +
+           "VALUES (:cliente, :fecha, :fecha, 1, :total, :margen, :total, now()) " +
+           "ON CONFLICT (cliente) DO UPDATE SET " +
+           "primera_compra = LEAST(t.primera_compra, EXCLUDED.primera_compra), " +
+           "ultima_compra = GREATEST(t.ultima_compra, EXCLUDED.ultima_compra), " +
+           "numero_compras = t.numero_compras + 1, " +
+           "total_gastado = t.total_gastado + EXCLUDED.total_gastado, " +
+           "margen_total = t.margen_total + EXCLUDED.margen_total, " +
+           "ticket_promedio = ROUND((t.total_gastado + EXCLUDED.total_gastado) / (t.numero_compras + 1), 2), " +
+           "fecha_actualizacion = now()",
+           nativeQuery = true)
+    int acumular(@Param("cliente") String cliente,
+                 @Param("fecha") LocalDateTime fecha,
+                 @Param("total") BigDecimal total,
+                 @Param("margen") BigDecimal margen);
+
+    // Resta una venta anulada o reemplazada. Primera y última compra se vuelven a leer
+    // de ventas (índice ix_ventas_cliente_fecha), la venta ya no está en la tabla
+    @Modifying
+    @Query(value = "UPDATE cliente_agregados SET " +
+           "numero_compras = numero_compras - 1, " +
+           "total_gastado = total_gastado - :total, " +
+           "margen_total = margen_total - :margen, " +
+           "ticket_promedio = CASE WHEN numero_compras > 1 " +
+           "  THEN ROUND((total_gastado - :total) / (numero_compras - 1), 2) ELSE 0 END, " +
+           "primera_compra = (SELECT MIN(v.fecha_venta) FROM ventas v WHERE v.cliente = :cliente), " +
+           "ultima_compra = (SELECT MAX(v.fecha_venta) FROM ventas v WHERE v.cliente = :cliente), " +
+           "fecha_actualizacion = now() " +
+           "WHERE cliente = :cliente",
+           nativeQuery = true)
+    int descontar(@Param("cliente") String cliente,
+                  @Param("total") BigDecimal total,
+                  @Param("margen") BigDecimal margen);
+
+    @Modifying
+    @Query(value = "DELETE FROM cliente_agregados WHERE cliente = :cliente AND numero_compras <= 0", nativeQuery = true)
+    int eliminarSinCompras(@Param("cliente") String cliente);
+}
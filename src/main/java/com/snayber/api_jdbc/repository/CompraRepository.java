@@ -1,8 +1,14 @@
 package com.snayber.api_jdbc.repository;
 
+import com.snayber.api_jdbc.dto.ReporteComprasDTO;
+import com.snayber.api_jdbc.dto.TotalesComprasDTO;
 import com.snayber.api_jdbc.model.Compra;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -14,7 +20,11 @@ import java.util.List;
 public interface CompraRepository extends JpaRepository<Compra, Long> {
 
     List<Compra> findByProductoId(Long productoId);
+
+    // Solo lectura: usado por reportes, las entidades no se modifican ni se revisan en el flush
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Compra> findByFechaCompraBetween(LocalDateTime inicio, LocalDateTime fin);
+
     List<Compra> findByProveedor(String proveedor);
     List<Compra> findByMetodoPago(String metodoPago);
     List<Compra> findByNumeroFactura(String numeroFactura);
@@ -26,5 +36,27 @@ public interface CompraRepository extends JpaRepository<Compra, Long> {
     BigDecimal calcularTotalComprasPeriodo(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
 
     @Query("SELECT c FROM Compra c WHERE CAST(c.fechaCompra AS date) = CURRENT_DATE ORDER BY c.fechaCompra DESC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Compra> findComprasHoy();
+
+    // Proyecciones para reportes: solo las columnas necesarias, sin entidades administradas
+    @Query("SELECT new com.snayber.api_jdbc.dto.TotalesComprasDTO(COALESCE(SUM(c.costoTotal), 0), COUNT(c)) " +
+           "FROM Compra c WHERE c.fechaCompra BETWEEN :inicio AND :fin")
+    TotalesComprasDTO totalizarPeriodo(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    @Query("SELECT new com.snayber.api_jdbc.dto.ReporteComprasDTO(" +
+           "c.productoId, c.nombreProducto, c.proveedor, SUM(c.cantidad), SUM(c.costoTotal), COUNT(c), " +
+           "CASE WHEN SUM(c.cantidad) > 0 THEN SUM(c.costoTotal) / SUM(c.cantidad) ELSE 0 END) " +
+           "FROM Compra c WHERE c.fechaCompra BETWEEN :inicio AND :fin " +
+           "GROUP BY c.productoId, c.nombreProducto, c.proveedor " +
+           "ORDER BY SUM(c.costoTotal) DESC")
+    List<ReporteComprasDTO> resumirPorProducto(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    // Paginación por clave (fecha_compra, id), del más reciente al más antiguo
+    @Query("SELECT c FROM Compra c ORDER BY c.fechaCompra DESC, c.id DESC")
+    List<Compra> findPrimeraPagina(Pageable pageable);
+
+    @Query("SELECT c FROM Compra c WHERE c.fechaCompra < :fecha OR (c.fechaCompra = :fecha AND c.id < :id) " +
+           "ORDER BY c.fechaCompra DESC, c.id DESC")
+    List<Compra> findPaginaDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Pageable pageable);
 }
@@ -0,0 +1,56 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.MetricaDiariaClientes;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface MetricaDiariaClientesRepository extends JpaRepository<MetricaDiariaClientes, LocalDate> {
+
+    List<MetricaDiariaClientes> findByFechaBetween(LocalDate fechaInicio, LocalDate fechaFin);
+
+    // Sube un registro del sketch del día si el nuevo rango es mayor; crea el sketch vacío si no existe.
+    // La fila queda bloqueada hasta el commit, igual que la de metricas_diarias
+    @Modifying
+    @Query(value = "INSERT INTO metricas_diarias_clientes AS t (fecha, registros, fecha_actualizacion) " +
+           "VALUES (:fecha, set_byte(decode(repeat('00', :tamano), 'hex'), :indice, :rango), now()) " +
+           "ON CONFLICT (fecha) DO UPDATE SET " +
+           "registros = set_byte(t.registros, :indice, :rango), " +
+           "fecha_actualizacion = now() " +
+           "WHERE get_byte(t.registros, :indice) < :rango",
+           nativeQuery = true)
+    int registrar(@Param("fecha") LocalDate fecha,
+                  @Param("indice") int indice,
+                  @Param("rango") int rango,
+                  @Param("tamano") int tamano);
+
+    // Marca el día para reconstruirlo desde ventas; crea el sketch vacío si no existe
+    @Modifying
+    @Query(value = "INSERT INTO metricas_diarias_clientes AS t (fecha, registros, pendiente, fecha_actualizacion) " +
+           "VALUES (:fecha, decode(repeat('00', :tamano), 'hex'), TRUE, now()) " +
+           "ON CONFLICT (fecha) DO UPDATE SET pendiente = TRUE, fecha_actualizacion = now()",
+           nativeQuery = true)
+    int marcarPendiente(@Param("fecha") LocalDate fecha, @Param("tamano") int tamano);
+
+    // Días con ventas con cliente que todavía no tienen sketch (datos anteriores a la tabla):
+    // se crean vacíos y pendientes
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO metricas_diarias_clientes (fecha, registros, pendiente, fecha_actualizacion) " +
+           "SELECT DISTINCT CAST(v.fecha_venta AS DATE), decode(repeat('00', :tamano), 'hex'), TRUE, now() " +
+           "FROM ventas v WHERE v.cliente IS NOT NULL AND TRIM(v.cliente) <> '' " +
+           "ON CONFLICT (fecha) DO NOTHING",
+           nativeQuery = true)
+    int marcarDiasSinSketch(@Param("tamano") int tamano);
+
+    @Query(value = "SELECT fecha FROM metricas_diarias_clientes WHERE pendiente ORDER BY fecha",
+           nativeQuery = true)
+    List<LocalDate> buscarPendientes();
+}
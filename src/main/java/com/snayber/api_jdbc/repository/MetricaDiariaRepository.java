@@ -1,11 +1,14 @@
 package com.snayber.api_jdbc.repository;
 
+import com.snayber.api_jdbc.dto.TotalesMetricasDTO;
 import com.snayber.api_jdbc.model.MetricaDiaria;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -22,4 +25,58 @@ public interface MetricaDiariaRepository extends JpaRepository<MetricaDiaria, Lo
     
     @Query("SELECT m FROM MetricaDiaria m WHERE FUNCTION('TO_CHAR', m.fecha, 'YYYY-MM') = :mes ORDER BY m.fecha")
     List<MetricaDiaria> findByMes(@Param("mes") String mes);
+
+    // Suma de un rango de días en una sola fila: un recorrido del índice único por fecha
+    @Query("SELECT new com.snayber.api_jdbc.dto.TotalesMetricasDTO(" +
+           "COALESCE(SUM(m.totalVentas), 0), COALESCE(SUM(m.totalCompras), 0), COALESCE(SUM(m.gananciaTotal), 0), " +
+           "COALESCE(SUM(m.numeroVentas), 0L), COALESCE(SUM(m.numeroCompras), 0L)) " +
+           "FROM MetricaDiaria m WHERE m.fecha BETWEEN :fechaInicio AND :fechaFin")
+    TotalesMetricasDTO totalizarRango(@Param("fechaInicio") LocalDate fechaInicio, @Param("fechaFin") LocalDate fechaFin);
+
+    // Acumuladores incrementales: suman (o restan, con valores negativos) al día indicado
+    @Modifying
+    @Query(value = "INSERT INTO metricas_diarias AS m " +
+           "(fecha, total_ventas, ganancia_total, numero_ventas, productos_vendidos, " +
+           " total_compras, numero_compras, productos_comprados, ticket_promedio, margen_promedio, " +
+           " fecha_creacion, fecha_actualizacion) " +
+           "VALUES (:fecha, :total, :ganancia, :numero, :unidades, 0, 0, 0, 0, 0, now(), now()) " +
+           "ON CONFLICT (fecha) DO UPDATE SET " +
+           "total_ventas = COALESCE(m.total_ventas, 0) + EXCLUDED.total_ventas, " +
+           "ganancia_total = COALESCE(m.ganancia_total, 0) + EXCLUDED.ganancia_total, " +
+           "numero_ventas = COALESCE(m.numero_ventas, 0) + EXCLUDED.numero_ventas, " +
+           "productos_vendidos = COALESCE(m.productos_vendidos, 0) + EXCLUDED.productos_vendidos, " +
+           "fecha_actualizacion = now()",
+           nativeQuery = true)
+    int acumularVentas(@Param("fecha") LocalDate fecha,
+                       @Param("total") BigDecimal total,
+                       @Param("ganancia") BigDecimal ganancia,
+                       @Param("numero") int numero,
+                       @Param("unidades") BigDecimal unidades);
+
+    @Modifying
+    @Query(value = "INSERT INTO metricas_diarias AS m " +
+           "(fecha, total_ventas, ganancia_total, numero_ventas, productos_vendidos, " +
+           " total_compras, numero_compras, productos_comprados, ticket_promedio, margen_promedio, " +
+           " fecha_creacion, fecha_actualizacion) " +
+           "VALUES (:fecha, 0, 0, 0, 0, :total, :numero, :unidades, 0, 0, now(), now()) " +
+           "ON CONFLICT (fecha) DO UPDATE SET " +
+           "total_compras = COALESCE(m.total_compras, 0) + EXCLUDED.total_compras, " +
+           "numero_compras = COALESCE(m.numero_compras, 0) + EXCLUDED.numero_compras, " +
+           "productos_comprados = COALESCE(m.productos_comprados, 0) + EXCLUDED.productos_comprados, " +
+           "fecha_actualizacion = now()",
+           nativeQuery = true)
+    int acumularCompras(@Param("fecha") LocalDate fecha,
+                        @Param("total") BigDecimal total,
+                        @Param("numero") int numero,
+                        @Param("unidades") BigDecimal unidades);
+
+    // margen_promedio es NUMERIC(5,2): fuera de rango abortaría la transacción de la venta
+    @Modifying
+    @Query(value = "UPDATE metricas_diarias SET " +
+           "ticket_promedio = CASE WHEN numero_ventas > 0 THEN ROUND(total_ventas / numero_ventas, 2) ELSE 0 END, " +
+           "margen_promedio = CASE WHEN total_ventas > 0 " +
+           "  THEN LEAST(999.99, GREATEST(-999.99, ROUND(ganancia_total * 100 / total_ventas, 2))) ELSE 0 END " +
+           "WHERE fecha = :fecha",
+           nativeQuery = true)
+    int recalcularPromedios(@Param("fecha") LocalDate fecha);
 }
@@ -1,6 +1,7 @@
 package com.snayber.api_jdbc.repository;
 
 import com.snayber.api_jdbc.model.Producto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -36,4 +37,7 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     @Transactional
     @Query("UPDATE Producto p SET p.cantidad = p.cantidad + :add WHERE p.id = :id")
     int incrementCantidad(@Param("id") Long id, @Param("add") BigDecimal add);
+
+    // Paginación por clave (id ascendente)
+    List<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 }
@@ -0,0 +1,63 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.dto.ReporteRentabilidadDTO;
+import com.snayber.api_jdbc.model.ProductoTotales;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface ProductoTotalesRepository extends JpaRepository<ProductoTotales, Long> {
+
+    // Rentabilidad por producto: una fila de producto_totales por producto, proyectada al DTO
+    @Query("SELECT new com.snayber.api_jdbc.dto.ReporteRentabilidadDTO(" +
+           "t.productoId, p.nombre, t.ingresosVentas, t.gastoCompras, t.ingresosVentas - t.gastoCompras, " +
+           "CASE WHEN t.ingresosVentas > 0 THEN (t.ingresosVentas - t.gastoCompras) * 100 / t.ingresosVentas ELSE 0 END, " +
+           "CASE WHEN t.gastoCompras > 0 THEN (t.ingresosVentas - t.gastoCompras) * 100 / t.gastoCompras ELSE 0 END, " +
+           "t.unidadesVendidas, t.costoVentas) " +
+           "FROM ProductoTotales t JOIN Producto p ON p.id = t.productoId " +
+           "WHERE t.ingresosVentas > 0 OR t.gastoCompras > 0 " +
+           "ORDER BY t.ingresosVentas - t.gastoCompras DESC")
+    List<ReporteRentabilidadDTO> obtenerRentabilidad(Pageable pageable);
+
+    // Acumuladores incrementales: suman (o restan, con valores negativos) al producto indicado
+    @Modifying
+    @Query(value = "INSERT INTO producto_totales AS t " +
+           "(producto_id, unidades_vendidas, ingresos_ventas, costo_ventas, numero_ventas, " +
+           " unidades_compradas, gasto_compras, numero_compras, fecha_actualizacion) " +
+           "VALUES (:productoId, :unidades, :ingresos, :costo, :numero, 0, 0, 0, now()) " +
+           "ON CONFLICT (producto_id) DO UPDATE SET " +
+           "unidades_vendidas = t.unidades_vendidas + EXCLUDED.unidades_vendidas, " +
+           "ingresos_ventas = t.ingresos_ventas + EXCLUDED.ingresos_ventas, " +
+           "costo_ventas = t.costo_ventas + EXCLUDED.costo_ventas, " +
+           "numero_ventas = t.numero_ventas + EXCLUDED.numero_ventas, " +
+           "fecha_actualizacion = now()",
+           nativeQuery = true)
+    int acumularVentas(@Param("productoId") Long productoId,
+                       @Param("unidades") BigDecimal unidades,
+                       @Param("ingresos") BigDecimal ingresos,
+                       @Param("costo") BigDecimal costo,
+                       @Param("numero") int numero);
+
+    @Modifying
+    @Query(value = "INSERT INTO producto_totales AS t " +
+           "(producto_id, unidades_vendidas, ingresos_ventas, costo_ventas, numero_ventas, " +
+           " unidades_compradas, gasto_compras, numero_compras, fecha_actualizacion) " +
+           "VALUES (:productoId, 0, 0, 0, 0, :unidades, :gasto, :numero, now()) " +
+           "ON CONFLICT (producto_id) DO UPDATE SET " +
+           "unidades_compradas = t.unidades_compradas + EXCLUDED.unidades_compradas, " +
+           "gasto_compras = t.gasto_compras + EXCLUDED.gasto_compras, " +
+           "numero_compras = t.numero_compras + EXCLUDED.numero_compras, " +
+           "fecha_actualizacion = now()",
+           nativeQuery = true)
+    int acumularCompras(@Param("productoId") Long productoId,
+                        @Param("unidades") BigDecimal unidades,
+                        @Param("gasto") BigDecimal gasto,
+                        @Param("numero") int numero);
+}
@@ -0,0 +1,53 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.ProveedorAgregado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProveedorAgregadoRepository extends JpaRepository<ProveedorAgregado, String> {
+
+    List<ProveedorAgregado> findAllByOrderByGastoTotalDesc();
+
+    // Suma una compra al proveedor; la última compra solo puede avanzar
+    @Modifying
+    @Query(value = "INSERT INTO proveedor_agregados AS t " +
+           "(proveedor, numero_compras, unidades_compradas, gasto_total, ultima_compra, fecha_actualizacion) " +
+           "VALUES (:proveedor, 1, :unidades, :gasto, :fecha, now()) " +
+           "ON CONFLICT (proveedor) DO UPDATE SET " +
+           "numero_compras = t.numero_compras + 1, " +
+           "unidades_compradas = t.unidades_compradas + EXCLUDED.unidades_compradas, " +
+           "gasto_total = t.gasto_total + EXCLUDED.gasto_total, " +
+           "ultima_compra = GREATEST(t.ultima_compra, EXCLUDED.ultima_compra), " +
+           "fecha_actualizacion = now()",
+           nativeQuery = true)
+    int acumular(@Param("proveedor") String proveedor,
+                 @Param("fecha") LocalDateTime fecha,
+                 @Param("unidades") BigDecimal unidades,
+                 @Param("gasto") BigDecimal gasto);
+
+    // Resta una compra anulada o reemplazada; la última compra se vuelve a leer de compras
+    @Modifying
+    @Query(value = "UPDATE proveedor_agregados SET " +
+           "numero_compras = numero_compras - 1, " +
+           "unidades_compradas = unidades_compradas - :unidades, " +
+           "gasto_total = gasto_total - :gasto, " +
+           "ultima_compra = (SELECT MAX(c.fecha_compra) FROM compras c WHERE c.proveedor = :proveedor), " +
+           "fecha_actualizacion = now() " +
+           "WHERE proveedor = :proveedor",
+           nativeQuery = true)
+    int descontar(@Param("proveedor") String proveedor,
+                  @Param("unidades") BigDecimal unidades,
+                  @Param("gasto") BigDecimal gasto);
+
+    @Modifying
+    @Query(value = "DELETE FROM proveedor_agregados WHERE proveedor = :proveedor AND numero_compras <= 0", nativeQuery = true)
+    int eliminarSinCompras(@Param("proveedor") String proveedor);
+}
@@ -0,0 +1,76 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.ProveedorProducto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProveedorProductoRepository extends JpaRepository<ProveedorProducto, Long> {
+
+    // Proveedores de un producto con compras desde la fecha dada, del más barato al más caro
+    @Query("SELECT p FROM ProveedorProducto p WHERE p.productoId = :productoId " +
+           "AND p.fechaUltimoCosto >= :desde AND p.ultimoCosto IS NOT NULL " +
+           "ORDER BY p.ultimoCosto ASC, p.fechaUltimoCosto DESC")
+    List<ProveedorProducto> buscarMasBaratos(@Param("productoId") Long productoId,
+                                             @Param("desde") LocalDateTime desde,
+                                             Pageable pageable);
+
+    // El proveedor más barato de cada producto entre los que le vendieron desde la fecha dada
+    @Query(value = "SELECT DISTINCT ON (producto_id) * FROM proveedor_productos " +
+           "WHERE fecha_ultimo_costo >= :desde AND ultimo_costo IS NOT NULL " +
+           "ORDER BY producto_id, ultimo_costo ASC, fecha_ultimo_costo DESC",
+           nativeQuery = true)
+    List<ProveedorProducto> buscarMasBaratoPorProducto(@Param("desde") LocalDateTime desde);
+
+    // Suma una compra; el último costo solo se reemplaza por una compra igual o más reciente
+    @Modifying
+    @Query(value = "INSERT INTO proveedor_productos AS t " +
+           "(proveedor, producto_id, numero_compras, unidades_compradas, gasto_total, ultimo_costo, fecha_ultimo_costo) " +
+           "VALUES (:proveedor, :productoId, 1, :unidades, :gasto, :costo, :fecha) " +
+           "ON CONFLICT (proveedor, producto_id) DO UPDATE SET " +
+           "numero_compras = t.numero_compras + 1, " +
+           "unidades_compradas = t.unidades_compradas + EXCLUDED.unidades_compradas, " +
+           "gasto_total = t.gasto_total + EXCLUDED.gasto_total, " +
+           "ultimo_costo = CASE WHEN t.fecha_ultimo_costo IS NULL OR EXCLUDED.fecha_ultimo_costo >= t.fecha_ultimo_costo " +
+           "  THEN EXCLUDED.ultimo_costo ELSE t.ultimo_costo END, " +
+           "fecha_ultimo_costo = GREATEST(t.fecha_ultimo_costo, EXCLUDED.fecha_ultimo_costo)",
+           nativeQuery = true)
+    int acumular(@Param("proveedor") String proveedor,
+                 @Param("productoId") Long productoId,
+                 @Param("fecha") LocalDateTime fecha,
+                 @Param("costo") BigDecimal costo,
+                 @Param("unidades") BigDecimal unidades,
+                 @Param("gasto") BigDecimal gasto);
+
+    // Resta una compra anulada o reemplazada; el último costo se vuelve a leer de compras
+    @Modifying
+    @Query(value = "UPDATE proveedor_productos SET " +
+           "numero_compras = numero_compras - 1, " +
+           "unidades_compradas = unidades_compradas - :unidades, " +
+           "gasto_total = gasto_total - :gasto, " +
+           "ultimo_costo = (SELECT c.costo_unitario FROM compras c " +
+           "  WHERE c.proveedor = :proveedor AND c.producto_id = :productoId " +
+           "  ORDER BY c.fecha_compra DESC, c.id DESC LIMIT 1), " +
+           "fecha_ultimo_costo = (SELECT MAX(c.fecha_compra) FROM compras c " +
+           "  WHERE c.proveedor = :proveedor AND c.producto_id = :productoId) " +
+           "WHERE proveedor = :proveedor AND producto_id = :productoId",
+           nativeQuery = true)
+    int descontar(@Param("proveedor") String proveedor,
+                  @Param("productoId") Long productoId,
+                  @Param("unidades") BigDecimal unidades,
+                  @Param("gasto") BigDecimal gasto);
+
+    @Modifying
+    @Query(value = "DELETE FROM proveedor_productos " +
+           "WHERE proveedor = :proveedor AND producto_id = :productoId AND numero_compras <= 0",
+           nativeQuery = true)
+    int eliminarSinCompras(@Param("proveedor") String proveedor, @Param("productoId") Long productoId);
+}
@@ -0,0 +1,24 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.ReconstruccionMetricas;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ReconstruccionMetricasRepository extends JpaRepository<ReconstruccionMetricas, Long> {
+
+    List<ReconstruccionMetricas> findByEstadoOrderByFechaCreacionDesc(String estado);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReconstruccionMetricas r SET r.estado = :nuevo " +
+           "WHERE r.estado = :actual AND r.instancia = :instancia")
+    int cambiarEstado(@Param("actual") String actual, @Param("nuevo") String nuevo,
+                      @Param("instancia") String instancia);
+}
@@ -0,0 +1,16 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.ReportePersonalizado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReportePersonalizadoRepository extends JpaRepository<ReportePersonalizado, Long> {
+
+    List<ReportePersonalizado> findByActivoTrueOrderByNombreAsc();
+
+    Optional<ReportePersonalizado> findByIdAndActivoTrue(Long id);
+}
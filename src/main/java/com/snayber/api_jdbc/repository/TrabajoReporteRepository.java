@@ -0,0 +1,49 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.TrabajoReporte;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TrabajoReporteRepository extends JpaRepository<TrabajoReporte, Long> {
+
+    List<TrabajoReporte> findTop50ByOrderByFechaCreacionDesc();
+
+    Optional<TrabajoReporte> findByClaveActiva(String claveActiva);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TrabajoReporte t SET t.estado = :nuevo, t.mensajeError = :mensaje, t.claveActiva = NULL " +
+           "WHERE t.estado IN :actuales AND t.instancia = :instancia")
+    int cambiarEstado(@Param("actuales") List<String> actuales,
+                      @Param("nuevo") String nuevo,
+                      @Param("mensaje") String mensaje,
+                      @Param("instancia") String instancia);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TrabajoReporte t SET t.estado = :nuevo, t.mensajeError = :mensaje, t.claveActiva = NULL " +
+           "WHERE t.estado IN :actuales AND t.fechaCreacion < :limite")
+    int cambiarEstadoCreadosAntesDe(@Param("actuales") List<String> actuales,
+                                    @Param("nuevo") String nuevo,
+                                    @Param("mensaje") String mensaje,
+                                    @Param("limite") LocalDateTime limite);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TrabajoReporte t SET t.progreso = :progreso WHERE t.id = :id")
+    int actualizarProgreso(@Param("id") Long id, @Param("progreso") int progreso);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TrabajoReporte t WHERE t.fechaFin < :limite")
+    int eliminarTerminadosAntesDe(@Param("limite") LocalDateTime limite);
+}
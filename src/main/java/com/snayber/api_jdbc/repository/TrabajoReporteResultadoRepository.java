@@ -0,0 +1,22 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.model.TrabajoReporteResultado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface TrabajoReporteResultadoRepository extends JpaRepository<TrabajoReporteResultado, Long> {
+
+    // Se borran antes que sus trabajos: la tabla creada por ddl-auto no tiene ON DELETE CASCADE
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TrabajoReporteResultado r WHERE r.trabajoId IN " +
+           "(SELECT t.id FROM TrabajoReporte t WHERE t.fechaFin < :limite)")
+    int eliminarDeTrabajosTerminadosAntesDe(@Param("limite") LocalDateTime limite);
+}
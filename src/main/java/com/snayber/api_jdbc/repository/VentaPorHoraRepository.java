@@ -0,0 +1,51 @@
+package com.snayber.api_jdbc.repository;
+
+import com.snayber.api_jdbc.dto.VentasHoraDTO;
+import com.snayber.api_jdbc.model.VentaPorHora;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface VentaPorHoraRepository extends JpaRepository<VentaPorHora, Long> {
+
+    // Una fila por (fecha, hora) sumando los tipos de producto; tipoProducto null incluye todos
+    @Query("SELECT new com.snayber.api_jdbc.dto.VentasHoraDTO(" +
+           "v.fecha, v.hora, SUM(v.numeroVentas), SUM(v.ingresos), SUM(v.ganancia)) " +
+           "FROM VentaPorHora v WHERE v.fecha BETWEEN :inicio AND :fin " +
+           "AND (:tipoProducto IS NULL OR v.tipoProducto = :tipoProducto) " +
+           "GROUP BY v.fecha, v.hora")
+    List<VentasHoraDTO> sumarPorFechaYHora(@Param("inicio") LocalDate inicio,
+                                           @Param("fin") LocalDate fin,
+                                           @Param("tipoProducto") String tipoProducto);
+
+    // Acumulador incremental: suma (o resta, con valores negativos) al bucket de la venta.
+    // El tipo es el guardado en la venta, así una reversión resta del mismo bucket en que
+    // se sumó aunque el producto haya cambiado de tipo. Las ventas anteriores a la columna
+    // usan el tipo actual del producto; sin producto se usa SIN_TIPO.
+    @Modifying
+    @Query(value = "INSERT INTO ventas_por_hora AS h " +
+           "(fecha, hora, tipo_producto, numero_ventas, ingresos, ganancia) " +
+           "VALUES (:fecha, :hora, " +
+           "COALESCE(CAST(:tipoProducto AS VARCHAR), " +
+           "(SELECT p.tipo FROM productos p WHERE p.id = :productoId), 'SIN_TIPO'), " +
+           ":numero, :ingresos, :ganancia) " +
+           "ON CONFLICT (fecha, hora, tipo_producto) DO UPDATE SET " +
+           "numero_ventas = h.numero_ventas + EXCLUDED.numero_ventas, " +
+           "ingresos = h.ingresos + EXCLUDED.ingresos, " +
+           "ganancia = h.ganancia + EXCLUDED.ganancia",
+           nativeQuery = true)
+    int acumular(@Param("fecha") LocalDate fecha,
+                 @Param("hora") int hora,
+                 @Param("productoId") Long productoId,
+                 @Param("tipoProducto") String tipoProducto,
+                 @Param("numero") int numero,
+                 @Param("ingresos") BigDecimal ingresos,
+                 @Param("ganancia") BigDecimal ganancia);
+}
@@ -1,8 +1,14 @@
 package com.snayber.api_jdbc.repository;
 
+import com.snayber.api_jdbc.dto.ReporteVentasDTO;
+import com.snayber.api_jdbc.dto.TotalesVentasDTO;
 import com.snayber.api_jdbc.model.Venta;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -14,7 +20,11 @@ import java.util.List;
 public interface VentaRepository extends JpaRepository<Venta, Long> {
 
     List<Venta> findByProductoId(Long productoId);
+
+    // Solo lectura: usado por reportes, las entidades no se modifican ni se revisan en el flush
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Venta> findByFechaVentaBetween(LocalDateTime inicio, LocalDateTime fin);
+
     List<Venta> findByCliente(String cliente);
     List<Venta> findByMetodoPago(String metodoPago);
 
@@ -31,5 +41,28 @@ public interface VentaRepository extends JpaRepository<Venta, Long> {
     BigDecimal calcularGananciasPeriodo(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
 
     @Query("SELECT v FROM Venta v WHERE CAST(v.fechaVenta AS date) = CURRENT_DATE ORDER BY v.fechaVenta DESC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Venta> findVentasHoy();
+
+    // Proyecciones para reportes: solo las columnas necesarias, sin entidades administradas
+    @Query("SELECT new com.snayber.api_jdbc.dto.TotalesVentasDTO(" +
+           "COALESCE(SUM(v.precioTotal), 0), COALESCE(SUM(v.ganancia), 0), COUNT(v)) " +
+           "FROM Venta v WHERE v.fechaVenta BETWEEN :inicio AND :fin")
+    TotalesVentasDTO totalizarPeriodo(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    @Query("SELECT new com.snayber.api_jdbc.dto.ReporteVentasDTO(" +
+           "v.productoId, v.nombreProducto, SUM(v.cantidad), SUM(v.precioTotal), COALESCE(SUM(v.ganancia), 0), COUNT(v), " +
+           "CASE WHEN SUM(v.precioTotal) > 0 THEN COALESCE(SUM(v.ganancia), 0) * 100 / SUM(v.precioTotal) ELSE 0 END) " +
+           "FROM Venta v WHERE v.fechaVenta BETWEEN :inicio AND :fin " +
+           "GROUP BY v.productoId, v.nombreProducto " +
+           "ORDER BY SUM(v.precioTotal) DESC")
+    List<ReporteVentasDTO> resumirPorProducto(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    // Paginación por clave (fecha_venta, id), del más reciente al más antiguo
+    @Query("SELECT v FROM Venta v ORDER BY v.fechaVenta DESC, v.id DESC")
+    List<Venta> findPrimeraPagina(Pageable pageable);
+
+    @Query("SELECT v FROM Venta v WHERE v.fechaVenta < :fecha OR (v.fechaVenta = :fecha AND v.id < :id) " +
+           "ORDER BY v.fechaVenta DESC, v.id DESC")
+    List<Venta> findPaginaDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Pageable pageable);
 }
@@ -0,0 +1,90 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bloqueos por día (advisory locks de PostgreSQL) entre los acumuladores
+ * incrementales de metricas_diarias y las reconstrucciones.
+ *
+ * Cada venta o compra toma el bloqueo compartido de los días que toca antes de que
+ * los listeners sumen en ellos; una reconstrucción toma el exclusivo de todos los
+ * días de su bloque antes de leer ventas y compras. Así una reconstrucción espera a
+ * las transacciones en curso de esos días y las que empiezan después suman sobre lo
+ * ya reconstruido. Los bloqueos se liberan solos al terminar la transacción, por lo
+ * que deben pedirse dentro de una.
+ *
+ * Todos se toman en orden ascendente de día: una edición que mueve una venta a un día
+ * anterior no puede tener el día posterior mientras espera el anterior, que es lo que
+ * haría falta para un deadlock con otra edición o con una reconstrucción.
+ */
+@Service
+@RequiredArgsConstructor
+public class BloqueoDiasService {
+
+    // Primera clave del advisory lock, para no chocar con otros usos de pg_advisory_lock
+    private static final int CLASE_METRICAS_DIARIAS = 0x4d444941;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Antes que los demás listeners síncronos, dentro de la transacción del movimiento
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void onVenta(VentaEvent evento) {
+        bloquearCompartido(dia(evento.anterior() != null ? evento.anterior().getFechaVenta() : null),
+                dia(evento.actual() != null ? evento.actual().getFechaVenta() : null));
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void onCompra(CompraEvent evento) {
+        bloquearCompartido(dia(evento.anterior() != null ? evento.anterior().getFechaCompra() : null),
+                dia(evento.actual() != null ? evento.actual().getFechaCompra() : null));
+    }
+
+    /**
+     * Bloquea en modo compartido los días dados (los null se ignoran), en orden ascendente.
+     */
+    public void bloquearCompartido(LocalDate... dias) {
+        Set<LocalDate> ordenados = new TreeSet<>();
+        for (LocalDate dia : dias) {
+            if (dia != null) {
+                ordenados.add(dia);
+            }
+        }
+        for (LocalDate dia : ordenados) {
+            jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock_shared(?, ?)",
+                    CLASE_METRICAS_DIARIAS, clave(dia));
+        }
+    }
+
+    /**
+     * Bloquea en exclusiva los días de [desde, hasta), en orden ascendente.
+     */
+    public void bloquearExclusivo(LocalDate desde, LocalDate hasta) {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?, d) FROM generate_series(?, ?) AS d ORDER BY d",
+                CLASE_METRICAS_DIARIAS, clave(desde), clave(hasta) - 1);
+    }
+
+    private static LocalDate dia(LocalDateTime fecha) {
+        return fecha != null ? fecha.toLocalDate() : null;
+    }
+
+    private static int clave(LocalDate dia) {
+        return Math.toIntExact(dia.toEpochDay());
+    }
+}
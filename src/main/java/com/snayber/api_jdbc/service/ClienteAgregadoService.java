@@ -0,0 +1,295 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.ClienteAgregado;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.model.Venta;
+import com.snayber.api_jdbc.repository.ClienteAgregadoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Mantiene la tabla cliente_agregados de forma incremental y calcula la
+ * segmentación RFM (recencia, frecuencia, monto).
+ *
+ * Cada venta confirmada suma o resta en la fila de su cliente dentro de la misma
+ * transacción, así el reporte de clientes y los rankings son lecturas por índice en
+ * lugar de agrupar todas las ventas por la columna cliente.
+ *
+ * El recálculo RFM corre cada noche: lee una fila por cliente, ordena las tres
+ * dimensiones en paralelo y asigna a cada cliente un quintil (1 a 5) según cuántos
+ * clientes quedan por debajo de él. Los empates reciben la misma puntuación.
+ */
+@Service
+@Slf4j
+@Transactional
+public class ClienteAgregadoService {
+
+    public static final String CRITERIO_TOTAL = "total";
+    public static final String CRITERIO_COMPRAS = "compras";
+    public static final String CRITERIO_MARGEN = "margen";
+
+    private static final int QUINTILES = 5;
+    private static final int MAX_LIMITE = 1000;
+    private static final int LOTE_ACTUALIZACION = 1000;
+
+    private static final String SQL_DIMENSIONES = "SELECT cliente, ultima_compra, numero_compras, total_gastado " +
+            "FROM cliente_agregados";
+
+    private static final String SQL_ACTUALIZAR_RFM = "UPDATE cliente_agregados SET rfm_recencia = ?, rfm_frecuencia = ?, " +
+            "rfm_monetario = ?, segmento = ?, fecha_rfm = ? WHERE cliente = ?";
+
+    private final ClienteAgregadoRepository clienteAgregadoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean recalculando = new AtomicBoolean();
+
+    public ClienteAgregadoService(ClienteAgregadoRepository clienteAgregadoRepository, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.clienteAgregadoRepository = clienteAgregadoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Listener síncrono: se ejecuta dentro de la transacción que registra la venta
+    @EventListener
+    public void onVenta(VentaEvent evento) {
+        Venta anterior = evento.anterior();
+        if (anterior != null && tieneCliente(anterior)) {
+            clienteAgregadoRepository.descontar(anterior.getCliente(), valor(anterior.getPrecioTotal()), valor(anterior.getGanancia()));
+            clienteAgregadoRepository.eliminarSinCompras(anterior.getCliente());
+        }
+        Venta actual = evento.actual();
+        if (actual != null && tieneCliente(actual)) {
+            clienteAgregadoRepository.acumular(actual.getCliente(), actual.getFechaVenta(),
+                    valor(actual.getPrecioTotal()), valor(actual.getGanancia()));
+        }
+    }
+
+    /**
+     * Clientes ordenados por total gastado, opcionalmente de un segmento RFM.
+     */
+    @Transactional(readOnly = true)
+    public List<ClienteAgregado> listar(String segmento, int limite) {
+        PageRequest pagina = PageRequest.of(0, validarLimite(limite));
+        if (segmento != null && !segmento.isBlank()) {
+            return clienteAgregadoRepository.findBySegmentoOrderByTotalGastadoDesc(
+                    segmento.trim().toUpperCase(Locale.ROOT), pagina);
+        }
+        return clienteAgregadoRepository.findAllByOrderByTotalGastadoDesc(pagina);
+    }
+
+    /**
+     * @param criterio "total", "compras" o "margen"
+     */
+    @Transactional(readOnly = true)
+    public List<ClienteAgregado> obtenerTop(String criterio, int limite) {
+        PageRequest pagina = PageRequest.of(0, validarLimite(limite));
+        return switch (criterio.toLowerCase(Locale.ROOT)) {
+            case CRITERIO_TOTAL -> clienteAgregadoRepository.findAllByOrderByTotalGastadoDesc(pagina);
+            case CRITERIO_COMPRAS -> clienteAgregadoRepository.findAllByOrderByNumeroComprasDesc(pagina);
+            case CRITERIO_MARGEN -> clienteAgregadoRepository.findAllByOrderByMargenTotalDesc(pagina);
+            default -> throw new IllegalArgumentException("Criterio no válido: " + criterio + " (use total, compras o margen)");
+        };
+    }
+
+    @Scheduled(cron = "${app.clientes.rfm.cron:0 30 2 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void recalcularRfmProgramado() {
+        try {
+            recalcularRfm();
+        } catch (Exception e) {
+            log.error("Error en el recálculo RFM nocturno: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recalcula las puntuaciones RFM y el segmento de todos los clientes.
+     *
+     * Corre fuera de una transacción y confirma cada lote por separado: los UPDATE
+     * bloquean filas de cliente_agregados solo durante su lote, así las ventas que
+     * llegan mientras tanto no esperan a que termine todo el recálculo.
+     *
+     * @return resumen con el número de clientes y la cantidad por segmento
+     * @throws IllegalStateException si ya hay un recálculo en curso
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> recalcularRfm() {
+        if (!recalculando.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay un recálculo RFM en curso");
+        }
+        try {
+            long inicio = System.currentTimeMillis();
+            LocalDateTime ahora = LocalDateTime.now();
+
+            List<String> clientes = new ArrayList<>();
+            List<long[]> filas = new ArrayList<>();
+            jdbcTemplate.query(SQL_DIMENSIONES, rs -> {
+                Timestamp ultima = rs.getTimestamp("ultima_compra");
+                BigDecimal total = rs.getBigDecimal("total_gastado");
+                clientes.add(rs.getString("cliente"));
+                filas.add(new long[]{
+                        ultima != null ? Math.max(0, ChronoUnit.DAYS.between(ultima.toLocalDateTime(), ahora)) : Long.MAX_VALUE,
+                        rs.getInt("numero_compras"),
+                        total != null ? Dinero.centavosDe(total) : 0});
+            });
+
+            int n = clientes.size();
+            long[] recencia = new long[n];
+            long[] frecuencia = new long[n];
+            long[] monetario = new long[n];
+            for (int i = 0; i < n; i++) {
+                recencia[i] = filas.get(i)[0];
+                frecuencia[i] = filas.get(i)[1];
+                monetario[i] = filas.get(i)[2];
+            }
+
+            // Las tres dimensiones se ordenan a la vez, cada una con parallelSort
+            CompletableFuture<long[]> recenciaOrdenada = CompletableFuture.supplyAsync(() -> ordenada(recencia));
+            CompletableFuture<long[]> frecuenciaOrdenada = CompletableFuture.supplyAsync(() -> ordenada(frecuencia));
+            CompletableFuture<long[]> monetarioOrdenado = CompletableFuture.supplyAsync(() -> ordenada(monetario));
+            long[] r = recenciaOrdenada.join();
+            long[] f = frecuenciaOrdenada.join();
+            long[] m = monetarioOrdenado.join();
+
+            int[][] puntuaciones = new int[n][];
+            IntStream.range(0, n).parallel().forEach(i -> puntuaciones[i] = new int[]{
+                    // Menos días desde la última compra es mejor: se cuentan los clientes más antiguos
+                    quintil(mayores(r, recencia[i]), n),
+                    quintil(menores(f, frecuencia[i]), n),
+                    quintil(menores(m, monetario[i]), n)});
+
+            Map<String, Integer> porSegmento = new LinkedHashMap<>();
+            List<Object[]> lote = new ArrayList<>(LOTE_ACTUALIZACION);
+            Timestamp fechaRfm = Timestamp.valueOf(ahora);
+            for (int i = 0; i < n; i++) {
+                int[] p = puntuaciones[i];
+                String segmento = segmento(p[0], p[1]);
+                porSegmento.merge(segmento, 1, Integer::sum);
+                lote.add(new Object[]{p[0], p[1], p[2], segmento, fechaRfm, clientes.get(i)});
+                if (lote.size() == LOTE_ACTUALIZACION) {
+                    actualizarLote(lote);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                actualizarLote(lote);
+            }
+
+            long duracion = System.currentTimeMillis() - inicio;
+            log.info("RFM recalculado para {} clientes en {} ms: {}", n, duracion, porSegmento);
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("clientes", n);
+            resumen.put("segmentos", porSegmento);
+            resumen.put("fechaRfm", ahora);
+            resumen.put("tiempoMs", duracion);
+            return resumen;
+        } finally {
+            recalculando.set(false);
+        }
+    }
+
+    private void actualizarLote(List<Object[]> lote) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SQL_ACTUALIZAR_RFM, lote));
+    }
+
+    private static long[] ordenada(long[] valores) {
+        long[] copia = valores.clone();
+        Arrays.parallelSort(copia);
+        return copia;
+    }
+
+    // Cantidad de valores estrictamente menores que v
+    static int menores(long[] ordenados, long v) {
+        int bajo = 0;
+        int alto = ordenados.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (ordenados[medio] < v) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    // Cantidad de valores estrictamente mayores que v
+    static int mayores(long[] ordenados, long v) {
+        int bajo = 0;
+        int alto = ordenados.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (ordenados[medio] <= v) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return ordenados.length - bajo;
+    }
+
+    /**
+     * Quintil 1-5 a partir de la posición: 0 clientes por debajo da 1, y el máximo
+     * posible (n - 1) da 5.
+     */
+    static int quintil(int porDebajo, int n) {
+        return 1 + (int) ((long) porDebajo * QUINTILES / n);
+    }
+
+    static String segmento(int recencia, int frecuencia) {
+        if (recencia >= 4 && frecuencia >= 4) {
+            return ClienteAgregado.SEGMENTO_CAMPEON;
+        }
+        if (recencia >= 3 && frecuencia >= 3) {
+            return ClienteAgregado.SEGMENTO_LEAL;
+        }
+        if (recencia >= 4) {
+            return ClienteAgregado.SEGMENTO_NUEVO;
+        }
+        if (recencia <= 2 && frecuencia >= 3) {
+            return ClienteAgregado.SEGMENTO_EN_RIESGO;
+        }
+        if (recencia <= 2) {
+            return ClienteAgregado.SEGMENTO_PERDIDO;
+        }
+        return ClienteAgregado.SEGMENTO_POTENCIAL;
+    }
+
+    private static int validarLimite(int limite) {
+        if (limite < 1 || limite > MAX_LIMITE) {
+            throw new IllegalArgumentException("limite debe estar entre 1 y " + MAX_LIMITE);
+        }
+        return limite;
+    }
+
+    private static boolean tieneCliente(Venta venta) {
+        return venta.getCliente() != null && !venta.getCliente().isBlank();
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
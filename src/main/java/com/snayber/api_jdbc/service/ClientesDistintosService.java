@@ -0,0 +1,232 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.HyperLogLog;
+import com.snayber.api_jdbc.model.MetricaDiariaClientes;
+import com.snayber.api_jdbc.model.Venta;
+import com.snayber.api_jdbc.repository.MetricaDiariaClientesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clientes distintos por día y por rango de fechas con sketches HyperLogLog.
+ *
+ * Cada venta con cliente sube, dentro de su transacción, un registro del sketch de su
+ * día en metricas_diarias_clientes (una sentencia, sin leer el sketch). Un rango se
+ * estima combinando los sketches diarios: el costo depende del número de días y no
+ * del número de ventas, y el error estándar es el de {@link HyperLogLog} (~1.6 %).
+ *
+ * Un sketch no admite restas, así que al editar o eliminar una venta su día queda
+ * marcado como pendiente en la misma transacción y una tarea programada lo
+ * reconstruye desde ventas. Mientras tanto el día puede contar de más al cliente que
+ * ya no está. La marca está en la tabla, así que sobrevive a un reinicio.
+ *
+ * En la primera pasada tras cada arranque también se marcan los días con ventas que
+ * no tienen sketch (ventas anteriores a la tabla).
+ */
+@Service
+@Slf4j
+public class ClientesDistintosService {
+
+    private static final long MAX_DIAS = 3660;
+
+    private static final String SQL_CLIENTES_POR_DIA = "SELECT CAST(fecha_venta AS DATE) AS fecha, cliente FROM ventas " +
+            "WHERE fecha_venta >= ? AND fecha_venta < ? AND cliente IS NOT NULL AND TRIM(cliente) <> ''";
+
+    private static final String SQL_GUARDAR = "INSERT INTO metricas_diarias_clientes (fecha, registros, pendiente, fecha_actualizacion) " +
+            "VALUES (?, ?, FALSE, now()) ON CONFLICT (fecha) DO UPDATE SET " +
+            "registros = EXCLUDED.registros, pendiente = FALSE, fecha_actualizacion = now()";
+
+    private final MetricaDiariaClientesRepository metricaDiariaClientesRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BloqueoDiasService bloqueoDiasService;
+    private final VersionDatosService versionDatosService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean completarDiasSinSketch = new AtomicBoolean(true);
+
+    public ClientesDistintosService(MetricaDiariaClientesRepository metricaDiariaClientesRepository,
+                                    JdbcTemplate jdbcTemplate,
+                                    BloqueoDiasService bloqueoDiasService,
+                                    VersionDatosService versionDatosService,
+                                    PlatformTransactionManager transactionManager) {
+        this.metricaDiariaClientesRepository = metricaDiariaClientesRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bloqueoDiasService = bloqueoDiasService;
+        this.versionDatosService = versionDatosService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Listener síncrono: se ejecuta dentro de la transacción que registra la venta, con
+    // los días ya bloqueados por BloqueoDiasService. Las filas se tocan en orden
+    // ascendente de día, como en metricas_diarias
+    @EventListener
+    @Transactional
+    public void onVenta(VentaEvent evento) {
+        Venta anterior = evento.anterior();
+        Venta actual = evento.actual();
+        if (mismoClienteYDia(anterior, actual)) {
+            return;
+        }
+        LocalDate diaAnterior = anterior != null && tieneCliente(anterior) && anterior.getFechaVenta() != null
+                ? anterior.getFechaVenta().toLocalDate() : null;
+        LocalDate diaActual = actual != null && tieneCliente(actual) && actual.getFechaVenta() != null
+                ? actual.getFechaVenta().toLocalDate() : null;
+        if (diaAnterior != null && diaActual != null && diaActual.isBefore(diaAnterior)) {
+            registrar(diaActual, actual.getCliente());
+            metricaDiariaClientesRepository.marcarPendiente(diaAnterior, HyperLogLog.REGISTROS);
+            return;
+        }
+        if (diaAnterior != null) {
+            metricaDiariaClientesRepository.marcarPendiente(diaAnterior, HyperLogLog.REGISTROS);
+        }
+        if (diaActual != null) {
+            registrar(diaActual, actual.getCliente());
+        }
+    }
+
+    /**
+     * Clientes distintos estimados entre dos fechas (incluidas).
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> contar(LocalDate fechaInicio, LocalDate fechaFin) {
+        if (fechaFin.isBefore(fechaInicio)) {
+            throw new IllegalArgumentException("fechaFin debe ser posterior o igual a fechaInicio");
+        }
+        if (ChronoUnit.DAYS.between(fechaInicio, fechaFin) >= MAX_DIAS) {
+            throw new IllegalArgumentException("El rango no puede superar " + MAX_DIAS + " días");
+        }
+
+        List<MetricaDiariaClientes> dias = metricaDiariaClientesRepository.findByFechaBetween(fechaInicio, fechaFin);
+        long estimacion = combinar(dias).estimar();
+        // ±2 errores estándar: intervalo de confianza del 95 %
+        long margen = Math.round(2 * HyperLogLog.ERROR_ESTANDAR * estimacion);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("fechaInicio", fechaInicio);
+        resultado.put("fechaFin", fechaFin);
+        resultado.put("clientesDistintos", estimacion);
+        resultado.put("errorEstandarPorcentaje", Math.round(HyperLogLog.ERROR_ESTANDAR * 10_000) / 100.0);
+        resultado.put("intervalo95", Map.of("minimo", Math.max(0, estimacion - margen), "maximo", estimacion + margen));
+        resultado.put("diasConDatos", dias.size());
+        resultado.put("diasPendientes", dias.stream().filter(MetricaDiariaClientes::getPendiente).count());
+        return resultado;
+    }
+
+    /**
+     * Solo la estimación, para combinarla con otros reportes.
+     */
+    @Transactional(readOnly = true)
+    public long estimar(LocalDate fechaInicio, LocalDate fechaFin) {
+        return combinar(metricaDiariaClientesRepository.findByFechaBetween(fechaInicio, fechaFin)).estimar();
+    }
+
+    /**
+     * Reconstruye los días marcados como pendientes. En la primera ejecución marca
+     * antes los días con ventas que todavía no tienen sketch.
+     */
+    @Scheduled(initialDelayString = "${app.clientes.hll.reconstruir-ms:60000}",
+               fixedDelayString = "${app.clientes.hll.reconstruir-ms:60000}")
+    public void reconstruirPendientes() {
+        try {
+            if (completarDiasSinSketch.get()) {
+                int sinSketch = metricaDiariaClientesRepository.marcarDiasSinSketch(HyperLogLog.REGISTROS);
+                if (sinSketch > 0) {
+                    log.info("Completando sketches de clientes distintos para {} días", sinSketch);
+                }
+                completarDiasSinSketch.set(false);
+            }
+            for (LocalDate dia : metricaDiariaClientesRepository.buscarPendientes()) {
+                reconstruirDia(dia);
+            }
+        } catch (Exception e) {
+            log.error("Error reconstruyendo sketches de clientes distintos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sketches de los días en [desde, hasta), calculados desde ventas. Los días sin
+     * clientes no aparecen. Para reemplazarlos sin perder ventas hay que llamarlo en la
+     * misma transacción que {@link #reemplazar}, con los días ya bloqueados.
+     */
+    @Transactional
+    public Map<LocalDate, HyperLogLog> calcular(LocalDate desde, LocalDate hasta) {
+        Map<LocalDate, HyperLogLog> sketches = new TreeMap<>();
+        jdbcTemplate.query(SQL_CLIENTES_POR_DIA, rs -> {
+            sketches.computeIfAbsent(rs.getObject("fecha", LocalDate.class), fecha -> new HyperLogLog())
+                    .agregar(rs.getString("cliente"));
+        }, Timestamp.valueOf(desde.atStartOfDay()), Timestamp.valueOf(hasta.atStartOfDay()));
+        return sketches;
+    }
+
+    /**
+     * Reemplaza los sketches de los días en [desde, hasta). Debe llamarse dentro de
+     * una transacción.
+     */
+    public void reemplazar(LocalDate desde, LocalDate hasta, Map<LocalDate, HyperLogLog> sketches) {
+        jdbcTemplate.update("DELETE FROM metricas_diarias_clientes WHERE fecha >= ? AND fecha < ?",
+                Date.valueOf(desde), Date.valueOf(hasta));
+        List<Object[]> filas = new ArrayList<>(sketches.size());
+        sketches.forEach((dia, sketch) -> filas.add(new Object[]{Date.valueOf(dia), sketch.registros()}));
+        if (!filas.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_GUARDAR, filas);
+        }
+    }
+
+    private void reconstruirDia(LocalDate dia) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // El bloqueo del día existe aunque el día todavía no tenga sketch: espera a las
+            // ventas en curso de ese día, así la lectura siguiente ya las incluye
+            bloqueoDiasService.bloquearExclusivo(dia, dia.plusDays(1));
+            HyperLogLog sketch = calcular(dia, dia.plusDays(1)).getOrDefault(dia, new HyperLogLog());
+            // Un día sin clientes guarda un sketch vacío, ya no pendiente
+            jdbcTemplate.update(SQL_GUARDAR, Date.valueOf(dia), sketch.registros());
+        });
+        // El comparativo estima clientes distintos con estos sketches
+        versionDatosService.metricasReconstruidas();
+        log.debug("Sketch de clientes distintos del {} reconstruido", dia);
+    }
+
+    private void registrar(LocalDate fecha, String cliente) {
+        HyperLogLog.Posicion posicion = HyperLogLog.posicion(cliente);
+        metricaDiariaClientesRepository.registrar(fecha, posicion.indice(), posicion.rango(), HyperLogLog.REGISTROS);
+    }
+
+    private static HyperLogLog combinar(List<MetricaDiariaClientes> dias) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (MetricaDiariaClientes dia : dias) {
+            sketch.combinar(HyperLogLog.de(dia.getRegistros()));
+        }
+        return sketch;
+    }
+
+    // Una edición que no cambia el cliente ni el día no altera el sketch
+    private static boolean mismoClienteYDia(Venta anterior, Venta actual) {
+        return anterior != null && actual != null
+                && anterior.getFechaVenta() != null && actual.getFechaVenta() != null
+                && Objects.equals(anterior.getCliente(), actual.getCliente())
+                && anterior.getFechaVenta().toLocalDate().equals(actual.getFechaVenta().toLocalDate());
+    }
+
+    private static boolean tieneCliente(Venta venta) {
+        return venta.getCliente() != null && !venta.getCliente().isBlank();
+    }
+}
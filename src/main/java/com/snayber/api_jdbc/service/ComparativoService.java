@@ -0,0 +1,208 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.dto.TotalesMetricasDTO;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.repository.MetricaDiariaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Comparación de un periodo contra el anterior a partir de metricas_diarias.
+ *
+ * El periodo actual va desde su inicio hasta la fecha de referencia (el mes en curso
+ * hasta hoy, por ejemplo) y se compara con el mismo número de días del periodo
+ * anterior, o del mismo periodo un año antes. También se pueden comparar dos rangos
+ * cualesquiera indicados por el cliente. Cada rango se resuelve con una suma
+ * sobre el índice único por fecha, sin leer la tabla de ventas; los clientes
+ * distintos se estiman combinando los sketches diarios.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ComparativoService {
+
+    public enum Periodo {
+        DIA, SEMANA, MES, TRIMESTRE, ANIO;
+
+        public static Periodo desde(String valor) {
+            try {
+                return valueOf(valor.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Periodo no válido: " + valor + " (use dia, semana, mes, trimestre o anio)");
+            }
+        }
+
+        // Las semanas empiezan el lunes (ISO-8601)
+        LocalDate inicioDe(LocalDate fecha) {
+            return switch (this) {
+                case DIA -> fecha;
+                case SEMANA -> fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MES -> fecha.withDayOfMonth(1);
+                case TRIMESTRE -> fecha.withMonth((fecha.getMonthValue() - 1) / 3 * 3 + 1).withDayOfMonth(1);
+                case ANIO -> fecha.withDayOfYear(1);
+            };
+        }
+
+        LocalDate anterior(LocalDate inicio) {
+            return switch (this) {
+                case DIA -> inicio.minusDays(1);
+                case SEMANA -> inicio.minusWeeks(1);
+                case MES -> inicio.minusMonths(1);
+                case TRIMESTRE -> inicio.minusMonths(3);
+                case ANIO -> inicio.minusYears(1);
+            };
+        }
+
+        LocalDate siguiente(LocalDate inicio) {
+            return switch (this) {
+                case DIA -> inicio.plusDays(1);
+                case SEMANA -> inicio.plusWeeks(1);
+                case MES -> inicio.plusMonths(1);
+                case TRIMESTRE -> inicio.plusMonths(3);
+                case ANIO -> inicio.plusYears(1);
+            };
+        }
+
+        // Un año antes; la semana se desplaza 52 semanas para comparar los mismos días de la semana
+        LocalDate anioAnterior(LocalDate inicio) {
+            return this == SEMANA ? inicio.minusWeeks(52) : inicio.minusYears(1);
+        }
+    }
+
+    public enum Comparacion {
+        ANTERIOR, ANIO_ANTERIOR;
+
+        public static Comparacion desde(String valor) {
+            try {
+                return valueOf(valor.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Comparación no válida: " + valor + " (use anterior o anio-anterior)");
+            }
+        }
+    }
+
+    private static final long MAX_DIAS = 3660;
+
+    private final MetricaDiariaRepository metricaDiariaRepository;
+    private final ClientesDistintosService clientesDistintosService;
+
+    public Map<String, Object> comparar(Periodo periodo, Comparacion comparacion, LocalDate referencia) {
+        LocalDate inicioActual = periodo.inicioDe(referencia);
+        long diasTranscurridos = ChronoUnit.DAYS.between(inicioActual, referencia);
+
+        LocalDate inicioAnterior = comparacion == Comparacion.ANTERIOR
+                ? periodo.anterior(inicioActual)
+                : periodo.anioAnterior(inicioActual);
+        // Mismo número de días, sin pasar del final del periodo comparado (meses más cortos)
+        LocalDate finPeriodoAnterior = periodo.siguiente(inicioAnterior).minusDays(1);
+        LocalDate finAnterior = inicioAnterior.plusDays(diasTranscurridos);
+        if (finAnterior.isAfter(finPeriodoAnterior)) {
+            finAnterior = finPeriodoAnterior;
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("periodo", periodo.name().toLowerCase(Locale.ROOT));
+        resultado.put("comparacion", comparacion.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        resultado.putAll(compararRangos(inicioActual, referencia, inicioAnterior, finAnterior));
+        return resultado;
+    }
+
+    /**
+     * Compara dos rangos de fechas (incluidas). Sin rango anterior se usa el mismo
+     * número de días inmediatamente antes del actual.
+     *
+     * @throws IllegalArgumentException si algún rango está invertido, es demasiado largo
+     *                                  o solo se indica uno de los extremos del anterior
+     */
+    public Map<String, Object> comparar(LocalDate fechaInicio, LocalDate fechaFin,
+                                        LocalDate fechaInicioAnterior, LocalDate fechaFinAnterior) {
+        if ((fechaInicioAnterior == null) != (fechaFinAnterior == null)) {
+            throw new IllegalArgumentException("Indique fechaInicioAnterior y fechaFinAnterior juntas");
+        }
+        validarRango(fechaInicio, fechaFin);
+        if (fechaInicioAnterior == null) {
+            long dias = ChronoUnit.DAYS.between(fechaInicio, fechaFin) + 1;
+            fechaFinAnterior = fechaInicio.minusDays(1);
+            fechaInicioAnterior = fechaInicio.minusDays(dias);
+        }
+        validarRango(fechaInicioAnterior, fechaFinAnterior);
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("periodo", "rango");
+        resultado.putAll(compararRangos(fechaInicio, fechaFin, fechaInicioAnterior, fechaFinAnterior));
+        return resultado;
+    }
+
+    private Map<String, Object> compararRangos(LocalDate inicioActual, LocalDate finActual,
+                                               LocalDate inicioAnterior, LocalDate finAnterior) {
+        TotalesMetricasDTO actual = metricaDiariaRepository.totalizarRango(inicioActual, finActual);
+        TotalesMetricasDTO anterior = metricaDiariaRepository.totalizarRango(inicioAnterior, finAnterior);
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("ventas", comparar(valor(actual.getTotalVentas()), valor(anterior.getTotalVentas())));
+        metricas.put("compras", comparar(valor(actual.getTotalCompras()), valor(anterior.getTotalCompras())));
+        metricas.put("ganancia", comparar(valor(actual.getGananciaTotal()), valor(anterior.getGananciaTotal())));
+        metricas.put("tickets", comparar(BigDecimal.valueOf(cantidad(actual.getNumeroVentas())),
+                BigDecimal.valueOf(cantidad(anterior.getNumeroVentas()))));
+        metricas.put("ticketPromedio", comparar(ticketPromedio(actual), ticketPromedio(anterior)));
+        // Estimación HyperLogLog: error estándar de ~1.6 % en cada periodo
+        metricas.put("clientesDistintos", comparar(
+                BigDecimal.valueOf(clientesDistintosService.estimar(inicioActual, finActual)),
+                BigDecimal.valueOf(clientesDistintosService.estimar(inicioAnterior, finAnterior))));
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("actual", Map.of("fechaInicio", inicioActual, "fechaFin", finActual));
+        resultado.put("anterior", Map.of("fechaInicio", inicioAnterior, "fechaFin", finAnterior));
+        resultado.put("metricas", metricas);
+        return resultado;
+    }
+
+    /**
+     * Valor actual, anterior, diferencia y variación porcentual. La variación es null
+     * cuando el periodo anterior vale cero.
+     */
+    private static Map<String, Object> comparar(BigDecimal actual, BigDecimal anterior) {
+        BigDecimal diferencia = actual.subtract(anterior);
+        Map<String, Object> comparacion = new LinkedHashMap<>();
+        comparacion.put("actual", actual);
+        comparacion.put("anterior", anterior);
+        comparacion.put("diferencia", diferencia);
+        comparacion.put("variacionPorcentaje", anterior.signum() != 0
+                ? diferencia.multiply(BigDecimal.valueOf(100)).divide(anterior.abs(), 2, RoundingMode.HALF_UP)
+                : null);
+        return comparacion;
+    }
+
+    private static void validarRango(LocalDate fechaInicio, LocalDate fechaFin) {
+        if (fechaFin.isBefore(fechaInicio)) {
+            throw new IllegalArgumentException("fechaFin debe ser posterior o igual a fechaInicio");
+        }
+        if (ChronoUnit.DAYS.between(fechaInicio, fechaFin) >= MAX_DIAS) {
+            throw new IllegalArgumentException("El rango no puede superar " + MAX_DIAS + " días");
+        }
+    }
+
+    private static BigDecimal ticketPromedio(TotalesMetricasDTO totales) {
+        long tickets = cantidad(totales.getNumeroVentas());
+        return tickets > 0 ? Dinero.de(valor(totales.getTotalVentas())).dividir(tickets).aBigDecimal() : BigDecimal.ZERO;
+    }
+
+    private static long cantidad(Long valor) {
+        return valor != null ? valor : 0;
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
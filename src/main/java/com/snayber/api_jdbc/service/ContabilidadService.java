@@ -1,5 +1,8 @@
 package com.snayber.api_jdbc.service;
 
+import com.snayber.api_jdbc.dto.ReporteVentasDTO;
+import com.snayber.api_jdbc.dto.TotalesComprasDTO;
+import com.snayber.api_jdbc.dto.TotalesVentasDTO;
 import com.snayber.api_jdbc.model.*;
 import com.snayber.api_jdbc.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -10,9 +13,8 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -80,32 +82,23 @@ public class ContabilidadService {
         LocalDateTime inicio = fecha.atStartOfDay();
         LocalDateTime fin = fecha.plusDays(1).atStartOfDay();
         
-        List<Venta> ventasDelDia = ventaRepository.findByFechaVentaBetween(inicio, fin);
-        List<Compra> comprasDelDia = compraRepository.findByFechaCompraBetween(inicio, fin);
+        // Proyecciones: totales y resumen por producto sin cargar las ventas del día
+        TotalesVentasDTO ventasDelDia = ventaRepository.totalizarPeriodo(inicio, fin);
+        TotalesComprasDTO comprasDelDia = compraRepository.totalizarPeriodo(inicio, fin);
 
-        BigDecimal totalVentas = ventasDelDia.stream()
-                .map(Venta::getPrecioTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-        BigDecimal totalCompras = comprasDelDia.stream()
-                .map(Compra::getCostoTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-                
-        BigDecimal gananciaBruta = ventasDelDia.stream()
-                .map(Venta::getGanancia)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalVentas = ventasDelDia.getTotalVentas();
+        BigDecimal totalCompras = comprasDelDia.getTotalCompras();
+        BigDecimal gananciaBruta = ventasDelDia.getTotalGanancias();
+        int cantidadVentas = ventasDelDia.getCantidad().intValue();
                 
         BigDecimal inventarioTotal = productoRepository.calcularValorTotalInventario();
         if (inventarioTotal == null) {
             inventarioTotal = BigDecimal.ZERO;
         }
 
-        String productoMasVendido = ventasDelDia.stream()
-                .collect(Collectors.groupingBy(Venta::getNombreProducto))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue((list1, list2) -> 
-                    Integer.compare(list1.size(), list2.size())))
-                .map(Map.Entry::getKey)
+        String productoMasVendido = ventaRepository.resumirPorProducto(inicio, fin).stream()
+                .max(Comparator.comparing(ReporteVentasDTO::getNumeroTransacciones))
+                .map(ReporteVentasDTO::getNombreProducto)
                 .orElse("Ninguno");
         
         return ResumenFinanciero.builder()
@@ -113,12 +106,12 @@ public class ContabilidadService {
                 .totalVentas(totalVentas)
                 .totalCompras(totalCompras)
                 .gananciaBruta(gananciaBruta)
-                .cantidadVentas(ventasDelDia.size())
-                .cantidadCompras(comprasDelDia.size())
+                .cantidadVentas(cantidadVentas)
+                .cantidadCompras(comprasDelDia.getCantidad().intValue())
                 .inventarioTotal(inventarioTotal)
                 .productoMasVendido(productoMasVendido)
-                .ventaPromedio(ventasDelDia.isEmpty() ? BigDecimal.ZERO : 
-                    totalVentas.divide(new BigDecimal(ventasDelDia.size()), 2, RoundingMode.HALF_UP))
+                .ventaPromedio(cantidadVentas == 0 ? BigDecimal.ZERO : 
+                    totalVentas.divide(new BigDecimal(cantidadVentas), 2, RoundingMode.HALF_UP))
                 .build();
     }
     
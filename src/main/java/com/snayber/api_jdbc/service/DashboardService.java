@@ -0,0 +1,301 @@
+package com.snayber.api_jdbc.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.snayber.api_jdbc.config.CacheConfig;
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.ProductoEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.AlertaInventario;
+import com.snayber.api_jdbc.model.MetricaDiaria;
+import com.snayber.api_jdbc.repository.AlertaInventarioRepository;
+import com.snayber.api_jdbc.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Construye el dashboard completo ejecutando sus secciones en paralelo.
+ *
+ * Cada sección corre en su propio hilo virtual con su propia conexión, así la
+ * latencia total se acerca a la de la sección más lenta y no a la suma de todas.
+ * Una sección que falla o excede el tiempo límite se reemplaza por un valor vacío
+ * y se reporta en "secciones_fallidas" con "parcial" = true.
+ *
+ * Cada sección se cachea por separado y solo se recalculan las que faltan. Los
+ * eventos de venta, compra y producto invalidan, después del commit, únicamente
+ * las secciones a las que afectan.
+ */
+@Service
+@Slf4j
+public class DashboardService {
+
+    public static final String SECCION_STATS = "stats";
+    public static final String SECCION_PRODUCTOS_MAS_VENDIDOS = "productos_mas_vendidos";
+    public static final String SECCION_ALERTAS = "alertas_data";
+    public static final String SECCION_TENDENCIAS = "tendencias";
+    public static final String SECCION_RENTABILIDAD = "rentabilidad";
+
+    private static final Object CLAVE = "dashboard";
+    private static final int DIAS_TENDENCIA = 30;
+
+    private static final Map<String, String> CACHE_POR_SECCION = Map.of(
+            SECCION_STATS, CacheConfig.DASHBOARD_STATS,
+            SECCION_PRODUCTOS_MAS_VENDIDOS, CacheConfig.PRODUCTOS_MAS_VENDIDOS,
+            SECCION_ALERTAS, CacheConfig.ALERTAS_INVENTARIO,
+            SECCION_TENDENCIAS, CacheConfig.TENDENCIAS_VENTAS,
+            SECCION_RENTABILIDAD, CacheConfig.RENTABILIDAD_PRODUCTOS);
+
+    private static final int LIMITE_PRODUCTOS_MAS_VENDIDOS = 10;
+    private static final int LIMITE_RENTABILIDAD = 15;
+
+    private final ProductoRepository productoRepository;
+    private final AlertaInventarioRepository alertaInventarioRepository;
+    private final MetricaDiariaService metricaDiariaService;
+    private final ProductoTotalesService productoTotalesService;
+    private final ProductosMasVendidosService productosMasVendidosService;
+    private final CacheManager cacheManager;
+    private final long timeoutSeccionMs;
+    private final Map<String, AtomicLong> invalidaciones = new ConcurrentHashMap<>();
+    private final ExecutorService ejecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dashboard-seccion-", 0).factory());
+
+    public DashboardService(ProductoRepository productoRepository,
+                            AlertaInventarioRepository alertaInventarioRepository,
+                            MetricaDiariaService metricaDiariaService,
+                            ProductoTotalesService productoTotalesService,
+                            ProductosMasVendidosService productosMasVendidosService,
+                            CacheManager cacheManager,
+                            @Value("${app.dashboard.timeout-seccion-ms:5000}") long timeoutSeccionMs) {
+        this.productoRepository = productoRepository;
+        this.alertaInventarioRepository = alertaInventarioRepository;
+        this.metricaDiariaService = metricaDiariaService;
+        this.productoTotalesService = productoTotalesService;
+        this.productosMasVendidosService = productosMasVendidosService;
+        this.cacheManager = cacheManager;
+        this.timeoutSeccionMs = timeoutSeccionMs;
+    }
+
+    public Map<String, Object> obtenerDashboardCompleto() {
+        Map<String, Callable<Object>> secciones = new LinkedHashMap<>();
+        secciones.put(SECCION_STATS, this::calcularStats);
+        secciones.put(SECCION_PRODUCTOS_MAS_VENDIDOS, this::calcularProductosMasVendidos);
+        secciones.put(SECCION_ALERTAS, this::calcularAlertas);
+        secciones.put(SECCION_TENDENCIAS, this::calcularTendencias);
+        secciones.put(SECCION_RENTABILIDAD, this::calcularRentabilidad);
+
+        long inicio = System.nanoTime();
+        Map<String, Object> dashboardCompleto = new HashMap<>();
+        Map<String, Future<Object>> futuros = new LinkedHashMap<>();
+        Map<String, Long> generaciones = new HashMap<>();
+        secciones.forEach((nombre, seccion) -> {
+            Cache.ValueWrapper enCache = cache(nombre).get(CLAVE);
+            if (enCache != null) {
+                dashboardCompleto.put(nombre, enCache.get());
+            } else {
+                generaciones.put(nombre, contadorInvalidaciones(nombre).get());
+                futuros.put(nombre, ejecutor.submit(seccion));
+            }
+        });
+
+        // Todas las secciones arrancan juntas, así que comparten el mismo plazo
+        long plazo = inicio + TimeUnit.MILLISECONDS.toNanos(timeoutSeccionMs);
+        List<String> seccionesFallidas = new ArrayList<>();
+
+        futuros.forEach((nombre, futuro) -> {
+            try {
+                Object valor = futuro.get(Math.max(0, plazo - System.nanoTime()), TimeUnit.NANOSECONDS);
+                // Solo se cachean las secciones calculadas con éxito y que no fueron
+                // invalidadas mientras se calculaban
+                if (contadorInvalidaciones(nombre).get() == generaciones.get(nombre)) {
+                    cache(nombre).put(CLAVE, valor);
+                }
+                dashboardCompleto.put(nombre, valor);
+            } catch (TimeoutException e) {
+                futuro.cancel(true);
+                log.warn("Sección '{}' del dashboard excedió {} ms", nombre, timeoutSeccionMs);
+                seccionesFallidas.add(nombre);
+                dashboardCompleto.put(nombre, valorVacio(nombre));
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                log.error("Error en sección '{}' del dashboard: {}", nombre, causa.getMessage(), causa);
+                seccionesFallidas.add(nombre);
+                dashboardCompleto.put(nombre, valorVacio(nombre));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futuro.cancel(true);
+                seccionesFallidas.add(nombre);
+                dashboardCompleto.put(nombre, valorVacio(nombre));
+            }
+        });
+
+        dashboardCompleto.put("parcial", !seccionesFallidas.isEmpty());
+        dashboardCompleto.put("secciones_fallidas", seccionesFallidas);
+        log.info("Dashboard completo generado en {} ms ({} secciones recalculadas, {} fallidas)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), futuros.size(), seccionesFallidas.size());
+        return dashboardCompleto;
+    }
+
+    /**
+     * Aciertos, fallos e invalidaciones de la caché de cada sección.
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        CACHE_POR_SECCION.keySet().stream().sorted().forEach(seccion -> {
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("cache", CACHE_POR_SECCION.get(seccion));
+            if (cache(seccion) instanceof CaffeineCache caffeine) {
+                CacheStats stats = caffeine.getNativeCache().stats();
+                datos.put("aciertos", stats.hitCount());
+                datos.put("fallos", stats.missCount());
+                datos.put("tasa_aciertos", stats.hitRate());
+                datos.put("expulsiones", stats.evictionCount());
+                datos.put("entradas", caffeine.getNativeCache().estimatedSize());
+            }
+            datos.put("invalidaciones", contadorInvalidaciones(seccion).get());
+            estadisticas.put(seccion, datos);
+        });
+        return estadisticas;
+    }
+
+    // ========================================
+    // INVALIDACIÓN POR EVENTOS (después del commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVenta(VentaEvent evento) {
+        // Una venta cambia totales, stock (alertas) y el ranking de más vendidos;
+        // la rentabilidad acumulada se deja vencer por TTL
+        invalidar(SECCION_STATS, SECCION_ALERTAS, SECCION_PRODUCTOS_MAS_VENDIDOS);
+        if (afectaTendencia(evento.anterior() != null ? evento.anterior().getFechaVenta() : null)
+                || afectaTendencia(evento.actual() != null ? evento.actual().getFechaVenta() : null)) {
+            invalidar(SECCION_TENDENCIAS);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCompra(CompraEvent evento) {
+        invalidar(SECCION_STATS, SECCION_ALERTAS);
+        if (afectaTendencia(evento.anterior() != null ? evento.anterior().getFechaCompra() : null)
+                || afectaTendencia(evento.actual() != null ? evento.actual().getFechaCompra() : null)) {
+            invalidar(SECCION_TENDENCIAS);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProducto(ProductoEvent evento) {
+        invalidar(SECCION_STATS, SECCION_ALERTAS);
+        if (evento.eliminado()) {
+            invalidar(SECCION_PRODUCTOS_MAS_VENDIDOS, SECCION_RENTABILIDAD);
+        }
+    }
+
+    private void invalidar(String... secciones) {
+        for (String seccion : secciones) {
+            contadorInvalidaciones(seccion).incrementAndGet();
+            cache(seccion).evict(CLAVE);
+        }
+    }
+
+    private AtomicLong contadorInvalidaciones(String seccion) {
+        return invalidaciones.computeIfAbsent(seccion, s -> new AtomicLong());
+    }
+
+    private static boolean afectaTendencia(LocalDateTime fecha) {
+        return fecha != null && !fecha.toLocalDate().isBefore(LocalDate.now().minusDays(DIAS_TENDENCIA));
+    }
+
+    private Cache cache(String seccion) {
+        return cacheManager.getCache(CACHE_POR_SECCION.get(seccion));
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    // ========================================
+    // SECCIONES
+    // ========================================
+
+    private Object calcularStats() {
+        LocalDate hoy = LocalDate.now();
+        MetricaDiaria metricasHoy = metricaDiariaService.obtenerDia(hoy);
+        MetricaDiaria metricasMes = metricaDiariaService.totalizarRango(hoy.withDayOfMonth(1), hoy);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total_productos", productoRepository.count());
+        stats.put("productos_en_stock", productoRepository.countByCantidadGreaterThan(BigDecimal.ZERO));
+        stats.put("productos_stock_bajo", productoRepository.countByCantidadLessThanEqual(BigDecimal.valueOf(10)));
+        stats.put("total_ventas_hoy", metricasHoy.getTotalVentas());
+        stats.put("total_ventas_mes", metricasMes.getTotalVentas());
+        stats.put("total_compras_mes", metricasMes.getTotalCompras());
+        stats.put("ganancias_hoy", metricasHoy.getGananciaTotal());
+        stats.put("ganancias_mes", metricasMes.getGananciaTotal());
+        stats.put("numero_ventas_hoy", metricasHoy.getNumeroVentas());
+        stats.put("numero_ventas_mes", metricasMes.getNumeroVentas());
+        stats.put("alertas_activas", alertaInventarioRepository.countByResueltaFalse());
+        return stats;
+    }
+
+    private Object calcularProductosMasVendidos() {
+        return productosMasVendidosService.obtenerTop(ProductosMasVendidosService.VENTANA_TOTAL, LIMITE_PRODUCTOS_MAS_VENDIDOS);
+    }
+
+    private Object calcularAlertas() {
+        List<AlertaInventario> alertas = alertaInventarioRepository.findAlertasActivasOrdenadas();
+        Long alertasActivas = alertaInventarioRepository.countByResueltaFalse();
+        Long alertasCriticas = alertaInventarioRepository.countByNivelSeveridadAndResuelta("CRITICO", false);
+        Long alertasAltas = alertaInventarioRepository.countByNivelSeveridadAndResuelta("ALTO", false);
+
+        Map<String, Object> alertasData = new HashMap<>();
+        alertasData.put("alertas", alertas != null ? alertas : List.of());
+        alertasData.put("totalAlertas", alertasActivas != null ? alertasActivas : 0L);
+        alertasData.put("alertasCriticas", alertasCriticas != null ? alertasCriticas : 0L);
+        alertasData.put("alertasAltas", alertasAltas != null ? alertasAltas : 0L);
+        return alertasData;
+    }
+
+    private Object calcularTendencias() {
+        LocalDate hoy = LocalDate.now();
+        return metricaDiariaService.obtenerRango(hoy.minusDays(DIAS_TENDENCIA), hoy);
+    }
+
+    private Object calcularRentabilidad() {
+        return productoTotalesService.obtenerRentabilidad(LIMITE_RENTABILIDAD);
+    }
+
+    private static Object valorVacio(String seccion) {
+        return switch (seccion) {
+            case SECCION_STATS -> Map.of();
+            case SECCION_ALERTAS -> Map.of(
+                    "alertas", List.of(),
+                    "totalAlertas", 0L,
+                    "alertasCriticas", 0L,
+                    "alertasAltas", 0L);
+            default -> List.of();
+        };
+    }
+}
@@ -0,0 +1,245 @@
+package com.snayber.api_jdbc.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.ProductoEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.AlertaInventario;
+import com.snayber.api_jdbc.model.MetricaDiaria;
+import com.snayber.api_jdbc.model.Producto;
+import com.snayber.api_jdbc.repository.AlertaInventarioRepository;
+import com.snayber.api_jdbc.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feed en vivo del dashboard por Server-Sent Events.
+ *
+ * Cada suscriptor recibe primero un evento "snapshot" con el dashboard completo y
+ * luego eventos "delta" pequeños: totales de hoy, stock de los productos tocados y
+ * alertas nuevas. Los deltas se calculan una sola vez por lote de escrituras
+ * confirmadas y se reparten a todas las pestañas abiertas, así N pestañas cuestan
+ * unas pocas consultas por escritura en lugar de N reconstrucciones periódicas.
+ *
+ * Los eventos se calculan en un único hilo y se reparten con {@link DifusorSse}, lo
+ * que garantiza que el snapshot llega antes que cualquier delta y que los deltas
+ * llegan en orden. Una pestaña lenta se desconecta y al reconectar recibe un
+ * snapshot nuevo. Las escrituras que llegan mientras se calcula un delta se juntan
+ * en el siguiente.
+ */
+@Service
+@Slf4j
+public class DashboardStreamService {
+
+    private final DashboardService dashboardService;
+    private final MetricaDiariaService metricaDiariaService;
+    private final ProductoRepository productoRepository;
+    private final AlertaInventarioRepository alertaInventarioRepository;
+    private final DifusorSse difusor;
+
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("dashboard-stream").daemon().factory());
+    private final AtomicLong secuencia = new AtomicLong();
+
+    // Cambios pendientes de enviar, acumulados entre un delta y el siguiente
+    private final Set<Long> productosPendientes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> productosEliminados = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean totalesPendientes = new AtomicBoolean();
+    private final AtomicBoolean deltaProgramado = new AtomicBoolean();
+
+    // Solo se usa desde el hilo del stream
+    private long ultimaAlertaId;
+
+    public DashboardStreamService(DashboardService dashboardService,
+                                  MetricaDiariaService metricaDiariaService,
+                                  ProductoRepository productoRepository,
+                                  AlertaInventarioRepository alertaInventarioRepository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.dashboard.stream.timeout-ms:1800000}") long timeoutMs,
+                                  @Value("${app.dashboard.stream.max-suscriptores:200}") int maxSuscriptores,
+                                  @Value("${app.dashboard.stream.cola-maxima:32}") int colaMaxima) {
+        this.dashboardService = dashboardService;
+        this.metricaDiariaService = metricaDiariaService;
+        this.productoRepository = productoRepository;
+        this.alertaInventarioRepository = alertaInventarioRepository;
+        this.difusor = new DifusorSse("dashboard-stream", objectMapper, timeoutMs, maxSuscriptores, colaMaxima);
+    }
+
+    /**
+     * Registra un suscriptor. El snapshot inicial se envía desde el hilo del stream.
+     *
+     * @throws IllegalStateException si se alcanzó el máximo de suscriptores
+     */
+    public SseEmitter suscribir() {
+        DifusorSse.Suscripcion suscripcion = difusor.nuevaSuscripcion();
+
+        ejecutor.execute(() -> {
+            try {
+                if (difusor.sinSuscriptores()) {
+                    // Sin suscriptores no se siguen las alertas: se retoma desde la última existente
+                    ultimaAlertaId = alertaInventarioRepository.obtenerUltimoId();
+                }
+                Map<String, Object> snapshot = new LinkedHashMap<>(dashboardService.obtenerDashboardCompleto());
+                snapshot.put("secuencia", secuencia.get());
+                // En la cola antes del alta: ningún delta puede adelantarse al snapshot
+                difusor.enviar(suscripcion, difusor.evento("snapshot", Long.toString(secuencia.get()), snapshot));
+                difusor.registrar(suscripcion);
+                log.info("Nuevo suscriptor al dashboard en vivo ({} activos)", difusor.suscriptoresActivos());
+            } catch (Exception e) {
+                log.warn("No se pudo enviar el snapshot del dashboard: {}", e.getMessage());
+                suscripcion.emitter().completeWithError(e);
+            }
+        });
+        return suscripcion.emitter();
+    }
+
+    public int suscriptoresActivos() {
+        return difusor.suscriptoresActivos();
+    }
+
+    // ========================================
+    // EVENTOS (después del commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVenta(VentaEvent evento) {
+        if (evento.anterior() != null) {
+            productosPendientes.add(evento.anterior().getProductoId());
+        }
+        if (evento.actual() != null) {
+            productosPendientes.add(evento.actual().getProductoId());
+        }
+        totalesPendientes.set(true);
+        programarDelta();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCompra(CompraEvent evento) {
+        if (evento.anterior() != null) {
+            productosPendientes.add(evento.anterior().getProductoId());
+        }
+        if (evento.actual() != null) {
+            productosPendientes.add(evento.actual().getProductoId());
+        }
+        totalesPendientes.set(true);
+        programarDelta();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProducto(ProductoEvent evento) {
+        if (evento.eliminado()) {
+            productosEliminados.add(evento.productoId());
+        } else {
+            productosPendientes.add(evento.productoId());
+        }
+        programarDelta();
+    }
+
+    @Scheduled(initialDelayString = "${app.dashboard.stream.heartbeat-ms:25000}",
+               fixedDelayString = "${app.dashboard.stream.heartbeat-ms:25000}")
+    public void latido() {
+        difusor.latido();
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+        difusor.detener();
+    }
+
+    private void programarDelta() {
+        if (difusor.sinSuscriptores()) {
+            productosPendientes.clear();
+            productosEliminados.clear();
+            totalesPendientes.set(false);
+            return;
+        }
+        if (deltaProgramado.compareAndSet(false, true)) {
+            ejecutor.execute(this::enviarDelta);
+        }
+    }
+
+    private void enviarDelta() {
+        // Se libera antes de leer los pendientes: una escritura posterior programa otro delta
+        deltaProgramado.set(false);
+        try {
+            Map<String, Object> delta = new LinkedHashMap<>();
+            long numero = secuencia.incrementAndGet();
+            delta.put("secuencia", numero);
+            delta.put("timestamp", LocalDateTime.now());
+
+            if (totalesPendientes.getAndSet(false)) {
+                LocalDate hoy = LocalDate.now();
+                MetricaDiaria metricasHoy = metricaDiariaService.obtenerDia(hoy);
+                Map<String, Object> totales = new LinkedHashMap<>();
+                totales.put("fecha", hoy);
+                totales.put("total_ventas_hoy", metricasHoy.getTotalVentas());
+                totales.put("ganancias_hoy", metricasHoy.getGananciaTotal());
+                totales.put("numero_ventas_hoy", metricasHoy.getNumeroVentas());
+                totales.put("total_compras_hoy", metricasHoy.getTotalCompras());
+                delta.put("hoy", totales);
+            }
+
+            List<Map<String, Object>> stock = new ArrayList<>();
+            for (Long productoId : drenar(productosPendientes)) {
+                Optional<Producto> producto = productoRepository.findById(productoId);
+                Map<String, Object> cambio = new LinkedHashMap<>();
+                cambio.put("productoId", productoId);
+                if (producto.isPresent()) {
+                    cambio.put("cantidad", producto.get().getCantidad());
+                    cambio.put("precio", producto.get().getPrecio());
+                } else {
+                    cambio.put("eliminado", true);
+                }
+                stock.add(cambio);
+            }
+            for (Long productoId : drenar(productosEliminados)) {
+                stock.add(Map.of("productoId", productoId, "eliminado", true));
+            }
+            if (!stock.isEmpty()) {
+                delta.put("stock", stock);
+                // Las alertas las generan los cambios de stock
+                List<AlertaInventario> nuevas = alertaInventarioRepository
+                        .findByIdGreaterThanAndResueltaFalseOrderByIdAsc(ultimaAlertaId);
+                if (!nuevas.isEmpty()) {
+                    ultimaAlertaId = nuevas.get(nuevas.size() - 1).getId();
+                    delta.put("alertas_nuevas", nuevas);
+                }
+                delta.put("alertas_activas", alertaInventarioRepository.countByResueltaFalse());
+            }
+
+            difusor.enviar(difusor.evento("delta", Long.toString(numero), delta));
+        } catch (Exception e) {
+            log.error("Error calculando delta del dashboard: {}", e.getMessage(), e);
+        }
+    }
+
+    private static List<Long> drenar(Set<Long> pendientes) {
+        List<Long> ids = new ArrayList<>();
+        for (Long id : pendientes) {
+            if (pendientes.remove(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,168 @@
+package com.snayber.api_jdbc.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registro de suscriptores Server-Sent Events y reparto de eventos, compartido por
+ * los feeds en vivo (dashboard e inventario).
+ *
+ * Cada evento se serializa a JSON una sola vez y se deja en la cola acotada de cada
+ * suscriptor; cada cola se vacía en su propio hilo virtual, así una conexión lenta
+ * no frena a las demás. Un suscriptor cuya cola se llena se desconecta y debe
+ * reconectarse. Los eventos que se encolan desde un mismo hilo llegan en ese orden.
+ *
+ * Cada feed crea su propia instancia; el feed decide qué se envía y cuándo.
+ */
+@Slf4j
+public final class DifusorSse {
+
+    /**
+     * Conexión todavía no registrada: se le pueden encolar los eventos iniciales
+     * antes de darla de alta con {@link #registrar}.
+     */
+    public static final class Suscripcion {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> cola;
+        private final AtomicBoolean enviando = new AtomicBoolean();
+
+        private Suscripcion(SseEmitter emitter, int capacidad) {
+            this.emitter = emitter;
+            this.cola = new ArrayBlockingQueue<>(capacidad);
+        }
+
+        public SseEmitter emitter() {
+            return emitter;
+        }
+    }
+
+    private final String nombre;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final int maxSuscriptores;
+    private final int colaMaxima;
+
+    private final List<Suscripcion> suscriptores = new CopyOnWriteArrayList<>();
+    private final ExecutorService envios;
+
+    public DifusorSse(String nombre, ObjectMapper objectMapper, long timeoutMs, int maxSuscriptores, int colaMaxima) {
+        this.nombre = nombre;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.maxSuscriptores = maxSuscriptores;
+        this.colaMaxima = Math.max(1, colaMaxima);
+        this.envios = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(nombre + "-envio-", 0).factory());
+    }
+
+    /**
+     * @throws IllegalStateException si se alcanzó el máximo de suscriptores
+     */
+    public Suscripcion nuevaSuscripcion() {
+        if (suscriptores.size() >= maxSuscriptores) {
+            throw new IllegalStateException("Demasiados suscriptores en " + nombre + " (" + maxSuscriptores + ")");
+        }
+        Suscripcion suscripcion = new Suscripcion(new SseEmitter(timeoutMs), colaMaxima);
+        suscripcion.emitter.onCompletion(() -> suscriptores.remove(suscripcion));
+        suscripcion.emitter.onTimeout(suscripcion.emitter::complete);
+        suscripcion.emitter.onError(error -> suscriptores.remove(suscripcion));
+        return suscripcion;
+    }
+
+    /**
+     * Da de alta la suscripción: desde aquí recibe lo que se pase a {@link #enviar}.
+     */
+    public void registrar(Suscripcion suscripcion) {
+        suscriptores.add(suscripcion);
+    }
+
+    public boolean sinSuscriptores() {
+        return suscriptores.isEmpty();
+    }
+
+    public int suscriptoresActivos() {
+        return suscriptores.size();
+    }
+
+    /**
+     * Evento con los datos ya serializados: cada envío solo copia el texto a la respuesta.
+     */
+    public SseEmitter.SseEventBuilder evento(String nombreEvento, String id, Object datos) throws JsonProcessingException {
+        return SseEmitter.event().name(nombreEvento).id(id)
+                .data(objectMapper.writeValueAsString(datos), MediaType.APPLICATION_JSON);
+    }
+
+    public void enviar(SseEmitter.SseEventBuilder evento) {
+        Set<ResponseBodyEmitter.DataWithMediaType> datos = evento.build();
+        for (Suscripcion suscripcion : suscriptores) {
+            encolar(suscripcion, datos);
+        }
+    }
+
+    public void enviar(Suscripcion suscripcion, SseEmitter.SseEventBuilder evento) {
+        encolar(suscripcion, evento.build());
+    }
+
+    /**
+     * Comentario para que proxies y balanceadores no corten la conexión, y para
+     * detectar conexiones cerradas.
+     */
+    public void latido() {
+        if (!suscriptores.isEmpty()) {
+            enviar(SseEmitter.event().comment("ping"));
+        }
+    }
+
+    public void detener() {
+        suscriptores.forEach(suscripcion -> suscripcion.emitter.complete());
+        envios.shutdownNow();
+    }
+
+    private void encolar(Suscripcion suscripcion, Set<ResponseBodyEmitter.DataWithMediaType> datos) {
+        if (!suscripcion.cola.offer(datos)) {
+            // No consume los eventos al ritmo en que se generan
+            suscriptores.remove(suscripcion);
+            suscripcion.cola.clear();
+            log.warn("Suscriptor de {} desconectado: {} eventos sin enviar", nombre, colaMaxima);
+            // complete() espera a que termine el envío en curso; no se bloquea a quien encola
+            envios.execute(suscripcion.emitter::complete);
+            return;
+        }
+        if (suscripcion.enviando.compareAndSet(false, true)) {
+            envios.execute(() -> vaciar(suscripcion));
+        }
+    }
+
+    private void vaciar(Suscripcion suscripcion) {
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> datos;
+            while ((datos = suscripcion.cola.poll()) != null) {
+                suscripcion.emitter.send(datos);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Conexión cerrada o cortada
+            suscriptores.remove(suscripcion);
+            suscripcion.cola.clear();
+            suscripcion.emitter.completeWithError(e);
+        } finally {
+            suscripcion.enviando.set(false);
+        }
+        // Un evento encolado justo después del último poll no programó otro vaciado
+        if (!suscripcion.cola.isEmpty() && suscripcion.enviando.compareAndSet(false, true)) {
+            envios.execute(() -> vaciar(suscripcion));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.snayber.api_jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta ventas, compras e inventario a CSV directamente desde un cursor JDBC.
+ *
+ * Cada fila se escribe en la salida apenas se lee, sin construir entidades ni
+ * listas, así una exportación de millones de filas usa unos pocos MB de memoria.
+ */
+@Service
+@Slf4j
+public class ExportacionCsvService {
+
+    private static final String SQL_VENTAS = "SELECT id, fecha_venta, producto_id, nombre_producto, cantidad, " +
+            "precio_unitario, precio_total, costo_unitario, ganancia, margen_porcentaje, cliente, metodo_pago, " +
+            "numero_factura, estado " +
+            "FROM ventas";
+
+    private static final String SQL_COMPRAS = "SELECT id, fecha_compra, producto_id, nombre_producto, cantidad, " +
+            "costo_unitario, costo_total, proveedor, numero_factura, metodo_pago, fecha_entrega, estado " +
+            "FROM compras";
+
+    private static final String SQL_INVENTARIO = "SELECT id, sku, nombre, tipo, categoria_id, cantidad, precio, " +
+            "costo_promedio, stock_minimo, stock_maximo, activo, fecha_actualizacion " +
+            "FROM productos";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public ExportacionCsvService(JdbcTemplate jdbcTemplate,
+                                 @Value("${app.reportes.stream.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarVentas(LocalDate fechaInicio, LocalDate fechaFin, Long productoId,
+                               boolean gzip, OutputStream salida) throws IOException {
+        Consulta consulta = new Consulta(SQL_VENTAS)
+                .rangoFechas("fecha_venta", fechaInicio, fechaFin)
+                .igual("producto_id", productoId);
+        exportar(consulta.ordenar("fecha_venta, id"), gzip, salida);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarCompras(LocalDate fechaInicio, LocalDate fechaFin, Long productoId,
+                                boolean gzip, OutputStream salida) throws IOException {
+        Consulta consulta = new Consulta(SQL_COMPRAS)
+                .rangoFechas("fecha_compra", fechaInicio, fechaFin)
+                .igual("producto_id", productoId);
+        exportar(consulta.ordenar("fecha_compra, id"), gzip, salida);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarInventario(Long productoId, String tipo, boolean gzip, OutputStream salida) throws IOException {
+        Consulta consulta = new Consulta(SQL_INVENTARIO)
+                .igual("id", productoId)
+                .igual("tipo", tipo);
+        exportar(consulta.ordenar("id"), gzip, salida);
+    }
+
+    /**
+     * Valida un rango de fechas opcional antes de empezar a escribir la respuesta.
+     */
+    public static void validarRango(LocalDate fechaInicio, LocalDate fechaFin) {
+        if (fechaInicio != null && fechaFin != null && fechaInicio.isAfter(fechaFin)) {
+            throw new IllegalArgumentException("fechaInicio no puede ser posterior a fechaFin");
+        }
+    }
+
+    private void exportar(Consulta consulta, boolean gzip, OutputStream salida) throws IOException {
+        OutputStream destino = gzip ? new GZIPOutputStream(salida, 8192) : salida;
+        Writer csv = new BufferedWriter(new OutputStreamWriter(destino, StandardCharsets.UTF_8), 16 * 1024);
+        // BOM para que las hojas de cálculo detecten UTF-8 (tildes, ñ)
+        csv.write('\uFEFF');
+
+        long filas = jdbcTemplate.query(consulta.cursor(fetchSize), (ResultSet rs) -> {
+            long escritas = 0;
+            try {
+                // El encabezado sale de los metadatos, así también se escribe cuando no hay filas
+                ResultSetMetaData meta = rs.getMetaData();
+                escribirEncabezado(csv, meta);
+                int columnas = meta.getColumnCount();
+                while (rs.next()) {
+                    escribirFila(csv, rs, columnas);
+                    escritas++;
+                }
+            } catch (IOException e) {
+                // El cliente cerró la conexión: se corta la lectura del cursor
+                throw new UncheckedIOException(e);
+            }
+            return escritas;
+        });
+        csv.flush();
+        if (destino instanceof GZIPOutputStream gz) {
+            gz.finish();
+        }
+        log.debug("Exportación CSV completada: {} filas", filas);
+    }
+
+    private static void escribirEncabezado(Writer csv, ResultSetMetaData meta) throws SQLException, IOException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (i > 1) {
+                csv.write(',');
+            }
+            csv.write(meta.getColumnLabel(i));
+        }
+        csv.write("\r\n");
+    }
+
+    private static void escribirFila(Writer csv, ResultSet rs, int columnas) throws SQLException, IOException {
+        for (int i = 1; i <= columnas; i++) {
+            if (i > 1) {
+                csv.write(',');
+            }
+            Object valor = rs.getObject(i);
+            if (valor == null) {
+                continue;
+            }
+            if (valor instanceof BigDecimal numero) {
+                csv.write(numero.toPlainString());
+            } else if (valor instanceof Timestamp ts) {
+                csv.write(ts.toLocalDateTime().toString());
+            } else if (valor instanceof Number || valor instanceof Boolean) {
+                csv.write(valor.toString());
+            } else {
+                escribirTexto(csv, valor.toString());
+            }
+        }
+        csv.write("\r\n");
+    }
+
+    // RFC 4180, y se neutralizan fórmulas (=, +, -, @) para que la hoja de cálculo no las ejecute
+    static void escribirTexto(Writer csv, String texto) throws IOException {
+        if (!texto.isEmpty() && "=+-@".indexOf(texto.charAt(0)) >= 0) {
+            texto = "'" + texto;
+        }
+        boolean comillas = texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0
+                || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0;
+        if (!comillas) {
+            csv.write(texto);
+            return;
+        }
+        csv.write('"');
+        csv.write(texto.replace("\"", "\"\""));
+        csv.write('"');
+    }
+
+    /**
+     * SELECT con filtros opcionales; solo se agregan las condiciones con valor.
+     */
+    private static final class Consulta {
+        private final StringBuilder sql;
+        private final List<Object> parametros = new ArrayList<>();
+        private boolean conWhere;
+
+        private Consulta(String select) {
+            this.sql = new StringBuilder(select);
+        }
+
+        private Consulta rangoFechas(String columna, LocalDate fechaInicio, LocalDate fechaFin) {
+            if (fechaInicio != null) {
+                condicion(columna + " >= ?", Timestamp.valueOf(fechaInicio.atStartOfDay()));
+            }
+            if (fechaFin != null) {
+                condicion(columna + " <= ?", Timestamp.valueOf(fechaFin.atTime(LocalTime.MAX)));
+            }
+            return this;
+        }
+
+        private Consulta igual(String columna, Object valor) {
+            if (valor != null) {
+                condicion(columna + " = ?", valor);
+            }
+            return this;
+        }
+
+        private Consulta ordenar(String orden) {
+            sql.append(" ORDER BY ").append(orden);
+            return this;
+        }
+
+        private void condicion(String condicion, Object valor) {
+            sql.append(conWhere ? " AND " : " WHERE ").append(condicion);
+            parametros.add(valor);
+            conWhere = true;
+        }
+
+        private PreparedStatementCreator cursor(int fetchSize) {
+            return con -> {
+                PreparedStatement ps = con.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < parametros.size(); i++) {
+                    ps.setObject(i + 1, parametros.get(i));
+                }
+                return ps;
+            };
+        }
+    }
+}
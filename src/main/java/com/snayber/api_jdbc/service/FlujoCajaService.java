@@ -0,0 +1,272 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.dto.ReporteFlujoCajaDTO;
+import com.snayber.api_jdbc.model.Dinero;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Flujo de caja calculado en Java, sin depender de la función reporte_flujo_caja.
+ *
+ * Abre dos cursores ordenados por fecha sobre la misma conexión (ventas como
+ * ingresos y compras como egresos) y los combina en una sola pasada, al estilo de un
+ * merge join: se avanza siempre el cursor con la fila más antigua y los periodos se
+ * cierran a medida que la fecha los supera. El tiempo es O(filas) y la memoria
+ * O(periodos). Solo se usa SQL estándar, así el resultado es el mismo en PostgreSQL
+ * y en H2.
+ *
+ * Los periodos vacíos también se devuelven, para que el saldo acumulado sea continuo.
+ */
+@Service
+@Slf4j
+public class FlujoCajaService {
+
+    public enum Agrupacion {
+        DIARIO, SEMANAL, MENSUAL;
+
+        public static Agrupacion desde(String valor) {
+            try {
+                return valueOf(valor.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Agrupación no válida: " + valor + " (use diario, semanal o mensual)");
+            }
+        }
+
+        // Las semanas empiezan el lunes (ISO-8601)
+        LocalDate inicioDe(LocalDate fecha) {
+            return switch (this) {
+                case DIARIO -> fecha;
+                case SEMANAL -> fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MENSUAL -> fecha.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate siguiente(LocalDate inicio) {
+            return switch (this) {
+                case DIARIO -> inicio.plusDays(1);
+                case SEMANAL -> inicio.plusWeeks(1);
+                case MENSUAL -> inicio.plusMonths(1);
+            };
+        }
+    }
+
+    public record FlujoCaja(LocalDate fechaInicio, LocalDate fechaFin, Agrupacion agrupacion,
+                            BigDecimal saldoApertura, BigDecimal totalIngresos, BigDecimal totalEgresos,
+                            BigDecimal saldoCierre, List<ReporteFlujoCajaDTO> periodos) {
+    }
+
+    private static final String SQL_VENTAS = "SELECT fecha_venta, precio_total FROM ventas " +
+            "WHERE fecha_venta BETWEEN ? AND ? ORDER BY fecha_venta";
+
+    private static final String SQL_COMPRAS = "SELECT fecha_compra, costo_total FROM compras " +
+            "WHERE fecha_compra BETWEEN ? AND ? ORDER BY fecha_compra";
+
+    private static final String SQL_VENTAS_ANTERIORES = "SELECT COALESCE(SUM(precio_total), 0) FROM ventas WHERE fecha_venta < ?";
+
+    private static final String SQL_COMPRAS_ANTERIORES = "SELECT COALESCE(SUM(costo_total), 0) FROM compras WHERE fecha_compra < ?";
+
+    private static final long MAX_DIAS = 3660;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public FlujoCajaService(JdbcTemplate jdbcTemplate,
+                            @Value("${app.reportes.stream.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * La transacción de solo lectura mantiene ambos cursores en la misma conexión y
+     * hace que PostgreSQL respete el fetch size.
+     */
+    @Transactional(readOnly = true)
+    public FlujoCaja calcular(LocalDate fechaInicio, LocalDate fechaFin, Agrupacion agrupacion) {
+        if (fechaFin.isBefore(fechaInicio)) {
+            throw new IllegalArgumentException("fechaFin debe ser posterior o igual a fechaInicio");
+        }
+        if (ChronoUnit.DAYS.between(fechaInicio, fechaFin) >= MAX_DIAS) {
+            throw new IllegalArgumentException("El rango no puede superar " + MAX_DIAS + " días");
+        }
+
+        long inicio = System.currentTimeMillis();
+        FlujoCaja flujo = jdbcTemplate.execute((ConnectionCallback<FlujoCaja>) con -> {
+            long apertura = Math.subtractExact(
+                    sumaAnterior(con, SQL_VENTAS_ANTERIORES, fechaInicio),
+                    sumaAnterior(con, SQL_COMPRAS_ANTERIORES, fechaInicio));
+            Periodos periodos = new Periodos(fechaInicio, fechaFin, agrupacion, apertura);
+
+            try (PreparedStatement psVentas = cursor(con, SQL_VENTAS, fechaInicio, fechaFin);
+                 PreparedStatement psCompras = cursor(con, SQL_COMPRAS, fechaInicio, fechaFin);
+                 ResultSet rsVentas = psVentas.executeQuery();
+                 ResultSet rsCompras = psCompras.executeQuery()) {
+                Cursor ventas = new Cursor(rsVentas);
+                Cursor compras = new Cursor(rsCompras);
+                // Ante la misma fecha va primero la venta; el orden dentro de un día no cambia los totales
+                while (ventas.fecha != null || compras.fecha != null) {
+                    if (compras.fecha == null || (ventas.fecha != null && !ventas.fecha.isAfter(compras.fecha))) {
+                        periodos.ingreso(ventas.fecha, ventas.centavos);
+                        ventas.avanzar();
+                    } else {
+                        periodos.egreso(compras.fecha, compras.centavos);
+                        compras.avanzar();
+                    }
+                }
+            }
+            return periodos.terminar();
+        });
+        log.debug("Flujo de caja {} - {} ({}) calculado en {} ms",
+                fechaInicio, fechaFin, agrupacion, System.currentTimeMillis() - inicio);
+        return flujo;
+    }
+
+    private PreparedStatement cursor(Connection con, String sql, LocalDate fechaInicio, LocalDate fechaFin) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        ps.setTimestamp(1, Timestamp.valueOf(fechaInicio.atStartOfDay()));
+        ps.setTimestamp(2, Timestamp.valueOf(fechaFin.atTime(LocalTime.MAX)));
+        return ps;
+    }
+
+    private static long sumaAnterior(Connection con, String sql, LocalDate fecha) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(fecha.atStartOfDay()));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? centavos(rs.getBigDecimal(1)) : 0;
+            }
+        }
+    }
+
+    private static long centavos(BigDecimal valor) {
+        return valor != null ? Dinero.centavosDe(valor) : 0;
+    }
+
+    /**
+     * Fila actual de un cursor; {@code fecha} es null cuando se agotó.
+     */
+    private static final class Cursor {
+        private final ResultSet rs;
+        private LocalDate fecha;
+        private long centavos;
+
+        private Cursor(ResultSet rs) throws SQLException {
+            this.rs = rs;
+            avanzar();
+        }
+
+        private void avanzar() throws SQLException {
+            if (rs.next()) {
+                fecha = rs.getTimestamp(1).toLocalDateTime().toLocalDate();
+                centavos = centavos(rs.getBigDecimal(2));
+            } else {
+                fecha = null;
+            }
+        }
+    }
+
+    /**
+     * Periodos en orden, con solo el periodo abierto en curso además de los ya cerrados.
+     */
+    private static final class Periodos {
+        private final LocalDate fechaInicio;
+        private final LocalDate fechaFin;
+        private final Agrupacion agrupacion;
+        private final long apertura;
+        private final List<ReporteFlujoCajaDTO> cerrados = new ArrayList<>();
+
+        private LocalDate actual;
+        private long saldo;
+        private long ingresos;
+        private long egresos;
+        private long numeroVentas;
+        private long numeroCompras;
+        private long totalIngresos;
+        private long totalEgresos;
+
+        private Periodos(LocalDate fechaInicio, LocalDate fechaFin, Agrupacion agrupacion, long apertura) {
+            this.fechaInicio = fechaInicio;
+            this.fechaFin = fechaFin;
+            this.agrupacion = agrupacion;
+            this.apertura = apertura;
+            this.actual = agrupacion.inicioDe(fechaInicio);
+            this.saldo = apertura;
+        }
+
+        private void ingreso(LocalDate fecha, long centavos) {
+            avanzarHasta(fecha);
+            ingresos = Math.addExact(ingresos, centavos);
+            numeroVentas++;
+        }
+
+        private void egreso(LocalDate fecha, long centavos) {
+            avanzarHasta(fecha);
+            egresos = Math.addExact(egresos, centavos);
+            numeroCompras++;
+        }
+
+        private void avanzarHasta(LocalDate fecha) {
+            LocalDate periodo = agrupacion.inicioDe(fecha);
+            while (actual.isBefore(periodo)) {
+                cerrar();
+            }
+        }
+
+        private void cerrar() {
+            LocalDate siguiente = agrupacion.siguiente(actual);
+            LocalDate desde = actual.isBefore(fechaInicio) ? fechaInicio : actual;
+            LocalDate hasta = siguiente.minusDays(1).isAfter(fechaFin) ? fechaFin : siguiente.minusDays(1);
+            long neto = Math.subtractExact(ingresos, egresos);
+            long saldoInicial = saldo;
+            saldo = Math.addExact(saldo, neto);
+            cerrados.add(ReporteFlujoCajaDTO.builder()
+                    .fecha(desde)
+                    .fechaFin(hasta)
+                    .ingresos(Dinero.deCentavos(ingresos).aBigDecimal())
+                    .egresos(Dinero.deCentavos(egresos).aBigDecimal())
+                    .saldoDia(Dinero.deCentavos(neto).aBigDecimal())
+                    .saldoInicial(Dinero.deCentavos(saldoInicial).aBigDecimal())
+                    .saldoAcumulado(Dinero.deCentavos(saldo).aBigDecimal())
+                    .numeroVentas(numeroVentas)
+                    .numeroCompras(numeroCompras)
+                    .build());
+            totalIngresos = Math.addExact(totalIngresos, ingresos);
+            totalEgresos = Math.addExact(totalEgresos, egresos);
+            ingresos = 0;
+            egresos = 0;
+            numeroVentas = 0;
+            numeroCompras = 0;
+            actual = siguiente;
+        }
+
+        private FlujoCaja terminar() {
+            while (!actual.isAfter(fechaFin)) {
+                cerrar();
+            }
+            return new FlujoCaja(fechaInicio, fechaFin, agrupacion,
+                    Dinero.deCentavos(apertura).aBigDecimal(),
+                    Dinero.deCentavos(totalIngresos).aBigDecimal(),
+                    Dinero.deCentavos(totalEgresos).aBigDecimal(),
+                    Dinero.deCentavos(saldo).aBigDecimal(),
+                    cerrados);
+        }
+    }
+}
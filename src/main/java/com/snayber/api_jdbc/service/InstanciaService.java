@@ -0,0 +1,45 @@
+package com.snayber.api_jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Identificador de esta instancia de la aplicación. Se guarda en el trabajo en
+ * segundo plano que la instancia ejecuta para que, al arrancar, solo dé por
+ * interrumpido lo que ella misma dejó a medias y no lo que otra instancia viva
+ * sigue ejecutando (por ejemplo durante un despliegue gradual).
+ *
+ * Se toma de app.instancia.id o, si no está definido, del nombre del host: debe
+ * mantenerse entre reinicios de la misma instancia y ser distinto entre instancias.
+ */
+@Service
+@Slf4j
+public class InstanciaService {
+
+    private static final int LARGO_MAXIMO = 100;
+
+    private final String id;
+
+    public InstanciaService(@Value("${app.instancia.id:}") String id) {
+        String valor = id.isBlank() ? nombreHost() : id.trim();
+        this.id = valor.length() > LARGO_MAXIMO ? valor.substring(0, LARGO_MAXIMO) : valor;
+        log.info("Instancia de la aplicación: {}", this.id);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    private static String nombreHost() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            log.warn("No se pudo obtener el nombre del host; defina app.instancia.id: {}", e.getMessage());
+            return "local";
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.snayber.api_jdbc.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.ProductoEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Producto;
+import com.snayber.api_jdbc.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feed de cambios de inventario para los terminales de venta (Server-Sent Events).
+ *
+ * Cada cambio confirmado de stock o precio (ventas, compras y ediciones de productos)
+ * genera un evento {@code {productoId, cantidad, precio, version}} con valores
+ * absolutos, así aplicar dos veces el mismo evento no cambia el resultado. Las
+ * versiones son consecutivas y los últimos eventos se guardan en un buffer circular:
+ * un terminal que se reconecta indica la última versión que vio y recibe solo lo que
+ * se perdió. Si esa versión ya salió del buffer, o es de otro arranque de la
+ * aplicación, recibe un evento "reset" y debe volver a cargar el catálogo.
+ *
+ * El id de cada evento SSE es {@code <arranque>-<version>}, de modo que el
+ * Last-Event-ID que envía el navegador al reconectar sirve para reanudar. El registro
+ * de terminales, el latido y el reparto son los de {@link DifusorSse}.
+ */
+@Service
+@Slf4j
+public class InventarioFeedService {
+
+    public record Cambio(long version, Long productoId, BigDecimal cantidad, BigDecimal precio, boolean eliminado) {
+    }
+
+    private final ProductoRepository productoRepository;
+    private final DifusorSse difusor;
+
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("inventario-feed").daemon().factory());
+
+    private final Set<Long> productosPendientes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> productosEliminados = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean envioProgramado = new AtomicBoolean();
+
+    // Buffer circular: buffer[(version - 1) % capacidad]. Protegido por this
+    private final Cambio[] buffer;
+    private long version;
+
+    public InventarioFeedService(ProductoRepository productoRepository,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.inventario.feed.buffer:1024}") int capacidad,
+                                 @Value("${app.inventario.feed.timeout-ms:1800000}") long timeoutMs,
+                                 @Value("${app.inventario.feed.max-suscriptores:100}") int maxSuscriptores) {
+        this.productoRepository = productoRepository;
+        this.buffer = new Cambio[Math.max(16, capacidad)];
+        // Un terminal con más cambios sin enviar que el buffer ya no podría reanudar:
+        // se lo desconecta y al reconectar recibe un reset. También cabe la reposición
+        this.difusor = new DifusorSse("inventario-feed", objectMapper, timeoutMs, maxSuscriptores, buffer.length + 1);
+    }
+
+    public String arranque() {
+        return arranque;
+    }
+
+    /**
+     * Última versión publicada. Leerla antes de cargar el catálogo y reanudar desde
+     * ella garantiza no perder cambios (a lo sumo se recibe alguno ya aplicado).
+     */
+    public synchronized long versionActual() {
+        return version;
+    }
+
+    /**
+     * @param desde     última versión que vio el terminal, o null para empezar desde ahora
+     * @param instancia arranque al que pertenece {@code desde}; null si no se conoce
+     * @throws IllegalStateException si se alcanzó el máximo de suscriptores
+     */
+    public SseEmitter suscribir(Long desde, String instancia) {
+        DifusorSse.Suscripcion suscripcion = difusor.nuevaSuscripcion();
+
+        // En el hilo del feed, así ningún cambio se publica entre la reposición y el alta
+        ejecutor.execute(() -> {
+            try {
+                List<Cambio> perdidos = desde != null ? cambiosDesde(desde, instancia) : List.of();
+                Map<String, Object> inicio = Map.of("version", versionActual(), "instancia", arranque);
+                if (perdidos == null) {
+                    difusor.enviar(suscripcion, difusor.evento("reset", id(versionActual()), inicio));
+                } else {
+                    difusor.enviar(suscripcion, difusor.evento("hola", id(desde != null ? desde : versionActual()), inicio));
+                    for (Cambio cambio : perdidos) {
+                        difusor.enviar(suscripcion, evento(cambio));
+                    }
+                }
+                difusor.registrar(suscripcion);
+                log.info("Terminal suscrito al feed de inventario desde {} ({} activos)", desde, difusor.suscriptoresActivos());
+            } catch (Exception e) {
+                log.warn("No se pudo iniciar el feed de inventario: {}", e.getMessage());
+                suscripcion.emitter().completeWithError(e);
+            }
+        });
+        return suscripcion.emitter();
+    }
+
+    /**
+     * Interpreta un Last-Event-ID ({@code <arranque>-<version>}).
+     *
+     * @return la versión, o null si el id no tiene ese formato
+     */
+    public static Long versionDeId(String lastEventId) {
+        if (lastEventId == null) {
+            return null;
+        }
+        int separador = lastEventId.lastIndexOf('-');
+        try {
+            return Long.parseLong(lastEventId.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static String instanciaDeId(String lastEventId) {
+        if (lastEventId == null || lastEventId.indexOf('-') < 0) {
+            return null;
+        }
+        return lastEventId.substring(0, lastEventId.lastIndexOf('-'));
+    }
+
+    public Map<String, Object> obtenerEstado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        synchronized (this) {
+            estado.put("instancia", arranque);
+            estado.put("version", version);
+            estado.put("versionMasAntigua", Math.max(1, version - buffer.length + 1));
+            estado.put("capacidadBuffer", buffer.length);
+        }
+        estado.put("suscriptores", difusor.suscriptoresActivos());
+        return estado;
+    }
+
+    // ========================================
+    // EVENTOS (después del commit)
+    // ========================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVenta(VentaEvent evento) {
+        if (evento.anterior() != null) {
+            productosPendientes.add(evento.anterior().getProductoId());
+        }
+        if (evento.actual() != null) {
+            productosPendientes.add(evento.actual().getProductoId());
+        }
+        programarEnvio();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCompra(CompraEvent evento) {
+        if (evento.anterior() != null) {
+            productosPendientes.add(evento.anterior().getProductoId());
+        }
+        if (evento.actual() != null) {
+            productosPendientes.add(evento.actual().getProductoId());
+        }
+        programarEnvio();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProducto(ProductoEvent evento) {
+        if (evento.eliminado()) {
+            productosEliminados.add(evento.productoId());
+        } else {
+            productosPendientes.add(evento.productoId());
+        }
+        programarEnvio();
+    }
+
+    @Scheduled(initialDelayString = "${app.inventario.feed.heartbeat-ms:25000}",
+               fixedDelayString = "${app.inventario.feed.heartbeat-ms:25000}")
+    public void latido() {
+        difusor.latido();
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+        difusor.detener();
+    }
+
+    // A diferencia del dashboard, los cambios se versionan aunque no haya terminales
+    // conectados: uno que se reconecte más tarde necesita encontrarlos en el buffer
+    private void programarEnvio() {
+        if (envioProgramado.compareAndSet(false, true)) {
+            ejecutor.execute(this::publicarPendientes);
+        }
+    }
+
+    private void publicarPendientes() {
+        envioProgramado.set(false);
+        try {
+            List<Cambio> cambios = new ArrayList<>();
+            for (Long productoId : drenar(productosPendientes)) {
+                Optional<Producto> producto = productoRepository.findById(productoId);
+                cambios.add(producto
+                        .map(p -> registrar(p.getId(), p.getCantidad(), p.getPrecio(), false))
+                        .orElseGet(() -> registrar(productoId, null, null, true)));
+            }
+            for (Long productoId : drenar(productosEliminados)) {
+                cambios.add(registrar(productoId, null, null, true));
+            }
+            for (Cambio cambio : cambios) {
+                difusor.enviar(evento(cambio));
+            }
+        } catch (Exception e) {
+            log.error("Error publicando cambios de inventario: {}", e.getMessage(), e);
+        }
+    }
+
+    private synchronized Cambio registrar(Long productoId, BigDecimal cantidad, BigDecimal precio, boolean eliminado) {
+        Cambio cambio = new Cambio(++version, productoId, cantidad, precio, eliminado);
+        buffer[(int) ((cambio.version() - 1) % buffer.length)] = cambio;
+        return cambio;
+    }
+
+    /**
+     * @return los cambios posteriores a {@code desde}, o null si no se pueden reponer
+     */
+    private synchronized List<Cambio> cambiosDesde(long desde, String instancia) {
+        if ((instancia != null && !instancia.equals(arranque)) || desde > version) {
+            return null;
+        }
+        long masAntigua = Math.max(1, version - buffer.length + 1);
+        if (desde + 1 < masAntigua) {
+            return null;
+        }
+        List<Cambio> cambios = new ArrayList<>();
+        for (long v = desde + 1; v <= version; v++) {
+            cambios.add(buffer[(int) ((v - 1) % buffer.length)]);
+        }
+        return cambios;
+    }
+
+    private SseEmitter.SseEventBuilder evento(Cambio cambio) throws JsonProcessingException {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("productoId", cambio.productoId());
+        datos.put("cantidad", cambio.cantidad());
+        datos.put("precio", cambio.precio());
+        datos.put("version", cambio.version());
+        if (cambio.eliminado()) {
+            datos.put("eliminado", true);
+        }
+        return difusor.evento("cambio", id(cambio.version()), datos);
+    }
+
+    private String id(long version) {
+        return arranque + "-" + version;
+    }
+
+    private static List<Long> drenar(Set<Long> pendientes) {
+        List<Long> ids = new ArrayList<>();
+        for (Long id : pendientes) {
+            if (pendientes.remove(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,194 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.AcumuladorDinero;
+import com.snayber.api_jdbc.model.Compra;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.model.MetricaDiaria;
+import com.snayber.api_jdbc.model.Venta;
+import com.snayber.api_jdbc.repository.MetricaDiariaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Mantiene la tabla metricas_diarias de forma incremental.
+ *
+ * Cada venta o compra suma (o resta, al revertirse) sus importes en la fila
+ * del día correspondiente dentro de la misma transacción que la registra,
+ * de modo que los reportes de tendencias y el dashboard leen una fila por día
+ * en lugar de agrupar la tabla de ventas completa. Antes de sumar, BloqueoDiasService
+ * ya tomó el bloqueo compartido de los días del movimiento para no cruzarse con una
+ * reconstrucción.
+ *
+ * Las ventas y compras anteriores a este mantenimiento las carga schema.sql una
+ * sola vez, mientras la tabla está vacía.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class MetricaDiariaService {
+
+    private final MetricaDiariaRepository metricaDiariaRepository;
+
+    // Listeners síncronos: se ejecutan dentro de la transacción que registra el movimiento
+    @EventListener
+    public void onVenta(VentaEvent evento) {
+        actualizarVenta(evento.anterior(), evento.actual());
+    }
+
+    @EventListener
+    public void onCompra(CompraEvent evento) {
+        actualizarCompra(evento.anterior(), evento.actual());
+    }
+
+    public void registrarVenta(Venta venta) {
+        acumularVenta(venta, 1);
+    }
+
+    public void revertirVenta(Venta venta) {
+        acumularVenta(venta, -1);
+    }
+
+    /**
+     * Revierte la venta anterior y registra la actual. Si la edición cambia la fecha,
+     * los dos días se escriben en orden ascendente: dos ediciones que mueven ventas
+     * entre los mismos días en sentidos opuestos se esperan en la fila del primer día
+     * en lugar de bloquearse mutuamente.
+     */
+    public void actualizarVenta(Venta anterior, Venta actual) {
+        if (anterior != null && actual != null && diaAnterior(actual.getFechaVenta(), anterior.getFechaVenta())) {
+            registrarVenta(actual);
+            revertirVenta(anterior);
+        } else {
+            revertirVenta(anterior);
+            registrarVenta(actual);
+        }
+    }
+
+    public void registrarCompra(Compra compra) {
+        acumularCompra(compra, 1);
+    }
+
+    public void revertirCompra(Compra compra) {
+        acumularCompra(compra, -1);
+    }
+
+    /**
+     * Como {@link #actualizarVenta}, para compras.
+     */
+    public void actualizarCompra(Compra anterior, Compra actual) {
+        if (anterior != null && actual != null && diaAnterior(actual.getFechaCompra(), anterior.getFechaCompra())) {
+            registrarCompra(actual);
+            revertirCompra(anterior);
+        } else {
+            revertirCompra(anterior);
+            registrarCompra(actual);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<MetricaDiaria> obtenerRango(LocalDate fechaInicio, LocalDate fechaFin) {
+        return metricaDiariaRepository.findByFechaBetweenOrderByFechaDesc(fechaInicio, fechaFin);
+    }
+
+    @Transactional(readOnly = true)
+    public MetricaDiaria obtenerDia(LocalDate fecha) {
+        return metricaDiariaRepository.findByFecha(fecha)
+                .orElseGet(() -> MetricaDiaria.builder().fecha(fecha).build());
+    }
+
+    /**
+     * Suma las métricas de un rango de días en una sola métrica agregada.
+     * Ticket promedio y margen se recalculan sobre los totales, no se promedian.
+     */
+    @Transactional(readOnly = true)
+    public MetricaDiaria totalizarRango(LocalDate fechaInicio, LocalDate fechaFin) {
+        return totalizar(obtenerRango(fechaInicio, fechaFin));
+    }
+
+    public static MetricaDiaria totalizar(List<MetricaDiaria> metricas) {
+        AcumuladorDinero totalVentas = new AcumuladorDinero();
+        AcumuladorDinero totalCompras = new AcumuladorDinero();
+        AcumuladorDinero gananciaTotal = new AcumuladorDinero();
+        BigDecimal productosVendidos = BigDecimal.ZERO;
+        BigDecimal productosComprados = BigDecimal.ZERO;
+        int numeroVentas = 0;
+        int numeroCompras = 0;
+
+        for (MetricaDiaria m : metricas) {
+            totalVentas.agregar(m.getTotalVentas());
+            totalCompras.agregar(m.getTotalCompras());
+            gananciaTotal.agregar(m.getGananciaTotal());
+            productosVendidos = productosVendidos.add(valor(m.getProductosVendidos()));
+            productosComprados = productosComprados.add(valor(m.getProductosComprados()));
+            numeroVentas += m.getNumeroVentas() != null ? m.getNumeroVentas() : 0;
+            numeroCompras += m.getNumeroCompras() != null ? m.getNumeroCompras() : 0;
+        }
+
+        Dinero ventas = totalVentas.total();
+        Dinero ganancia = gananciaTotal.total();
+        return MetricaDiaria.builder()
+                .totalVentas(ventas.aBigDecimal())
+                .totalCompras(totalCompras.total().aBigDecimal())
+                .gananciaTotal(ganancia.aBigDecimal())
+                .productosVendidos(productosVendidos)
+                .productosComprados(productosComprados)
+                .numeroVentas(numeroVentas)
+                .numeroCompras(numeroCompras)
+                .ticketPromedio(numeroVentas > 0 ? ventas.dividir(numeroVentas).aBigDecimal() : BigDecimal.ZERO)
+                .margenPromedio(ventas.esPositivo()
+                        ? ganancia.aBigDecimal().multiply(BigDecimal.valueOf(100))
+                                .divide(ventas.aBigDecimal(), 2, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO)
+                .build();
+    }
+
+    private void acumularVenta(Venta venta, int signo) {
+        if (venta == null || venta.getFechaVenta() == null) {
+            return;
+        }
+        BigDecimal factor = BigDecimal.valueOf(signo);
+        LocalDate fecha = venta.getFechaVenta().toLocalDate();
+        metricaDiariaRepository.acumularVentas(
+                fecha,
+                valor(venta.getPrecioTotal()).multiply(factor),
+                valor(venta.getGanancia()).multiply(factor),
+                signo,
+                valor(venta.getCantidad()).multiply(factor));
+        metricaDiariaRepository.recalcularPromedios(fecha);
+        log.debug("Métricas de {} actualizadas por venta id={} (signo {})", fecha, venta.getId(), signo);
+    }
+
+    private void acumularCompra(Compra compra, int signo) {
+        if (compra == null || compra.getFechaCompra() == null) {
+            return;
+        }
+        BigDecimal factor = BigDecimal.valueOf(signo);
+        LocalDate fecha = compra.getFechaCompra().toLocalDate();
+        metricaDiariaRepository.acumularCompras(
+                fecha,
+                valor(compra.getCostoTotal()).multiply(factor),
+                signo,
+                valor(compra.getCantidad()).multiply(factor));
+        log.debug("Métricas de {} actualizadas por compra id={} (signo {})", fecha, compra.getId(), signo);
+    }
+
+    private static boolean diaAnterior(LocalDateTime a, LocalDateTime b) {
+        return a != null && b != null && a.toLocalDate().isBefore(b.toLocalDate());
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,140 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.dto.PaginaDTO;
+import com.snayber.api_jdbc.model.Compra;
+import com.snayber.api_jdbc.model.Producto;
+import com.snayber.api_jdbc.model.Venta;
+import com.snayber.api_jdbc.repository.CompraRepository;
+import com.snayber.api_jdbc.repository.ProductoRepository;
+import com.snayber.api_jdbc.repository.VentaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginación por clave (keyset) para los listados de ventas, compras y productos.
+ *
+ * Cada página se pide como "las N filas siguientes a la última clave vista", así
+ * el costo no crece con el número de página como ocurre con OFFSET. El cursor
+ * codifica esa última clave: (fecha, id) para ventas y compras, id para productos.
+ */
+@Service
+@Transactional(readOnly = true)
+public class PaginacionService {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String SEPARADOR = "|";
+
+    private final VentaRepository ventaRepository;
+    private final CompraRepository compraRepository;
+    private final ProductoRepository productoRepository;
+    private final int limitePorDefecto;
+    private final int limiteMaximo;
+
+    public PaginacionService(VentaRepository ventaRepository,
+                             CompraRepository compraRepository,
+                             ProductoRepository productoRepository,
+                             @Value("${app.paginacion.limite-por-defecto:50}") int limitePorDefecto,
+                             @Value("${app.paginacion.limite-maximo:200}") int limiteMaximo) {
+        this.ventaRepository = ventaRepository;
+        this.compraRepository = compraRepository;
+        this.productoRepository = productoRepository;
+        this.limitePorDefecto = limitePorDefecto;
+        this.limiteMaximo = limiteMaximo;
+    }
+
+    public PaginaDTO<Venta> paginarVentas(String cursor, Integer limite) {
+        int tamano = acotar(limite);
+        // Se pide una fila de más para saber si hay página siguiente sin contar la tabla
+        PageRequest pagina = PageRequest.of(0, tamano + 1);
+        List<Venta> filas;
+        if (cursor == null || cursor.isBlank()) {
+            filas = ventaRepository.findPrimeraPagina(pagina);
+        } else {
+            String[] clave = decodificar(cursor, 2);
+            filas = ventaRepository.findPaginaDespuesDe(fecha(clave[0]), id(clave[1]), pagina);
+        }
+        return construir(filas, tamano, v -> codificar(v.getFechaVenta().toString(), v.getId().toString()));
+    }
+
+    public PaginaDTO<Compra> paginarCompras(String cursor, Integer limite) {
+        int tamano = acotar(limite);
+        PageRequest pagina = PageRequest.of(0, tamano + 1);
+        List<Compra> filas;
+        if (cursor == null || cursor.isBlank()) {
+            filas = compraRepository.findPrimeraPagina(pagina);
+        } else {
+            String[] clave = decodificar(cursor, 2);
+            filas = compraRepository.findPaginaDespuesDe(fecha(clave[0]), id(clave[1]), pagina);
+        }
+        return construir(filas, tamano, c -> codificar(c.getFechaCompra().toString(), c.getId().toString()));
+    }
+
+    public PaginaDTO<Producto> paginarProductos(String cursor, Integer limite) {
+        int tamano = acotar(limite);
+        Long despuesDe = cursor == null || cursor.isBlank() ? 0L : id(decodificar(cursor, 1)[0]);
+        List<Producto> filas = productoRepository.findByIdGreaterThanOrderByIdAsc(despuesDe, PageRequest.of(0, tamano + 1));
+        return construir(filas, tamano, p -> codificar(p.getId().toString()));
+    }
+
+    private int acotar(Integer limite) {
+        if (limite == null) {
+            return limitePorDefecto;
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor a 0");
+        }
+        return Math.min(limite, limiteMaximo);
+    }
+
+    private static <T> PaginaDTO<T> construir(List<T> filas, int tamano, Function<T, String> cursorDe) {
+        boolean hayMas = filas.size() > tamano;
+        List<T> items = hayMas ? filas.subList(0, tamano) : filas;
+        return PaginaDTO.<T>builder()
+                .items(items)
+                .hayMas(hayMas)
+                .siguienteCursor(hayMas ? cursorDe.apply(items.get(items.size() - 1)) : null)
+                .limite(tamano)
+                .build();
+    }
+
+    static String codificar(String... partes) {
+        return ENCODER.encodeToString(String.join(SEPARADOR, partes).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodificar(String cursor, int partes) {
+        try {
+            String[] clave = new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split("\\" + SEPARADOR, -1);
+            if (clave.length != partes) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return clave;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    static LocalDateTime fecha(String valor) {
+        try {
+            return LocalDateTime.parse(valor);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    static Long id(String valor) {
+        try {
+            return Long.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
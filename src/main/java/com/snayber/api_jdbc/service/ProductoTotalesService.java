@@ -0,0 +1,98 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.dto.ReporteRentabilidadDTO;
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Compra;
+import com.snayber.api_jdbc.model.Venta;
+import com.snayber.api_jdbc.repository.ProductoTotalesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Mantiene la tabla producto_totales de forma incremental.
+ *
+ * Ventas y compras se acumulan por separado en la fila del producto, así el
+ * reporte de rentabilidad lee una fila por producto en lugar de cruzar
+ * ventas con compras (N×M filas por producto).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class ProductoTotalesService {
+
+    private final ProductoTotalesRepository productoTotalesRepository;
+
+    // Listeners síncronos: se ejecutan dentro de la transacción que registra el movimiento
+    @EventListener
+    public void onVenta(VentaEvent evento) {
+        acumularVenta(evento.anterior(), -1);
+        acumularVenta(evento.actual(), 1);
+    }
+
+    @EventListener
+    public void onCompra(CompraEvent evento) {
+        acumularCompra(evento.anterior(), -1);
+        acumularCompra(evento.actual(), 1);
+    }
+
+    /**
+     * Rentabilidad por producto ordenada por ganancia neta.
+     *
+     * @param limite máximo de filas, o null para todas
+     */
+    @Transactional(readOnly = true)
+    public List<ReporteRentabilidadDTO> obtenerRentabilidad(Integer limite) {
+        return productoTotalesRepository.obtenerRentabilidad(
+                limite != null ? PageRequest.of(0, limite) : Pageable.unpaged());
+    }
+
+    private void acumularVenta(Venta venta, int signo) {
+        if (venta == null || venta.getProductoId() == null) {
+            return;
+        }
+        BigDecimal factor = BigDecimal.valueOf(signo);
+        productoTotalesRepository.acumularVentas(
+                venta.getProductoId(),
+                valor(venta.getCantidad()).multiply(factor),
+                valor(venta.getPrecioTotal()).multiply(factor),
+                costoVenta(venta).multiply(factor),
+                signo);
+        log.debug("Totales del producto {} actualizados por venta id={} (signo {})",
+                venta.getProductoId(), venta.getId(), signo);
+    }
+
+    private void acumularCompra(Compra compra, int signo) {
+        if (compra == null || compra.getProductoId() == null) {
+            return;
+        }
+        BigDecimal factor = BigDecimal.valueOf(signo);
+        productoTotalesRepository.acumularCompras(
+                compra.getProductoId(),
+                valor(compra.getCantidad()).multiply(factor),
+                valor(compra.getCostoTotal()).multiply(factor),
+                signo);
+        log.debug("Totales del producto {} actualizados por compra id={} (signo {})",
+                compra.getProductoId(), compra.getId(), signo);
+    }
+
+    private static BigDecimal costoVenta(Venta venta) {
+        if (venta.getCostoUnitario() == null || venta.getCantidad() == null) {
+            return BigDecimal.ZERO;
+        }
+        return venta.getCostoUnitario().multiply(venta.getCantidad());
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,339 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.model.Venta;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ranking de productos más vendidos en memoria.
+ *
+ * Guarda los acumulados por producto (histórico) y por día para los últimos
+ * {@value #DIAS_RETENIDOS} días. Se carga al arrancar con dos consultas agregadas
+ * y después se actualiza con cada venta confirmada, así que las consultas con
+ * {@code limite <= K} se responden sin ir a la base de datos.
+ *
+ * Cada ventana guarda un top-K ya ordenado que se descarta cuando cambia una
+ * venta que le afecta y se recalcula en la siguiente lectura.
+ */
+@Service
+@Slf4j
+public class ProductosMasVendidosService {
+
+    public static final String VENTANA_TOTAL = "total";
+    public static final String VENTANA_HOY = "hoy";
+    public static final String VENTANA_7D = "7d";
+    public static final String VENTANA_30D = "30d";
+
+    private static final int DIAS_RETENIDOS = 30;
+    private static final int MAX_RECARGAS = 3;
+
+    private static final Map<String, Integer> DIAS_POR_VENTANA = Map.of(
+            VENTANA_HOY, 1,
+            VENTANA_7D, 7,
+            VENTANA_30D, DIAS_RETENIDOS);
+
+    private static final String SQL_TOTALES = "SELECT " +
+            "v.producto_id, " +
+            "MAX(v.nombre_producto) as nombre_producto, " +
+            "SUM(v.cantidad) as cantidad_total, " +
+            "COUNT(*) as veces_vendido, " +
+            "SUM(v.precio_total) as ingresos_totales " +
+            "FROM ventas v " +
+            "GROUP BY v.producto_id";
+
+    private static final String SQL_POR_DIA = "SELECT " +
+            "CAST(v.fecha_venta AS DATE) as fecha, " +
+            "v.producto_id, " +
+            "MAX(v.nombre_producto) as nombre_producto, " +
+            "SUM(v.cantidad) as cantidad_total, " +
+            "COUNT(*) as veces_vendido, " +
+            "SUM(v.precio_total) as ingresos_totales " +
+            "FROM ventas v " +
+            "WHERE v.fecha_venta >= ? " +
+            "GROUP BY CAST(v.fecha_venta AS DATE), v.producto_id";
+
+    private static final String SQL_TOP = "SELECT " +
+            "v.producto_id, " +
+            "MAX(v.nombre_producto) as nombre_producto, " +
+            "SUM(v.cantidad) as cantidad_total, " +
+            "COUNT(*) as veces_vendido, " +
+            "SUM(v.precio_total) as ingresos_totales " +
+            "FROM ventas v " +
+            "GROUP BY v.producto_id " +
+            "ORDER BY cantidad_total DESC, v.producto_id " +
+            "LIMIT ?";
+
+    private static final String SQL_TOP_DESDE = "SELECT " +
+            "v.producto_id, " +
+            "MAX(v.nombre_producto) as nombre_producto, " +
+            "SUM(v.cantidad) as cantidad_total, " +
+            "COUNT(*) as veces_vendido, " +
+            "SUM(v.precio_total) as ingresos_totales " +
+            "FROM ventas v " +
+            "WHERE v.fecha_venta >= ? " +
+            "GROUP BY v.producto_id " +
+            "ORDER BY cantidad_total DESC, v.producto_id " +
+            "LIMIT ?";
+
+    // A igual cantidad gana el id menor, como en el ORDER BY de las consultas
+    private static final Comparator<Acumulado> POR_CANTIDAD =
+            Comparator.comparing((Acumulado a) -> a.cantidad).thenComparing(a -> -a.productoId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int k;
+
+    // Protegidos por el monitor de la instancia
+    private final Map<Long, Acumulado> totales = new HashMap<>();
+    private final TreeMap<LocalDate, Map<Long, Acumulado>> porDia = new TreeMap<>();
+    private volatile boolean cargado;
+    private boolean cargando;
+    private boolean cambiosDuranteCarga;
+
+    private final Map<String, List<Map<String, Object>>> rankings = new ConcurrentHashMap<>();
+
+    public ProductosMasVendidosService(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.ventas.top-k:50}") int k) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.k = k;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        try {
+            cargar();
+        } catch (Exception e) {
+            log.warn("No se pudo cargar el ranking de más vendidos, se consultará la base de datos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recarga el ranking desde la base de datos. Si entran ventas mientras se
+     * consulta, la carga se repite para no perder ni duplicar esos cambios.
+     */
+    public void cargar() {
+        try {
+            for (int intento = 1; intento <= MAX_RECARGAS; intento++) {
+                if (cargarIntento()) {
+                    return;
+                }
+                log.debug("Ventas registradas durante la carga del ranking, reintentando ({}/{})", intento, MAX_RECARGAS);
+            }
+            log.warn("El ranking de más vendidos no se pudo cargar sin interferencias de escritura");
+        } finally {
+            synchronized (this) {
+                cargando = false;
+            }
+        }
+    }
+
+    private boolean cargarIntento() {
+        synchronized (this) {
+            cargando = true;
+            cambiosDuranteCarga = false;
+        }
+        LocalDate desde = LocalDate.now().minusDays(DIAS_RETENIDOS - 1);
+        Map<Long, Acumulado> nuevosTotales = new HashMap<>();
+        TreeMap<LocalDate, Map<Long, Acumulado>> nuevoPorDia = new TreeMap<>();
+
+        jdbcTemplate.query(SQL_TOTALES, rs -> {
+            Acumulado a = new Acumulado(rs.getLong("producto_id"));
+            a.sumar(rs.getString("nombre_producto"), rs.getBigDecimal("cantidad_total"),
+                    rs.getLong("veces_vendido"), Dinero.centavosDe(rs.getBigDecimal("ingresos_totales")));
+            nuevosTotales.put(a.productoId, a);
+        });
+        jdbcTemplate.query(SQL_POR_DIA, rs -> {
+            Acumulado a = new Acumulado(rs.getLong("producto_id"));
+            a.sumar(rs.getString("nombre_producto"), rs.getBigDecimal("cantidad_total"),
+                    rs.getLong("veces_vendido"), Dinero.centavosDe(rs.getBigDecimal("ingresos_totales")));
+            nuevoPorDia.computeIfAbsent(rs.getDate("fecha").toLocalDate(), d -> new HashMap<>())
+                    .put(a.productoId, a);
+        }, Date.valueOf(desde));
+
+        synchronized (this) {
+            if (!cambiosDuranteCarga) {
+                totales.clear();
+                totales.putAll(nuevosTotales);
+                porDia.clear();
+                porDia.putAll(nuevoPorDia);
+                cargado = true;
+                rankings.clear();
+                log.info("Ranking de más vendidos cargado: {} productos, {} días", totales.size(), porDia.size());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onVenta(VentaEvent evento) {
+        if (cargando) {
+            cambiosDuranteCarga = true;
+        }
+        if (!cargado) {
+            return;
+        }
+        aplicar(evento.anterior(), -1);
+        aplicar(evento.actual(), 1);
+    }
+
+    /**
+     * Top de productos por unidades vendidas en la ventana indicada.
+     *
+     * @param ventana total, hoy, 7d o 30d
+     */
+    public List<Map<String, Object>> obtenerTop(String ventana, int limite) {
+        if (!DIAS_POR_VENTANA.containsKey(ventana) && !VENTANA_TOTAL.equals(ventana)) {
+            throw new IllegalArgumentException("Ventana no válida: " + ventana + " (use total, hoy, 7d o 30d)");
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor a 0");
+        }
+        if (!cargado || limite > k) {
+            return consultarTop(ventana, limite);
+        }
+        List<Map<String, Object>> ranking = rankings.get(clave(ventana));
+        if (ranking == null) {
+            ranking = calcularRanking(ventana);
+        }
+        return ranking.subList(0, Math.min(limite, ranking.size()));
+    }
+
+    private synchronized List<Map<String, Object>> calcularRanking(String ventana) {
+        String clave = clave(ventana);
+        List<Map<String, Object>> ranking = rankings.get(clave);
+        if (ranking != null) {
+            return ranking;
+        }
+        Iterable<Acumulado> candidatos;
+        if (VENTANA_TOTAL.equals(ventana)) {
+            candidatos = totales.values();
+        } else {
+            LocalDate hoy = LocalDate.now();
+            LocalDate desde = hoy.minusDays(DIAS_POR_VENTANA.get(ventana) - 1);
+            porDia.headMap(hoy.minusDays(DIAS_RETENIDOS - 1)).clear();
+            Map<Long, Acumulado> combinados = new HashMap<>();
+            for (Map<Long, Acumulado> dia : porDia.subMap(desde, true, hoy, true).values()) {
+                for (Acumulado a : dia.values()) {
+                    combinados.computeIfAbsent(a.productoId, Acumulado::new)
+                            .sumar(a.nombre, a.cantidad, a.veces, a.ingresos);
+                }
+            }
+            candidatos = combinados.values();
+        }
+
+        // Min-heap de tamaño K: O(P log K) sobre los productos con ventas
+        PriorityQueue<Acumulado> heap = new PriorityQueue<>(k + 1, POR_CANTIDAD);
+        for (Acumulado a : candidatos) {
+            if (a.veces <= 0) {
+                continue;
+            }
+            heap.offer(a);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<Acumulado> ordenados = new ArrayList<>(heap);
+        ordenados.sort(POR_CANTIDAD.reversed());
+
+        List<Map<String, Object>> resultado = new ArrayList<>(ordenados.size());
+        for (Acumulado a : ordenados) {
+            resultado.add(a.aMapa());
+        }
+        ranking = List.copyOf(resultado);
+        rankings.put(clave, ranking);
+        return ranking;
+    }
+
+    private void aplicar(Venta venta, int signo) {
+        if (venta == null || venta.getProductoId() == null) {
+            return;
+        }
+        BigDecimal factor = BigDecimal.valueOf(signo);
+        BigDecimal cantidad = valor(venta.getCantidad()).multiply(factor);
+        long ingresos = Math.multiplyExact(Dinero.centavosDe(venta.getPrecioTotal()), (long) signo);
+
+        totales.computeIfAbsent(venta.getProductoId(), Acumulado::new)
+                .sumar(venta.getNombreProducto(), cantidad, signo, ingresos);
+        rankings.remove(VENTANA_TOTAL);
+
+        if (venta.getFechaVenta() != null) {
+            LocalDate fecha = venta.getFechaVenta().toLocalDate();
+            if (!fecha.isBefore(LocalDate.now().minusDays(DIAS_RETENIDOS - 1))) {
+                porDia.computeIfAbsent(fecha, d -> new HashMap<>())
+                        .computeIfAbsent(venta.getProductoId(), Acumulado::new)
+                        .sumar(venta.getNombreProducto(), cantidad, signo, ingresos);
+                rankings.keySet().removeIf(c -> !VENTANA_TOTAL.equals(c));
+            }
+        }
+    }
+
+    private List<Map<String, Object>> consultarTop(String ventana, int limite) {
+        if (VENTANA_TOTAL.equals(ventana)) {
+            return jdbcTemplate.queryForList(SQL_TOP, limite);
+        }
+        LocalDate desde = LocalDate.now().minusDays(DIAS_POR_VENTANA.get(ventana) - 1);
+        return jdbcTemplate.queryForList(SQL_TOP_DESDE, Date.valueOf(desde), limite);
+    }
+
+    // Las ventanas por días dependen de la fecha actual
+    private static String clave(String ventana) {
+        return VENTANA_TOTAL.equals(ventana) ? ventana : ventana + "@" + LocalDate.now();
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+
+    private static final class Acumulado {
+        private final long productoId;
+        private String nombre;
+        private BigDecimal cantidad = BigDecimal.ZERO;
+        private long veces;
+        // Centavos: se suman sin crear un BigDecimal por venta
+        private long ingresos;
+
+        private Acumulado(long productoId) {
+            this.productoId = productoId;
+        }
+
+        private void sumar(String nombre, BigDecimal cantidad, long veces, long ingresos) {
+            // El mayor de los nombres vistos, como MAX(nombre_producto) en las consultas
+            if (nombre != null && (this.nombre == null || nombre.compareTo(this.nombre) > 0)) {
+                this.nombre = nombre;
+            }
+            this.cantidad = this.cantidad.add(valor(cantidad));
+            this.veces += veces;
+            this.ingresos = Math.addExact(this.ingresos, ingresos);
+        }
+
+        private Map<String, Object> aMapa() {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("producto_id", productoId);
+            fila.put("nombre_producto", nombre);
+            fila.put("cantidad_total", cantidad);
+            fila.put("veces_vendido", veces);
+            fila.put("ingresos_totales", Dinero.deCentavos(ingresos).aBigDecimal());
+            return fila;
+        }
+    }
+}
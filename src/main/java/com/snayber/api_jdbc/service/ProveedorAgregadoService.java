@@ -0,0 +1,105 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.model.Compra;
+import com.snayber.api_jdbc.model.ProveedorAgregado;
+import com.snayber.api_jdbc.model.ProveedorProducto;
+import com.snayber.api_jdbc.repository.ProveedorAgregadoRepository;
+import com.snayber.api_jdbc.repository.ProveedorProductoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Mantiene de forma incremental los acumulados por proveedor (proveedor_agregados)
+ * y por proveedor y producto (proveedor_productos).
+ *
+ * Cada compra registrada, editada o eliminada suma o resta en las filas de su
+ * proveedor dentro de la misma transacción, así el reporte de proveedores y la
+ * búsqueda del proveedor más barato son lecturas por índice en lugar de agrupar
+ * toda la tabla de compras.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class ProveedorAgregadoService {
+
+    private static final int MAX_DIAS = 3660;
+    private static final int MAX_PROVEEDORES = 50;
+
+    private final ProveedorAgregadoRepository proveedorAgregadoRepository;
+    private final ProveedorProductoRepository proveedorProductoRepository;
+
+    // Listener síncrono: se ejecuta dentro de la transacción que registra la compra
+    @EventListener
+    public void onCompra(CompraEvent evento) {
+        Compra anterior = evento.anterior();
+        if (anterior != null && tieneProveedor(anterior)) {
+            String proveedor = anterior.getProveedor();
+            proveedorProductoRepository.descontar(proveedor, anterior.getProductoId(),
+                    valor(anterior.getCantidad()), valor(anterior.getCostoTotal()));
+            proveedorProductoRepository.eliminarSinCompras(proveedor, anterior.getProductoId());
+            proveedorAgregadoRepository.descontar(proveedor, valor(anterior.getCantidad()), valor(anterior.getCostoTotal()));
+            proveedorAgregadoRepository.eliminarSinCompras(proveedor);
+        }
+        Compra actual = evento.actual();
+        if (actual != null && tieneProveedor(actual)) {
+            String proveedor = actual.getProveedor();
+            proveedorProductoRepository.acumular(proveedor, actual.getProductoId(), actual.getFechaCompra(),
+                    actual.getCostoUnitario(), valor(actual.getCantidad()), valor(actual.getCostoTotal()));
+            proveedorAgregadoRepository.acumular(proveedor, actual.getFechaCompra(),
+                    valor(actual.getCantidad()), valor(actual.getCostoTotal()));
+        }
+    }
+
+    /**
+     * Proveedores ordenados por gasto total.
+     */
+    @Transactional(readOnly = true)
+    public List<ProveedorAgregado> listar() {
+        return proveedorAgregadoRepository.findAllByOrderByGastoTotalDesc();
+    }
+
+    /**
+     * Proveedores de un producto con compras en los últimos {@code dias} días,
+     * ordenados por su último costo unitario (el primero es el más barato).
+     */
+    @Transactional(readOnly = true)
+    public List<ProveedorProducto> obtenerMejorPrecio(Long productoId, int dias, int limite) {
+        if (limite < 1 || limite > MAX_PROVEEDORES) {
+            throw new IllegalArgumentException("limite debe estar entre 1 y " + MAX_PROVEEDORES);
+        }
+        return proveedorProductoRepository.buscarMasBaratos(productoId, desde(dias), PageRequest.of(0, limite));
+    }
+
+    /**
+     * El proveedor más barato de cada producto comprado en los últimos {@code dias} días.
+     */
+    @Transactional(readOnly = true)
+    public List<ProveedorProducto> obtenerMejorPrecioPorProducto(int dias) {
+        return proveedorProductoRepository.buscarMasBaratoPorProducto(desde(dias));
+    }
+
+    private static LocalDateTime desde(int dias) {
+        if (dias < 1 || dias > MAX_DIAS) {
+            throw new IllegalArgumentException("dias debe estar entre 1 y " + MAX_DIAS);
+        }
+        return LocalDateTime.now().minusDays(dias);
+    }
+
+    private static boolean tieneProveedor(Compra compra) {
+        return compra.getProveedor() != null && !compra.getProveedor().isBlank() && compra.getProductoId() != null;
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
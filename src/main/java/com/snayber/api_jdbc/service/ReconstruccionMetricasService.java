@@ -0,0 +1,352 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.model.HyperLogLog;
+import com.snayber.api_jdbc.model.MetricaDiaria;
+import com.snayber.api_jdbc.model.ReconstruccionMetricas;
+import com.snayber.api_jdbc.repository.ReconstruccionMetricasRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reconstruye metricas_diarias (y los sketches de clientes distintos de
+ * metricas_diarias_clientes) a partir de ventas y compras.
+ *
+ * El rango se divide en bloques de días que se agregan en la base de datos y se
+ * escriben con upserts por lotes en un pool acotado de hilos virtuales. Cada bloque
+ * se confirma junto con su checkpoint, por lo que una reconstrucción interrumpida
+ * se reanuda desde los bloques que faltan sin repetir los ya escritos.
+ */
+@Service
+@Slf4j
+public class ReconstruccionMetricasService {
+
+    private static final String SQL_VENTAS_POR_DIA =
+            "SELECT CAST(v.fecha_venta AS DATE) AS fecha, " +
+            "COALESCE(SUM(v.precio_total), 0) AS total, " +
+            "COALESCE(SUM(v.ganancia), 0) AS ganancia, " +
+            "COUNT(*) AS numero, " +
+            "COALESCE(SUM(v.cantidad), 0) AS unidades " +
+            "FROM ventas v WHERE v.fecha_venta >= ? AND v.fecha_venta < ? " +
+            "GROUP BY CAST(v.fecha_venta AS DATE)";
+
+    private static final String SQL_COMPRAS_POR_DIA =
+            "SELECT CAST(c.fecha_compra AS DATE) AS fecha, " +
+            "COALESCE(SUM(c.costo_total), 0) AS total, " +
+            "COUNT(*) AS numero, " +
+            "COALESCE(SUM(c.cantidad), 0) AS unidades " +
+            "FROM compras c WHERE c.fecha_compra >= ? AND c.fecha_compra < ? " +
+            "GROUP BY CAST(c.fecha_compra AS DATE)";
+
+    private static final String SQL_UPSERT_METRICA =
+            "INSERT INTO metricas_diarias " +
+            "(fecha, total_ventas, ganancia_total, numero_ventas, productos_vendidos, " +
+            " total_compras, numero_compras, productos_comprados, ticket_promedio, margen_promedio, " +
+            " fecha_creacion, fecha_actualizacion) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now(), now()) " +
+            "ON CONFLICT (fecha) DO UPDATE SET " +
+            "total_ventas = EXCLUDED.total_ventas, " +
+            "ganancia_total = EXCLUDED.ganancia_total, " +
+            "numero_ventas = EXCLUDED.numero_ventas, " +
+            "productos_vendidos = EXCLUDED.productos_vendidos, " +
+            "total_compras = EXCLUDED.total_compras, " +
+            "numero_compras = EXCLUDED.numero_compras, " +
+            "productos_comprados = EXCLUDED.productos_comprados, " +
+            "ticket_promedio = EXCLUDED.ticket_promedio, " +
+            "margen_promedio = EXCLUDED.margen_promedio, " +
+            "fecha_actualizacion = now()";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReconstruccionMetricasRepository reconstruccionRepository;
+    private final ClientesDistintosService clientesDistintosService;
+    private final BloqueoDiasService bloqueoDiasService;
+    private final VersionDatosService versionDatosService;
+    private final InstanciaService instanciaService;
+    private final ExecutorService ejecutorBloques;
+    private final int diasPorBloqueDefecto;
+    private final Set<Long> enEjecucion = ConcurrentHashMap.newKeySet();
+
+    public ReconstruccionMetricasService(JdbcTemplate jdbcTemplate,
+                                         PlatformTransactionManager transactionManager,
+                                         ReconstruccionMetricasRepository reconstruccionRepository,
+                                         ClientesDistintosService clientesDistintosService,
+                                         BloqueoDiasService bloqueoDiasService,
+                                         VersionDatosService versionDatosService,
+                                         InstanciaService instanciaService,
+                                         @Value("${app.metricas.reconstruccion.paralelismo:4}") int paralelismo,
+                                         @Value("${app.metricas.reconstruccion.dias-por-bloque:31}") int diasPorBloque) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconstruccionRepository = reconstruccionRepository;
+        this.clientesDistintosService = clientesDistintosService;
+        this.bloqueoDiasService = bloqueoDiasService;
+        this.versionDatosService = versionDatosService;
+        this.instanciaService = instanciaService;
+        // El paralelismo debe quedar por debajo del tamaño del pool de Hikari
+        this.ejecutorBloques = Executors.newFixedThreadPool(Math.max(1, paralelismo),
+                Thread.ofVirtual().name("metricas-bloque-", 0).factory());
+        this.diasPorBloqueDefecto = Math.max(1, diasPorBloque);
+    }
+
+    public ReconstruccionMetricas iniciar(LocalDate fechaInicio, LocalDate fechaFin, Integer diasPorBloque) {
+        LocalDate fin = fechaFin != null ? fechaFin : LocalDate.now();
+        LocalDate inicio = fechaInicio != null ? fechaInicio : primeraFechaConMovimientos().orElse(fin);
+        int dias = diasPorBloque != null ? diasPorBloque : diasPorBloqueDefecto;
+
+        if (inicio.isAfter(fin)) {
+            throw new IllegalArgumentException("fechaInicio no puede ser posterior a fechaFin");
+        }
+        if (dias <= 0) {
+            throw new IllegalArgumentException("diasPorBloque debe ser mayor a 0");
+        }
+
+        ReconstruccionMetricas reconstruccion = ReconstruccionMetricas.builder()
+                .fechaInicio(inicio)
+                .fechaFin(fin)
+                .diasPorBloque(dias)
+                .bloquesTotales(bloques(inicio, fin, dias).size())
+                .build();
+        reconstruccion = reconstruccionRepository.save(reconstruccion);
+        log.info("Reconstrucción de métricas id={} creada: {} a {} en {} bloques de {} días",
+                reconstruccion.getId(), inicio, fin, reconstruccion.getBloquesTotales(), dias);
+
+        return lanzar(reconstruccion);
+    }
+
+    public ReconstruccionMetricas reanudar(Long id) {
+        ReconstruccionMetricas reconstruccion = reconstruccionRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Reconstrucción con id " + id + " no encontrada"));
+        if (!reconstruccion.esReanudable()) {
+            throw new IllegalArgumentException("La reconstrucción " + id + " no se puede reanudar en estado " + reconstruccion.getEstado());
+        }
+        log.info("Reanudando reconstrucción de métricas id={} ({}/{} bloques completados)",
+                id, reconstruccion.getBloquesCompletados(), reconstruccion.getBloquesTotales());
+        return lanzar(reconstruccion);
+    }
+
+    public Optional<ReconstruccionMetricas> obtener(Long id) {
+        return reconstruccionRepository.findById(id);
+    }
+
+    public List<ReconstruccionMetricas> obtenerReanudables() {
+        List<ReconstruccionMetricas> reanudables = new ArrayList<>();
+        reanudables.addAll(reconstruccionRepository.findByEstadoOrderByFechaCreacionDesc(ReconstruccionMetricas.INTERRUMPIDA));
+        reanudables.addAll(reconstruccionRepository.findByEstadoOrderByFechaCreacionDesc(ReconstruccionMetricas.FALLIDA));
+        return reanudables;
+    }
+
+    /**
+     * Las reconstrucciones de esta instancia que quedaron EN_PROGRESO se cortaron al
+     * detenerse; se marcan como interrumpidas para poder reanudarlas. Las de otras
+     * instancias no se tocan: pueden seguir en ejecución.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void marcarInterrumpidas() {
+        try {
+            int interrumpidas = reconstruccionRepository.cambiarEstado(
+                    ReconstruccionMetricas.EN_PROGRESO, ReconstruccionMetricas.INTERRUMPIDA, instanciaService.id());
+            if (interrumpidas > 0) {
+                log.warn("{} reconstrucciones de métricas quedaron interrumpidas y pueden reanudarse", interrumpidas);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo revisar reconstrucciones pendientes: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutorBloques.shutdownNow();
+    }
+
+    private ReconstruccionMetricas lanzar(ReconstruccionMetricas reconstruccion) {
+        Long id = reconstruccion.getId();
+        if (!enEjecucion.add(id)) {
+            throw new IllegalArgumentException("La reconstrucción " + id + " ya está en ejecución");
+        }
+        reconstruccion.setEstado(ReconstruccionMetricas.EN_PROGRESO);
+        reconstruccion.setInstancia(instanciaService.id());
+        reconstruccion.setMensajeError(null);
+        ReconstruccionMetricas guardada = reconstruccionRepository.save(reconstruccion);
+
+        Thread.ofVirtual().name("reconstruccion-metricas-" + id).start(() -> ejecutar(guardada));
+        return guardada;
+    }
+
+    private void ejecutar(ReconstruccionMetricas reconstruccion) {
+        Long id = reconstruccion.getId();
+        long inicioMs = System.currentTimeMillis();
+        List<Future<?>> pendientes = new ArrayList<>();
+        try {
+            Set<LocalDate> completados = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT bloque_inicio FROM reconstrucciones_metricas_bloques WHERE reconstruccion_id = ?",
+                    LocalDate.class, id));
+
+            for (LocalDate bloque : bloques(reconstruccion.getFechaInicio(), reconstruccion.getFechaFin(), reconstruccion.getDiasPorBloque())) {
+                if (completados.contains(bloque)) {
+                    continue;
+                }
+                LocalDate finBloque = minimo(bloque.plusDays(reconstruccion.getDiasPorBloque()),
+                        reconstruccion.getFechaFin().plusDays(1));
+                pendientes.add(ejecutorBloques.submit(() -> procesarBloque(id, bloque, finBloque)));
+            }
+            log.info("Reconstrucción id={}: {} bloques pendientes, {} ya completados", id, pendientes.size(), completados.size());
+
+            for (Future<?> pendiente : pendientes) {
+                pendiente.get();
+            }
+
+            finalizar(id, ReconstruccionMetricas.COMPLETADA, null);
+            log.info("Reconstrucción de métricas id={} completada en {} ms", id, System.currentTimeMillis() - inicioMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendientes.forEach(f -> f.cancel(true));
+            finalizar(id, ReconstruccionMetricas.INTERRUMPIDA, "Ejecución interrumpida");
+        } catch (ExecutionException e) {
+            pendientes.forEach(f -> f.cancel(true));
+            Throwable causa = e.getCause() != null ? e.getCause() : e;
+            log.error("Reconstrucción de métricas id={} falló: {}", id, causa.getMessage(), causa);
+            finalizar(id, ReconstruccionMetricas.FALLIDA, causa.getMessage());
+        } catch (Exception e) {
+            pendientes.forEach(f -> f.cancel(true));
+            log.error("Reconstrucción de métricas id={} falló: {}", id, e.getMessage(), e);
+            finalizar(id, ReconstruccionMetricas.FALLIDA, e.getMessage());
+        } finally {
+            enEjecucion.remove(id);
+        }
+    }
+
+    /**
+     * Agrega un bloque [desde, hasta) y lo escribe junto con su checkpoint en una sola
+     * transacción. Los días del bloque quedan bloqueados antes de leer, así ninguna
+     * venta o compra confirmada entre la lectura y la escritura se pierde.
+     */
+    private void procesarBloque(Long id, LocalDate desde, LocalDate hasta) {
+        Timestamp inicio = Timestamp.valueOf(desde.atStartOfDay());
+        Timestamp fin = Timestamp.valueOf(hasta.atStartOfDay());
+
+        int escritos = transactionTemplate.execute(status -> {
+            bloqueoDiasService.bloquearExclusivo(desde, hasta);
+
+            Map<LocalDate, MetricaDiaria> ventas = new TreeMap<>();
+            jdbcTemplate.query(SQL_VENTAS_POR_DIA, rs -> {
+                ventas.put(rs.getObject("fecha", LocalDate.class), MetricaDiaria.builder()
+                        .totalVentas(rs.getBigDecimal("total"))
+                        .gananciaTotal(rs.getBigDecimal("ganancia"))
+                        .numeroVentas(rs.getInt("numero"))
+                        .productosVendidos(rs.getBigDecimal("unidades"))
+                        .build());
+            }, inicio, fin);
+
+            Map<LocalDate, MetricaDiaria> compras = new TreeMap<>();
+            jdbcTemplate.query(SQL_COMPRAS_POR_DIA, rs -> {
+                compras.put(rs.getObject("fecha", LocalDate.class), MetricaDiaria.builder()
+                        .totalCompras(rs.getBigDecimal("total"))
+                        .numeroCompras(rs.getInt("numero"))
+                        .productosComprados(rs.getBigDecimal("unidades"))
+                        .build());
+            }, inicio, fin);
+
+            Map<LocalDate, HyperLogLog> clientes = clientesDistintosService.calcular(desde, hasta);
+
+            Set<LocalDate> dias = new TreeSet<>(ventas.keySet());
+            dias.addAll(compras.keySet());
+            List<Object[]> filas = new ArrayList<>(dias.size());
+            for (LocalDate dia : dias) {
+                List<MetricaDiaria> partes = new ArrayList<>(2);
+                Optional.ofNullable(ventas.get(dia)).ifPresent(partes::add);
+                Optional.ofNullable(compras.get(dia)).ifPresent(partes::add);
+                MetricaDiaria m = MetricaDiariaService.totalizar(partes);
+                filas.add(new Object[]{
+                        Date.valueOf(dia), m.getTotalVentas(), m.getGananciaTotal(), m.getNumeroVentas(),
+                        m.getProductosVendidos(), m.getTotalCompras(), m.getNumeroCompras(),
+                        m.getProductosComprados(), m.getTicketPromedio(), acotarMargen(m.getMargenPromedio())
+                });
+            }
+
+            // Los días del bloque sin movimientos no deben conservar valores anteriores
+            jdbcTemplate.update("DELETE FROM metricas_diarias WHERE fecha >= ? AND fecha < ?",
+                    Date.valueOf(desde), Date.valueOf(hasta));
+            if (!filas.isEmpty()) {
+                jdbcTemplate.batchUpdate(SQL_UPSERT_METRICA, filas);
+            }
+            clientesDistintosService.reemplazar(desde, hasta, clientes);
+            jdbcTemplate.update("INSERT INTO reconstrucciones_metricas_bloques (reconstruccion_id, bloque_inicio) VALUES (?, ?)",
+                    id, Date.valueOf(desde));
+            jdbcTemplate.update("UPDATE reconstrucciones_metricas SET bloques_completados = bloques_completados + 1, " +
+                    "fecha_actualizacion = now() WHERE id = ?", id);
+            return filas.size();
+        });
+        // Invalida los ETag de /dashboard y /comparativo calculados con el bloque anterior
+        versionDatosService.metricasReconstruidas();
+        log.debug("Reconstrucción id={}: bloque {} a {} escrito ({} días con movimientos)", id, desde, hasta, escritos);
+    }
+
+    private void finalizar(Long id, String estado, String mensajeError) {
+        try {
+            jdbcTemplate.update("UPDATE reconstrucciones_metricas SET estado = ?, mensaje_error = ?, " +
+                    "fecha_actualizacion = now() WHERE id = ?", estado, mensajeError, id);
+        } catch (Exception e) {
+            log.error("No se pudo actualizar el estado de la reconstrucción id={}: {}", id, e.getMessage());
+        }
+    }
+
+    private Optional<LocalDate> primeraFechaConMovimientos() {
+        LocalDateTime primera = jdbcTemplate.queryForObject(
+                "SELECT LEAST((SELECT MIN(fecha_venta) FROM ventas), (SELECT MIN(fecha_compra) FROM compras))",
+                LocalDateTime.class);
+        return Optional.ofNullable(primera).map(LocalDateTime::toLocalDate);
+    }
+
+    private static List<LocalDate> bloques(LocalDate inicio, LocalDate fin, int diasPorBloque) {
+        List<LocalDate> bloques = new ArrayList<>();
+        long totalDias = ChronoUnit.DAYS.between(inicio, fin) + 1;
+        for (long desplazamiento = 0; desplazamiento < totalDias; desplazamiento += diasPorBloque) {
+            bloques.add(inicio.plusDays(desplazamiento));
+        }
+        return bloques;
+    }
+
+    private static LocalDate minimo(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    // margen_promedio es NUMERIC(5,2); un margen fuera de rango no debe abortar el bloque
+    private static BigDecimal acotarMargen(BigDecimal margen) {
+        BigDecimal limite = new BigDecimal("999.99");
+        if (margen.compareTo(limite) > 0) {
+            return limite;
+        }
+        if (margen.compareTo(limite.negate()) < 0) {
+            return limite.negate();
+        }
+        return margen;
+    }
+}
@@ -0,0 +1,250 @@
+package com.snayber.api_jdbc.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.snayber.api_jdbc.dto.ReporteRentabilidadDTO;
+import com.snayber.api_jdbc.model.MetricaDiaria;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caché de reportes con revalidación en segundo plano (stale-while-revalidate).
+ *
+ * Cada reporte declara su propia política: pasado {@code refrescar} una lectura
+ * devuelve el valor guardado al instante y dispara un único recálculo en segundo
+ * plano para esa clave; pasado {@code expirar} sin lecturas la entrada se descarta
+ * y la siguiente petición sí espera el cálculo. El tamaño de cada caché se limita
+ * por peso (filas aproximadas) y no por número de entradas.
+ *
+ * Las ventas, compras y ediciones de producto no invalidan nada: un reporte puede
+ * quedar atrasado como mucho su {@code refrescar}. Recalcular todas las entradas en
+ * cada escritura repetiría las consultas pesadas por cada venta, que es justo lo que
+ * esta caché evita.
+ *
+ * Los recálculos corren en un pool pequeño y propio, así una oleada de entradas
+ * vencidas no ocupa más de {@code app.reportes.cache.hilos} conexiones a la vez. La
+ * primera carga de una clave no pasa por ese pool: la petición que la pide la espera
+ * igual, así que se calcula en un hilo virtual propio y no se encola detrás de los
+ * recálculos.
+ *
+ * Las políticas se pueden ajustar por reporte con
+ * {@code app.reportes.cache.<reporte>.refrescar-segundos}, {@code .expirar-segundos}
+ * y {@code .peso-maximo}.
+ */
+@Service
+@Slf4j
+public class ReporteCacheService {
+
+    /**
+     * Política de un reporte. {@code refrescar} debe ser menor que {@code expirar}.
+     */
+    public record Politica(Duration refrescar, Duration expirar, long pesoMaximo) {
+    }
+
+    private record Rango(LocalDate fechaInicio, LocalDate fechaFin) {
+    }
+
+    private record RangoAgrupado(LocalDate fechaInicio, LocalDate fechaFin, FlujoCajaService.Agrupacion agrupacion) {
+    }
+
+    private record Tendencia(LocalDate hasta, int dias) {
+    }
+
+    private record Heatmap(LocalDate fechaInicio, LocalDate fechaFin, String tipoProducto) {
+    }
+
+    /**
+     * Una caché asíncrona con su política y la función que calcula cada valor.
+     */
+    private static final class CacheReporte<K, V> {
+
+        private final String nombre;
+        private final Politica politica;
+        private final ExecutorService cargas;
+        private final Function<K, V> cargador;
+        private final AsyncLoadingCache<K, V> cache;
+
+        private CacheReporte(String nombre, Politica politica, ExecutorService ejecutor, ExecutorService cargas,
+                             ToIntFunction<V> peso, Function<K, V> cargador) {
+            this.nombre = nombre;
+            this.politica = politica;
+            this.cargas = cargas;
+            this.cargador = cargador;
+            // El ejecutor de la caché solo corre los recálculos; las cargas iniciales usan cargas
+            this.cache = Caffeine.newBuilder()
+                    .executor(ejecutor)
+                    .refreshAfterWrite(politica.refrescar())
+                    .expireAfterWrite(politica.expirar())
+                    .maximumWeight(politica.pesoMaximo())
+                    .<K, V>weigher((clave, valor) -> Math.max(1, peso.applyAsInt(valor)))
+                    .recordStats()
+                    .buildAsync(this::calcular);
+        }
+
+        private V calcular(K clave) {
+            long inicio = System.currentTimeMillis();
+            V valor = cargador.apply(clave);
+            log.debug("Reporte {} {} calculado en {} ms", nombre, clave, System.currentTimeMillis() - inicio);
+            return valor;
+        }
+
+        private V obtener(K clave) {
+            try {
+                return cache.get(clave, (k, ejecutorCache) -> CompletableFuture.supplyAsync(() -> calcular(k), cargas)).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Cálculo del reporte " + nombre + " interrumpido", e);
+            } catch (ExecutionException e) {
+                // Se propaga la excepción original para que el controlador la clasifique
+                if (e.getCause() instanceof RuntimeException causa) {
+                    throw causa;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        private Map<String, Object> estadisticas() {
+            CacheStats stats = cache.synchronous().stats();
+            Map<String, Object> datos = new LinkedHashMap<>();
+            datos.put("refrescarSegundos", politica.refrescar().toSeconds());
+            datos.put("expirarSegundos", politica.expirar().toSeconds());
+            datos.put("pesoMaximo", politica.pesoMaximo());
+            datos.put("entradas", cache.synchronous().estimatedSize());
+            datos.put("aciertos", stats.hitCount());
+            datos.put("fallos", stats.missCount());
+            datos.put("tasa_aciertos", stats.hitRate());
+            datos.put("recalculos", stats.loadSuccessCount());
+            datos.put("recalculos_fallidos", stats.loadFailureCount());
+            datos.put("expulsiones", stats.evictionCount());
+            return datos;
+        }
+    }
+
+    private final Environment environment;
+    private final ExecutorService ejecutor;
+    private final ExecutorService cargas = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("reporte-cache-carga-", 0).factory());
+    private final Map<String, CacheReporte<?, ?>> caches = new LinkedHashMap<>();
+
+    private final CacheReporte<Rango, List<Map<String, Object>>> flujoCaja;
+    private final CacheReporte<RangoAgrupado, FlujoCajaService.FlujoCaja> flujoCajaPeriodos;
+    private final CacheReporte<Boolean, List<ReporteRentabilidadDTO>> rentabilidad;
+    private final CacheReporte<Tendencia, List<MetricaDiaria>> tendencias;
+    private final CacheReporte<Heatmap, Map<String, Object>> heatmap;
+
+    public ReporteCacheService(JdbcTemplate jdbcTemplate,
+                               ProductoTotalesService productoTotalesService,
+                               MetricaDiariaService metricaDiariaService,
+                               VentasPorHoraService ventasPorHoraService,
+                               FlujoCajaService flujoCajaService,
+                               Environment environment,
+                               @Value("${app.reportes.cache.hilos:2}") int hilos) {
+        this.environment = environment;
+        this.ejecutor = Executors.newFixedThreadPool(Math.max(1, hilos),
+                Thread.ofPlatform().name("reporte-cache-", 0).daemon().factory());
+
+        this.flujoCaja = registrar("flujo-caja",
+                new Politica(Duration.ofMinutes(1), Duration.ofMinutes(15), 50_000),
+                List::size,
+                rango -> jdbcTemplate.queryForList("SELECT * FROM reporte_flujo_caja(?, ?)",
+                        java.sql.Date.valueOf(rango.fechaInicio()), java.sql.Date.valueOf(rango.fechaFin())));
+
+        this.flujoCajaPeriodos = registrar("flujo-caja-periodos",
+                new Politica(Duration.ofMinutes(1), Duration.ofMinutes(15), 50_000),
+                flujo -> flujo.periodos().size(),
+                rango -> flujoCajaService.calcular(rango.fechaInicio(), rango.fechaFin(), rango.agrupacion()));
+
+        // La rentabilidad sale de producto_totales: una sola entrada con todos los productos
+        this.rentabilidad = registrar("rentabilidad",
+                new Politica(Duration.ofMinutes(1), Duration.ofMinutes(10), 20_000),
+                List::size,
+                todos -> productoTotalesService.obtenerRentabilidad(null));
+
+        this.tendencias = registrar("tendencias",
+                new Politica(Duration.ofSeconds(30), Duration.ofMinutes(5), 10_000),
+                List::size,
+                tendencia -> metricaDiariaService.obtenerRango(
+                        tendencia.hasta().minusDays(tendencia.dias()), tendencia.hasta()));
+
+        // Cada mapa de calor es de tamaño fijo (7 x 24 por matriz), así que pesa 1
+        this.heatmap = registrar("heatmap",
+                new Politica(Duration.ofMinutes(1), Duration.ofMinutes(15), 200),
+                valor -> 1,
+                clave -> ventasPorHoraService.obtenerHeatmap(clave.fechaInicio(), clave.fechaFin(), clave.tipoProducto()));
+    }
+
+    public List<Map<String, Object>> obtenerFlujoCaja(LocalDate fechaInicio, LocalDate fechaFin) {
+        return flujoCaja.obtener(new Rango(fechaInicio, fechaFin));
+    }
+
+    public FlujoCajaService.FlujoCaja obtenerFlujoCaja(LocalDate fechaInicio, LocalDate fechaFin,
+                                                      FlujoCajaService.Agrupacion agrupacion) {
+        return flujoCajaPeriodos.obtener(new RangoAgrupado(fechaInicio, fechaFin, agrupacion));
+    }
+
+    public List<ReporteRentabilidadDTO> obtenerRentabilidad() {
+        return rentabilidad.obtener(Boolean.TRUE);
+    }
+
+    /**
+     * Tendencia de los últimos {@code dias} días hasta hoy. La fecha forma parte de la
+     * clave, así al cambiar de día se calcula una entrada nueva.
+     */
+    public List<MetricaDiaria> obtenerTendencias(int dias) {
+        return tendencias.obtener(new Tendencia(LocalDate.now(), dias));
+    }
+
+    public Map<String, Object> obtenerHeatmap(LocalDate fechaInicio, LocalDate fechaFin, String tipoProducto) {
+        return heatmap.obtener(new Heatmap(fechaInicio, fechaFin, tipoProducto));
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        caches.forEach((nombre, cache) -> estadisticas.put(nombre, cache.estadisticas()));
+        return estadisticas;
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+        cargas.shutdownNow();
+    }
+
+    private <K, V> CacheReporte<K, V> registrar(String nombre, Politica porDefecto,
+                                               ToIntFunction<V> peso, Function<K, V> cargador) {
+        String prefijo = "app.reportes.cache." + nombre + ".";
+        Duration refrescar = Duration.ofSeconds(environment.getProperty(
+                prefijo + "refrescar-segundos", Long.class, porDefecto.refrescar().toSeconds()));
+        Duration expirar = Duration.ofSeconds(environment.getProperty(
+                prefijo + "expirar-segundos", Long.class, porDefecto.expirar().toSeconds()));
+        long pesoMaximo = environment.getProperty(prefijo + "peso-maximo", Long.class, porDefecto.pesoMaximo());
+        if (refrescar.compareTo(expirar) >= 0) {
+            // Sin margen entre ambos la entrada expiraría antes de poder servirse vencida
+            log.warn("Caché de reporte {}: refrescar ({} s) debe ser menor que expirar ({} s); se usa la mitad",
+                    nombre, refrescar.toSeconds(), expirar.toSeconds());
+            refrescar = expirar.dividedBy(2);
+        }
+
+        CacheReporte<K, V> cache = new CacheReporte<>(nombre, new Politica(refrescar, expirar, pesoMaximo),
+                ejecutor, cargas, peso, cargador);
+        caches.put(nombre, cache);
+        return cache;
+    }
+}
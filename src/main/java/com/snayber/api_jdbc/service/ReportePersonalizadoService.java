@@ -0,0 +1,421 @@
+package com.snayber.api_jdbc.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.snayber.api_jdbc.model.HistorialReporte;
+import com.snayber.api_jdbc.model.ReportePersonalizado;
+import com.snayber.api_jdbc.repository.HistorialReporteRepository;
+import com.snayber.api_jdbc.repository.ReportePersonalizadoRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Ejecuta los reportes personalizados guardados en reportes_personalizados.
+ *
+ * Las consultas corren en un pool de conexiones propio, pequeño y de solo lectura,
+ * separado del pool de la aplicación: un reporte lento puede agotar su pool pero no
+ * deja sin conexiones a ventas, compras o inventario. Cada ejecución tiene timeout
+ * (setQueryTimeout) y tope de filas (setMaxRows); la conexión se libera al terminar
+ * de leer, antes de escribir la respuesta, para que un cliente lento no la retenga.
+ *
+ * Los resultados se guardan en caché por (reporte, consulta, tope de filas,
+ * parámetros, versión de los datos), así editar la definición de un reporte no sirve
+ * resultados de la consulta anterior; cada ejecución, desde caché o no, queda registrada en historial_reportes.
+ *
+ * configuracion_json admite:
+ * <pre>
+ * {"parametros": [{"nombre": "fechaInicio", "tipo": "DATE", "requerido": true}],
+ *  "maxFilas": 1000, "timeoutSegundos": 30}
+ * </pre>
+ * La consulta usa los parámetros con nombre ({@code WHERE fecha_venta >= :fechaInicio}).
+ * Tipos: STRING, INTEGER, DECIMAL, BOOLEAN, DATE, DATETIME.
+ */
+@Service
+@Slf4j
+public class ReportePersonalizadoService {
+
+    public static final String TIPO_HISTORIAL = "PERSONALIZADO";
+
+    // Solo una sentencia SELECT/WITH; el pool de solo lectura rechaza además cualquier escritura
+    private static final Pattern SOLO_CONSULTA =
+            Pattern.compile("^\\s*(SELECT|WITH)\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final ReportePersonalizadoRepository reportePersonalizadoRepository;
+    private final HistorialReporteRepository historialReporteRepository;
+    private final VersionDatosService versionDatosService;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final Cache<ClaveResultado, Resultado> resultados;
+    private final int tamanoPool;
+    private final long esperaConexionMs;
+    private final int maxFilasPorDefecto;
+    private final int maxFilasLimite;
+    private final int timeoutPorDefecto;
+    private final int timeoutLimite;
+    private final int fetchSize;
+
+    // Se crea en la primera ejecución: no abre conexiones si nadie usa reportes personalizados
+    private volatile HikariDataSource pool;
+
+    public ReportePersonalizadoService(ReportePersonalizadoRepository reportePersonalizadoRepository,
+                                       HistorialReporteRepository historialReporteRepository,
+                                       VersionDatosService versionDatosService,
+                                       DataSourceProperties dataSourceProperties,
+                                       ObjectMapper objectMapper,
+                                       @Value("${app.reportes.personalizados.pool-size:2}") int tamanoPool,
+                                       @Value("${app.reportes.personalizados.espera-conexion-ms:5000}") long esperaConexionMs,
+                                       @Value("${app.reportes.personalizados.max-filas:1000}") int maxFilasPorDefecto,
+                                       @Value("${app.reportes.personalizados.max-filas-limite:10000}") int maxFilasLimite,
+                                       @Value("${app.reportes.personalizados.timeout-segundos:30}") int timeoutPorDefecto,
+                                       @Value("${app.reportes.personalizados.timeout-limite-segundos:120}") int timeoutLimite,
+                                       @Value("${app.reportes.personalizados.cache-ttl-minutos:10}") long cacheTtlMinutos,
+                                       @Value("${app.reportes.personalizados.cache-max-celdas:2000000}") long cacheMaxCeldas,
+                                       @Value("${app.reportes.stream.fetch-size:500}") int fetchSize) {
+        this.reportePersonalizadoRepository = reportePersonalizadoRepository;
+        this.historialReporteRepository = historialReporteRepository;
+        this.versionDatosService = versionDatosService;
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.tamanoPool = tamanoPool;
+        this.esperaConexionMs = esperaConexionMs;
+        this.maxFilasPorDefecto = maxFilasPorDefecto;
+        this.maxFilasLimite = maxFilasLimite;
+        this.timeoutPorDefecto = timeoutPorDefecto;
+        this.timeoutLimite = timeoutLimite;
+        this.fetchSize = fetchSize;
+        // El peso de cada resultado es su número de celdas, así pocos reportes grandes no desplazan a muchos chicos
+        this.resultados = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutos))
+                .maximumWeight(cacheMaxCeldas)
+                .<ClaveResultado, Resultado>weigher((clave, resultado) ->
+                        Math.max(1, resultado.filas().size() * Math.max(1, resultado.columnas().size())))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Resultado de una ejecución. {@code truncado} indica que la consulta tenía más
+     * filas que el tope configurado.
+     */
+    public record Resultado(List<String> columnas, List<Object[]> filas, boolean truncado) {
+    }
+
+    public record Salida(Ejecucion ejecucion, Resultado resultado, boolean desdeCache, long tiempoEjecucionMs) {
+    }
+
+    // La consulta va entera en la clave: un cambio de definición, incluso hecho
+    // directamente en la tabla, nunca coincide con un resultado anterior
+    private record ClaveResultado(Long reporteId, String querySql, int maxFilas,
+                                  SortedMap<String, Object> parametros, long versionDatos) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Configuracion(List<Parametro> parametros, Integer maxFilas, Integer timeoutSegundos) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record Parametro(String nombre, String tipo, Boolean requerido) {
+    }
+
+    public List<ReportePersonalizado> listarActivos() {
+        return reportePersonalizadoRepository.findByActivoTrueOrderByNombreAsc();
+    }
+
+    /**
+     * Carga el reporte y convierte los parámetros recibidos a sus tipos. Se llama antes
+     * de empezar a escribir la respuesta, así los errores de validación salen como 400/404.
+     *
+     * @throws EntityNotFoundException si el reporte no existe o está inactivo
+     * @throws IllegalArgumentException si la consulta o los parámetros no son válidos
+     */
+    public Ejecucion preparar(Long reporteId, Map<String, String> valores) {
+        ReportePersonalizado reporte = reportePersonalizadoRepository.findByIdAndActivoTrue(reporteId)
+                .orElseThrow(() -> new EntityNotFoundException("Reporte personalizado no encontrado: " + reporteId));
+        String sql = reporte.getQuerySql();
+        if (sql == null || !SOLO_CONSULTA.matcher(sql).matches() || contieneVariasSentencias(sql)) {
+            throw new IllegalArgumentException("El reporte " + reporteId + " no tiene una consulta SELECT válida");
+        }
+
+        Configuracion configuracion = leerConfiguracion(reporte);
+        SortedMap<String, Object> parametros = new TreeMap<>();
+        MapSqlParameterSource fuente = new MapSqlParameterSource();
+        if (configuracion.parametros() != null) {
+            for (Parametro parametro : configuracion.parametros()) {
+                String texto = valores.get(parametro.nombre());
+                if ((texto == null || texto.isBlank()) && Boolean.TRUE.equals(parametro.requerido())) {
+                    throw new IllegalArgumentException("Falta el parámetro requerido: " + parametro.nombre());
+                }
+                Object valor = convertir(parametro, texto);
+                parametros.put(parametro.nombre(), valor);
+                fuente.addValue(parametro.nombre(), valor, tipoSql(parametro.tipo()));
+            }
+        }
+
+        // La configuración del reporte puede bajar los límites, nunca superar los de la aplicación
+        int maxFilas = Math.min(configuracion.maxFilas() != null ? configuracion.maxFilas() : maxFilasPorDefecto,
+                maxFilasLimite);
+        int timeout = Math.min(configuracion.timeoutSegundos() != null ? configuracion.timeoutSegundos() : timeoutPorDefecto,
+                timeoutLimite);
+        return new Ejecucion(reporte, parametros, fuente, Math.max(1, maxFilas), Math.max(1, timeout));
+    }
+
+    /**
+     * Ejecuta el reporte o lo toma de la caché y registra la ejecución en el historial.
+     * La conexión se devuelve al pool antes de que empiece a escribirse la respuesta.
+     *
+     * @throws IllegalStateException si la consulta falla, vence el timeout o no hay conexión libre
+     */
+    public Salida resolver(Ejecucion ejecucion) {
+        long inicio = System.nanoTime();
+        ClaveResultado clave = new ClaveResultado(ejecucion.reporte().getId(), ejecucion.reporte().getQuerySql(),
+                ejecucion.maxFilas(), ejecucion.parametros(), versionDatosService.global());
+        Resultado resultado = resultados.getIfPresent(clave);
+        boolean desdeCache = resultado != null;
+        if (!desdeCache) {
+            try {
+                resultado = consultar(ejecucion);
+            } catch (SQLException e) {
+                registrarHistorial(ejecucion, "ERROR: " + e.getMessage(), inicio);
+                throw new IllegalStateException("Error ejecutando el reporte: " + e.getMessage(), e);
+            } catch (RuntimeException e) {
+                registrarHistorial(ejecucion, "ERROR: " + e.getMessage(), inicio);
+                throw e;
+            }
+            resultados.put(clave, resultado);
+        }
+        long tiempoMs = registrarHistorial(ejecucion, resultado.filas().size() + " filas"
+                + (resultado.truncado() ? " (truncado)" : "")
+                + (desdeCache ? " desde caché" : ""), inicio);
+        return new Salida(ejecucion, resultado, desdeCache, tiempoMs);
+    }
+
+    /**
+     * Escribe {@code {reporteId, nombre, parametros, columnas, filas: [[...]], totalFilas,
+     * truncado, desdeCache, tiempoEjecucionMs}} fila por fila.
+     */
+    public void escribir(Salida salida, OutputStream destino) throws IOException {
+        Resultado resultado = salida.resultado();
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(destino, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeNumberField("reporteId", salida.ejecucion().reporte().getId());
+            json.writeStringField("nombre", salida.ejecucion().reporte().getNombre());
+            json.writeObjectField("parametros", salida.ejecucion().parametros());
+            json.writeObjectField("columnas", resultado.columnas());
+            json.writeArrayFieldStart("filas");
+            for (Object[] fila : resultado.filas()) {
+                json.writeObject(fila);
+            }
+            json.writeEndArray();
+            json.writeNumberField("totalFilas", resultado.filas().size());
+            json.writeBooleanField("truncado", resultado.truncado());
+            json.writeBooleanField("desdeCache", salida.desdeCache());
+            json.writeNumberField("tiempoEjecucionMs", salida.tiempoEjecucionMs());
+            json.writeEndObject();
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticasCache() {
+        var stats = resultados.stats();
+        return Map.of(
+                "entradas", resultados.estimatedSize(),
+                "aciertos", stats.hitCount(),
+                "fallos", stats.missCount(),
+                "tasaAciertos", stats.hitRate(),
+                "desalojos", stats.evictionCount());
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Reporte validado con sus parámetros ya convertidos.
+     */
+    public record Ejecucion(ReportePersonalizado reporte, SortedMap<String, Object> parametros,
+                            MapSqlParameterSource fuente, int maxFilas, int timeoutSegundos) {
+    }
+
+    private Resultado consultar(Ejecucion ejecucion) throws SQLException {
+        ParsedSql parsed = NamedParameterUtils.parseSqlStatement(ejecucion.reporte().getQuerySql());
+        String sql = NamedParameterUtils.substituteNamedParameters(parsed, ejecucion.fuente());
+        // Con el tipo SQL registrado en la fuente, cada valor sale como SqlParameterValue tipado
+        Object[] valores = NamedParameterUtils.buildValueArray(parsed, ejecucion.fuente(), null);
+
+        try (Connection con = pool().getConnection()) {
+            // Sin autocommit PostgreSQL respeta el fetch size y lee por cursor
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setQueryTimeout(ejecucion.timeoutSegundos());
+                // Una fila de más para saber si el resultado quedó truncado
+                ps.setMaxRows(ejecucion.maxFilas() + 1);
+                ps.setFetchSize(Math.min(fetchSize, ejecucion.maxFilas() + 1));
+                new ArgumentPreparedStatementSetter(valores).setValues(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    int numeroColumnas = meta.getColumnCount();
+                    List<String> columnas = new ArrayList<>(numeroColumnas);
+                    for (int i = 1; i <= numeroColumnas; i++) {
+                        columnas.add(meta.getColumnLabel(i));
+                    }
+                    List<Object[]> filas = new ArrayList<>();
+                    boolean truncado = false;
+                    while (rs.next()) {
+                        if (filas.size() == ejecucion.maxFilas()) {
+                            truncado = true;
+                            break;
+                        }
+                        Object[] fila = new Object[numeroColumnas];
+                        for (int i = 0; i < numeroColumnas; i++) {
+                            fila[i] = valorColumna(rs.getObject(i + 1));
+                        }
+                        filas.add(fila);
+                    }
+                    return new Resultado(List.copyOf(columnas), List.copyOf(filas), truncado);
+                }
+            } finally {
+                con.rollback();
+            }
+        }
+    }
+
+    private HikariDataSource pool() {
+        HikariDataSource actual = pool;
+        if (actual == null) {
+            synchronized (this) {
+                actual = pool;
+                if (actual == null) {
+                    actual = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+                    actual.setPoolName("reportes-personalizados");
+                    actual.setMaximumPoolSize(tamanoPool);
+                    actual.setMinimumIdle(0);
+                    actual.setReadOnly(true);
+                    actual.setConnectionTimeout(esperaConexionMs);
+                    pool = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    // Devuelve el tiempo registrado, desde el inicio de la ejecución
+    private long registrarHistorial(Ejecucion ejecucion, String resumen, long inicioNanos) {
+        long tiempoMs = (System.nanoTime() - inicioNanos) / 1_000_000;
+        try {
+            historialReporteRepository.save(HistorialReporte.builder()
+                    .tipoReporte(TIPO_HISTORIAL)
+                    .nombreReporte(ejecucion.reporte().getNombre())
+                    .parametrosJson(objectMapper.writeValueAsString(ejecucion.parametros()))
+                    .resultadoResumen(resumen)
+                    .tiempoEjecucionMs(tiempoMs)
+                    .build());
+        } catch (Exception e) {
+            // El historial es informativo: no debe hacer fallar el reporte
+            log.warn("No se pudo registrar la ejecución del reporte {}: {}", ejecucion.reporte().getId(), e.getMessage());
+        }
+        return tiempoMs;
+    }
+
+    private Configuracion leerConfiguracion(ReportePersonalizado reporte) {
+        if (reporte.getConfiguracionJson() == null || reporte.getConfiguracionJson().isBlank()) {
+            return new Configuracion(List.of(), null, null);
+        }
+        try {
+            return objectMapper.readValue(reporte.getConfiguracionJson(), Configuracion.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("configuracion_json inválida en el reporte " + reporte.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private static Object convertir(Parametro parametro, String texto) {
+        if (texto == null || texto.isBlank()) {
+            return null;
+        }
+        try {
+            return switch (tipo(parametro.tipo())) {
+                case "INTEGER" -> Long.valueOf(texto.trim());
+                case "DECIMAL" -> new BigDecimal(texto.trim());
+                case "BOOLEAN" -> Boolean.valueOf(texto.trim());
+                case "DATE" -> LocalDate.parse(texto.trim());
+                case "DATETIME" -> LocalDateTime.parse(texto.trim());
+                default -> texto;
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Valor inválido para " + parametro.nombre() + " (" + parametro.tipo() + "): " + texto);
+        }
+    }
+
+    private static int tipoSql(String tipo) {
+        return switch (tipo(tipo)) {
+            case "INTEGER" -> Types.BIGINT;
+            case "DECIMAL" -> Types.NUMERIC;
+            case "BOOLEAN" -> Types.BOOLEAN;
+            case "DATE" -> Types.DATE;
+            case "DATETIME" -> Types.TIMESTAMP;
+            default -> Types.VARCHAR;
+        };
+    }
+
+    private static String tipo(String tipo) {
+        return tipo != null ? tipo.trim().toUpperCase(Locale.ROOT) : "STRING";
+    }
+
+    // Un ; final se tolera; uno en medio separaría dos sentencias
+    private static boolean contieneVariasSentencias(String sql) {
+        String recortado = sql.strip();
+        if (recortado.endsWith(";")) {
+            recortado = recortado.substring(0, recortado.length() - 1);
+        }
+        return recortado.indexOf(';') >= 0;
+    }
+
+    private static Object valorColumna(Object valor) {
+        if (valor == null || valor instanceof Number || valor instanceof Boolean || valor instanceof String) {
+            return valor;
+        }
+        if (valor instanceof Timestamp ts) {
+            return ts.toLocalDateTime();
+        }
+        if (valor instanceof java.sql.Date fecha) {
+            return fecha.toLocalDate();
+        }
+        return valor.toString();
+    }
+}
@@ -0,0 +1,193 @@
+package com.snayber.api_jdbc.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snayber.api_jdbc.model.AcumuladorDinero;
+import com.snayber.api_jdbc.model.Compra;
+import com.snayber.api_jdbc.model.Venta;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Escribe los reportes de ventas y compras por rango directamente en la respuesta.
+ *
+ * Las filas se leen con un cursor de solo avance (fetch size acotado) y se
+ * serializan una a una, así la memoria usada no depende del tamaño del rango.
+ * Los totales se acumulan en la misma pasada y se escriben al final del JSON.
+ */
+@Service
+@Slf4j
+public class ReporteStreamingService {
+
+    private static final String SQL_VENTAS = "SELECT id, producto_id, nombre_producto, cantidad, precio_unitario, " +
+            "precio_total, costo_unitario, ganancia, margen_porcentaje, cliente, metodo_pago, fecha_venta, " +
+            "observaciones, usuario_id, estado, numero_factura, created_at " +
+            "FROM ventas WHERE fecha_venta BETWEEN ? AND ? ORDER BY fecha_venta, id";
+
+    private static final String SQL_COMPRAS = "SELECT id, producto_id, nombre_producto, cantidad, costo_unitario, " +
+            "costo_total, proveedor, numero_factura, metodo_pago, fecha_compra, fecha_entrega, observaciones, " +
+            "usuario_id, estado, created_at " +
+            "FROM compras WHERE fecha_compra BETWEEN ? AND ? ORDER BY fecha_compra, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public ReporteStreamingService(JdbcTemplate jdbcTemplate,
+                                   ObjectMapper objectMapper,
+                                   @Value("${app.reportes.stream.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Escribe {@code {fechaInicio, fechaFin, ventas: [...], cantidad, totalVentas, totalGanancias}}.
+     * La transacción de solo lectura es necesaria para que PostgreSQL use el cursor
+     * en lugar de cargar todo el resultado.
+     */
+    @Transactional(readOnly = true)
+    public void escribirVentas(LocalDate fechaInicio, LocalDate fechaFin, OutputStream salida) throws IOException {
+        try (JsonGenerator json = generador(salida)) {
+            json.writeStartObject();
+            json.writeObjectField("fechaInicio", fechaInicio);
+            json.writeObjectField("fechaFin", fechaFin);
+            json.writeArrayFieldStart("ventas");
+
+            long[] cantidad = {0};
+            AcumuladorDinero totalVentas = new AcumuladorDinero();
+            AcumuladorDinero totalGanancias = new AcumuladorDinero();
+            jdbcTemplate.query(cursor(SQL_VENTAS, fechaInicio, fechaFin), rs -> {
+                Venta venta = mapearVenta(rs);
+                escribir(json, venta);
+                cantidad[0]++;
+                totalVentas.agregar(venta.getPrecioTotal());
+                totalGanancias.agregar(venta.getGanancia());
+            });
+
+            json.writeEndArray();
+            json.writeNumberField("cantidad", cantidad[0]);
+            json.writeNumberField("totalVentas", totalVentas.total().aBigDecimal());
+            json.writeNumberField("totalGanancias", totalGanancias.total().aBigDecimal());
+            json.writeEndObject();
+            log.debug("Reporte de ventas {} - {} enviado en streaming: {} filas", fechaInicio, fechaFin, cantidad[0]);
+        }
+    }
+
+    /**
+     * Escribe {@code {fechaInicio, fechaFin, compras: [...], cantidad, totalCompras}}.
+     */
+    @Transactional(readOnly = true)
+    public void escribirCompras(LocalDate fechaInicio, LocalDate fechaFin, OutputStream salida) throws IOException {
+        try (JsonGenerator json = generador(salida)) {
+            json.writeStartObject();
+            json.writeObjectField("fechaInicio", fechaInicio);
+            json.writeObjectField("fechaFin", fechaFin);
+            json.writeArrayFieldStart("compras");
+
+            long[] cantidad = {0};
+            AcumuladorDinero totalCompras = new AcumuladorDinero();
+            jdbcTemplate.query(cursor(SQL_COMPRAS, fechaInicio, fechaFin), rs -> {
+                Compra compra = mapearCompra(rs);
+                escribir(json, compra);
+                cantidad[0]++;
+                totalCompras.agregar(compra.getCostoTotal());
+            });
+
+            json.writeEndArray();
+            json.writeNumberField("cantidad", cantidad[0]);
+            json.writeNumberField("totalCompras", totalCompras.total().aBigDecimal());
+            json.writeEndObject();
+            log.debug("Reporte de compras {} - {} enviado en streaming: {} filas", fechaInicio, fechaFin, cantidad[0]);
+        }
+    }
+
+    private JsonGenerator generador(OutputStream salida) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(salida, JsonEncoding.UTF8);
+        // Si el cursor falla a mitad de camino el JSON debe quedar incompleto, no cerrado como válido
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        return json;
+    }
+
+    private PreparedStatementCreator cursor(String sql, LocalDate fechaInicio, LocalDate fechaFin) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.valueOf(fechaInicio.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(fechaFin.atTime(LocalTime.MAX)));
+            return ps;
+        };
+    }
+
+    private static void escribir(JsonGenerator json, Object fila) {
+        try {
+            json.writeObject(fila);
+        } catch (IOException e) {
+            // El cliente cerró la conexión: se corta la lectura del cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Venta mapearVenta(ResultSet rs) throws SQLException {
+        return Venta.builder()
+                .id(rs.getLong("id"))
+                .productoId(rs.getLong("producto_id"))
+                .nombreProducto(rs.getString("nombre_producto"))
+                .cantidad(rs.getBigDecimal("cantidad"))
+                .precioUnitario(rs.getBigDecimal("precio_unitario"))
+                .precioTotal(rs.getBigDecimal("precio_total"))
+                .costoUnitario(rs.getBigDecimal("costo_unitario"))
+                .ganancia(rs.getBigDecimal("ganancia"))
+                .margenPorcentaje(rs.getBigDecimal("margen_porcentaje"))
+                .cliente(rs.getString("cliente"))
+                .metodoPago(rs.getString("metodo_pago"))
+                .fechaVenta(fecha(rs, "fecha_venta"))
+                .observaciones(rs.getString("observaciones"))
+                .usuarioId(rs.getObject("usuario_id", Long.class))
+                .estado(rs.getString("estado"))
+                .numeroFactura(rs.getString("numero_factura"))
+                .createdAt(fecha(rs, "created_at"))
+                .build();
+    }
+
+    private static Compra mapearCompra(ResultSet rs) throws SQLException {
+        return Compra.builder()
+                .id(rs.getLong("id"))
+                .productoId(rs.getLong("producto_id"))
+                .nombreProducto(rs.getString("nombre_producto"))
+                .cantidad(rs.getBigDecimal("cantidad"))
+                .costoUnitario(rs.getBigDecimal("costo_unitario"))
+                .costoTotal(rs.getBigDecimal("costo_total"))
+                .proveedor(rs.getString("proveedor"))
+                .numeroFactura(rs.getString("numero_factura"))
+                .metodoPago(rs.getString("metodo_pago"))
+                .fechaCompra(fecha(rs, "fecha_compra"))
+                .fechaEntrega(fecha(rs, "fecha_entrega"))
+                .observaciones(rs.getString("observaciones"))
+                .usuarioId(rs.getObject("usuario_id", Long.class))
+                .estado(rs.getString("estado"))
+                .createdAt(fecha(rs, "created_at"))
+                .build();
+    }
+
+    private static LocalDateTime fecha(ResultSet rs, String columna) throws SQLException {
+        Timestamp ts = rs.getTimestamp(columna);
+        return ts != null ? ts.toLocalDateTime() : null;
+    }
+}
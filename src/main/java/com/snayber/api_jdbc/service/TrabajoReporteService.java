@@ -0,0 +1,455 @@
+package com.snayber.api_jdbc.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snayber.api_jdbc.model.TrabajoReporte;
+import com.snayber.api_jdbc.model.TrabajoReporteResultado;
+import com.snayber.api_jdbc.repository.CompraRepository;
+import com.snayber.api_jdbc.repository.TrabajoReporteRepository;
+import com.snayber.api_jdbc.repository.TrabajoReporteResultadoRepository;
+import com.snayber.api_jdbc.repository.VentaRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cola de reportes en segundo plano.
+ *
+ * Los reportes largos (flujo de caja de varios años, análisis de clientes, rentabilidad
+ * completa) se encolan y corren en un pool acotado de hilos con prioridad, sin retener
+ * un hilo de Tomcat mientras tanto. El resultado se guarda como JSON comprimido con gzip
+ * en trabajos_reportes_resultados y se consulta por id.
+ *
+ * Un pedido idéntico (mismo tipo y parámetros) a uno que todavía está pendiente o en
+ * ejecución no crea un trabajo nuevo: devuelve el existente. La restricción única
+ * sobre clave_activa lo garantiza aun entre pedidos simultáneos o entre instancias.
+ *
+ * Cada trabajo lo ejecuta la instancia que lo encoló y queda marcado con ella. Al
+ * arrancar, una instancia da por interrumpidos solo los suyos; los de una instancia
+ * que no vuelve se liberan cuando superan la retención sin terminar.
+ *
+ * El progreso avanza por etapas: la consulta del reporte, y después la escritura del
+ * resultado por lotes de {@value #FILAS_POR_LOTE} filas.
+ */
+@Service
+@Slf4j
+public class TrabajoReporteService {
+
+    public static final String FLUJO_CAJA = "FLUJO_CAJA";
+    public static final String ANALISIS_CLIENTES = "ANALISIS_CLIENTES";
+    public static final String PROVEEDORES = "PROVEEDORES";
+    public static final String INVENTARIO_VALORIZADO = "INVENTARIO_VALORIZADO";
+    public static final String RENTABILIDAD = "RENTABILIDAD";
+    public static final String VENTAS_POR_PRODUCTO = "VENTAS_POR_PRODUCTO";
+    public static final String COMPRAS_POR_PRODUCTO = "COMPRAS_POR_PRODUCTO";
+    public static final String PERSONALIZADO = "PERSONALIZADO";
+
+    private static final Set<String> TIPOS = Set.of(FLUJO_CAJA, ANALISIS_CLIENTES, PROVEEDORES, INVENTARIO_VALORIZADO,
+            RENTABILIDAD, VENTAS_POR_PRODUCTO, COMPRAS_POR_PRODUCTO, PERSONALIZADO);
+
+    private static final int FILAS_POR_LOTE = 500;
+    // La consulta llega hasta aquí; el resto es la escritura del resultado
+    private static final int PROGRESO_CONSULTA = 40;
+
+    // Menor número, mayor prioridad
+    private static final Map<String, Integer> PRIORIDADES = Map.of("ALTA", 0, "NORMAL", 1, "BAJA", 2);
+
+    private final TrabajoReporteRepository trabajoReporteRepository;
+    private final TrabajoReporteResultadoRepository trabajoReporteResultadoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final VentaRepository ventaRepository;
+    private final CompraRepository compraRepository;
+    private final ProductoTotalesService productoTotalesService;
+    private final ReportePersonalizadoService reportePersonalizadoService;
+    private final ObjectMapper objectMapper;
+    private final InstanciaService instanciaService;
+    private final ThreadPoolExecutor ejecutor;
+    private final int capacidadCola;
+    private final long retencionHoras;
+    private final AtomicLong secuencia = new AtomicLong();
+
+    public TrabajoReporteService(TrabajoReporteRepository trabajoReporteRepository,
+                                 TrabajoReporteResultadoRepository trabajoReporteResultadoRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 VentaRepository ventaRepository,
+                                 CompraRepository compraRepository,
+                                 ProductoTotalesService productoTotalesService,
+                                 ReportePersonalizadoService reportePersonalizadoService,
+                                 ObjectMapper objectMapper,
+                                 InstanciaService instanciaService,
+                                 @Value("${app.reportes.jobs.workers:2}") int workers,
+                                 @Value("${app.reportes.jobs.capacidad-cola:100}") int capacidadCola,
+                                 @Value("${app.reportes.jobs.retencion-horas:24}") long retencionHoras) {
+        this.trabajoReporteRepository = trabajoReporteRepository;
+        this.trabajoReporteResultadoRepository = trabajoReporteResultadoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ventaRepository = ventaRepository;
+        this.compraRepository = compraRepository;
+        this.productoTotalesService = productoTotalesService;
+        this.reportePersonalizadoService = reportePersonalizadoService;
+        this.objectMapper = objectMapper;
+        this.instanciaService = instanciaService;
+        this.capacidadCola = capacidadCola;
+        this.retencionHoras = retencionHoras;
+        // Cada worker ocupa una conexión mientras corre: debe quedar por debajo del pool de Hikari
+        int hilos = Math.max(1, workers);
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), Thread.ofPlatform().name("reportes-job-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Encola un reporte o devuelve el trabajo idéntico que ya está en curso.
+     *
+     * @throws IllegalArgumentException si el tipo, la prioridad o los parámetros no son válidos
+     * @throws IllegalStateException si la cola está llena
+     */
+    public Encolado encolar(String tipoReporte, Map<String, String> parametros, String prioridad) {
+        String tipo = tipoReporte != null ? tipoReporte.trim().toUpperCase(Locale.ROOT) : null;
+        if (tipo == null || !TIPOS.contains(tipo)) {
+            throw new IllegalArgumentException("Tipo de reporte no válido: " + tipoReporte + " (use uno de " + TIPOS + ")");
+        }
+        Integer nivel = PRIORIDADES.get(prioridad != null ? prioridad.trim().toUpperCase(Locale.ROOT) : "NORMAL");
+        if (nivel == null) {
+            throw new IllegalArgumentException("Prioridad no válida: " + prioridad + " (use ALTA, NORMAL o BAJA)");
+        }
+        Map<String, String> ordenados = new TreeMap<>(parametros != null ? parametros : Map.of());
+        validar(tipo, ordenados);
+        String parametrosJson = json(ordenados);
+        String clave = clave(tipo, parametrosJson);
+        // Antes de buscar el duplicado, así un trabajo abandonado no retiene la clave
+        purgarAntiguos();
+
+        Optional<TrabajoReporte> existente = trabajoReporteRepository.findByClaveActiva(clave);
+        if (existente.isPresent()) {
+            log.info("Pedido de reporte {} idéntico al trabajo {} en curso", tipo, existente.get().getId());
+            return new Encolado(existente.get(), true);
+        }
+        if (ejecutor.getQueue().size() >= capacidadCola) {
+            throw new IllegalStateException("La cola de reportes está llena, intente más tarde");
+        }
+        TrabajoReporte trabajo;
+        try {
+            trabajo = trabajoReporteRepository.saveAndFlush(TrabajoReporte.builder()
+                    .tipoReporte(tipo)
+                    .parametrosJson(parametrosJson)
+                    .clave(clave)
+                    .claveActiva(clave)
+                    .prioridad(nivel)
+                    .instancia(instanciaService.id())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Otro pedido idéntico se registró entre la búsqueda y el alta
+            Optional<TrabajoReporte> ganador = trabajoReporteRepository.findByClaveActiva(clave);
+            if (ganador.isPresent()) {
+                log.info("Pedido de reporte {} idéntico al trabajo {} en curso", tipo, ganador.get().getId());
+                return new Encolado(ganador.get(), true);
+            }
+            // El trabajo idéntico terminó justo entre medio: se puede volver a pedir
+            throw new IllegalStateException("Pedido de reporte simultáneo a uno idéntico, intente de nuevo", e);
+        }
+        ejecutor.execute(new Tarea(trabajo.getId(), tipo, ordenados, nivel, secuencia.incrementAndGet()));
+        log.info("Trabajo de reporte {} encolado: {} con prioridad {}", trabajo.getId(), tipo, nivel);
+        return new Encolado(trabajo, false);
+    }
+
+    /**
+     * Trabajo encolado; {@code duplicado} indica que ya había uno idéntico en curso.
+     */
+    public record Encolado(TrabajoReporte trabajo, boolean duplicado) {
+    }
+
+    public Optional<TrabajoReporte> obtener(Long id) {
+        return trabajoReporteRepository.findById(id);
+    }
+
+    public List<TrabajoReporte> listarRecientes() {
+        return trabajoReporteRepository.findTop50ByOrderByFechaCreacionDesc();
+    }
+
+    /**
+     * Resultado comprimido (gzip) de un trabajo completado.
+     *
+     * @throws EntityNotFoundException si el trabajo no existe
+     * @throws IllegalStateException si todavía no terminó o falló
+     */
+    public byte[] obtenerResultado(Long id) {
+        TrabajoReporte trabajo = trabajoReporteRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Trabajo de reporte " + id + " no encontrado"));
+        if (!TrabajoReporte.COMPLETADO.equals(trabajo.getEstado())) {
+            throw new IllegalStateException("El trabajo " + id + " está " + trabajo.getEstado());
+        }
+        return trabajoReporteResultadoRepository.findById(id)
+                .map(TrabajoReporteResultado::getContenido)
+                .orElseThrow(() -> new EntityNotFoundException("El resultado del trabajo " + id + " ya no está disponible"));
+    }
+
+    public Map<String, Object> obtenerEstadoCola() {
+        return Map.of(
+                "workers", ejecutor.getMaximumPoolSize(),
+                "enEjecucion", ejecutor.getActiveCount(),
+                "enCola", ejecutor.getQueue().size(),
+                "capacidadCola", capacidadCola,
+                "completados", ejecutor.getCompletedTaskCount());
+    }
+
+    /**
+     * Los trabajos de esta instancia que quedaron pendientes o en ejecución se cortaron
+     * al detenerla; se marcan como interrumpidos para que el cliente los vuelva a pedir.
+     * Los de otras instancias no se tocan: pueden seguir en curso.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void marcarInterrumpidos() {
+        try {
+            int interrumpidos = trabajoReporteRepository.cambiarEstado(
+                    List.of(TrabajoReporte.PENDIENTE, TrabajoReporte.EN_EJECUCION),
+                    TrabajoReporte.INTERRUMPIDO, "La aplicación se reinició antes de terminar", instanciaService.id());
+            if (interrumpidos > 0) {
+                log.warn("{} trabajos de reportes quedaron interrumpidos", interrumpidos);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudo revisar trabajos de reportes pendientes: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    private void ejecutar(Tarea tarea) {
+        Long id = tarea.id;
+        long inicioMs = System.currentTimeMillis();
+        try {
+            jdbcTemplate.update("UPDATE trabajos_reportes SET estado = ?, fecha_inicio = now(), progreso = 5 WHERE id = ?",
+                    TrabajoReporte.EN_EJECUCION, id);
+
+            Resultado resultado = generar(tarea.tipo, tarea.parametros);
+            trabajoReporteRepository.actualizarProgreso(id, PROGRESO_CONSULTA);
+            byte[] comprimido = comprimir(id, resultado);
+
+            trabajoReporteResultadoRepository.save(new TrabajoReporteResultado(id, comprimido));
+            jdbcTemplate.update("UPDATE trabajos_reportes SET estado = ?, progreso = 100, filas_resultado = ?, " +
+                    "tamano_resultado = ?, fecha_fin = now(), clave_activa = NULL WHERE id = ?",
+                    TrabajoReporte.COMPLETADO, resultado.filas().size(), (long) comprimido.length, id);
+            log.info("Trabajo de reporte {} ({}) completado en {} ms: {} filas, {} bytes comprimidos",
+                    id, tarea.tipo, System.currentTimeMillis() - inicioMs, resultado.filas().size(), comprimido.length);
+        } catch (Exception e) {
+            log.error("Trabajo de reporte {} ({}) falló: {}", id, tarea.tipo, e.getMessage(), e);
+            try {
+                jdbcTemplate.update("UPDATE trabajos_reportes SET estado = ?, mensaje_error = ?, fecha_fin = now(), " +
+                        "clave_activa = NULL WHERE id = ?",
+                        TrabajoReporte.FALLIDO, e.getMessage(), id);
+            } catch (Exception ex) {
+                log.error("No se pudo actualizar el estado del trabajo {}: {}", id, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Encabezado del resultado y sus filas, que se escriben aparte por lotes.
+     */
+    private record Resultado(Map<String, Object> encabezado, List<?> filas) {
+    }
+
+    private Resultado generar(String tipo, Map<String, String> p) {
+        Map<String, Object> contenido = new LinkedHashMap<>();
+        contenido.put("tipoReporte", tipo);
+        contenido.put("parametros", p);
+        contenido.put("generado", LocalDateTime.now());
+        List<?> filas = switch (tipo) {
+            case FLUJO_CAJA -> jdbcTemplate.queryForList("SELECT * FROM reporte_flujo_caja(?, ?)",
+                    Date.valueOf(fecha(p, "fechaInicio")), Date.valueOf(fecha(p, "fechaFin")));
+            case ANALISIS_CLIENTES -> jdbcTemplate.queryForList("SELECT * FROM reporte_analisis_clientes()");
+            case PROVEEDORES -> jdbcTemplate.queryForList("SELECT * FROM reporte_proveedores()");
+            case INVENTARIO_VALORIZADO -> jdbcTemplate.queryForList("SELECT * FROM reporte_inventario_valorizado()");
+            case RENTABILIDAD -> productoTotalesService.obtenerRentabilidad(null);
+            case VENTAS_POR_PRODUCTO -> ventaRepository.resumirPorProducto(
+                    fecha(p, "fechaInicio").atStartOfDay(), fecha(p, "fechaFin").atTime(LocalTime.MAX));
+            case COMPRAS_POR_PRODUCTO -> compraRepository.resumirPorProducto(
+                    fecha(p, "fechaInicio").atStartOfDay(), fecha(p, "fechaFin").atTime(LocalTime.MAX));
+            default -> personalizado(p, contenido);
+        };
+        return new Resultado(contenido, filas);
+    }
+
+    private List<Object[]> personalizado(Map<String, String> p, Map<String, Object> contenido) {
+        Map<String, String> valores = new HashMap<>(p);
+        Long reporteId = Long.valueOf(valores.remove("reporteId"));
+        ReportePersonalizadoService.Salida salida = reportePersonalizadoService.resolver(
+                reportePersonalizadoService.preparar(reporteId, valores));
+        contenido.put("nombre", salida.ejecucion().reporte().getNombre());
+        contenido.put("columnas", salida.resultado().columnas());
+        contenido.put("truncado", salida.resultado().truncado());
+        return salida.resultado().filas();
+    }
+
+    // Se valida al encolar, así los errores del pedido salen como 400 y no como trabajo fallido
+    private void validar(String tipo, Map<String, String> p) {
+        switch (tipo) {
+            case FLUJO_CAJA, VENTAS_POR_PRODUCTO, COMPRAS_POR_PRODUCTO -> {
+                if (fecha(p, "fechaInicio").isAfter(fecha(p, "fechaFin"))) {
+                    throw new IllegalArgumentException("fechaInicio no puede ser posterior a fechaFin");
+                }
+            }
+            case PERSONALIZADO -> {
+                String reporteId = p.get("reporteId");
+                try {
+                    Map<String, String> valores = new HashMap<>(p);
+                    valores.remove("reporteId");
+                    reportePersonalizadoService.preparar(Long.valueOf(reporteId), valores);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("reporteId es requerido y debe ser numérico");
+                } catch (EntityNotFoundException e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+            }
+            default -> {
+                // Sin parámetros
+            }
+        }
+    }
+
+    private void purgarAntiguos() {
+        try {
+            LocalDateTime limite = LocalDateTime.now().minusHours(retencionHoras);
+            // Sin terminar tras toda la retención: su instancia ya no existe y liberan la clave
+            int abandonados = trabajoReporteRepository.cambiarEstadoCreadosAntesDe(
+                    List.of(TrabajoReporte.PENDIENTE, TrabajoReporte.EN_EJECUCION),
+                    TrabajoReporte.INTERRUMPIDO, "La instancia que lo ejecutaba no lo terminó", limite);
+            if (abandonados > 0) {
+                log.warn("{} trabajos de reportes abandonados por otra instancia", abandonados);
+            }
+            trabajoReporteResultadoRepository.eliminarDeTrabajosTerminadosAntesDe(limite);
+            int eliminados = trabajoReporteRepository.eliminarTerminadosAntesDe(limite);
+            if (eliminados > 0) {
+                log.debug("{} trabajos de reportes antiguos eliminados", eliminados);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudieron eliminar trabajos de reportes antiguos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe {@code {...encabezado, filas: [...], totalFilas}} en gzip y actualiza el
+     * progreso del trabajo tras cada lote de filas.
+     */
+    private byte[] comprimir(Long id, Resultado resultado) throws IOException {
+        List<?> filas = resultado.filas();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes, 8192);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(gzip, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            for (Map.Entry<String, Object> campo : resultado.encabezado().entrySet()) {
+                json.writeObjectField(campo.getKey(), campo.getValue());
+            }
+            json.writeArrayFieldStart("filas");
+            int progresoActual = PROGRESO_CONSULTA;
+            for (int i = 0; i < filas.size(); i++) {
+                json.writeObject(filas.get(i));
+                if ((i + 1) % FILAS_POR_LOTE == 0) {
+                    int progreso = PROGRESO_CONSULTA + (int) ((long) (99 - PROGRESO_CONSULTA) * (i + 1) / filas.size());
+                    if (progreso > progresoActual) {
+                        trabajoReporteRepository.actualizarProgreso(id, progreso);
+                        progresoActual = progreso;
+                    }
+                }
+            }
+            json.writeEndArray();
+            json.writeNumberField("totalFilas", filas.size());
+            json.writeEndObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    private String json(Map<String, String> parametros) {
+        try {
+            return objectMapper.writeValueAsString(parametros);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Parámetros no válidos: " + e.getMessage());
+        }
+    }
+
+    private static String clave(String tipo, String parametrosJson) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest((tipo + "|" + parametrosJson).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LocalDate fecha(Map<String, String> p, String nombre) {
+        String valor = p.get(nombre);
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Falta el parámetro requerido: " + nombre);
+        }
+        try {
+            return LocalDate.parse(valor.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha inválida en " + nombre + ": " + valor);
+        }
+    }
+
+    /**
+     * Trabajo en la cola de prioridad: primero la prioridad, después el orden de llegada.
+     */
+    private final class Tarea implements Runnable, Comparable<Tarea> {
+        private final Long id;
+        private final String tipo;
+        private final Map<String, String> parametros;
+        private final int prioridad;
+        private final long orden;
+
+        private Tarea(Long id, String tipo, Map<String, String> parametros, int prioridad, long orden) {
+            this.id = id;
+            this.tipo = tipo;
+            this.parametros = parametros;
+            this.prioridad = prioridad;
+            this.orden = orden;
+        }
+
+        @Override
+        public void run() {
+            ejecutar(this);
+        }
+
+        @Override
+        public int compareTo(Tarea otra) {
+            int porPrioridad = Integer.compare(prioridad, otra.prioridad);
+            return porPrioridad != 0 ? porPrioridad : Long.compare(orden, otra.orden);
+        }
+    }
+}
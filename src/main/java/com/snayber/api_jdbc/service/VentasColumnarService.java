@@ -0,0 +1,493 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.model.Venta;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Copia columnar en memoria de la tabla ventas para agregaciones por rango sin ir a la base de datos.
+ *
+ * Cada columna es un arreglo primitivo: minuto epoch (hora local tratada como UTC),
+ * id de producto e importes en centavos como long, y metodo_pago / cliente
+ * codificados con diccionario. Las agregaciones recorren los arreglos con bucles sin
+ * saltos (máscaras en lugar de if) que el JIT puede vectorizar.
+ *
+ * Se carga al arrancar con un cursor y después se actualiza con cada venta confirmada.
+ * Una venta modificada o eliminada deja su fila anterior marcada como borrada
+ * (minuto = Long.MIN_VALUE, fuera de cualquier rango) y se compacta cuando las filas
+ * borradas superan un cuarto del total.
+ */
+@Service
+@Slf4j
+public class VentasColumnarService {
+
+    public static final String AGRUPAR_PRODUCTO = "producto";
+    public static final String AGRUPAR_METODO_PAGO = "metodo_pago";
+    public static final String AGRUPAR_DIA = "dia";
+
+    private static final String SQL_CARGA = "SELECT id, fecha_venta, producto_id, precio_total, ganancia, cantidad, " +
+            "metodo_pago, cliente FROM ventas ORDER BY id";
+
+    private static final long BORRADA = Long.MIN_VALUE;
+    private static final int MINUTOS_DIA = 24 * 60;
+    private static final int MAX_DIAS_AGRUPADOS = 3660;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lectura;
+    private final int fetchSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Protegidos por lock
+    private Columnas columnas = new Columnas(16);
+    private boolean cargando;
+    private final List<VentaEvent> pendientes = new ArrayList<>();
+    private volatile boolean cargado;
+
+    public VentasColumnarService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.reportes.stream.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Resultado de una agregación, con importes ya convertidos a decimales.
+     */
+    public record Resumen(long numeroVentas, Dinero totalVentas, Dinero totalGanancias, BigDecimal unidades) {
+
+        static Resumen de(long[] acumulado) {
+            return new Resumen(acumulado[0], Dinero.deCentavos(acumulado[1]), Dinero.deCentavos(acumulado[2]),
+                    BigDecimal.valueOf(acumulado[3], 2));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        try {
+            cargar();
+        } catch (Exception e) {
+            log.warn("No se pudo cargar la copia columnar de ventas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recarga todas las ventas desde la base de datos. Las ventas confirmadas mientras
+     * tanto se guardan y se aplican al terminar; como cada evento trae el estado
+     * completo de la venta, aplicarlo dos veces no cambia el resultado.
+     */
+    public void cargar() {
+        cargar(nuevas -> lectura.executeWithoutResult(estado -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_CARGA, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rs -> {
+            Timestamp fecha = rs.getTimestamp("fecha_venta");
+            nuevas.agregar(rs.getLong("id"),
+                    fecha != null ? minuto(fecha.toLocalDateTime()) : BORRADA,
+                    rs.getLong("producto_id"),
+                    Dinero.centavosDe(rs.getBigDecimal("precio_total")),
+                    Dinero.centavosDe(rs.getBigDecimal("ganancia")),
+                    Dinero.centavosDe(rs.getBigDecimal("cantidad")),
+                    rs.getString("metodo_pago"),
+                    rs.getString("cliente"));
+        })));
+    }
+
+    // El lector llena las columnas nuevas; separado de JDBC para probar la carga sin base de datos
+    void cargar(Consumer<Columnas> lector) {
+        lock.writeLock().lock();
+        try {
+            if (cargando) {
+                return;
+            }
+            cargando = true;
+            pendientes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Columnas nuevas = new Columnas(1 << 14);
+        try {
+            lector.accept(nuevas);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                cargando = false;
+                pendientes.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (VentaEvent evento : pendientes) {
+                aplicar(nuevas, evento);
+            }
+            pendientes.clear();
+            columnas = nuevas;
+            cargando = false;
+            cargado = true;
+            log.info("Copia columnar de ventas cargada: {} filas", nuevas.filas);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVenta(VentaEvent evento) {
+        lock.writeLock().lock();
+        try {
+            if (cargando) {
+                pendientes.add(evento);
+            }
+            if (cargado) {
+                aplicar(columnas, evento);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * Totales de ventas entre dos fechas (inclusive) con filtros opcionales.
+     */
+    public Resumen totalizar(LocalDate fechaInicio, LocalDate fechaFin, Long productoId, String metodoPago, String cliente) {
+        lock.readLock().lock();
+        try {
+            Columnas c = listas();
+            Filtro filtro = filtro(c, fechaInicio, fechaFin, productoId, metodoPago, cliente);
+            long[] acumulado = new long[4];
+            if (filtro != null) {
+                c.totalizar(filtro, acumulado);
+            }
+            return Resumen.de(acumulado);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Totales agrupados por producto, método de pago o día.
+     */
+    public Map<String, Resumen> agrupar(LocalDate fechaInicio, LocalDate fechaFin, Long productoId,
+                                       String metodoPago, String cliente, String agrupacion) {
+        if (!AGRUPAR_PRODUCTO.equals(agrupacion) && !AGRUPAR_METODO_PAGO.equals(agrupacion)
+                && !AGRUPAR_DIA.equals(agrupacion)) {
+            throw new IllegalArgumentException("Agrupación no válida: " + agrupacion + " (use producto, metodo_pago o dia)");
+        }
+        if (AGRUPAR_DIA.equals(agrupacion) && fechaInicio.plusDays(MAX_DIAS_AGRUPADOS).isBefore(fechaFin)) {
+            throw new IllegalArgumentException("El rango agrupado por día no puede superar " + MAX_DIAS_AGRUPADOS + " días");
+        }
+        lock.readLock().lock();
+        try {
+            Columnas c = listas();
+            Filtro filtro = filtro(c, fechaInicio, fechaFin, productoId, metodoPago, cliente);
+            Map<String, Resumen> resultado = new LinkedHashMap<>();
+            if (filtro == null) {
+                return resultado;
+            }
+            switch (agrupacion) {
+                case AGRUPAR_PRODUCTO -> c.agruparPorProducto(filtro)
+                        .forEach((id, acumulado) -> resultado.put(String.valueOf(id), Resumen.de(acumulado)));
+                case AGRUPAR_METODO_PAGO -> {
+                    long[][] porCodigo = c.agruparPorMetodo(filtro);
+                    for (int codigo = 0; codigo < porCodigo.length; codigo++) {
+                        if (porCodigo[codigo][0] > 0) {
+                            String metodo = c.metodosPago.valor(codigo);
+                            resultado.put(metodo != null ? metodo : "SIN_METODO", Resumen.de(porCodigo[codigo]));
+                        }
+                    }
+                }
+                default -> {
+                    long[][] porDia = c.agruparPorDia(filtro);
+                    for (int dia = 0; dia < porDia.length; dia++) {
+                        if (porDia[dia][0] > 0) {
+                            resultado.put(fechaInicio.plusDays(dia).toString(), Resumen.de(porDia[dia]));
+                        }
+                    }
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Columnas listas() {
+        if (!cargado) {
+            throw new IllegalStateException("La copia columnar de ventas todavía no está cargada");
+        }
+        return columnas;
+    }
+
+    // null si algún filtro por texto no existe en el diccionario: no puede haber coincidencias
+    private static Filtro filtro(Columnas c, LocalDate fechaInicio, LocalDate fechaFin,
+                                 Long productoId, String metodoPago, String cliente) {
+        if (fechaInicio.isAfter(fechaFin)) {
+            throw new IllegalArgumentException("fechaInicio no puede ser posterior a fechaFin");
+        }
+        int metodo = metodoPago != null ? c.metodosPago.buscar(metodoPago) : -1;
+        int codigoCliente = cliente != null ? c.clientes.buscar(cliente) : -1;
+        if ((metodoPago != null && metodo < 0) || (cliente != null && codigoCliente < 0)) {
+            return null;
+        }
+        long desde = minuto(fechaInicio.atStartOfDay());
+        long hasta = minuto(fechaFin.plusDays(1).atStartOfDay());
+        return new Filtro(desde, hasta, productoId != null ? productoId : -1, metodo, codigoCliente);
+    }
+
+    private static void aplicar(Columnas c, VentaEvent evento) {
+        Venta anterior = evento.anterior();
+        Venta actual = evento.actual();
+        Long id = actual != null ? actual.getId() : anterior != null ? anterior.getId() : null;
+        if (id == null) {
+            return;
+        }
+        c.borrar(id);
+        if (actual != null && actual.getFechaVenta() != null && actual.getProductoId() != null) {
+            c.agregar(id, minuto(actual.getFechaVenta()), actual.getProductoId(),
+                    Dinero.centavosDe(actual.getPrecioTotal()), Dinero.centavosDe(actual.getGanancia()),
+                    Dinero.centavosDe(actual.getCantidad()),
+                    actual.getMetodoPago(), actual.getCliente());
+        }
+        c.compactarSiHaceFalta();
+    }
+
+    static long minuto(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private record Filtro(long desde, long hasta, long producto, int metodo, int cliente) {
+    }
+
+    /**
+     * Arreglos paralelos; la fila i de cada arreglo describe la misma venta.
+     */
+    static final class Columnas {
+        private long[] ids;
+        private long[] minutos;
+        private long[] productos;
+        private long[] totales;
+        private long[] ganancias;
+        private long[] unidades;
+        private int[] metodos;
+        private int[] clientesCol;
+        private int filas;
+        private int borradas;
+        private final Diccionario metodosPago = new Diccionario();
+        private final Diccionario clientes = new Diccionario();
+        private final Map<Long, Integer> filaPorId = new HashMap<>();
+
+        Columnas(int capacidad) {
+            ids = new long[capacidad];
+            minutos = new long[capacidad];
+            productos = new long[capacidad];
+            totales = new long[capacidad];
+            ganancias = new long[capacidad];
+            unidades = new long[capacidad];
+            metodos = new int[capacidad];
+            clientesCol = new int[capacidad];
+        }
+
+        void agregar(long id, long minuto, long productoId, long total, long ganancia, long cantidad,
+                     String metodoPago, String cliente) {
+            if (filas == ids.length) {
+                crecer(filas * 2);
+            }
+            ids[filas] = id;
+            minutos[filas] = minuto;
+            productos[filas] = productoId;
+            totales[filas] = total;
+            ganancias[filas] = ganancia;
+            unidades[filas] = cantidad;
+            metodos[filas] = metodosPago.codificar(metodoPago);
+            clientesCol[filas] = clientes.codificar(cliente);
+            filaPorId.put(id, filas);
+            filas++;
+        }
+
+        int filas() {
+            return filas;
+        }
+
+        int borradas() {
+            return borradas;
+        }
+
+        private void borrar(long id) {
+            Integer fila = filaPorId.remove(id);
+            if (fila != null) {
+                minutos[fila] = BORRADA;
+                borradas++;
+            }
+        }
+
+        private void compactarSiHaceFalta() {
+            if (borradas < 1024 || borradas * 4 < filas) {
+                return;
+            }
+            int destino = 0;
+            filaPorId.clear();
+            for (int i = 0; i < filas; i++) {
+                if (minutos[i] == BORRADA) {
+                    continue;
+                }
+                ids[destino] = ids[i];
+                minutos[destino] = minutos[i];
+                productos[destino] = productos[i];
+                totales[destino] = totales[i];
+                ganancias[destino] = ganancias[i];
+                unidades[destino] = unidades[i];
+                metodos[destino] = metodos[i];
+                clientesCol[destino] = clientesCol[i];
+                filaPorId.put(ids[destino], destino);
+                destino++;
+            }
+            filas = destino;
+            borradas = 0;
+        }
+
+        private void crecer(int capacidad) {
+            ids = Arrays.copyOf(ids, capacidad);
+            minutos = Arrays.copyOf(minutos, capacidad);
+            productos = Arrays.copyOf(productos, capacidad);
+            totales = Arrays.copyOf(totales, capacidad);
+            ganancias = Arrays.copyOf(ganancias, capacidad);
+            unidades = Arrays.copyOf(unidades, capacidad);
+            metodos = Arrays.copyOf(metodos, capacidad);
+            clientesCol = Arrays.copyOf(clientesCol, capacidad);
+        }
+
+        // Máscara -1 (todos los bits) si la fila pasa el filtro, 0 si no
+        private long mascara(Filtro f, int i) {
+            long t = minutos[i];
+            boolean pasa = t >= f.desde() & t < f.hasta()
+                    & (f.producto() < 0 | productos[i] == f.producto())
+                    & (f.metodo() < 0 | metodos[i] == f.metodo())
+                    & (f.cliente() < 0 | clientesCol[i] == f.cliente());
+            return pasa ? -1L : 0L;
+        }
+
+        private void totalizar(Filtro f, long[] acumulado) {
+            long numero = 0;
+            long total = 0;
+            long ganancia = 0;
+            long cantidad = 0;
+            for (int i = 0; i < filas; i++) {
+                long m = mascara(f, i);
+                numero += m & 1L;
+                total += totales[i] & m;
+                ganancia += ganancias[i] & m;
+                cantidad += unidades[i] & m;
+            }
+            acumulado[0] += numero;
+            acumulado[1] += total;
+            acumulado[2] += ganancia;
+            acumulado[3] += cantidad;
+        }
+
+        private Map<Long, long[]> agruparPorProducto(Filtro f) {
+            Map<Long, long[]> grupos = new HashMap<>();
+            for (int i = 0; i < filas; i++) {
+                if (mascara(f, i) != 0) {
+                    sumar(grupos.computeIfAbsent(productos[i], p -> new long[4]), i);
+                }
+            }
+            return grupos;
+        }
+
+        private long[][] agruparPorMetodo(Filtro f) {
+            long[][] grupos = new long[metodosPago.tamano()][4];
+            for (int i = 0; i < filas; i++) {
+                long m = mascara(f, i);
+                long[] g = grupos[metodos[i]];
+                g[0] += m & 1L;
+                g[1] += totales[i] & m;
+                g[2] += ganancias[i] & m;
+                g[3] += unidades[i] & m;
+            }
+            return grupos;
+        }
+
+        private long[][] agruparPorDia(Filtro f) {
+            int dias = (int) ((f.hasta() - f.desde()) / MINUTOS_DIA);
+            long[][] grupos = new long[dias][4];
+            for (int i = 0; i < filas; i++) {
+                if (mascara(f, i) != 0) {
+                    sumar(grupos[(int) ((minutos[i] - f.desde()) / MINUTOS_DIA)], i);
+                }
+            }
+            return grupos;
+        }
+
+        private void sumar(long[] g, int i) {
+            g[0]++;
+            g[1] += totales[i];
+            g[2] += ganancias[i];
+            g[3] += unidades[i];
+        }
+    }
+
+    /**
+     * Codifica textos repetidos como enteros; el código 0 representa null.
+     */
+    private static final class Diccionario {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> valores = new ArrayList<>(List.of(""));
+
+        private int codificar(String valor) {
+            if (valor == null) {
+                return 0;
+            }
+            return codigos.computeIfAbsent(valor, v -> {
+                valores.add(v);
+                return valores.size() - 1;
+            });
+        }
+
+        private int buscar(String valor) {
+            return codigos.getOrDefault(valor, -1);
+        }
+
+        private String valor(int codigo) {
+            return codigo == 0 ? null : valores.get(codigo);
+        }
+
+        private int tamano() {
+            return valores.size();
+        }
+    }
+}
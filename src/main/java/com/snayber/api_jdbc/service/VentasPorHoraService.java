@@ -0,0 +1,127 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.dto.VentasHoraDTO;
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.model.Venta;
+import com.snayber.api_jdbc.repository.VentaPorHoraRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mantiene la tabla ventas_por_hora y arma el mapa de calor día de semana × hora.
+ *
+ * Cada venta suma en el bucket (fecha, hora, tipo de producto); el mapa de calor de
+ * cualquier rango suma como máximo 24 filas por día en lugar de recorrer las ventas.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class VentasPorHoraService {
+
+    private static final int DIAS_SEMANA = 7;
+    private static final int HORAS_DIA = 24;
+    private static final List<String> NOMBRES_DIAS =
+            List.of("LUNES", "MARTES", "MIERCOLES", "JUEVES", "VIERNES", "SABADO", "DOMINGO");
+
+    private final VentaPorHoraRepository ventaPorHoraRepository;
+
+    // Listener síncrono: se ejecuta dentro de la transacción que registra la venta
+    @EventListener
+    public void onVenta(VentaEvent evento) {
+        acumular(evento.anterior(), -1);
+        acumular(evento.actual(), 1);
+    }
+
+    /**
+     * Matrices 7×24 (lunes a domingo, horas 0 a 23) con número de ventas, ingresos y
+     * ganancia del rango. {@code ocurrencias} indica cuántas veces aparece cada día de
+     * la semana en el rango, para sacar promedios por día.
+     *
+     * @param tipoProducto tipo de producto a incluir, o null para todos
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenerHeatmap(LocalDate fechaInicio, LocalDate fechaFin, String tipoProducto) {
+        if (fechaInicio.isAfter(fechaFin)) {
+            throw new IllegalArgumentException("fechaInicio no puede ser posterior a fechaFin");
+        }
+        long[][] ventas = new long[DIAS_SEMANA][HORAS_DIA];
+        long[][] ingresos = new long[DIAS_SEMANA][HORAS_DIA];
+        long[][] ganancias = new long[DIAS_SEMANA][HORAS_DIA];
+
+        for (VentasHoraDTO bucket : ventaPorHoraRepository.sumarPorFechaYHora(fechaInicio, fechaFin, tipoProducto)) {
+            int dia = bucket.getFecha().getDayOfWeek().getValue() - 1;
+            int hora = bucket.getHora();
+            ventas[dia][hora] += bucket.getNumeroVentas() != null ? bucket.getNumeroVentas() : 0;
+            ingresos[dia][hora] = Math.addExact(ingresos[dia][hora], Dinero.centavosDe(bucket.getIngresos()));
+            ganancias[dia][hora] = Math.addExact(ganancias[dia][hora], Dinero.centavosDe(bucket.getGanancia()));
+        }
+
+        int[] ocurrencias = new int[DIAS_SEMANA];
+        for (DayOfWeek dia : DayOfWeek.values()) {
+            ocurrencias[dia.getValue() - 1] = contarDias(fechaInicio, fechaFin, dia);
+        }
+
+        Map<String, Object> heatmap = new LinkedHashMap<>();
+        heatmap.put("fechaInicio", fechaInicio);
+        heatmap.put("fechaFin", fechaFin);
+        heatmap.put("tipoProducto", tipoProducto);
+        heatmap.put("dias", NOMBRES_DIAS);
+        heatmap.put("ocurrencias", ocurrencias);
+        heatmap.put("ventas", ventas);
+        heatmap.put("ingresos", aDecimales(ingresos));
+        heatmap.put("ganancias", aDecimales(ganancias));
+        return heatmap;
+    }
+
+    private void acumular(Venta venta, int signo) {
+        if (venta == null || venta.getFechaVenta() == null) {
+            return;
+        }
+        BigDecimal factor = BigDecimal.valueOf(signo);
+        ventaPorHoraRepository.acumular(
+                venta.getFechaVenta().toLocalDate(),
+                venta.getFechaVenta().getHour(),
+                venta.getProductoId(),
+                venta.getTipoProducto(),
+                signo,
+                valor(venta.getPrecioTotal()).multiply(factor),
+                valor(venta.getGanancia()).multiply(factor));
+        log.debug("Ventas por hora actualizadas por venta id={} (signo {})", venta.getId(), signo);
+    }
+
+    private static int contarDias(LocalDate fechaInicio, LocalDate fechaFin, DayOfWeek dia) {
+        int desplazamiento = (dia.getValue() - fechaInicio.getDayOfWeek().getValue() + DIAS_SEMANA) % DIAS_SEMANA;
+        LocalDate primero = fechaInicio.plusDays(desplazamiento);
+        if (primero.isAfter(fechaFin)) {
+            return 0;
+        }
+        return (int) ((fechaFin.toEpochDay() - primero.toEpochDay()) / DIAS_SEMANA) + 1;
+    }
+
+    private static BigDecimal[][] aDecimales(long[][] centavos) {
+        BigDecimal[][] resultado = new BigDecimal[centavos.length][];
+        for (int i = 0; i < centavos.length; i++) {
+            resultado[i] = new BigDecimal[centavos[i].length];
+            for (int j = 0; j < centavos[i].length; j++) {
+                resultado[i][j] = Dinero.deCentavos(centavos[i][j]).aBigDecimal();
+            }
+        }
+        return resultado;
+    }
+
+    private static BigDecimal valor(BigDecimal valor) {
+        return valor != null ? valor : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,141 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.ProductoEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores de versión de los datos, uno por agregado, que avanzan con cada escritura
+ * confirmada. Sirven como parte de la clave de cachés de resultados: un resultado
+ * guardado con una versión anterior ya no se vuelve a usar.
+ *
+ * Las versiones se incrementan después del commit; son contadores en memoria y
+ * vuelven a empezar al reiniciar la aplicación.
+ *
+ * También generan los ETag de las lecturas condicionales. El ETag incluye un
+ * identificador de arranque, así un contador que vuelve a cero tras un reinicio no
+ * coincide con un ETag emitido antes. Debe calcularse antes de leer los datos: si
+ * una escritura se confirma entre medio, la respuesta lleva datos nuevos con un ETag
+ * viejo y el cliente simplemente los vuelve a pedir la próxima vez.
+ */
+@Service
+public class VersionDatosService {
+
+    public enum Agregado {
+        PRODUCTOS, VENTAS, COMPRAS, ALERTAS
+    }
+
+    private final Map<Agregado, AtomicLong> versiones = new EnumMap<>(Agregado.class);
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    public VersionDatosService() {
+        for (Agregado agregado : Agregado.values()) {
+            versiones.put(agregado, new AtomicLong());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVenta(VentaEvent evento) {
+        // Una venta también descuenta stock, y el stock dispara las alertas
+        incrementar(Agregado.VENTAS, Agregado.PRODUCTOS, Agregado.ALERTAS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCompra(CompraEvent evento) {
+        incrementar(Agregado.COMPRAS, Agregado.PRODUCTOS, Agregado.ALERTAS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProducto(ProductoEvent evento) {
+        incrementar(Agregado.PRODUCTOS, Agregado.ALERTAS);
+    }
+
+    /**
+     * Para procesos que reescriben datos derivados de ventas y compras sin pasar por
+     * una escritura (reconstrucción de metricas_diarias o de los sketches de clientes).
+     * Debe llamarse después del commit.
+     */
+    public void metricasReconstruidas() {
+        incrementar(Agregado.VENTAS, Agregado.COMPRAS);
+    }
+
+    public long ventas() {
+        return version(Agregado.VENTAS);
+    }
+
+    public long compras() {
+        return version(Agregado.COMPRAS);
+    }
+
+    public long productos() {
+        return version(Agregado.PRODUCTOS);
+    }
+
+    public long alertas() {
+        return version(Agregado.ALERTAS);
+    }
+
+    public long version(Agregado agregado) {
+        return versiones.get(agregado).get();
+    }
+
+    /**
+     * Versión de todos los datos: cambia con cualquier escritura.
+     */
+    public long global() {
+        long total = 0;
+        for (AtomicLong version : versiones.values()) {
+            total += version.get();
+        }
+        return total;
+    }
+
+    /**
+     * ETag fuerte (entre comillas) para un recurso que depende de los agregados dados.
+     *
+     * @param recurso nombre del recurso más cualquier parámetro que cambie la respuesta
+     *                sin pasar por una escritura (por ejemplo la fecha de hoy)
+     */
+    public String etag(String recurso, Agregado... agregados) {
+        StringBuilder etag = new StringBuilder("\"").append(recurso).append('-').append(arranque);
+        for (Agregado agregado : agregados) {
+            etag.append('-').append(Long.toString(version(agregado), 36));
+        }
+        return etag.append('"').toString();
+    }
+
+    /**
+     * Compara el ETag con la cabecera If-None-Match, que puede traer una lista separada
+     * por comas o "*". La comparación es débil, como pide HTTP para If-None-Match.
+     */
+    public static boolean coincide(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.equals("*")) {
+                return true;
+            }
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void incrementar(Agregado... agregados) {
+        for (Agregado agregado : agregados) {
+            versiones.get(agregado).incrementAndGet();
+        }
+    }
+}
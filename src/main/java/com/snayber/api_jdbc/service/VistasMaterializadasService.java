@@ -0,0 +1,260 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.CompraEvent;
+import com.snayber.api_jdbc.event.ProductoEvent;
+import com.snayber.api_jdbc.event.VentaEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versiones en vista materializada de los reportes de proveedores, inventario
+ * valorizado y análisis de clientes.
+ *
+ * Cada reporte se puede pedir "fresh" (llama a la función almacenada, como siempre)
+ * o "snapshot" (lee la vista materializada e informa su antigüedad). Las vistas se
+ * refrescan con REFRESH MATERIALIZED VIEW CONCURRENTLY, que no bloquea las lecturas,
+ * cuando acumulan suficientes escrituras o cuando vence el intervalo desde el último
+ * refresco con escrituras pendientes.
+ *
+ * Si la vista no existe (schema.sql no se aplicó, o la base no es PostgreSQL) el modo
+ * snapshot responde con la función almacenada. Lo mismo ocurre tras un reinicio hasta
+ * que termina el primer refresco, que corre en segundo plano: la antigüedad de la
+ * vista no se conoce y no se hace esperar a la petición.
+ */
+@Service
+@Slf4j
+public class VistasMaterializadasService {
+
+    public static final String MODO_FRESH = "fresh";
+    public static final String MODO_SNAPSHOT = "snapshot";
+
+    // Posición de la fila en la salida de la función (WITH ORDINALITY en schema.sql)
+    private static final String COLUMNA_ORDEN = "ordinality";
+
+    public enum Vista {
+        PROVEEDORES("mv_reporte_proveedores", "reporte_proveedores()"),
+        INVENTARIO_VALORIZADO("mv_reporte_inventario_valorizado", "reporte_inventario_valorizado()"),
+        ANALISIS_CLIENTES("mv_reporte_analisis_clientes", "reporte_analisis_clientes()");
+
+        private final String nombre;
+        private final String funcion;
+
+        Vista(String nombre, String funcion) {
+            this.nombre = nombre;
+            this.funcion = funcion;
+        }
+    }
+
+    /**
+     * Filas del reporte y de dónde salieron. {@code actualizado} y {@code edadSegundos}
+     * son null en modo fresh.
+     */
+    public record Resultado(List<Map<String, Object>> filas, String modo, Instant actualizado, Long edadSegundos) {
+
+        public Map<String, Object> metadatos() {
+            Map<String, Object> metadatos = new LinkedHashMap<>();
+            metadatos.put("modo", modo);
+            if (actualizado != null) {
+                metadatos.put("snapshotActualizado", actualizado);
+                metadatos.put("snapshotEdadSegundos", edadSegundos);
+            }
+            return metadatos;
+        }
+    }
+
+    private static final class Estado {
+        private final AtomicLong escriturasPendientes = new AtomicLong();
+        private final AtomicBoolean refrescando = new AtomicBoolean();
+        private volatile Instant ultimaActualizacion;
+        private volatile Boolean existe;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Vista, Estado> estados = new EnumMap<>(Vista.class);
+    private final long umbralEscrituras;
+    private final Duration intervalo;
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("vistas-refresco").daemon().factory());
+
+    // La base no tiene pg_matviews (no es PostgreSQL): ninguna vista puede existir
+    private volatile boolean sinVistas;
+
+    public VistasMaterializadasService(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.reportes.vistas.umbral-escrituras:50}") long umbralEscrituras,
+                                       @Value("${app.reportes.vistas.intervalo-minutos:15}") long intervaloMinutos) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.umbralEscrituras = Math.max(1, umbralEscrituras);
+        this.intervalo = Duration.ofMinutes(intervaloMinutos);
+        for (Vista vista : Vista.values()) {
+            estados.put(vista, new Estado());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVenta(VentaEvent evento) {
+        registrarEscritura(Vista.ANALISIS_CLIENTES);
+        registrarEscritura(Vista.INVENTARIO_VALORIZADO);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCompra(CompraEvent evento) {
+        registrarEscritura(Vista.PROVEEDORES);
+        registrarEscritura(Vista.INVENTARIO_VALORIZADO);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProducto(ProductoEvent evento) {
+        registrarEscritura(Vista.INVENTARIO_VALORIZADO);
+    }
+
+    /**
+     * @param modo "fresh" o "snapshot" (sin distinguir mayúsculas)
+     * @throws IllegalArgumentException si el modo no es válido
+     */
+    public Resultado consultar(Vista vista, String modo) {
+        String normalizado = modo != null ? modo.trim().toLowerCase(Locale.ROOT) : MODO_FRESH;
+        if (!MODO_FRESH.equals(normalizado) && !MODO_SNAPSHOT.equals(normalizado)) {
+            throw new IllegalArgumentException("Modo no válido: " + modo + " (use fresh o snapshot)");
+        }
+        Estado estado = estados.get(vista);
+        Instant actualizado = estado.ultimaActualizacion;
+        if (MODO_SNAPSHOT.equals(normalizado) && existe(vista)) {
+            if (actualizado != null) {
+                // Mismo orden que la función; la columna de orden no se devuelve
+                List<Map<String, Object>> filas = jdbcTemplate.queryForList(
+                        "SELECT * FROM " + vista.nombre + " ORDER BY " + COLUMNA_ORDEN);
+                filas.forEach(fila -> fila.remove(COLUMNA_ORDEN));
+                return new Resultado(filas, MODO_SNAPSHOT, actualizado,
+                        Duration.between(actualizado, Instant.now()).toSeconds());
+            }
+            // Tras un reinicio la antigüedad de la vista es desconocida: se refresca una vez
+            // en segundo plano y mientras tanto se responde en vivo
+            ejecutor.execute(() -> {
+                if (estado.ultimaActualizacion == null) {
+                    refrescarSinError(vista);
+                }
+            });
+        }
+        return new Resultado(jdbcTemplate.queryForList("SELECT * FROM " + vista.funcion), MODO_FRESH, null, null);
+    }
+
+    /**
+     * Revisa periódicamente qué vistas deben refrescarse: las que superan el umbral de
+     * escrituras, o las que tienen escrituras pendientes y superan el intervalo.
+     */
+    @Scheduled(initialDelayString = "${app.reportes.vistas.revision-ms:30000}",
+               fixedDelayString = "${app.reportes.vistas.revision-ms:30000}")
+    public void revisar() {
+        for (Vista vista : Vista.values()) {
+            Estado estado = estados.get(vista);
+            long pendientes = estado.escriturasPendientes.get();
+            boolean vencida = estado.ultimaActualizacion == null
+                    || Duration.between(estado.ultimaActualizacion, Instant.now()).compareTo(intervalo) >= 0;
+            if (pendientes >= umbralEscrituras || (vencida && (pendientes > 0 || estado.ultimaActualizacion == null))) {
+                if (Boolean.FALSE.equals(estado.existe)) {
+                    estado.existe = null;
+                }
+                refrescarSinError(vista);
+            }
+        }
+    }
+
+    /**
+     * Refresca la vista ahora. Si ya hay un refresco en curso no lanza otro.
+     *
+     * @return false si la vista no existe o ya se estaba refrescando
+     */
+    public boolean refrescar(Vista vista) {
+        Estado estado = estados.get(vista);
+        if (!existe(vista) || !estado.refrescando.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long pendientes = estado.escriturasPendientes.get();
+            long inicio = System.currentTimeMillis();
+            jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY " + vista.nombre);
+            estado.escriturasPendientes.addAndGet(-pendientes);
+            estado.ultimaActualizacion = Instant.now();
+            log.info("Vista {} refrescada en {} ms ({} escrituras pendientes)",
+                    vista.nombre, System.currentTimeMillis() - inicio, pendientes);
+            return true;
+        } finally {
+            estado.refrescando.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    public Map<String, Object> obtenerEstado() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        for (Vista vista : Vista.values()) {
+            Estado estado = estados.get(vista);
+            Map<String, Object> detalle = new LinkedHashMap<>();
+            detalle.put("vista", vista.nombre);
+            detalle.put("existe", estado.existe);
+            detalle.put("ultimaActualizacion", estado.ultimaActualizacion);
+            detalle.put("escriturasPendientes", estado.escriturasPendientes.get());
+            detalle.put("refrescando", estado.refrescando.get());
+            resultado.put(vista.name(), detalle);
+        }
+        resultado.put("umbralEscrituras", umbralEscrituras);
+        resultado.put("intervaloMinutos", intervalo.toMinutes());
+        return resultado;
+    }
+
+    private void refrescarSinError(Vista vista) {
+        try {
+            refrescar(vista);
+        } catch (Exception e) {
+            log.warn("No se pudo refrescar {}: {}", vista.nombre, e.getMessage());
+        }
+    }
+
+    private void registrarEscritura(Vista vista) {
+        estados.get(vista).escriturasPendientes.incrementAndGet();
+    }
+
+    // Las peticiones usan la respuesta guardada; revisar() vuelve a consultar las vistas
+    // que no existían, así una vista creada más tarde se detecta sin reiniciar
+    private boolean existe(Vista vista) {
+        Estado estado = estados.get(vista);
+        if (estado.existe != null) {
+            return estado.existe;
+        }
+        if (sinVistas) {
+            estado.existe = false;
+            return false;
+        }
+        try {
+            Integer cantidad = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM pg_matviews WHERE matviewname = ?", Integer.class, vista.nombre);
+            estado.existe = cantidad != null && cantidad > 0;
+        } catch (DataAccessException e) {
+            log.info("La base no tiene vistas materializadas; el modo snapshot responde en vivo ({})", e.getMessage());
+            sinVistas = true;
+            estado.existe = false;
+        }
+        return estado.existe;
+    }
+}
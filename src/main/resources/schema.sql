@@ -0,0 +1,257 @@
+-- Tablas auxiliares de reportes y agregados.
+-- Todas las sentencias son idempotentes: se ejecutan con spring.sql.init.mode=always
+-- (ver ConditionalDatabaseInitialization) o manualmente sobre la base existente.
+
+-- metricas_diarias se actualiza con INSERT ... ON CONFLICT (fecha)
+CREATE UNIQUE INDEX IF NOT EXISTS ux_metricas_diarias_fecha ON metricas_diarias (fecha);
+
+-- Carga inicial desde ventas y compras, solo si la tabla está vacía; desde ahí la
+-- mantiene cada venta y compra registrada (MetricaDiariaService)
+INSERT INTO metricas_diarias (fecha, total_ventas, ganancia_total, numero_ventas, productos_vendidos,
+                              total_compras, numero_compras, productos_comprados, ticket_promedio,
+                              margen_promedio, fecha_creacion, fecha_actualizacion)
+SELECT COALESCE(v.fecha, c.fecha),
+       COALESCE(v.total, 0), COALESCE(v.ganancia, 0), COALESCE(v.numero, 0), COALESCE(v.unidades, 0),
+       COALESCE(c.total, 0), COALESCE(c.numero, 0), COALESCE(c.unidades, 0),
+       CASE WHEN v.numero > 0 THEN ROUND(v.total / v.numero, 2) ELSE 0 END,
+       CASE WHEN v.total > 0 THEN LEAST(999.99, GREATEST(-999.99, ROUND(v.ganancia * 100 / v.total, 2))) ELSE 0 END,
+       now(), now()
+FROM (SELECT CAST(fecha_venta AS DATE) AS fecha, COALESCE(SUM(precio_total), 0) AS total,
+             COALESCE(SUM(ganancia), 0) AS ganancia, COUNT(*) AS numero, COALESCE(SUM(cantidad), 0) AS unidades
+      FROM ventas WHERE fecha_venta IS NOT NULL GROUP BY CAST(fecha_venta AS DATE)) v
+FULL OUTER JOIN
+     (SELECT CAST(fecha_compra AS DATE) AS fecha, COALESCE(SUM(costo_total), 0) AS total,
+             COUNT(*) AS numero, COALESCE(SUM(cantidad), 0) AS unidades
+      FROM compras WHERE fecha_compra IS NOT NULL GROUP BY CAST(fecha_compra AS DATE)) c
+  ON c.fecha = v.fecha
+WHERE NOT EXISTS (SELECT 1 FROM metricas_diarias);
+
+-- Reconstrucción de metricas_diarias por bloques de días con checkpoint
+CREATE TABLE IF NOT EXISTS reconstrucciones_metricas (
+    id                   BIGSERIAL PRIMARY KEY,
+    fecha_inicio         DATE         NOT NULL,
+    fecha_fin            DATE         NOT NULL,
+    dias_por_bloque      INTEGER      NOT NULL,
+    bloques_totales      INTEGER      NOT NULL DEFAULT 0,
+    bloques_completados  INTEGER      NOT NULL DEFAULT 0,
+    estado               VARCHAR(20)  NOT NULL,
+    instancia            VARCHAR(100),
+    mensaje_error        TEXT,
+    fecha_creacion       TIMESTAMP,
+    fecha_actualizacion  TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS reconstrucciones_metricas_bloques (
+    reconstruccion_id    BIGINT       NOT NULL REFERENCES reconstrucciones_metricas (id) ON DELETE CASCADE,
+    bloque_inicio        DATE         NOT NULL,
+    fecha_completado     TIMESTAMP    NOT NULL DEFAULT now(),
+    PRIMARY KEY (reconstruccion_id, bloque_inicio)
+);
+
+-- Totales de ventas y compras por producto (reporte de rentabilidad)
+CREATE TABLE IF NOT EXISTS producto_totales (
+    producto_id          BIGINT        PRIMARY KEY,
+    unidades_vendidas    NUMERIC(14,2) NOT NULL DEFAULT 0,
+    ingresos_ventas      NUMERIC(14,2) NOT NULL DEFAULT 0,
+    costo_ventas         NUMERIC(14,2) NOT NULL DEFAULT 0,
+    numero_ventas        INTEGER       NOT NULL DEFAULT 0,
+    unidades_compradas   NUMERIC(14,2) NOT NULL DEFAULT 0,
+    gasto_compras        NUMERIC(14,2) NOT NULL DEFAULT 0,
+    numero_compras       INTEGER       NOT NULL DEFAULT 0,
+    fecha_actualizacion  TIMESTAMP
+);
+
+-- Carga inicial: ventas y compras se agregan por separado antes de unirlas,
+-- solo si la tabla está vacía
+INSERT INTO producto_totales (producto_id, unidades_vendidas, ingresos_ventas, costo_ventas, numero_ventas,
+                              unidades_compradas, gasto_compras, numero_compras, fecha_actualizacion)
+SELECT COALESCE(v.producto_id, c.producto_id),
+       COALESCE(v.unidades, 0), COALESCE(v.ingresos, 0), COALESCE(v.costo, 0), COALESCE(v.numero, 0),
+       COALESCE(c.unidades, 0), COALESCE(c.gasto, 0), COALESCE(c.numero, 0), now()
+FROM (SELECT producto_id, SUM(cantidad) AS unidades, SUM(precio_total) AS ingresos,
+             SUM(COALESCE(costo_unitario, 0) * cantidad) AS costo, COUNT(*) AS numero
+      FROM ventas GROUP BY producto_id) v
+FULL OUTER JOIN
+     (SELECT producto_id, SUM(cantidad) AS unidades, SUM(costo_total) AS gasto, COUNT(*) AS numero
+      FROM compras GROUP BY producto_id) c
+  ON c.producto_id = v.producto_id
+WHERE NOT EXISTS (SELECT 1 FROM producto_totales);
+
+-- Paginación por clave de /api/ventas y /api/compras: (fecha, id) descendente
+CREATE INDEX IF NOT EXISTS ix_ventas_fecha_venta_id ON ventas (fecha_venta DESC, id DESC);
+CREATE INDEX IF NOT EXISTS ix_compras_fecha_compra_id ON compras (fecha_compra DESC, id DESC);
+
+-- Tipo de producto con el que se registró cada venta (bucket de ventas_por_hora)
+ALTER TABLE ventas ADD COLUMN IF NOT EXISTS tipo_producto VARCHAR(50);
+UPDATE ventas v SET tipo_producto = COALESCE(p.tipo, 'SIN_TIPO')
+FROM productos p
+WHERE p.id = v.producto_id AND v.tipo_producto IS NULL;
+
+-- Ventas por día, hora y tipo de producto (mapa de calor de /api/reportes/tendencias/heatmap)
+CREATE TABLE IF NOT EXISTS ventas_por_hora (
+    id                   BIGSERIAL     PRIMARY KEY,
+    fecha                DATE          NOT NULL,
+    hora                 INTEGER       NOT NULL,
+    tipo_producto        VARCHAR(50)   NOT NULL,
+    numero_ventas        INTEGER       NOT NULL DEFAULT 0,
+    ingresos             NUMERIC(14,2) NOT NULL DEFAULT 0,
+    ganancia             NUMERIC(14,2) NOT NULL DEFAULT 0,
+    UNIQUE (fecha, hora, tipo_producto)
+);
+
+-- Carga inicial desde ventas, solo si la tabla está vacía
+INSERT INTO ventas_por_hora (fecha, hora, tipo_producto, numero_ventas, ingresos, ganancia)
+SELECT CAST(v.fecha_venta AS DATE), CAST(EXTRACT(HOUR FROM v.fecha_venta) AS INTEGER),
+       COALESCE(v.tipo_producto, p.tipo, 'SIN_TIPO'), COUNT(*), COALESCE(SUM(v.precio_total), 0), COALESCE(SUM(v.ganancia), 0)
+FROM ventas v
+LEFT JOIN productos p ON p.id = v.producto_id
+WHERE v.fecha_venta IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM ventas_por_hora)
+GROUP BY CAST(v.fecha_venta AS DATE), CAST(EXTRACT(HOUR FROM v.fecha_venta) AS INTEGER), COALESCE(v.tipo_producto, p.tipo, 'SIN_TIPO');
+
+-- Cola de reportes en segundo plano (/api/reportes/jobs)
+CREATE TABLE IF NOT EXISTS trabajos_reportes (
+    id                   BIGSERIAL     PRIMARY KEY,
+    tipo_reporte         VARCHAR(50)   NOT NULL,
+    parametros_json      TEXT,
+    clave                VARCHAR(64)   NOT NULL,
+    prioridad            INTEGER       NOT NULL DEFAULT 1,
+    estado               VARCHAR(20)   NOT NULL,
+    progreso             INTEGER       NOT NULL DEFAULT 0,
+    filas_resultado      INTEGER,
+    tamano_resultado     BIGINT,
+    mensaje_error        TEXT,
+    fecha_creacion       TIMESTAMP,
+    fecha_inicio         TIMESTAMP,
+    fecha_fin            TIMESTAMP
+);
+
+-- Un solo trabajo en curso por pedido: clave_activa vuelve a NULL al terminar
+ALTER TABLE trabajos_reportes ADD COLUMN IF NOT EXISTS clave_activa VARCHAR(64);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_trabajos_reportes_clave_activa ON trabajos_reportes (clave_activa);
+
+-- Instancia que encoló el trabajo: al arrancar, cada una interrumpe solo los suyos
+ALTER TABLE trabajos_reportes ADD COLUMN IF NOT EXISTS instancia VARCHAR(100);
+
+-- Resultado en JSON comprimido con gzip; separado para no leerlo al consultar el estado
+CREATE TABLE IF NOT EXISTS trabajos_reportes_resultados (
+    trabajo_id           BIGINT        PRIMARY KEY REFERENCES trabajos_reportes (id) ON DELETE CASCADE,
+    contenido            BYTEA         NOT NULL
+);
+
+-- Vistas materializadas de los reportes de funciones almacenadas (modo=snapshot).
+-- REFRESH MATERIALIZED VIEW CONCURRENTLY necesita un índice único; se usa la clave
+-- natural de cada reporte para que el refresco solo reescriba las filas que cambiaron.
+-- La columna ordinality guarda el orden en que la función devuelve las filas, así el
+-- modo snapshot las entrega en el mismo orden que el modo fresh.
+CREATE MATERIALIZED VIEW IF NOT EXISTS mv_reporte_proveedores AS
+SELECT f.* FROM reporte_proveedores() WITH ORDINALITY f;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_reporte_proveedores_proveedor ON mv_reporte_proveedores (proveedor);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS mv_reporte_inventario_valorizado AS
+SELECT f.* FROM reporte_inventario_valorizado() WITH ORDINALITY f;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_reporte_inventario_valorizado_producto ON mv_reporte_inventario_valorizado (producto_id);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS mv_reporte_analisis_clientes AS
+SELECT f.* FROM reporte_analisis_clientes() WITH ORDINALITY f;
+CREATE UNIQUE INDEX IF NOT EXISTS ux_mv_reporte_analisis_clientes_cliente ON mv_reporte_analisis_clientes (cliente);
+
+-- Totales por cliente (reporte de clientes y rankings), mantenidos por cada venta confirmada.
+-- Las columnas rfm_* y segmento las escribe el recálculo RFM nocturno.
+CREATE TABLE IF NOT EXISTS cliente_agregados (
+    cliente              VARCHAR(100)  PRIMARY KEY,
+    primera_compra       TIMESTAMP,
+    ultima_compra        TIMESTAMP,
+    numero_compras       INTEGER       NOT NULL DEFAULT 0,
+    total_gastado        NUMERIC(14,2) NOT NULL DEFAULT 0,
+    margen_total         NUMERIC(14,2) NOT NULL DEFAULT 0,
+    ticket_promedio      NUMERIC(14,2) NOT NULL DEFAULT 0,
+    rfm_recencia         INTEGER,
+    rfm_frecuencia       INTEGER,
+    rfm_monetario        INTEGER,
+    segmento             VARCHAR(20),
+    fecha_rfm            TIMESTAMP,
+    fecha_actualizacion  TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS ix_cliente_agregados_total ON cliente_agregados (total_gastado DESC);
+CREATE INDEX IF NOT EXISTS ix_cliente_agregados_compras ON cliente_agregados (numero_compras DESC);
+CREATE INDEX IF NOT EXISTS ix_cliente_agregados_margen ON cliente_agregados (margen_total DESC);
+CREATE INDEX IF NOT EXISTS ix_cliente_agregados_segmento ON cliente_agregados (segmento, total_gastado DESC);
+
+-- Recalcular primera/última compra al anular o modificar una venta
+CREATE INDEX IF NOT EXISTS ix_ventas_cliente_fecha ON ventas (cliente, fecha_venta);
+
+-- Carga inicial desde ventas, solo si la tabla está vacía
+INSERT INTO cliente_agregados (cliente, primera_compra, ultima_compra, numero_compras, total_gastado,
+                               margen_total, ticket_promedio, fecha_actualizacion)
+SELECT cliente, MIN(fecha_venta), MAX(fecha_venta), COUNT(*), COALESCE(SUM(precio_total), 0),
+       COALESCE(SUM(ganancia), 0), ROUND(COALESCE(SUM(precio_total), 0) / COUNT(*), 2), now()
+FROM ventas
+WHERE cliente IS NOT NULL AND TRIM(cliente) <> ''
+  AND NOT EXISTS (SELECT 1 FROM cliente_agregados)
+GROUP BY cliente;
+
+-- Totales por proveedor y por (proveedor, producto), mantenidos por cada compra confirmada.
+-- El reporte de proveedores (modo=agregado) y la búsqueda del proveedor más barato leen de aquí.
+CREATE TABLE IF NOT EXISTS proveedor_agregados (
+    proveedor            VARCHAR(100)  PRIMARY KEY,
+    numero_compras       INTEGER       NOT NULL DEFAULT 0,
+    unidades_compradas   NUMERIC(14,2) NOT NULL DEFAULT 0,
+    gasto_total          NUMERIC(14,2) NOT NULL DEFAULT 0,
+    ultima_compra        TIMESTAMP,
+    fecha_actualizacion  TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS proveedor_productos (
+    id                   BIGSERIAL     PRIMARY KEY,
+    proveedor            VARCHAR(100)  NOT NULL,
+    producto_id          BIGINT        NOT NULL,
+    numero_compras       INTEGER       NOT NULL DEFAULT 0,
+    unidades_compradas   NUMERIC(14,2) NOT NULL DEFAULT 0,
+    gasto_total          NUMERIC(14,2) NOT NULL DEFAULT 0,
+    ultimo_costo         NUMERIC(12,2),
+    fecha_ultimo_costo   TIMESTAMP,
+    UNIQUE (proveedor, producto_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_proveedor_productos_producto_costo
+    ON proveedor_productos (producto_id, ultimo_costo, fecha_ultimo_costo DESC);
+
+-- Recalcular último costo y última compra al anular o modificar una compra
+CREATE INDEX IF NOT EXISTS ix_compras_proveedor_producto_fecha ON compras (proveedor, producto_id, fecha_compra DESC);
+
+-- Carga inicial desde compras, solo si las tablas están vacías
+INSERT INTO proveedor_agregados (proveedor, numero_compras, unidades_compradas, gasto_total, ultima_compra, fecha_actualizacion)
+SELECT proveedor, COUNT(*), COALESCE(SUM(cantidad), 0), COALESCE(SUM(costo_total), 0), MAX(fecha_compra), now()
+FROM compras
+WHERE proveedor IS NOT NULL AND TRIM(proveedor) <> ''
+  AND NOT EXISTS (SELECT 1 FROM proveedor_agregados)
+GROUP BY proveedor;
+
+INSERT INTO proveedor_productos (proveedor, producto_id, numero_compras, unidades_compradas, gasto_total,
+                                 ultimo_costo, fecha_ultimo_costo)
+SELECT g.proveedor, g.producto_id, g.numero, g.unidades, g.gasto, u.costo_unitario, u.fecha_compra
+FROM (SELECT proveedor, producto_id, COUNT(*) AS numero, COALESCE(SUM(cantidad), 0) AS unidades,
+             COALESCE(SUM(costo_total), 0) AS gasto
+      FROM compras
+      WHERE proveedor IS NOT NULL AND TRIM(proveedor) <> '' AND producto_id IS NOT NULL
+      GROUP BY proveedor, producto_id) g
+JOIN (SELECT DISTINCT ON (proveedor, producto_id) proveedor, producto_id, costo_unitario, fecha_compra
+      FROM compras
+      WHERE proveedor IS NOT NULL AND producto_id IS NOT NULL
+      ORDER BY proveedor, producto_id, fecha_compra DESC, id DESC) u
+  ON u.proveedor = g.proveedor AND u.producto_id = g.producto_id
+WHERE NOT EXISTS (SELECT 1 FROM proveedor_productos);
+
+-- Sketch HyperLogLog (4096 registros de un byte) de los clientes distintos de cada día.
+-- Lo actualiza cada venta; los rangos se estiman combinando los sketches diarios.
+-- pendiente marca los días a reconstruir desde ventas: los que tuvieron una venta editada o
+-- eliminada (un sketch no admite restas) y los días con ventas anteriores a esta tabla, que
+-- ClientesDistintosService agrega con un sketch vacío en su primera pasada tras cada arranque.
+CREATE TABLE IF NOT EXISTS metricas_diarias_clientes (
+    fecha                DATE       PRIMARY KEY,
+    registros            BYTEA      NOT NULL,
+    pendiente            BOOLEAN    NOT NULL DEFAULT FALSE,
+    fecha_actualizacion  TIMESTAMP
+);
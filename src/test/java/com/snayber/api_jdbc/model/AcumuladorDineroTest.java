@@ -0,0 +1,63 @@
+package com.snayber.api_jdbc.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AcumuladorDineroTest {
+
+	@Test
+	void sumaMinimoMaximoYPromedioIgnorandoNulos() {
+		AcumuladorDinero acumulador = new AcumuladorDinero()
+				.agregar(new BigDecimal("10.00"))
+				.agregar((BigDecimal) null)
+				.agregar(new BigDecimal("2.505"))
+				.agregar(Dinero.deCentavos(-100));
+
+		assertThat(acumulador.cantidad()).isEqualTo(3);
+		assertThat(acumulador.total()).isEqualTo(Dinero.deCentavos(1151));
+		assertThat(acumulador.minimo()).isEqualTo(Dinero.deCentavos(-100));
+		assertThat(acumulador.maximo()).isEqualTo(Dinero.deCentavos(1000));
+		// 1151 / 3 = 383.67 centavos
+		assertThat(acumulador.promedio()).isEqualTo(Dinero.deCentavos(384));
+	}
+
+	@Test
+	void sinValoresTodoEsCero() {
+		AcumuladorDinero vacio = new AcumuladorDinero();
+		assertThat(vacio.total()).isEqualTo(Dinero.CERO);
+		assertThat(vacio.minimo()).isEqualTo(Dinero.CERO);
+		assertThat(vacio.maximo()).isEqualTo(Dinero.CERO);
+		assertThat(vacio.promedio()).isEqualTo(Dinero.CERO);
+	}
+
+	@Test
+	void combinarEquivaleAAgregarTodo() {
+		AcumuladorDinero a = new AcumuladorDinero().agregarCentavos(100).agregarCentavos(250);
+		AcumuladorDinero b = new AcumuladorDinero().agregarCentavos(-75);
+		AcumuladorDinero todo = new AcumuladorDinero().agregarCentavos(100).agregarCentavos(250).agregarCentavos(-75);
+
+		a.combinar(b);
+		assertThat(a.totalCentavos()).isEqualTo(todo.totalCentavos());
+		assertThat(a.cantidad()).isEqualTo(todo.cantidad());
+		assertThat(a.minimo()).isEqualTo(todo.minimo());
+		assertThat(a.maximo()).isEqualTo(todo.maximo());
+		assertThat(new AcumuladorDinero().combinar(new AcumuladorDinero()).promedio()).isEqualTo(Dinero.CERO);
+	}
+
+	@Test
+	void desbordarElTotalLanzaExcepcion() {
+		AcumuladorDinero acumulador = new AcumuladorDinero().agregarCentavos(Long.MAX_VALUE);
+		assertThatThrownBy(() -> acumulador.agregarCentavos(1)).isInstanceOf(ArithmeticException.class);
+
+		AcumuladorDinero negativo = new AcumuladorDinero().agregarCentavos(Long.MIN_VALUE);
+		assertThatThrownBy(() -> negativo.agregar(Dinero.deCentavos(-1))).isInstanceOf(ArithmeticException.class);
+
+		AcumuladorDinero otro = new AcumuladorDinero().agregarCentavos(1);
+		assertThatThrownBy(() -> new AcumuladorDinero().agregarCentavos(Long.MAX_VALUE).combinar(otro))
+				.isInstanceOf(ArithmeticException.class);
+	}
+}
@@ -0,0 +1,50 @@
+package com.snayber.api_jdbc.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DineroTest {
+
+	@Test
+	void redondeaADosDecimalesConMitadesHaciaAfuera() {
+		assertThat(Dinero.centavosDe(new BigDecimal("1.005"))).isEqualTo(101);
+		assertThat(Dinero.centavosDe(new BigDecimal("1.0049"))).isEqualTo(100);
+		assertThat(Dinero.centavosDe(new BigDecimal("-1.005"))).isEqualTo(-101);
+		assertThat(Dinero.centavosDe(new BigDecimal("12.3"))).isEqualTo(1230);
+		assertThat(Dinero.centavosDe(new BigDecimal("7"))).isEqualTo(700);
+		assertThat(Dinero.centavosDe(new BigDecimal("1E+2"))).isEqualTo(10_000);
+		assertThat(Dinero.centavosDe(null)).isZero();
+		assertThat(Dinero.de(null)).isNull();
+	}
+
+	@Test
+	void dividirRedondeaAlCentavoMasCercano() {
+		assertThat(Dinero.deCentavos(10).dividir(3)).isEqualTo(Dinero.deCentavos(3));
+		assertThat(Dinero.deCentavos(11).dividir(3)).isEqualTo(Dinero.deCentavos(4));
+		assertThat(Dinero.deCentavos(5).dividir(2)).isEqualTo(Dinero.deCentavos(3));
+		assertThat(Dinero.deCentavos(-5).dividir(2)).isEqualTo(Dinero.deCentavos(-3));
+		assertThat(Dinero.deCentavos(5).dividir(-2)).isEqualTo(Dinero.deCentavos(-3));
+		assertThatThrownBy(() -> Dinero.deCentavos(5).dividir(0)).isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	void seConvierteSiempreConDosDecimales() {
+		assertThat(Dinero.de(new BigDecimal("12.3")).aBigDecimal()).isEqualTo(new BigDecimal("12.30"));
+		assertThat(Dinero.CERO.aBigDecimal()).isEqualTo(new BigDecimal("0.00"));
+		assertThat(Dinero.deCentavos(-150)).hasToString("-1.50");
+	}
+
+	@Test
+	void lasOperacionesQueNoCabenFallanEnLugarDeDesbordar() {
+		Dinero maximo = Dinero.deCentavos(Long.MAX_VALUE);
+		assertThatThrownBy(() -> maximo.sumar(Dinero.deCentavos(1))).isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> Dinero.deCentavos(Long.MIN_VALUE).restar(Dinero.deCentavos(1)))
+				.isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> maximo.multiplicar(2)).isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> Dinero.centavosDe(new BigDecimal("1E+17"))).isInstanceOf(ArithmeticException.class);
+	}
+}
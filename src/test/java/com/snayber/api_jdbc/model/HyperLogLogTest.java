@@ -0,0 +1,76 @@
+package com.snayber.api_jdbc.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HyperLogLogTest {
+
+	private static final int PRUEBAS = 5;
+
+	@ParameterizedTest
+	@ValueSource(ints = {1_000, 10_000, 12_000, 100_000, 1_000_000})
+	void estimaDentroDelErrorDocumentado(int distintos) {
+		double sumaErrores = 0;
+		for (int prueba = 0; prueba < PRUEBAS; prueba++) {
+			HyperLogLog sketch = new HyperLogLog();
+			for (int i = 0; i < distintos; i++) {
+				sketch.agregar("prueba-" + prueba + "-cliente-" + i);
+			}
+			double error = (sketch.estimar() - distintos) / (double) distintos;
+			// Cada estimación dentro de 3 errores estándar
+			assertThat(Math.abs(error)).isLessThan(3 * HyperLogLog.ERROR_ESTANDAR);
+			sumaErrores += error;
+		}
+		// Sin sesgo: el promedio de las pruebas queda dentro de un error estándar
+		assertThat(Math.abs(sumaErrores / PRUEBAS)).isLessThan(HyperLogLog.ERROR_ESTANDAR);
+	}
+
+	@Test
+	void conjuntosPequenosSonPracticamenteExactos() {
+		assertThat(new HyperLogLog().estimar()).isZero();
+		assertThat(new HyperLogLog().agregar("Ana").estimar()).isEqualTo(1);
+
+		HyperLogLog repetidos = new HyperLogLog();
+		for (int i = 0; i < 1_000; i++) {
+			repetidos.agregar("cliente-" + (i % 10));
+		}
+		assertThat(repetidos.estimar()).isEqualTo(10);
+	}
+
+	@Test
+	void combinarEsAsociativoConmutativoEIdempotente() {
+		HyperLogLog a = sketch(0, 3_000);
+		HyperLogLog b = sketch(2_000, 6_000);
+		HyperLogLog c = sketch(5_000, 20_000);
+
+		byte[] izquierda = HyperLogLog.de(a.registros()).combinar(b).combinar(c).registros();
+		byte[] derecha = HyperLogLog.de(a.registros()).combinar(HyperLogLog.de(b.registros()).combinar(c)).registros();
+		byte[] invertido = HyperLogLog.de(c.registros()).combinar(b).combinar(a).registros();
+
+		assertThat(izquierda).isEqualTo(derecha).isEqualTo(invertido);
+		assertThat(HyperLogLog.de(izquierda).combinar(c).registros()).isEqualTo(izquierda);
+		// La combinación es igual al sketch de la unión
+		assertThat(izquierda).isEqualTo(sketch(0, 20_000).registros());
+	}
+
+	@Test
+	void rechazaRegistrosInvalidos() {
+		assertThatThrownBy(() -> HyperLogLog.de(new byte[10])).isInstanceOf(IllegalArgumentException.class);
+
+		byte[] registros = new byte[HyperLogLog.REGISTROS];
+		registros[7] = 100;
+		assertThatThrownBy(() -> HyperLogLog.de(registros)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static HyperLogLog sketch(int desde, int hasta) {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = desde; i < hasta; i++) {
+			sketch.agregar("cliente-" + i);
+		}
+		return sketch;
+	}
+}
@@ -0,0 +1,70 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.model.ClienteAgregado;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Asignación de quintiles y segmentos RFM, sin base de datos.
+ */
+class ClienteAgregadoServiceTest {
+
+	private static final long[] ORDENADOS = {1, 2, 2, 2, 5, 8, 8, 9};
+
+	@Test
+	void cuentaLosValoresEstrictamenteMenoresYMayores() {
+		assertThat(ClienteAgregadoService.menores(ORDENADOS, 1)).isZero();
+		assertThat(ClienteAgregadoService.menores(ORDENADOS, 2)).isEqualTo(1);
+		assertThat(ClienteAgregadoService.menores(ORDENADOS, 8)).isEqualTo(5);
+		assertThat(ClienteAgregadoService.menores(ORDENADOS, 100)).isEqualTo(8);
+
+		assertThat(ClienteAgregadoService.mayores(ORDENADOS, 9)).isZero();
+		assertThat(ClienteAgregadoService.mayores(ORDENADOS, 2)).isEqualTo(4);
+		assertThat(ClienteAgregadoService.mayores(ORDENADOS, 1)).isEqualTo(7);
+		assertThat(ClienteAgregadoService.mayores(ORDENADOS, 0)).isEqualTo(8);
+	}
+
+	@Test
+	void repartePosicionesDistintasEnCincoQuintilesIguales() {
+		long[] valores = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+		int[] quintiles = new int[valores.length];
+		for (int i = 0; i < valores.length; i++) {
+			quintiles[i] = ClienteAgregadoService.quintil(ClienteAgregadoService.menores(valores, valores[i]), valores.length);
+		}
+
+		assertThat(quintiles).containsExactly(1, 1, 2, 2, 3, 3, 4, 4, 5, 5);
+	}
+
+	@Test
+	void losEmpatesCompartenQuintilYLosExtremosQuedanEn1y5() {
+		int n = ORDENADOS.length;
+
+		assertThat(ClienteAgregadoService.quintil(ClienteAgregadoService.menores(ORDENADOS, 2), n))
+				.isEqualTo(ClienteAgregadoService.quintil(1, n))
+				.isEqualTo(1);
+		assertThat(ClienteAgregadoService.quintil(0, n)).isEqualTo(1);
+		assertThat(ClienteAgregadoService.quintil(n - 1, n)).isEqualTo(5);
+		assertThat(ClienteAgregadoService.quintil(0, 1)).isEqualTo(1);
+	}
+
+	@Test
+	void menosDiasDesdeLaUltimaCompraDaMejorRecencia() {
+		long[] dias = {0, 3, 10, 30, 365};
+
+		assertThat(ClienteAgregadoService.quintil(ClienteAgregadoService.mayores(dias, 0), dias.length)).isEqualTo(5);
+		assertThat(ClienteAgregadoService.quintil(ClienteAgregadoService.mayores(dias, 365), dias.length)).isEqualTo(1);
+	}
+
+	@Test
+	void segmentaPorRecenciaYFrecuencia() {
+		assertThat(ClienteAgregadoService.segmento(5, 5)).isEqualTo(ClienteAgregado.SEGMENTO_CAMPEON);
+		assertThat(ClienteAgregadoService.segmento(4, 4)).isEqualTo(ClienteAgregado.SEGMENTO_CAMPEON);
+		assertThat(ClienteAgregadoService.segmento(3, 5)).isEqualTo(ClienteAgregado.SEGMENTO_LEAL);
+		assertThat(ClienteAgregadoService.segmento(5, 3)).isEqualTo(ClienteAgregado.SEGMENTO_LEAL);
+		assertThat(ClienteAgregadoService.segmento(5, 1)).isEqualTo(ClienteAgregado.SEGMENTO_NUEVO);
+		assertThat(ClienteAgregadoService.segmento(2, 5)).isEqualTo(ClienteAgregado.SEGMENTO_EN_RIESGO);
+		assertThat(ClienteAgregadoService.segmento(1, 2)).isEqualTo(ClienteAgregado.SEGMENTO_PERDIDO);
+		assertThat(ClienteAgregadoService.segmento(3, 2)).isEqualTo(ClienteAgregado.SEGMENTO_POTENCIAL);
+	}
+}
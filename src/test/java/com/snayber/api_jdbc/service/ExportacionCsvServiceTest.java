@@ -0,0 +1,41 @@
+package com.snayber.api_jdbc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExportacionCsvServiceTest {
+
+	@Test
+	void elTextoSimpleSeEscribeSinComillas() throws IOException {
+		assertThat(csv("Arroz 1kg")).isEqualTo("Arroz 1kg");
+		assertThat(csv("")).isEmpty();
+	}
+
+	@Test
+	void comasComillasYSaltosDeLineaVanEntreComillas() throws IOException {
+		assertThat(csv("Pérez, Juan")).isEqualTo("\"Pérez, Juan\"");
+		assertThat(csv("Tornillo 1/2\"")).isEqualTo("\"Tornillo 1/2\"\"\"");
+		assertThat(csv("línea 1\nlínea 2")).isEqualTo("\"línea 1\nlínea 2\"");
+		assertThat(csv("fin\r")).isEqualTo("\"fin\r\"");
+	}
+
+	@Test
+	void lasFormulasSeNeutralizan() throws IOException {
+		assertThat(csv("=SUM(A1:A9)")).isEqualTo("'=SUM(A1:A9)");
+		assertThat(csv("+57 300")).isEqualTo("'+57 300");
+		assertThat(csv("-5")).isEqualTo("'-5");
+		assertThat(csv("@cmd")).isEqualTo("'@cmd");
+		assertThat(csv("=HYPERLINK(\"x\",\"y\")")).isEqualTo("\"'=HYPERLINK(\"\"x\"\",\"\"y\"\")\"");
+		assertThat(csv("a=b")).isEqualTo("a=b");
+	}
+
+	private static String csv(String texto) throws IOException {
+		StringWriter salida = new StringWriter();
+		ExportacionCsvService.escribirTexto(salida, texto);
+		return salida.toString();
+	}
+}
@@ -0,0 +1,165 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.dto.ReporteFlujoCajaDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * FlujoCajaService sobre H2 en memoria: solo usa SQL estándar, así que los totales
+ * deben coincidir con los calculados a mano (y con PostgreSQL).
+ *
+ * Datos: el rango va del miércoles 2024-01-03 al lunes 2024-01-08.
+ * Antes del rango: venta 100.00 (01-01) y compra 30.00 (2023-12-31), apertura 70.00.
+ * Dentro: ventas 50.00 y 25.50 (01-03), 10.00 (01-06), 5.00 (01-08 23:59:59);
+ * compras 20.00 (01-04) y 15.00 (01-08). Los días 01-05 y 01-07 no tienen movimientos.
+ * Después del rango: venta 999.00 (01-09), que no debe contar.
+ */
+class FlujoCajaServiceTest {
+
+	private static final LocalDate INICIO = LocalDate.of(2024, 1, 3);
+	private static final LocalDate FIN = LocalDate.of(2024, 1, 8);
+
+	private EmbeddedDatabase baseDatos;
+	private FlujoCajaService flujoCajaService;
+
+	@BeforeEach
+	void crearDatos() {
+		baseDatos = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.build();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(baseDatos);
+		jdbcTemplate.execute("CREATE TABLE ventas (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+				"fecha_venta TIMESTAMP NOT NULL, precio_total DECIMAL(12,2))");
+		jdbcTemplate.execute("CREATE TABLE compras (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+				"fecha_compra TIMESTAMP NOT NULL, costo_total DECIMAL(12,2))");
+
+		String venta = "INSERT INTO ventas (fecha_venta, precio_total) VALUES (?, ?)";
+		jdbcTemplate.update(venta, "2024-01-01 10:00:00", new BigDecimal("100.00"));
+		jdbcTemplate.update(venta, "2024-01-03 09:00:00", new BigDecimal("50.00"));
+		jdbcTemplate.update(venta, "2024-01-03 18:00:00", new BigDecimal("25.50"));
+		jdbcTemplate.update(venta, "2024-01-06 12:00:00", new BigDecimal("10.00"));
+		jdbcTemplate.update(venta, "2024-01-08 23:59:59", new BigDecimal("5.00"));
+		jdbcTemplate.update(venta, "2024-01-09 08:00:00", new BigDecimal("999.00"));
+
+		String compra = "INSERT INTO compras (fecha_compra, costo_total) VALUES (?, ?)";
+		jdbcTemplate.update(compra, "2023-12-31 12:00:00", new BigDecimal("30.00"));
+		jdbcTemplate.update(compra, "2024-01-04 11:00:00", new BigDecimal("20.00"));
+		jdbcTemplate.update(compra, "2024-01-08 07:30:00", new BigDecimal("15.00"));
+
+		flujoCajaService = new FlujoCajaService(jdbcTemplate, 2);
+	}
+
+	@AfterEach
+	void cerrar() {
+		baseDatos.shutdown();
+	}
+
+	@Test
+	void saldoDeAperturaYTotales() {
+		FlujoCajaService.FlujoCaja flujo = flujoCajaService.calcular(INICIO, FIN, FlujoCajaService.Agrupacion.DIARIO);
+
+		assertThat(flujo.saldoApertura()).isEqualByComparingTo("70.00");
+		assertThat(flujo.totalIngresos()).isEqualByComparingTo("90.50");
+		assertThat(flujo.totalEgresos()).isEqualByComparingTo("35.00");
+		assertThat(flujo.saldoCierre()).isEqualByComparingTo("125.50");
+	}
+
+	@Test
+	void diarioIncluyeDiasVaciosConSaldoContinuo() {
+		List<ReporteFlujoCajaDTO> periodos =
+				flujoCajaService.calcular(INICIO, FIN, FlujoCajaService.Agrupacion.DIARIO).periodos();
+
+		assertThat(periodos).extracting(ReporteFlujoCajaDTO::getFecha)
+				.containsExactly(INICIO, INICIO.plusDays(1), INICIO.plusDays(2), INICIO.plusDays(3),
+						INICIO.plusDays(4), FIN);
+		assertThat(periodos).extracting(ReporteFlujoCajaDTO::getSaldoAcumulado)
+				.usingElementComparator(BigDecimal::compareTo)
+				.containsExactly(new BigDecimal("145.50"), new BigDecimal("125.50"), new BigDecimal("125.50"),
+						new BigDecimal("135.50"), new BigDecimal("135.50"), new BigDecimal("125.50"));
+
+		ReporteFlujoCajaDTO vacio = periodos.get(2);
+		assertThat(vacio.getIngresos()).isEqualByComparingTo("0");
+		assertThat(vacio.getEgresos()).isEqualByComparingTo("0");
+		assertThat(vacio.getNumeroVentas()).isZero();
+		assertThat(vacio.getSaldoInicial()).isEqualByComparingTo(vacio.getSaldoAcumulado());
+
+		// Cada periodo arranca con el saldo con que cerró el anterior
+		for (int i = 1; i < periodos.size(); i++) {
+			assertThat(periodos.get(i).getSaldoInicial()).isEqualByComparingTo(periodos.get(i - 1).getSaldoAcumulado());
+		}
+		// La venta de las 23:59:59 del último día cuenta
+		assertThat(periodos.get(5).getNumeroVentas()).isEqualTo(1);
+		assertThat(periodos.get(5).getSaldoDia()).isEqualByComparingTo("-10.00");
+	}
+
+	@Test
+	void semanalRecortaLosPeriodosAlRango() {
+		List<ReporteFlujoCajaDTO> periodos =
+				flujoCajaService.calcular(INICIO, FIN, FlujoCajaService.Agrupacion.SEMANAL).periodos();
+
+		assertThat(periodos).hasSize(2);
+
+		// La semana del lunes 01-01 empieza en el inicio del rango; la venta del 01-01 va a la apertura
+		ReporteFlujoCajaDTO primera = periodos.get(0);
+		assertThat(primera.getFecha()).isEqualTo(INICIO);
+		assertThat(primera.getFechaFin()).isEqualTo(LocalDate.of(2024, 1, 7));
+		assertThat(primera.getIngresos()).isEqualByComparingTo("85.50");
+		assertThat(primera.getEgresos()).isEqualByComparingTo("20.00");
+		assertThat(primera.getSaldoInicial()).isEqualByComparingTo("70.00");
+		assertThat(primera.getSaldoAcumulado()).isEqualByComparingTo("135.50");
+		assertThat(primera.getNumeroVentas()).isEqualTo(3);
+		assertThat(primera.getNumeroCompras()).isEqualTo(1);
+
+		// La semana del lunes 01-08 termina en el fin del rango; la venta del 01-09 no cuenta
+		ReporteFlujoCajaDTO segunda = periodos.get(1);
+		assertThat(segunda.getFecha()).isEqualTo(FIN);
+		assertThat(segunda.getFechaFin()).isEqualTo(FIN);
+		assertThat(segunda.getIngresos()).isEqualByComparingTo("5.00");
+		assertThat(segunda.getEgresos()).isEqualByComparingTo("15.00");
+		assertThat(segunda.getSaldoAcumulado()).isEqualByComparingTo("125.50");
+	}
+
+	@Test
+	void mensualDevuelveUnSoloPeriodoRecortado() {
+		List<ReporteFlujoCajaDTO> periodos =
+				flujoCajaService.calcular(INICIO, FIN, FlujoCajaService.Agrupacion.MENSUAL).periodos();
+
+		assertThat(periodos).hasSize(1);
+		assertThat(periodos.get(0).getFecha()).isEqualTo(INICIO);
+		assertThat(periodos.get(0).getFechaFin()).isEqualTo(FIN);
+		assertThat(periodos.get(0).getSaldoAcumulado()).isEqualByComparingTo("125.50");
+	}
+
+	@Test
+	void rangoSinMovimientosConservaLaApertura() {
+		// Todo queda antes del rango: ventas 1189.50 - compras 65.00
+		LocalDate dia = LocalDate.of(2024, 12, 31);
+		FlujoCajaService.FlujoCaja flujo = flujoCajaService.calcular(dia, dia, FlujoCajaService.Agrupacion.DIARIO);
+
+		assertThat(flujo.saldoApertura()).isEqualByComparingTo("1124.50");
+		assertThat(flujo.periodos()).hasSize(1);
+		assertThat(flujo.periodos().get(0).getNumeroVentas()).isZero();
+		assertThat(flujo.saldoCierre()).isEqualByComparingTo("1124.50");
+	}
+
+	@Test
+	void rechazaRangosInvalidos() {
+		assertThatThrownBy(() -> flujoCajaService.calcular(FIN, INICIO, FlujoCajaService.Agrupacion.DIARIO))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> flujoCajaService.calcular(INICIO, INICIO.plusYears(20), FlujoCajaService.Agrupacion.MENSUAL))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
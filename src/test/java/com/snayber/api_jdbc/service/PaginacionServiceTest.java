@@ -0,0 +1,65 @@
+package com.snayber.api_jdbc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaginacionServiceTest {
+
+	@Test
+	void elCursorDevuelveLaMismaClave() {
+		LocalDateTime fecha = LocalDateTime.of(2024, 3, 5, 14, 30, 15, 123_000_000);
+		String cursor = PaginacionService.codificar(fecha.toString(), "42");
+
+		String[] clave = PaginacionService.decodificar(cursor, 2);
+
+		assertThat(PaginacionService.fecha(clave[0])).isEqualTo(fecha);
+		assertThat(PaginacionService.id(clave[1])).isEqualTo(42L);
+	}
+
+	@Test
+	void elCursorSePuedeEnviarEnLaUrlSinEscapar() {
+		String cursor = PaginacionService.codificar(LocalDateTime.of(2024, 12, 31, 23, 59, 59).toString(), "9999999999");
+
+		assertThat(cursor).matches("[A-Za-z0-9_-]+");
+	}
+
+	@Test
+	void rechazaCursoresQueNoSonBase64() {
+		assertThatThrownBy(() -> PaginacionService.decodificar("no es base64!", 2))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cursor inválido");
+	}
+
+	@Test
+	void rechazaCursoresConOtroNumeroDePartes() {
+		String deProducto = PaginacionService.codificar("7");
+		String conSeparadorDeMas = PaginacionService.codificar("2024-01-01T00:00", "1", "2");
+
+		assertThatThrownBy(() -> PaginacionService.decodificar(deProducto, 2))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cursor inválido");
+		assertThatThrownBy(() -> PaginacionService.decodificar(conSeparadorDeMas, 2))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cursor inválido");
+	}
+
+	@Test
+	void rechazaFechasEIdsMalFormados() {
+		String cursor = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString("ayer|uno".getBytes(StandardCharsets.UTF_8));
+		String[] clave = PaginacionService.decodificar(cursor, 2);
+
+		assertThatThrownBy(() -> PaginacionService.fecha(clave[0]))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cursor inválido");
+		assertThatThrownBy(() -> PaginacionService.id(clave[1]))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Cursor inválido");
+	}
+}
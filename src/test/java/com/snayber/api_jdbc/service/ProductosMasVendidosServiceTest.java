@@ -0,0 +1,154 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Venta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El ranking en memoria de ProductosMasVendidosService debe coincidir con la consulta
+ * de respaldo (la que se usa sin carga o con límite mayor que K) en todas las ventanas,
+ * también tras aplicar ventas nuevas y con un producto renombrado.
+ *
+ * Datos relativos a hoy: el producto 1 se vende hoy y hace 10 días con otro nombre;
+ * 2 y 3 empatan en cantidad; 4 solo tiene ventas de hace 40 días; 5 de hace 3 días.
+ */
+class ProductosMasVendidosServiceTest {
+
+	private static final int K = 3;
+	private static final String[] VENTANAS = {
+			ProductosMasVendidosService.VENTANA_TOTAL, ProductosMasVendidosService.VENTANA_HOY,
+			ProductosMasVendidosService.VENTANA_7D, ProductosMasVendidosService.VENTANA_30D};
+
+	private EmbeddedDatabase baseDatos;
+	private JdbcTemplate jdbcTemplate;
+	private ProductosMasVendidosService servicio;
+
+	@BeforeEach
+	void crearDatos() {
+		baseDatos = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.build();
+		jdbcTemplate = new JdbcTemplate(baseDatos);
+		jdbcTemplate.execute("CREATE TABLE ventas (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+				"producto_id BIGINT, nombre_producto VARCHAR(100), cantidad DECIMAL(10,2), " +
+				"precio_total DECIMAL(12,2), fecha_venta TIMESTAMP NOT NULL)");
+
+		LocalDateTime ahora = LocalDateTime.now().withHour(12);
+		insertar(venta(1L, "Arroz", "3", "30.00", ahora));
+		insertar(venta(1L, "Arroz 1kg", "4", "40.00", ahora.minusDays(10)));
+		insertar(venta(2L, "Azúcar", "2.5", "12.50", ahora.minusDays(1)));
+		insertar(venta(3L, "Café", "2.5", "25.00", ahora.minusDays(2)));
+		insertar(venta(4L, "Sal", "20", "20.00", ahora.minusDays(40)));
+		insertar(venta(5L, "Aceite", "1", "9.99", ahora.minusDays(3)));
+		insertar(venta(5L, "Aceite", "1", "9.99", ahora));
+
+		servicio = new ProductosMasVendidosService(jdbcTemplate, K);
+	}
+
+	@AfterEach
+	void cerrar() {
+		baseDatos.shutdown();
+	}
+
+	@Test
+	void sinCargarUsaLaConsultaYCoincideConLaMemoria() {
+		List<List<Map<String, Object>>> consultados = new ArrayList<>();
+		for (String ventana : VENTANAS) {
+			consultados.add(servicio.obtenerTop(ventana, K));
+		}
+
+		servicio.cargar();
+
+		for (int i = 0; i < VENTANAS.length; i++) {
+			assertThat(normalizar(servicio.obtenerTop(VENTANAS[i], K)))
+					.as(VENTANAS[i]).isEqualTo(normalizar(consultados.get(i)));
+		}
+	}
+
+	@Test
+	void rankingEnMemoriaCoincideConLaConsulta() {
+		servicio.cargar();
+
+		compararConConsulta();
+
+		List<Map<String, Object>> total = servicio.obtenerTop(ProductosMasVendidosService.VENTANA_TOTAL, K);
+		// Producto renombrado: una sola fila con las dos ventas y el mayor de los nombres
+		assertThat(total.get(1).get("producto_id")).isEqualTo(1L);
+		assertThat(total.get(1).get("nombre_producto")).isEqualTo("Arroz 1kg");
+		assertThat((BigDecimal) total.get(1).get("cantidad_total")).isEqualByComparingTo("7");
+		// Empate entre 2 y 3: gana el id menor
+		List<Map<String, Object>> semana = servicio.obtenerTop(ProductosMasVendidosService.VENTANA_7D, K);
+		assertThat(semana).extracting(f -> f.get("producto_id")).containsExactly(1L, 2L, 3L);
+	}
+
+	@Test
+	void ventasAplicadasTrasLaCargaSiguenCoincidiendo() {
+		servicio.cargar();
+		servicio.obtenerTop(ProductosMasVendidosService.VENTANA_HOY, K);
+
+		Venta nueva = venta(3L, "Café molido", "5", "50.00", LocalDateTime.now());
+		insertar(nueva);
+		servicio.onVenta(VentaEvent.registrada(nueva));
+
+		Venta antigua = venta(2L, "Azúcar", "2.5", "12.50", LocalDateTime.now().minusDays(1));
+		jdbcTemplate.update("DELETE FROM ventas WHERE producto_id = 2");
+		servicio.onVenta(VentaEvent.eliminada(antigua));
+
+		compararConConsulta();
+		assertThat(servicio.obtenerTop(ProductosMasVendidosService.VENTANA_HOY, K).get(0).get("nombre_producto"))
+				.isEqualTo("Café molido");
+	}
+
+	// Con límite mayor que K el servicio va a la base de datos
+	private void compararConConsulta() {
+		for (String ventana : VENTANAS) {
+			List<Map<String, Object>> enMemoria = servicio.obtenerTop(ventana, K);
+			List<Map<String, Object>> consultado = servicio.obtenerTop(ventana, K + 10);
+			assertThat(normalizar(enMemoria)).as(ventana)
+					.isEqualTo(normalizar(consultado.subList(0, Math.min(K, consultado.size()))));
+		}
+	}
+
+	private static List<String> normalizar(List<Map<String, Object>> filas) {
+		return filas.stream()
+				.map(f -> f.get("producto_id") + "|" + f.get("nombre_producto") + "|"
+						+ decimal(f.get("cantidad_total")) + "|" + ((Number) f.get("veces_vendido")).longValue()
+						+ "|" + decimal(f.get("ingresos_totales")))
+				.toList();
+	}
+
+	private static String decimal(Object valor) {
+		return new BigDecimal(valor.toString()).stripTrailingZeros().toPlainString();
+	}
+
+	private void insertar(Venta venta) {
+		jdbcTemplate.update("INSERT INTO ventas (producto_id, nombre_producto, cantidad, precio_total, fecha_venta) " +
+						"VALUES (?, ?, ?, ?, ?)", venta.getProductoId(), venta.getNombreProducto(),
+				venta.getCantidad(), venta.getPrecioTotal(), venta.getFechaVenta());
+	}
+
+	private static Venta venta(Long productoId, String nombre, String cantidad, String total, LocalDateTime fecha) {
+		return Venta.builder()
+				.productoId(productoId)
+				.nombreProducto(nombre)
+				.cantidad(new BigDecimal(cantidad))
+				.precioTotal(new BigDecimal(total))
+				.fechaVenta(fecha)
+				.build();
+	}
+}
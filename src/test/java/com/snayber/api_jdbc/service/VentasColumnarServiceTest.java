@@ -0,0 +1,234 @@
+package com.snayber.api_jdbc.service;
+
+import com.snayber.api_jdbc.event.VentaEvent;
+import com.snayber.api_jdbc.model.Dinero;
+import com.snayber.api_jdbc.model.Venta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Copia columnar de ventas sin base de datos: la carga recibe las filas de la prueba y
+ * los eventos se publican a mano, antes, durante y después de la carga. Cada
+ * agregación se compara con el mismo cálculo hecho directamente sobre las ventas
+ * vigentes en BigDecimal.
+ *
+ * Datos: 3000 ventas pseudoaleatorias (semilla fija) del primer trimestre de 2024,
+ * 7 productos, dos métodos de pago y algunos sin método ni cliente.
+ */
+class VentasColumnarServiceTest {
+
+	private static final int VENTAS = 3000;
+	private static final LocalDate INICIO = LocalDate.of(2024, 1, 1);
+	private static final LocalDate FIN = LocalDate.of(2024, 3, 31);
+	private static final String[] METODOS = {"EFECTIVO", "TARJETA", null};
+	private static final String[] CLIENTES = {"Ana", "Luis", "Marta", null};
+
+	private final Random azar = new Random(42);
+	private final Map<Long, Venta> vigentes = new TreeMap<>();
+	private VentasColumnarService servicio;
+
+	@BeforeEach
+	void crearDatos() {
+		for (long id = 1; id <= VENTAS; id++) {
+			vigentes.put(id, aleatoria(id));
+		}
+		servicio = new VentasColumnarService(null, null, 500);
+	}
+
+	@Test
+	void sinCargarNoResponde() {
+		assertThat(servicio.estaCargado()).isFalse();
+		assertThatThrownBy(() -> servicio.totalizar(INICIO, FIN, null, null, null))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void eventosDuranteLaCargaSeAplicanAlTerminar() {
+		List<Venta> instantanea = new ArrayList<>(vigentes.values());
+
+		servicio.cargar(columnas -> {
+			instantanea.subList(0, VENTAS / 2).forEach(v -> leer(columnas, v));
+
+			// Confirmadas mientras el cursor avanza: unas filas ya leídas y otras no
+			assertThat(servicio.estaCargado()).isFalse();
+			registrar(aleatoria(VENTAS + 1));
+			actualizar(10L);
+			actualizar(2600L);
+			eliminar(2500L);
+			actualizar(2700L);
+			eliminar(2700L);
+
+			instantanea.subList(VENTAS / 2, VENTAS).forEach(v -> leer(columnas, v));
+		});
+
+		assertThat(servicio.estaCargado()).isTrue();
+		comprobar();
+	}
+
+	@Test
+	void eventosTrasLaCargaConBorradasYCompactacion() {
+		VentasColumnarService.Columnas[] cargadas = new VentasColumnarService.Columnas[1];
+		servicio.cargar(columnas -> {
+			cargadas[0] = columnas;
+			vigentes.values().forEach(v -> leer(columnas, v));
+		});
+
+		for (long id = 1; id <= 1200; id++) {
+			eliminar(id * 2);
+		}
+		for (long id = 1; id <= 300; id++) {
+			actualizar(id * 2 - 1);
+		}
+		for (long id = VENTAS + 1; id <= VENTAS + 50; id++) {
+			registrar(aleatoria(id));
+		}
+
+		// Más de 1024 borradas y de un cuarto de las filas: ya se compactó al menos una vez
+		VentasColumnarService.Columnas columnas = cargadas[0];
+		assertThat(columnas.borradas()).isLessThan(1024);
+		assertThat(columnas.filas()).isLessThan(VENTAS + 300 + 50);
+		comprobar();
+
+		// Tras compactar, el índice por id sigue apuntando a la fila correcta
+		actualizar(1L);
+		eliminar(3L);
+		actualizar(VENTAS + 1L);
+		comprobar();
+	}
+
+	@Test
+	void recargaSigueRespondiendoConLaCopiaAnterior() {
+		servicio.cargar(columnas -> vigentes.values().forEach(v -> leer(columnas, v)));
+		eliminar(1L);
+		List<Venta> instantanea = new ArrayList<>(vigentes.values());
+
+		servicio.cargar(columnas -> {
+			instantanea.subList(0, 100).forEach(v -> leer(columnas, v));
+			actualizar(50L);
+			eliminar(2000L);
+			registrar(aleatoria(VENTAS + 1));
+			// La copia anterior recibe los eventos mientras se arma la nueva
+			comprobar();
+			instantanea.subList(100, instantanea.size()).forEach(v -> leer(columnas, v));
+		});
+
+		comprobar();
+	}
+
+	private void comprobar() {
+		LocalDate febrero = LocalDate.of(2024, 2, 1);
+		LocalDate dia = LocalDate.of(2024, 3, 15);
+		comprobarTotales(INICIO, FIN, null, null, null);
+		comprobarTotales(febrero, febrero.plusMonths(1).minusDays(1), null, null, null);
+		comprobarTotales(dia, dia, null, null, null);
+		comprobarTotales(INICIO, FIN, 3L, null, null);
+		comprobarTotales(INICIO, FIN, null, "TARJETA", null);
+		comprobarTotales(febrero, FIN, 5L, "EFECTIVO", "Ana");
+		comprobarTotales(INICIO, FIN, null, null, "Nadie");
+
+		for (String agrupacion : List.of(VentasColumnarService.AGRUPAR_PRODUCTO,
+				VentasColumnarService.AGRUPAR_METODO_PAGO, VentasColumnarService.AGRUPAR_DIA)) {
+			Map<String, String> obtenido = new HashMap<>();
+			servicio.agrupar(INICIO, FIN, null, null, "Luis", agrupacion)
+					.forEach((clave, resumen) -> obtenido.put(clave, texto(resumen)));
+			assertThat(obtenido).as(agrupacion).isEqualTo(agrupadoDirecto(agrupacion, "Luis"));
+		}
+	}
+
+	private void comprobarTotales(LocalDate desde, LocalDate hasta, Long productoId, String metodo, String cliente) {
+		List<Venta> filtradas = vigentes.values().stream()
+				.filter(v -> !v.getFechaVenta().toLocalDate().isBefore(desde) && !v.getFechaVenta().toLocalDate().isAfter(hasta))
+				.filter(v -> productoId == null || productoId.equals(v.getProductoId()))
+				.filter(v -> metodo == null || metodo.equals(v.getMetodoPago()))
+				.filter(v -> cliente == null || cliente.equals(v.getCliente()))
+				.toList();
+		assertThat(texto(servicio.totalizar(desde, hasta, productoId, metodo, cliente)))
+				.as("%s..%s producto=%s metodo=%s cliente=%s", desde, hasta, productoId, metodo, cliente)
+				.isEqualTo(directo(filtradas));
+	}
+
+	private Map<String, String> agrupadoDirecto(String agrupacion, String cliente) {
+		Map<String, List<Venta>> grupos = new HashMap<>();
+		for (Venta v : vigentes.values()) {
+			if (!cliente.equals(v.getCliente())) {
+				continue;
+			}
+			String clave = switch (agrupacion) {
+				case VentasColumnarService.AGRUPAR_PRODUCTO -> String.valueOf(v.getProductoId());
+				case VentasColumnarService.AGRUPAR_METODO_PAGO -> Objects.requireNonNullElse(v.getMetodoPago(), "SIN_METODO");
+				default -> v.getFechaVenta().toLocalDate().toString();
+			};
+			grupos.computeIfAbsent(clave, c -> new ArrayList<>()).add(v);
+		}
+		Map<String, String> resultado = new HashMap<>();
+		grupos.forEach((clave, ventas) -> resultado.put(clave, directo(ventas)));
+		return resultado;
+	}
+
+	private static String directo(List<Venta> ventas) {
+		BigDecimal total = BigDecimal.ZERO;
+		BigDecimal ganancia = BigDecimal.ZERO;
+		BigDecimal unidades = BigDecimal.ZERO;
+		for (Venta v : ventas) {
+			total = total.add(v.getPrecioTotal());
+			ganancia = ganancia.add(v.getGanancia());
+			unidades = unidades.add(v.getCantidad());
+		}
+		return ventas.size() + "|" + total.setScale(2) + "|" + ganancia.setScale(2) + "|" + unidades.setScale(2);
+	}
+
+	private static String texto(VentasColumnarService.Resumen resumen) {
+		return resumen.numeroVentas() + "|" + resumen.totalVentas().aBigDecimal() + "|"
+				+ resumen.totalGanancias().aBigDecimal() + "|" + resumen.unidades().setScale(2);
+	}
+
+	private void registrar(Venta venta) {
+		vigentes.put(venta.getId(), venta);
+		servicio.onVenta(VentaEvent.registrada(venta));
+	}
+
+	// Otra fecha, producto, importes, método y cliente para la misma venta
+	private void actualizar(Long id) {
+		Venta anterior = vigentes.get(id);
+		Venta actual = aleatoria(id);
+		vigentes.put(id, actual);
+		servicio.onVenta(VentaEvent.actualizada(anterior, actual));
+	}
+
+	private void eliminar(Long id) {
+		servicio.onVenta(VentaEvent.eliminada(vigentes.remove(id)));
+	}
+
+	private static void leer(VentasColumnarService.Columnas columnas, Venta v) {
+		columnas.agregar(v.getId(), VentasColumnarService.minuto(v.getFechaVenta()), v.getProductoId(),
+				Dinero.centavosDe(v.getPrecioTotal()), Dinero.centavosDe(v.getGanancia()),
+				Dinero.centavosDe(v.getCantidad()), v.getMetodoPago(), v.getCliente());
+	}
+
+	private Venta aleatoria(long id) {
+		long centavos = 100 + azar.nextInt(100_000);
+		return Venta.builder()
+				.id(id)
+				.fechaVenta(INICIO.atStartOfDay().plusMinutes(azar.nextInt(91 * 24 * 60)))
+				.productoId(1L + azar.nextInt(7))
+				.precioTotal(BigDecimal.valueOf(centavos, 2))
+				.ganancia(BigDecimal.valueOf(centavos / 4 - azar.nextInt(1000), 2))
+				.cantidad(BigDecimal.valueOf(1 + azar.nextInt(1000), 2))
+				.metodoPago(METODOS[azar.nextInt(METODOS.length)])
+				.cliente(CLIENTES[azar.nextInt(CLIENTES.length)])
+				.build();
+	}
+}